@@ -35,15 +35,20 @@ import com.linkedin.drelephant.configurations.jobtype.JobTypeConfiguration;
 import com.linkedin.drelephant.mapreduce.MapReduceMetricsAggregator;
 import com.linkedin.drelephant.spark.SparkMetricsAggregator;
 import com.linkedin.drelephant.util.Utils;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -69,6 +74,9 @@ public class ElephantContext {
   private static final String JOB_TYPES_CONF = "JobTypeConf.xml";
   private static final String GENERAL_CONF = "GeneralConf.xml";
 
+  private static final String EXCLUDE_JOBTYPE = "exclude_jobtypes_filter"; // excluded Job Types for heuristic
+  private static final String HEURISTIC_PARALLELISM_KEY = "drelephant.analysis.heuristic.parallelism";
+
   private final Map<String, List<String>> _heuristicGroupedNames = new HashMap<String, List<String>>();
   private List<HeuristicConfigurationData> _heuristicsConfData;
   private List<FetcherConfigurationData> _fetchersConfData;
@@ -77,7 +85,13 @@ public class ElephantContext {
 
   private final Map<String, ApplicationType> _nameToType = new HashMap<String, ApplicationType>();
   private final Map<ApplicationType, List<Heuristic>> _typeToHeuristics = new HashMap<ApplicationType, List<Heuristic>>();
-  private final Map<ApplicationType, HadoopMetricsAggregator> _typeToAggregator = new HashMap<ApplicationType, HadoopMetricsAggregator>();
+  private final Map<Heuristic, Set<String>> _heuristicToExcludedJobTypes = new IdentityHashMap<Heuristic, Set<String>>();
+  private ForkJoinPool _heuristicPool;
+  private boolean _heuristicPoolLoaded = false;
+  // Aggregators keep the result of the job they aggregate, so a new one is built for every job
+  private final Map<ApplicationType, Constructor<?>> _typeToAggregator = new HashMap<ApplicationType, Constructor<?>>();
+  private final Map<ApplicationType, AggregatorConfigurationData> _typeToAggregatorConfData =
+      new HashMap<ApplicationType, AggregatorConfigurationData>();
   private final Map<ApplicationType, ElephantFetcher> _typeToFetcher = new HashMap<ApplicationType, ElephantFetcher>();
   private final Map<String, Html> _heuristicToView = new HashMap<String, Html>();
   private Map<ApplicationType, List<JobType>> _appTypeToJobTypes = new HashMap<ApplicationType, List<JobType>>();
@@ -98,6 +112,13 @@ public class ElephantContext {
     loadConfiguration();
   }
 
+  /**
+   * Creates a context holding only the given aggregators, without reading the configuration files
+   */
+  ElephantContext(List<AggregatorConfigurationData> aggregatorConfData, ClassLoader classLoader) {
+    loadAggregators(aggregatorConfData, classLoader);
+  }
+
   private void loadConfiguration() {
     loadAggregators();
     loadFetchers();
@@ -115,11 +136,17 @@ public class ElephantContext {
   private void loadAggregators() {
     Document document = Utils.loadXMLDoc(AGGREGATORS_CONF);
 
-    _aggregatorConfData = new AggregatorConfiguration(document.getDocumentElement()).getAggregatorsConfigurationData();
+    loadAggregators(new AggregatorConfiguration(document.getDocumentElement()).getAggregatorsConfigurationData(),
+        Play.current().classloader());
+  }
+
+  private void loadAggregators(List<AggregatorConfigurationData> aggregatorConfData, ClassLoader classLoader) {
+    _aggregatorConfData = aggregatorConfData;
     for (AggregatorConfigurationData data : _aggregatorConfData) {
       try {
-        Class<?> aggregatorClass = Play.current().classloader().loadClass(data.getClassName());
-        Object instance = aggregatorClass.getConstructor(AggregatorConfigurationData.class).newInstance(data);
+        Class<?> aggregatorClass = classLoader.loadClass(data.getClassName());
+        Constructor<?> constructor = aggregatorClass.getConstructor(AggregatorConfigurationData.class);
+        Object instance = constructor.newInstance(data);
         if (!(instance instanceof HadoopMetricsAggregator)) {
           throw new IllegalArgumentException(
               "Class " + aggregatorClass.getName() + " is not an implementation of " + HadoopMetricsAggregator.class.getName());
@@ -127,7 +154,8 @@ public class ElephantContext {
 
         ApplicationType type = data.getAppType();
         if (_typeToAggregator.get(type) == null) {
-          _typeToAggregator.put(type, (HadoopMetricsAggregator) instance);
+          _typeToAggregator.put(type, constructor);
+          _typeToAggregatorConfData.put(type, data);
         }
 
         logger.info("Load Aggregator : " + data.getClassName());
@@ -210,6 +238,7 @@ public class ElephantContext {
           _typeToHeuristics.put(type, heuristics);
         }
         heuristics.add((Heuristic) instance);
+        _heuristicToExcludedJobTypes.put((Heuristic) instance, parseExcludedJobTypes(data));
 
         logger.info("Load Heuristic : " + data.getClassName());
       } catch (ClassNotFoundException e) {
@@ -256,6 +285,17 @@ public class ElephantContext {
             HeuristicResult.NO_DATA.getHeuristicClassName(), "views.html.help.helpNoData", null, null));
   }
 
+  /**
+   * Reads the comma separated job types a heuristic should not be applied to
+   */
+  private static Set<String> parseExcludedJobTypes(HeuristicConfigurationData data) {
+    String excludedJobTypes = data.getParamMap() == null ? null : data.getParamMap().get(EXCLUDE_JOBTYPE);
+    if (excludedJobTypes == null || excludedJobTypes.isEmpty()) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(excludedJobTypes.split(","))));
+  }
+
   /**
    * Decides what application types can be supported.
    *
@@ -270,6 +310,7 @@ public class ElephantContext {
     supportedTypes = Sets.intersection(supportedTypes, _typeToAggregator.keySet());
 
     _typeToAggregator.keySet().retainAll(supportedTypes);
+    _typeToAggregatorConfData.keySet().retainAll(supportedTypes);
     _typeToFetcher.keySet().retainAll(supportedTypes);
     _typeToHeuristics.keySet().retainAll(supportedTypes);
     _appTypeToJobTypes.keySet().retainAll(supportedTypes);
@@ -320,6 +361,39 @@ public class ElephantContext {
     return _typeToHeuristics.get(type);
   }
 
+  /**
+   * Tells whether a heuristic is configured to skip a job type through its exclude_jobtypes_filter
+   *
+   * @param heuristic The heuristic
+   * @param jobTypeName The name of the job type
+   * @return true if the heuristic should not be applied to jobs of this type
+   */
+  public boolean isExcluded(Heuristic heuristic, String jobTypeName) {
+    Set<String> excludedJobTypes = _heuristicToExcludedJobTypes.get(heuristic);
+    return excludedJobTypes != null && excludedJobTypes.contains(jobTypeName);
+  }
+
+  /**
+   * Returns the pool the heuristics of a job are applied on in parallel. It is created on first use, with
+   * drelephant.analysis.heuristic.parallelism threads, by default one per processor.
+   *
+   * @return The pool, or null if the parallelism is configured below 2 and heuristics run on the calling thread
+   */
+  public synchronized ForkJoinPool getHeuristicPool() {
+    if (!_heuristicPoolLoaded) {
+      int parallelism = Runtime.getRuntime().availableProcessors();
+      if (_generalConf != null) {
+        parallelism = Utils.getNonNegativeInt(_generalConf, HEURISTIC_PARALLELISM_KEY, parallelism);
+      }
+      if (parallelism > 1) {
+        _heuristicPool = new ForkJoinPool(parallelism);
+      }
+      _heuristicPoolLoaded = true;
+      logger.info("Heuristic parallelism is " + parallelism);
+    }
+    return _heuristicPool;
+  }
+
   /**
    * Return the heuristic names available grouped by application type.
    *
@@ -363,8 +437,28 @@ public class ElephantContext {
     return _typeToFetcher.get(type);
   }
 
+  /**
+   * Given an application type, return a new aggregator for one job of this type. Aggregators are not shared since
+   * they hold the result of the job they aggregated.
+   *
+   * @param type The application type
+   * @return A new aggregator, null if no aggregator is configured for the type
+   */
   public HadoopMetricsAggregator getAggregatorForApplicationType(ApplicationType type) {
-    return _typeToAggregator.get(type);
+    Constructor<?> constructor = _typeToAggregator.get(type);
+    if (constructor == null) {
+      return null;
+    }
+    AggregatorConfigurationData data = _typeToAggregatorConfData.get(type);
+    try {
+      return (HadoopMetricsAggregator) constructor.newInstance(data);
+    } catch (InstantiationException e) {
+      throw new RuntimeException("Could not instantiate class " + data.getClassName(), e);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException("Could not access constructor for class" + data.getClassName(), e);
+    } catch (InvocationTargetException e) {
+      throw new RuntimeException("Could not invoke class " + data.getClassName(), e);
+    }
   }
 
   /**
@@ -18,24 +18,36 @@ package com.linkedin.drelephant;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import com.linkedin.drelephant.analysis.AnalysisPriority;
+import com.linkedin.drelephant.analysis.AnalysisPriorityPolicy;
 import com.linkedin.drelephant.analysis.AnalyticJob;
+import com.linkedin.drelephant.analysis.AnalyticJobConsumer;
 import com.linkedin.drelephant.analysis.AnalyticJobGenerator;
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.HadoopSystemContext;
 import com.linkedin.drelephant.analysis.AnalyticJobGeneratorHadoop2;
+import com.linkedin.drelephant.analysis.DefaultAnalysisPriorityPolicy;
 
+import com.linkedin.drelephant.persistence.AppResultPersister;
+import com.linkedin.drelephant.persistence.RecentResultCache;
 import com.linkedin.drelephant.security.HadoopSecurity;
 
 import controllers.MetricsController;
 import java.io.IOException;
 import java.security.PrivilegedAction;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.linkedin.drelephant.util.HadoopRestClient;
 import com.linkedin.drelephant.util.Utils;
 import com.bretlowery.drelephant.exceptions.InvalidJSONResponseException;
 import com.bretlowery.drelephant.exceptions.MissingHistoryServerInfoException;
@@ -44,6 +56,7 @@ import models.AppResult;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
+import play.api.Play;
 
 /**
  * The class that runs the Dr. Elephant daemon
@@ -54,18 +67,41 @@ public class ElephantRunner implements Runnable {
   private static final long FETCH_INTERVAL = 60 * 1000;     // Interval between fetches
   private static final long RETRY_INTERVAL = 60 * 1000;     // Interval between retries
   private static final int EXECUTOR_NUM = 5;                // The number of executor threads to analyse the jobs
+  private static final int QUEUE_CAPACITY = 1000;           // The number of jobs queued or being analysed at most
 
   private static final String FETCH_INTERVAL_KEY = "drelephant.analysis.fetch.interval";
   private static final String RETRY_INTERVAL_KEY = "drelephant.analysis.retry.interval";
   private static final String EXECUTOR_NUM_KEY = "drelephant.analysis.thread.count";
+  private static final String QUEUE_CAPACITY_KEY = "drelephant.analysis.queue.capacity";
+  private static final String PRIORITY_POLICY_KEY = "drelephant.analysis.priority.policy";
+
+  // Orders the queued jobs by priority class, then by the order in which they were queued
+  private static final Comparator<Runnable> EXECUTOR_JOB_ORDER = new Comparator<Runnable>() {
+    @Override
+    public int compare(Runnable r1, Runnable r2) {
+      ExecutorJob job1 = (ExecutorJob) r1;
+      ExecutorJob job2 = (ExecutorJob) r2;
+      int order = job1._priority.compareTo(job2._priority);
+      if (order != 0) {
+        return order;
+      }
+      return job1._sequence < job2._sequence ? -1 : (job1._sequence == job2._sequence ? 0 : 1);
+    }
+  };
 
   private AtomicBoolean _running = new AtomicBoolean(true);
   private long lastRun;
   private long _fetchInterval;
   private long _retryInterval;
   private int _executorNum;
+  private int _queueCapacity;
+  private Semaphore _queuePermits;
+  private AnalysisPriorityPolicy _priorityPolicy;
+  private final AtomicLong _queueSequence = new AtomicLong();
+  private final AtomicIntegerArray _queuedByPriority = new AtomicIntegerArray(AnalysisPriority.values().length);
   private HadoopSecurity _hadoopSecurity;
   private ThreadPoolExecutor _threadPoolExecutor;
+  private AppResultPersister _resultPersister;
   private AnalyticJobGenerator _analyticJobGenerator;
   private long _startTime;
   private boolean _startingUp = true;
@@ -75,6 +111,31 @@ public class ElephantRunner implements Runnable {
     _executorNum = Utils.getNonNegativeInt(configuration, EXECUTOR_NUM_KEY, EXECUTOR_NUM);
     _fetchInterval = Utils.getNonNegativeLong(configuration, FETCH_INTERVAL_KEY, FETCH_INTERVAL);
     _retryInterval = Utils.getNonNegativeLong(configuration, RETRY_INTERVAL_KEY, RETRY_INTERVAL);
+    _queueCapacity = Math.max(1, Utils.getNonNegativeInt(configuration, QUEUE_CAPACITY_KEY, QUEUE_CAPACITY));
+    _queuePermits = new Semaphore(_queueCapacity);
+    HadoopRestClient.init(configuration);
+    loadPriorityPolicy(configuration);
+  }
+
+  private void loadPriorityPolicy(Configuration configuration) {
+    String className = configuration.get(PRIORITY_POLICY_KEY, DefaultAnalysisPriorityPolicy.class.getName());
+    try {
+      Class<?> policyClass = Play.current().classloader().loadClass(className);
+      Object instance = policyClass.newInstance();
+      if (!(instance instanceof AnalysisPriorityPolicy)) {
+        throw new IllegalArgumentException(
+            "Class " + policyClass.getName() + " is not an implementation of " + AnalysisPriorityPolicy.class.getName());
+      }
+      _priorityPolicy = (AnalysisPriorityPolicy) instance;
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Could not find class " + className, e);
+    } catch (InstantiationException e) {
+      throw new RuntimeException("Could not instantiate class " + className, e);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException("Could not access constructor for class" + className, e);
+    }
+    _priorityPolicy.configure(configuration);
+    logger.info("Analysis priority policy is " + className + ", queue capacity is " + _queueCapacity);
   }
 
   private void loadAnalyticJobGenerator() {
@@ -111,13 +172,27 @@ public class ElephantRunner implements Runnable {
           // Initialize the metrics registries.
           MetricsController.init();
 
+          RecentResultCache.init(ElephantContext.instance().getGeneralConf()).start();
+          _resultPersister = new AppResultPersister(ElephantContext.instance().getGeneralConf());
+          // Discovery only moves past the jobs whose results are written
+          _resultPersister.setWriteListener(new AppResultPersister.WriteListener() {
+            @Override
+            public void onDone(List<AppResult> results) {
+              for (AppResult result : results) {
+                _analyticJobGenerator.completeJob(result.id);
+              }
+            }
+          });
+          _resultPersister.start();
+
           logger.info("executor num is " + _executorNum);
           if (_executorNum < 1) {
             throw new RuntimeException("Must have at least 1 worker thread.");
           }
           ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("dr-el-executor-thread-%d").build();
+          // The queue is bounded by _queuePermits, taken before a job is queued and released once it is analysed
           _threadPoolExecutor = new ThreadPoolExecutor(_executorNum, _executorNum, 0L, TimeUnit.MILLISECONDS,
-                  new LinkedBlockingQueue<Runnable>(), factory);
+                  new PriorityBlockingQueue<Runnable>(_queueCapacity, EXECUTOR_JOB_ORDER), factory);
 
           while (_running.get() && !Thread.currentThread().isInterrupted()) {
             _analyticJobGenerator.updateResourceManagerAddresses();
@@ -135,9 +210,17 @@ public class ElephantRunner implements Runnable {
               continue;
             }
 
-            List<AnalyticJob> todos;
             try {
-              todos = _analyticJobGenerator.fetchAnalyticJobs();
+              // Each window of apps is queued as soon as it is read
+              _analyticJobGenerator.fetchAnalyticJobs(new AnalyticJobConsumer() {
+                @Override
+                public void consume(List<AnalyticJob> todos) throws InterruptedException {
+                  submitJobs(todos);
+                }
+              });
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              continue;
             } catch (Exception e) {
               logger.error("Error fetching job list. Try again later...", e);
               //Wait for a while before retry
@@ -145,17 +228,6 @@ public class ElephantRunner implements Runnable {
               continue;
             }
 
-            for (AnalyticJob analyticJob : todos) {
-              _threadPoolExecutor.submit(new ExecutorJob(analyticJob));
-              if (_startingUp) {
-                // throttle burst of REST API requests at startup
-                waitInterval(1000);
-              }
-              if (analyticJob.getStartTime() >= _startTime && ! _startingUp) {
-                logger.info("ALL CAUGHT UP as of now");
-              }
-            }
-
             int queueSize = _threadPoolExecutor.getQueue().size();
             MetricsController.setQueueSize(queueSize);
             logger.info("Job queue size is " + queueSize);
@@ -174,16 +246,73 @@ public class ElephantRunner implements Runnable {
     }
   }
 
+  /**
+   * Queues the jobs for analysis. Blocks while the queue is full, which stops the generator from reading further
+   * windows until the executors catch up.
+   */
+  private void submitJobs(List<AnalyticJob> todos) throws InterruptedException {
+    for (AnalyticJob analyticJob : todos) {
+      while (!_queuePermits.tryAcquire(1, TimeUnit.SECONDS)) {
+        if (!_running.get()) {
+          return;
+        }
+      }
+
+      AnalysisPriority priority;
+      try {
+        priority = _priorityPolicy.getPriority(analyticJob);
+      } catch (RuntimeException e) {
+        logger.error("Failed to prioritize " + analyticJob.getAppId(), e);
+        priority = AnalysisPriority.BACKLOG;
+      }
+      ExecutorJob executorJob = new ExecutorJob(analyticJob, priority, _queueSequence.getAndIncrement());
+      updateQueueSize(priority, 1);
+      try {
+        _threadPoolExecutor.execute(executorJob);
+      } catch (RejectedExecutionException e) {
+        updateQueueSize(priority, -1);
+        _queuePermits.release();
+        throw e;
+      }
+
+      if (_startingUp) {
+        // throttle burst of REST API requests at startup
+        waitInterval(1000);
+      }
+      if (analyticJob.getStartTime() >= _startTime && ! _startingUp) {
+        logger.info("ALL CAUGHT UP as of now");
+      }
+    }
+    MetricsController.setQueueSize(_threadPoolExecutor.getQueue().size());
+  }
+
+  private void updateQueueSize(AnalysisPriority priority, int delta) {
+    MetricsController.setQueueSize(priority, _queuedByPriority.addAndGet(priority.ordinal(), delta));
+  }
+
   private class ExecutorJob implements Runnable {
 
     private AnalyticJob _analyticJob;
+    private final AnalysisPriority _priority;
+    private final long _sequence;
 
-    ExecutorJob(AnalyticJob analyticJob) {
+    ExecutorJob(AnalyticJob analyticJob, AnalysisPriority priority, long sequence) {
       _analyticJob = analyticJob;
+      _priority = priority;
+      _sequence = sequence;
     }
 
     @Override
     public void run() {
+      updateQueueSize(_priority, -1);
+      try {
+        analyze();
+      } finally {
+        _queuePermits.release();
+      }
+    }
+
+    private void analyze() {
       try {
         String analysisName = String.format("%s %s", _analyticJob.getAppType().getName(), _analyticJob.getAppId());
         long analysisStartTimeMillis = System.currentTimeMillis();
@@ -200,9 +329,10 @@ public class ElephantRunner implements Runnable {
           if (result.totalDelay < 0) {
             result.totalDelay = 0;
           }
-          result.save();
+          _resultPersister.persist(result);
         } catch (java.security.PrivilegedActionException | java.io.FileNotFoundException e) {
-          // ignore this error
+          // ignore this error, there is no result to wait for
+          _analyticJobGenerator.completeJob(_analyticJob.getAppId());
         }
         long processingTime = System.currentTimeMillis() - analysisStartTimeMillis;
         logger.info(String.format("Analysis of %s took %sms", analysisName, processingTime));
@@ -222,6 +352,7 @@ public class ElephantRunner implements Runnable {
             MetricsController.markSkippedJob();
             logger.error("Drop the analytic job. Reason: reached the max retries for application id = ["
                     + _analyticJob.getAppId() + "].");
+            _analyticJobGenerator.completeJob(_analyticJob.getAppId());
           }
         }
       } catch (Exception e) {
@@ -235,6 +366,7 @@ public class ElephantRunner implements Runnable {
             MetricsController.markSkippedJob();
             logger.error("Drop the analytic job. Reason: reached the max retries for application id = ["
                     + _analyticJob.getAppId() + "].");
+            _analyticJobGenerator.completeJob(_analyticJob.getAppId());
           }
         }
       }
@@ -262,5 +394,8 @@ public class ElephantRunner implements Runnable {
     if (_threadPoolExecutor != null) {
       _threadPoolExecutor.shutdownNow();
     }
+    if (_resultPersister != null) {
+      _resultPersister.close();
+    }
   }
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.linkedin.drelephant.analysis;
+
+
+/**
+ * The priority classes of the analysis work queue, from the first to be analyzed to the last.
+ */
+public enum AnalysisPriority {
+  PREFERRED,  // Apps of the configured queues and users
+  FAILED,     // Apps that failed on the cluster
+  RECENT,     // Apps that finished recently
+  BACKLOG;    // Everything else, e.g. apps read while catching up after a restart
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.linkedin.drelephant.analysis;
+
+import org.apache.hadoop.conf.Configuration;
+
+
+/**
+ * Decides in which order the discovered AnalyticJobs are analyzed. Jobs of a lower priority class are only analyzed
+ * when no job of a higher class is waiting, and jobs of the same class are analyzed in discovery order.
+ *
+ * An implementation is chosen with the drelephant.analysis.priority.policy property of GeneralConf.xml and must have
+ * a public no-argument constructor.
+ */
+public interface AnalysisPriorityPolicy {
+
+  /**
+   * Configures the policy
+   *
+   * @param configuration The general configuration
+   */
+  public void configure(Configuration configuration);
+
+  /**
+   * Returns the priority class of a job. Called once, when the job is queued.
+   *
+   * @param job The job to analyze
+   * @return The priority class
+   */
+  public AnalysisPriority getPriority(AnalyticJob job);
+}
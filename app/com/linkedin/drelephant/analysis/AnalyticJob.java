@@ -19,9 +19,12 @@ package com.linkedin.drelephant.analysis;
 import com.linkedin.drelephant.ElephantContext;
 import com.linkedin.drelephant.util.InfoExtractor;
 import com.linkedin.drelephant.util.Utils;
+import controllers.MetricsController;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import models.AppHeuristicResult;
 import models.AppHeuristicResultDetails;
 import models.AppResult;
@@ -37,7 +40,6 @@ public class AnalyticJob {
 
   private static final String UNKNOWN_JOB_TYPE = "Unknown";   // The default job type when the data matches nothing.
   private static final int _RETRY_LIMIT = 5;                  // Number of times a job needs to be tried before dropping
-  private static final String EXCLUDE_JOBTYPE = "exclude_jobtypes_filter"; // excluded Job Types for heuristic
 
   private int _retries = 0;
   private ApplicationType _type;
@@ -48,6 +50,7 @@ public class AnalyticJob {
   private String _trackingUrl;
   private long _startTime;
   private long _finishTime;
+  private String _finalStatus;
 
   /**
    * Returns the application type
@@ -145,6 +148,26 @@ public class AnalyticJob {
     return this;
   }
 
+  /**
+   * Sets the final status of the application as reported by the resource manager
+   *
+   * @param finalStatus The final status, e.g. SUCCEEDED or FAILED
+   * @return The analytic job
+   */
+  public AnalyticJob setFinalStatus(String finalStatus) {
+    _finalStatus = finalStatus;
+    return this;
+  }
+
+  /**
+   * Returns the final status of the application as reported by the resource manager
+   *
+   * @return The final status, or null if unknown
+   */
+  public String getFinalStatus() {
+    return _finalStatus;
+  }
+
   /**
    * Returns the application id
    *
@@ -242,18 +265,13 @@ public class AnalyticJob {
       logger.info("No Data Received for analytic job: " + getAppId());
       analysisResults.add(HeuristicResult.NO_DATA);
     } else {
-      List<Heuristic> heuristics = ElephantContext.instance().getHeuristicsForApplicationType(getAppType());
-      for (Heuristic heuristic : heuristics) {
-        String confExcludedApps = heuristic.getHeuristicConfData().getParamMap().get(EXCLUDE_JOBTYPE);
-
-        if (confExcludedApps == null || confExcludedApps.length() == 0 ||
-                !Arrays.asList(confExcludedApps.split(",")).contains(jobTypeName)) {
-          HeuristicResult result = heuristic.apply(data);
-          if (result != null) {
-            analysisResults.add(result);
-          }
+      List<Heuristic> heuristics = new ArrayList<Heuristic>();
+      for (Heuristic heuristic : ElephantContext.instance().getHeuristicsForApplicationType(getAppType())) {
+        if (!ElephantContext.instance().isExcluded(heuristic, jobTypeName)) {
+          heuristics.add(heuristic);
         }
       }
+      analysisResults.addAll(applyHeuristics(heuristics, data));
     }
 
     HadoopMetricsAggregator hadoopMetricsAggregator = ElephantContext.instance().getAggregatorForApplicationType(getAppType());
@@ -314,6 +332,59 @@ public class AnalyticJob {
     return result;
   }
 
+  /**
+   * Applies the heuristics to the data, in parallel on the heuristic pool when there is one.
+   *
+   * @return the results in the order of the heuristics, heuristics returning null are left out
+   */
+  private static List<HeuristicResult> applyHeuristics(List<Heuristic> heuristics, final HadoopApplicationData data) {
+    List<HeuristicResult> results = new ArrayList<HeuristicResult>(heuristics.size());
+    ForkJoinPool pool = ElephantContext.instance().getHeuristicPool();
+    if (pool == null || heuristics.size() < 2) {
+      for (Heuristic heuristic : heuristics) {
+        HeuristicResult result = timedApply(heuristic, data);
+        if (result != null) {
+          results.add(result);
+        }
+      }
+      return results;
+    }
+
+    List<ForkJoinTask<HeuristicResult>> tasks = new ArrayList<ForkJoinTask<HeuristicResult>>(heuristics.size());
+    try {
+      for (final Heuristic heuristic : heuristics) {
+        tasks.add(pool.submit(new Callable<HeuristicResult>() {
+          @Override
+          public HeuristicResult call() {
+            return timedApply(heuristic, data);
+          }
+        }));
+      }
+      // Joined in the configured order so that results are always listed the same way
+      for (ForkJoinTask<HeuristicResult> task : tasks) {
+        HeuristicResult result = task.join();
+        if (result != null) {
+          results.add(result);
+        }
+      }
+    } finally {
+      // Only has an effect when a heuristic failed, the whole job is retried then
+      for (ForkJoinTask<HeuristicResult> task : tasks) {
+        task.cancel(false);
+      }
+    }
+    return results;
+  }
+
+  private static HeuristicResult timedApply(Heuristic heuristic, HadoopApplicationData data) {
+    long startTime = System.nanoTime();
+    try {
+      return heuristic.apply(data);
+    } finally {
+      MetricsController.setHeuristicProcessingTime(heuristic, System.nanoTime() - startTime);
+    }
+  }
+
   /**
    * Indicate this promise should retry itself again.
    *
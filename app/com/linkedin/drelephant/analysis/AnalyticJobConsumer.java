@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.List;
+
+
+/**
+ * Receives the AnalyticJobs of an AnalyticJobGenerator batch by batch, as soon as each batch has been read.
+ */
+public interface AnalyticJobConsumer {
+
+  /**
+   * Takes a batch of AnalyticJobs. The generator does not read the next batch before this method returns, so an
+   * implementation may block to slow discovery down.
+   *
+   * @param jobs The jobs to analyze
+   * @throws InterruptedException if interrupted while waiting to accept the jobs
+   */
+  public void consume(List<AnalyticJob> jobs)
+      throws InterruptedException;
+}
@@ -52,6 +52,18 @@ public interface AnalyticJobGenerator {
   public List<AnalyticJob> fetchAnalyticJobs()
       throws IOException, AuthenticationException;
 
+  /**
+   * Provides the AnalyticJobs that should be calculated in bounded batches, handing each batch to the consumer as
+   * soon as it is read.
+   *
+   * @param consumer The consumer of the batches
+   * @throws IOException
+   * @throws AuthenticationException
+   * @throws InterruptedException if the consumer was interrupted
+   */
+  public void fetchAnalyticJobs(AnalyticJobConsumer consumer)
+      throws IOException, AuthenticationException, InterruptedException;
+
   /**
    * Add an AnalyticJob into retry list. Those jobs will be provided again via #fetchAnalyticJobs under
    * the generator's decision.
@@ -59,4 +71,12 @@ public interface AnalyticJobGenerator {
    * @param job The job to add
    */
   public void addIntoRetries(AnalyticJob job);
+
+  /**
+   * Tells the generator that a job it provided needs no more work, because its result is written or because it was
+   * dropped. Jobs that are not complete hold back the discovery position saved for the next start.
+   *
+   * @param appId The id of the job
+   */
+  public void completeJob(String appId);
 }
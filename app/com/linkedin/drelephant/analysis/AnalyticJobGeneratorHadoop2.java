@@ -17,27 +17,30 @@
 package com.linkedin.drelephant.analysis;
 
 import com.linkedin.drelephant.ElephantContext;
-import com.linkedin.drelephant.math.Statistics;
+import com.linkedin.drelephant.util.HadoopRestClient;
+import com.linkedin.drelephant.util.Utils;
 import controllers.MetricsController;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.lang.Exception;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
-import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import models.AppResult;
+import models.DiscoveryWatermark;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.map.ObjectMapper;
 
 
 /**
@@ -58,20 +61,24 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
     // bml Cardlytics 1-25-2017 1 min (60000ms) isn't enough on smaller clusters; some jobs return null data due to noncompletion of collection. Make it 5 min (300Kms) instead.
   private static final long FETCH_DELAY = 300000;
 
-  // Generate a token update interval with a random deviation so that it does not update the token exactly at the same
-  // time with other token updaters (e.g. ElephantFetchers).
-  private static final long TOKEN_UPDATE_INTERVAL =
-      Statistics.MINUTE_IN_MS * 30 + new Random().nextLong() % (3 * Statistics.MINUTE_IN_MS);
+  private static final String INITIAL_LOOKBACK_KEY = "drelephant.analysis.fetch.initial.lookback.ms";
+  private static final String FETCH_APP_LIMIT_KEY = "drelephant.analysis.fetch.app.limit";
+  private static final long INITIAL_LOOKBACK = 24 * 60 * 60 * 1000;
+  private static final int FETCH_APP_LIMIT = 1000;
+
+  private static final String WATERMARK_ID = "yarn_resource_manager";
+  // Number of application ids looked up in a single query when skipping analyzed applications
+  private static final int DEDUP_BATCH_SIZE = 1000;
 
   private String _resourceManagerAddress;
   private long _lastTime = 0;
   private long _currentTime = 0;
-  private long _tokenUpdatedTime = 0;
-  private AuthenticatedURL.Token _token;
-  private AuthenticatedURL _authenticatedURL;
-  private final ObjectMapper _objectMapper = new ObjectMapper();
+  private long _initialLookbackMs;
+  private int _fetchAppLimit;
 
   private final Queue<AnalyticJob> _retryQueue = new ConcurrentLinkedQueue<AnalyticJob>();
+  // Finish times of the jobs handed out whose results are not written yet, keyed by application id
+  private final Map<String, Long> _pendingJobs = new HashMap<String, Long>();
 
   public void updateResourceManagerAddresses() {
         String distroName = null;
@@ -91,8 +98,6 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
       if (resourceManagers != null) {
         logger.info("The list of RM IDs are " + resourceManagers);
         List<String> ids = Arrays.asList(resourceManagers.split(","));
-        _currentTime = System.currentTimeMillis();
-        updateAuthToken();
         for (String id : ids) {
           try {
             String resourceManager = configuration.get(RESOURCE_MANAGER_ADDRESS + "." + id);
@@ -143,7 +148,11 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
   public void configure(Configuration configuration)
       throws IOException {
     this.configuration = configuration;
+    _initialLookbackMs = Utils.getNonNegativeLong(configuration, INITIAL_LOOKBACK_KEY, INITIAL_LOOKBACK);
+    _fetchAppLimit = Math.max(1, Utils.getNonNegativeInt(configuration, FETCH_APP_LIMIT_KEY, FETCH_APP_LIMIT));
+    logger.info("Fetching apps in windows of at most " + _fetchAppLimit + " apps");
     updateResourceManagerAddresses();
+    loadWatermark();
   }
 
   /**
@@ -156,65 +165,226 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
   @Override
   public List<AnalyticJob> fetchAnalyticJobs()
       throws IOException, AuthenticationException {
-    List<AnalyticJob> appList = new ArrayList<AnalyticJob>();
+    final List<AnalyticJob> appList = new ArrayList<AnalyticJob>();
+    try {
+      fetchAnalyticJobs(new AnalyticJobConsumer() {
+        @Override
+        public void consume(List<AnalyticJob> jobs) {
+          appList.addAll(jobs);
+        }
+      });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return appList;
+  }
 
+  /**
+   * Fetch all the succeeded and failed applications/analytic jobs from the resource manager. The whole range since the
+   * last fetch is requested at once, and is only split into windows while the resource manager returns as many apps
+   * as the request limit, so no single response holds more than _fetchAppLimit apps.
+   *
+   * The watermark is saved once per fetch, and it is the low watermark: just before the earliest finish time of the
+   * jobs handed out whose results are not written yet. Jobs still queued for analysis, waiting for a retry, or held by
+   * the result persister are therefore read again after a restart, and those already written are skipped.
+   *
+   * @param consumer Receives the jobs of each window, then the jobs to retry
+   * @throws IOException
+   * @throws AuthenticationException
+   * @throws InterruptedException
+   */
+  @Override
+  public void fetchAnalyticJobs(AnalyticJobConsumer consumer)
+      throws IOException, AuthenticationException, InterruptedException {
     // There is a lag of job data from AM/NM to JobHistoryServer HDFS, we shouldn't use the current time, since there
     // might be new jobs arriving after we fetch jobs. We provide one minute delay to address this lag.
-    _currentTime = System.currentTimeMillis() - FETCH_DELAY;
-    updateAuthToken();
+    _currentTime = currentTimeMillis() - FETCH_DELAY;
+
+    try {
+      if (_lastTime < _currentTime) {
+        logger.info("Fetching recent finished application runs between last time: " + (_lastTime + 1)
+            + ", and current time: " + _currentTime);
+        fetchWindow(_lastTime + 1, _currentTime, consumer);
+      }
+    } finally {
+      saveWatermark(getLowWatermark());
+    }
 
-    logger.info("Fetching recent finished application runs between last time: " + (_lastTime + 1)
-        + ", and current time: " + _currentTime);
+    // Hand over the promises from the retry queue at the end
+    List<AnalyticJob> retries = new ArrayList<AnalyticJob>();
+    while (!_retryQueue.isEmpty()) {
+      retries.add(_retryQueue.poll());
+    }
+    if (!retries.isEmpty()) {
+      consumer.consume(retries);
+    }
+  }
+
+  /**
+   * Reads the apps finished between begin and end, both inclusive, and hands them to the consumer. The windows are
+   * consumed in the order of their finish times and _lastTime moves to the end of each one, so a failed request
+   * resumes from the window it failed on at the next fetch.
+   */
+  private void fetchWindow(long begin, long end, AnalyticJobConsumer consumer)
+      throws IOException, AuthenticationException, InterruptedException {
+    List<AnalyticJob> appList = new ArrayList<AnalyticJob>();
 
     // Fetch all succeeded apps
     URL succeededAppsURL = new URL(new URL("http://" + _resourceManagerAddress), String.format(
-            "/ws/v1/cluster/apps?finalStatus=SUCCEEDED&finishedTimeBegin=%s&finishedTimeEnd=%s",
-            String.valueOf(_lastTime + 1), String.valueOf(_currentTime)));
+            "/ws/v1/cluster/apps?finalStatus=SUCCEEDED&finishedTimeBegin=%s&finishedTimeEnd=%s&limit=%s",
+            String.valueOf(begin), String.valueOf(end), String.valueOf(_fetchAppLimit)));
     logger.info("The succeeded apps URL is " + succeededAppsURL);
-    List<AnalyticJob> succeededApps = readApps(succeededAppsURL);
-    appList.addAll(succeededApps);
+    int succeededCount = readApps(succeededAppsURL, appList);
 
     // Fetch all failed apps
     // state: Application Master State
     // finalStatus: Status of the Application as reported by the Application Master
     URL failedAppsURL = new URL(new URL("http://" + _resourceManagerAddress), String.format(
-        "/ws/v1/cluster/apps?finalStatus=FAILED&state=FINISHED&finishedTimeBegin=%s&finishedTimeEnd=%s",
-        String.valueOf(_lastTime + 1), String.valueOf(_currentTime)));
-    List<AnalyticJob> failedApps = readApps(failedAppsURL);
+        "/ws/v1/cluster/apps?finalStatus=FAILED&state=FINISHED&finishedTimeBegin=%s&finishedTimeEnd=%s&limit=%s",
+        String.valueOf(begin), String.valueOf(end), String.valueOf(_fetchAppLimit)));
     logger.info("The failed apps URL is " + failedAppsURL);
-    appList.addAll(failedApps);
+    int failedCount = readApps(failedAppsURL, appList);
+
+    // The resource manager does not order the apps before applying the limit, so a full response may have dropped
+    // any of them. Read the two halves of the window separately instead.
+    if (succeededCount >= _fetchAppLimit || failedCount >= _fetchAppLimit) {
+      if (end > begin) {
+        long middle = begin + (end - begin) / 2;
+        logger.info("More than " + _fetchAppLimit + " apps finished between " + begin + " and " + end
+            + ", splitting the window");
+        fetchWindow(begin, middle, consumer);
+        fetchWindow(middle + 1, end, consumer);
+        return;
+      }
+      logger.warn("More than " + _fetchAppLimit + " apps finished at " + begin + ", some of them are skipped");
+    }
 
-    // Append promises from the retry queue at the end of the list
-    while (!_retryQueue.isEmpty()) {
-      appList.add(_retryQueue.poll());
+    // Skip the applications that have been analyzed before, e.g. by the run before a restart
+    removeAnalyzedApps(appList);
+    if (!appList.isEmpty()) {
+      synchronized (_pendingJobs) {
+        for (AnalyticJob job : appList) {
+          _pendingJobs.put(job.getAppId(), job.getFinishTime());
+        }
+      }
+      consumer.consume(appList);
     }
+    _lastTime = end;
+  }
 
-    _lastTime = _currentTime;
-    return appList;
+  /**
+   * @return the finish time up to which every job has been read and written
+   */
+  long getLowWatermark() {
+    long lowWatermark = _lastTime;
+    synchronized (_pendingJobs) {
+      for (long finishTime : _pendingJobs.values()) {
+        lowWatermark = Math.min(lowWatermark, finishTime - 1);
+      }
+    }
+    return lowWatermark;
   }
 
   @Override
-  public void addIntoRetries(AnalyticJob promise) {
-    _retryQueue.add(promise);
-    int retryQueueSize = _retryQueue.size();
-    MetricsController.setRetryQueueSize(retryQueueSize);
-    logger.info("Retry queue size is " + retryQueueSize);
+  public void completeJob(String appId) {
+    synchronized (_pendingJobs) {
+      _pendingJobs.remove(appId);
+    }
   }
 
   /**
-   * Authenticate and update the token
+   * Removes from the list the applications which already have a result, with one query per batch of ids.
+   *
+   * @param appList the applications read from the resource manager
+   */
+  void removeAnalyzedApps(List<AnalyticJob> appList) {
+    if (appList.isEmpty()) {
+      return;
+    }
+    Set<String> analyzedIds = new HashSet<String>();
+    for (int from = 0; from < appList.size(); from += DEDUP_BATCH_SIZE) {
+      List<String> ids = new ArrayList<String>();
+      for (AnalyticJob job : appList.subList(from, Math.min(from + DEDUP_BATCH_SIZE, appList.size()))) {
+        ids.add(job.getAppId());
+      }
+      for (Object id : AppResult.find.where().in(AppResult.TABLE.ID, ids).findIds()) {
+        analyzedIds.add(id.toString());
+      }
+    }
+    if (analyzedIds.isEmpty()) {
+      return;
+    }
+
+    Iterator<AnalyticJob> it = appList.iterator();
+    while (it.hasNext()) {
+      if (analyzedIds.contains(it.next().getAppId())) {
+        it.remove();
+      }
+    }
+    logger.info("Skipped " + analyzedIds.size() + " applications that have already been analyzed");
+  }
+
+  /**
+   * Resumes discovery from the watermark persisted by the previous run. Without one, discovery starts
+   * drelephant.analysis.fetch.initial.lookback.ms before the current fetch time rather than from the beginning of the
+   * resource manager history.
+   */
+  private void loadWatermark() {
+    try {
+      Long lastTime = readWatermark();
+      if (lastTime != null) {
+        _lastTime = lastTime;
+        logger.info("Resuming application discovery from " + _lastTime);
+        return;
+      }
+    } catch (Exception e) {
+      logger.error("Failed to read the discovery watermark", e);
+    }
+    _lastTime = Math.max(0, currentTimeMillis() - FETCH_DELAY - _initialLookbackMs);
+    logger.info("No discovery watermark, fetching the applications finished after " + _lastTime);
+  }
+
+  private void saveWatermark(long lastTime) {
+    try {
+      writeWatermark(lastTime);
+    } catch (Exception e) {
+      logger.error("Failed to save the discovery watermark " + lastTime, e);
+    }
+  }
+
+  /**
+   * @return the persisted watermark, or null if there is none
    */
-  private void updateAuthToken() {
-    if (_currentTime - _tokenUpdatedTime > TOKEN_UPDATE_INTERVAL) {
-      logger.info("AnalysisProvider updating its Authenticate Token...");
-      _token = new AuthenticatedURL.Token();
-      _authenticatedURL = new AuthenticatedURL();
-      _tokenUpdatedTime = _currentTime;
+  Long readWatermark() {
+    DiscoveryWatermark watermark = DiscoveryWatermark.find.byId(WATERMARK_ID);
+    return watermark == null ? null : watermark.lastTime;
+  }
+
+  void writeWatermark(long lastTime) {
+    DiscoveryWatermark watermark = DiscoveryWatermark.find.byId(WATERMARK_ID);
+    if (watermark == null) {
+      watermark = new DiscoveryWatermark();
+      watermark.id = WATERMARK_ID;
     }
+    watermark.lastTime = lastTime;
+    watermark.updatedTime = System.currentTimeMillis();
+    watermark.save();
+  }
+
+  long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  @Override
+  public void addIntoRetries(AnalyticJob promise) {
+    _retryQueue.add(promise);
+    int retryQueueSize = _retryQueue.size();
+    MetricsController.setRetryQueueSize(retryQueueSize);
+    logger.info("Retry queue size is " + retryQueueSize);
   }
 
   /**
-   * Connect to url using token and return the JsonNode
+   * Connect to url through the shared REST client and return the JsonNode
    *
    * @param url The url to connect to
    * @return
@@ -223,51 +393,48 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
    */
   private JsonNode readJsonNode(URL url)
       throws IOException, AuthenticationException {
-    HttpURLConnection conn = _authenticatedURL.openConnection(url, _token);
-    return _objectMapper.readTree(conn.getInputStream());
+    return HadoopRestClient.instance().readJsonNode(url);
   }
 
   /**
    * Parse the returned json from Resource manager
    *
    * @param url The REST call
-   * @return
+   * @param appList The list the apps of supported types are added to
+   * @return The number of apps in the response, including those of unsupported types
    * @throws IOException
    * @throws AuthenticationException Problem authenticating to resource manager
    */
-  private List<AnalyticJob> readApps(URL url) throws IOException, AuthenticationException{
-    List<AnalyticJob> appList = new ArrayList<AnalyticJob>();
-
+  int readApps(URL url, List<AnalyticJob> appList) throws IOException, AuthenticationException{
     JsonNode rootNode = readJsonNode(url);
     JsonNode apps = rootNode.path("apps").path("app");
 
+    int count = 0;
     for (JsonNode app : apps) {
+      count++;
       String appId = app.get("id").getValueAsText();
-
-      // When called first time after launch, hit the DB and avoid duplicated analytic jobs that have been analyzed
-      // before.
-      if (_lastTime > 0 || (_lastTime == 0 && AppResult.find.byId(appId) == null)) {
-        String user = app.get("user").getValueAsText();
-        String name = app.get("name").getValueAsText();
-        String queueName = app.get("queue").getValueAsText();
-        String trackingUrl = app.get("trackingUrl") != null? app.get("trackingUrl").getValueAsText() : null;
-        long startTime = app.get("startedTime").getLongValue();
-        long finishTime = app.get("finishedTime").getLongValue();
-
-        ApplicationType type =
-            ElephantContext.instance().getApplicationTypeForName(app.get("applicationType").getValueAsText());
-
-        // If the application type is supported
-        if (type != null) {
-          AnalyticJob analyticJob = new AnalyticJob();
-          analyticJob.setAppId(appId).setAppType(type).setUser(user).setName(name).setQueueName(queueName)
-              .setTrackingUrl(trackingUrl).setStartTime(startTime).setFinishTime(finishTime);
-
-          appList.add(analyticJob);
-        }
+      String user = app.get("user").getValueAsText();
+      String name = app.get("name").getValueAsText();
+      String queueName = app.get("queue").getValueAsText();
+      String trackingUrl = app.get("trackingUrl") != null? app.get("trackingUrl").getValueAsText() : null;
+      long startTime = app.get("startedTime").getLongValue();
+      long finishTime = app.get("finishedTime").getLongValue();
+      String finalStatus = app.path("finalStatus").getTextValue();
+
+      ApplicationType type =
+          ElephantContext.instance().getApplicationTypeForName(app.get("applicationType").getValueAsText());
+
+      // If the application type is supported
+      if (type != null) {
+        AnalyticJob analyticJob = new AnalyticJob();
+        analyticJob.setAppId(appId).setAppType(type).setUser(user).setName(name).setQueueName(queueName)
+            .setTrackingUrl(trackingUrl).setStartTime(startTime).setFinishTime(finishTime)
+            .setFinalStatus(finalStatus);
+
+        appList.add(analyticJob);
       }
     }
-    return appList;
+    return count;
   }
 
     private String executeShellCommand(String command, long linenumber) {
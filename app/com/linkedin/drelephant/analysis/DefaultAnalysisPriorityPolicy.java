@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.linkedin.drelephant.analysis;
+
+import com.linkedin.drelephant.util.Utils;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+
+
+/**
+ * Analyzes the apps of the preferred queues and users first, then the failed apps, then the apps that finished
+ * recently, and the backlog last.
+ */
+public class DefaultAnalysisPriorityPolicy implements AnalysisPriorityPolicy {
+  private static final String PREFERRED_QUEUES_KEY = "drelephant.analysis.priority.queues";
+  private static final String PREFERRED_USERS_KEY = "drelephant.analysis.priority.users";
+  private static final String RECENT_WINDOW_KEY = "drelephant.analysis.priority.recent.window.ms";
+  private static final long RECENT_WINDOW = 60 * 60 * 1000;
+
+  private Set<String> _preferredQueues = new HashSet<String>();
+  private Set<String> _preferredUsers = new HashSet<String>();
+  private long _recentWindowMs = RECENT_WINDOW;
+
+  @Override
+  public void configure(Configuration configuration) {
+    _preferredQueues = toSet(configuration.getTrimmedStrings(PREFERRED_QUEUES_KEY));
+    _preferredUsers = toSet(configuration.getTrimmedStrings(PREFERRED_USERS_KEY));
+    _recentWindowMs = Utils.getNonNegativeLong(configuration, RECENT_WINDOW_KEY, RECENT_WINDOW);
+  }
+
+  @Override
+  public AnalysisPriority getPriority(AnalyticJob job) {
+    if (_preferredQueues.contains(job.getQueueName()) || _preferredUsers.contains(job.getUser())) {
+      return AnalysisPriority.PREFERRED;
+    }
+    if ("FAILED".equals(job.getFinalStatus())) {
+      return AnalysisPriority.FAILED;
+    }
+    if (System.currentTimeMillis() - job.getFinishTime() <= _recentWindowMs) {
+      return AnalysisPriority.RECENT;
+    }
+    return AnalysisPriority.BACKLOG;
+  }
+
+  private static Set<String> toSet(String[] values) {
+    Set<String> set = new HashSet<String>();
+    for (String value : values) {
+      if (!value.isEmpty()) {
+        set.add(value);
+      }
+    }
+    return set;
+  }
+}
@@ -16,6 +16,10 @@
 
 package com.linkedin.drelephant.analysis;
 
+/**
+ * Aggregates the resource usage of a job. ElephantContext builds a new aggregator for every job, so implementations
+ * can keep the result of the job in fields without being thread safe.
+ */
 public interface HadoopMetricsAggregator {
   public void aggregate(HadoopApplicationData data);
   public HadoopAggregatedData getResult();
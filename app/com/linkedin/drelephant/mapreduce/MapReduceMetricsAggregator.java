@@ -25,6 +25,10 @@ import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 
+/**
+ * Aggregates the resources used and wasted, and the delay, of one MapReduce job. An instance keeps the result of the
+ * last job it aggregated, so each job needs its own instance.
+ */
 public class MapReduceMetricsAggregator implements HadoopMetricsAggregator {
 
   private static final Logger logger = Logger.getLogger(MapReduceMetricsAggregator.class);
@@ -34,8 +38,6 @@ public class MapReduceMetricsAggregator implements HadoopMetricsAggregator {
   private static final long CONTAINER_MEMORY_DEFAULT_BYTES = 2048L * FileUtils.ONE_MB;
 
   private HadoopAggregatedData _hadoopAggregatedData = null;
-  private TaskLevelAggregatedMetrics mapTasks;
-  private TaskLevelAggregatedMetrics reduceTasks;
 
   private AggregatorConfigurationData _aggregatorConfigurationData;
 
@@ -59,7 +61,8 @@ public class MapReduceMetricsAggregator implements HadoopMetricsAggregator {
     //overwrite reduceTaskSlowStartPercentage to 100%. TODO: make use of the slow start percent
     reduceTaskSlowStartPercentage = 100;
 
-    mapTasks = new TaskLevelAggregatedMetrics(data.getMapperData(), mapTaskContainerSize, data.getStartTime());
+    TaskLevelAggregatedMetrics mapTasks =
+        TaskLevelAggregatedMetrics.fromSummary(data.getMapperSummary(), mapTaskContainerSize, data.getStartTime());
 
     long reduceIdealStartTime = mapTasks.getNthPercentileFinishTime(reduceTaskSlowStartPercentage);
 
@@ -69,11 +72,15 @@ public class MapReduceMetricsAggregator implements HadoopMetricsAggregator {
       reduceIdealStartTime = Long.MAX_VALUE;
     }
 
-    reduceTasks = new TaskLevelAggregatedMetrics(data.getReducerData(), reduceTaskContainerSize, reduceIdealStartTime);
+    TaskLevelAggregatedMetrics reduceTasks = TaskLevelAggregatedMetrics.fromSummary(data.getReducerSummary(),
+        reduceTaskContainerSize, reduceIdealStartTime);
 
-    _hadoopAggregatedData.setResourceUsed(mapTasks.getResourceUsed() + reduceTasks.getResourceUsed());
-    _hadoopAggregatedData.setTotalDelay(mapTasks.getDelay() + reduceTasks.getDelay());
-    _hadoopAggregatedData.setResourceWasted(mapTasks.getResourceWasted() + reduceTasks.getResourceWasted());
+    // A result returned for a previous job is never modified
+    HadoopAggregatedData aggregatedData = new HadoopAggregatedData();
+    aggregatedData.setResourceUsed(mapTasks.getResourceUsed() + reduceTasks.getResourceUsed());
+    aggregatedData.setTotalDelay(mapTasks.getDelay() + reduceTasks.getDelay());
+    aggregatedData.setResourceWasted(mapTasks.getResourceWasted() + reduceTasks.getResourceWasted());
+    _hadoopAggregatedData = aggregatedData;
   }
 
   @Override
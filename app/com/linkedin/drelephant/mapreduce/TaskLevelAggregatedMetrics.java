@@ -18,9 +18,10 @@ package com.linkedin.drelephant.mapreduce;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
+import com.linkedin.drelephant.mapreduce.data.TaskTable;
+import com.linkedin.drelephant.math.LongSummary;
 import com.linkedin.drelephant.math.Statistics;
-import java.util.ArrayList;
-import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
@@ -33,8 +34,7 @@ public class TaskLevelAggregatedMetrics {
   private long _resourceWasted = 0;
   private long _resourceUsed = 0;
 
-  private List<Long> finishTimes = new ArrayList<Long>();
-  private List<Long> durations = new ArrayList<Long>();
+  private LongSummary finishTimes = new LongSummary();
 
   private static final double MEMORY_BUFFER = 1.5;
   private static final double CLUSTER_MEMORY_FACTOR = 2.1;
@@ -49,7 +49,7 @@ public class TaskLevelAggregatedMetrics {
     if(finishTimes == null || finishTimes.size() == 0 ) {
       return -1;
     }
-    return Statistics.percentile(finishTimes, percentile);
+    return finishTimes.percentile(percentile);
   }
 
   /**
@@ -61,7 +61,23 @@ public class TaskLevelAggregatedMetrics {
    *                       the slow start time.
    */
   public TaskLevelAggregatedMetrics(MapReduceTaskData[] taskData, long containerSize, long idealStartTime) {
-    compute(taskData, containerSize, idealStartTime);
+    compute(TaskSummary.of(TaskTable.fromTasks(taskData)), containerSize, idealStartTime);
+  }
+
+  private TaskLevelAggregatedMetrics() {
+  }
+
+  /**
+   * Computes the metrics from the summary of the tasks
+   * @param tasks Summary of the mappers or of the reducers
+   * @param containerSize The container size of the tasks
+   * @param idealStartTime The ideal start time for the task, see the constructor
+   * @return The aggregated metrics
+   */
+  public static TaskLevelAggregatedMetrics fromSummary(TaskSummary tasks, long containerSize, long idealStartTime) {
+    TaskLevelAggregatedMetrics metrics = new TaskLevelAggregatedMetrics();
+    metrics.compute(tasks, containerSize, idealStartTime);
+    return metrics;
   }
 
   /**
@@ -90,47 +106,31 @@ public class TaskLevelAggregatedMetrics {
 
   /**
    * Computes the aggregated metrics -> peakMemory, delay, total task duration, wasted resources and memory usage.
-   * @param taskDatas
+   * @param tasks
    * @param containerSize
    * @param idealStartTime
    */
-  private void compute(MapReduceTaskData[] taskDatas, long containerSize, long idealStartTime) {
-
-    long peakMemoryNeed = 0;
-    long taskFinishTimeMax = 0;
-    long taskDurationMax = 0;
+  private void compute(TaskSummary tasks, long containerSize, long idealStartTime) {
 
     // if there are zero tasks, then nothing to compute.
-    if(taskDatas == null || taskDatas.length == 0) {
+    if(tasks.getTaskCount() == 0) {
       return;
     }
 
-    for (MapReduceTaskData taskData: taskDatas) {
-      long taskMemory = taskData.getCounters().get(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES)/ FileUtils.ONE_MB; // MB
-      long taskVM = taskData.getCounters().get(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES)/ FileUtils.ONE_MB; // MB
-      long taskDuration = taskData.getFinishTimeMs() - taskData.getStartTimeMs(); // Milliseconds
-      long taskCost =  (containerSize) * (taskDuration / Statistics.SECOND_IN_MS); // MB Seconds
-
-      durations.add(taskDuration);
-      finishTimes.add(taskData.getFinishTimeMs());
+    finishTimes = tasks.getFinishTimesMs();
 
-      //peak Memory usage
-      long memoryRequiredForVM = (long) (taskVM/CLUSTER_MEMORY_FACTOR);
-      long biggerMemoryRequirement = memoryRequiredForVM > taskMemory ? memoryRequiredForVM : taskMemory;
-      peakMemoryNeed = biggerMemoryRequirement > peakMemoryNeed ? biggerMemoryRequirement : peakMemoryNeed;
+    //peak Memory usage. Both conversions are monotonic, so the peak of the tasks follows from the largest counters.
+    long taskMemory =
+        tasks.getMaxCounter(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES) / FileUtils.ONE_MB; // MB
+    long taskVM = tasks.getMaxCounter(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES) / FileUtils.ONE_MB; // MB
+    long memoryRequiredForVM = (long) (taskVM/CLUSTER_MEMORY_FACTOR);
+    long peakMemoryNeed = memoryRequiredForVM > taskMemory ? memoryRequiredForVM : taskMemory;
 
-      if(taskFinishTimeMax < taskData.getFinishTimeMs()) {
-        taskFinishTimeMax = taskData.getFinishTimeMs();
-      }
-
-      if(taskDurationMax < taskDuration) {
-        taskDurationMax = taskDuration;
-      }
-      _resourceUsed += taskCost;
-    }
+    long durationSeconds = tasks.getDurationSecondsSum();
+    _resourceUsed = containerSize * durationSeconds; // MB Seconds
 
     // Compute the delay in starting the task.
-    _delay = taskFinishTimeMax - (idealStartTime + taskDurationMax);
+    _delay = tasks.getMaxFinishTimeMs() - (idealStartTime + tasks.getMaxDurationMs());
 
     // invalid delay
     if(_delay < 0) {
@@ -140,9 +140,7 @@ public class TaskLevelAggregatedMetrics {
     // wastedResources
     long wastedMemory = containerSize -  (long) (peakMemoryNeed * MEMORY_BUFFER); // give a 50% buffer
     if(wastedMemory > 0) {
-      for (long duration : durations) {
-        _resourceWasted += (wastedMemory) * (duration / Statistics.SECOND_IN_MS); // MB Seconds
-      }
+      _resourceWasted = wastedMemory * durationSeconds; // MB Seconds
     }
   }
 
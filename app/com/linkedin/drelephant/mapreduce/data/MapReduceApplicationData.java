@@ -39,8 +39,10 @@ public class MapReduceApplicationData implements HadoopApplicationData {
   private long _finishTime = 0;
 
   private MapReduceCounterData _counterHolder;
-  private MapReduceTaskData[] _mapperData;
-  private MapReduceTaskData[] _reducerData;
+  private TaskTable _mapperTable;
+  private TaskTable _reducerTable;
+  private TaskSummary _mapperSummary;
+  private TaskSummary _reducerSummary;
   private Properties _jobConf;
   private boolean _isRetry = false;
 
@@ -104,13 +106,29 @@ public class MapReduceApplicationData implements HadoopApplicationData {
     return this;
   }
 
+  /**
+   * Sets the mappers, they are copied into a TaskTable
+   */
   public MapReduceApplicationData setMapperData(MapReduceTaskData[] mappers) {
-    this._mapperData = mappers;
-    return this;
+    return setMapperTable(TaskTable.fromTasks(mappers));
   }
 
+  /**
+   * Sets the reducers, they are copied into a TaskTable
+   */
   public MapReduceApplicationData setReducerData(MapReduceTaskData[] reducers) {
-    this._reducerData = reducers;
+    return setReducerTable(TaskTable.fromTasks(reducers));
+  }
+
+  public synchronized MapReduceApplicationData setMapperTable(TaskTable mappers) {
+    this._mapperTable = mappers;
+    this._mapperSummary = null;
+    return this;
+  }
+
+  public synchronized MapReduceApplicationData setReducerTable(TaskTable reducers) {
+    this._reducerTable = reducers;
+    this._reducerSummary = null;
     return this;
   }
 
@@ -123,12 +141,48 @@ public class MapReduceApplicationData implements HadoopApplicationData {
     return _counterHolder;
   }
 
+  /**
+   * Rebuilds the mappers as objects, for heuristics that are not written against the table. Every call allocates a new
+   * array, prefer getMapperTable.
+   */
   public MapReduceTaskData[] getMapperData() {
-    return _mapperData;
+    return _mapperTable == null ? null : _mapperTable.toTaskArray();
   }
 
+  /**
+   * Rebuilds the reducers as objects, for heuristics that are not written against the table. Every call allocates a
+   * new array, prefer getReducerTable.
+   */
   public MapReduceTaskData[] getReducerData() {
-    return _reducerData;
+    return _reducerTable == null ? null : _reducerTable.toTaskArray();
+  }
+
+  public TaskTable getMapperTable() {
+    return _mapperTable;
+  }
+
+  public TaskTable getReducerTable() {
+    return _reducerTable;
+  }
+
+  /**
+   * The mapper columns shared by the heuristics, computed in one pass over the table on first use
+   */
+  public synchronized TaskSummary getMapperSummary() {
+    if (_mapperSummary == null) {
+      _mapperSummary = TaskSummary.of(_mapperTable);
+    }
+    return _mapperSummary;
+  }
+
+  /**
+   * The reducer columns shared by the heuristics, computed in one pass over the table on first use
+   */
+  public synchronized TaskSummary getReducerSummary() {
+    if (_reducerSummary == null) {
+      _reducerSummary = TaskSummary.of(_reducerTable);
+    }
+    return _reducerSummary;
   }
 
   @Override
@@ -148,7 +202,7 @@ public class MapReduceApplicationData implements HadoopApplicationData {
 
   @Override
   public boolean isEmpty() {
-    return _succeeded && getMapperData().length == 0 && getReducerData().length == 0;
+    return _succeeded && _mapperTable.size() == 0 && _reducerTable.size() == 0;
   }
 
   public String getUsername() {
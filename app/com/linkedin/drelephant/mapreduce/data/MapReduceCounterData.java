@@ -18,42 +18,46 @@ package com.linkedin.drelephant.mapreduce.data;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 
 /**
  * This class manages all the MapReduce Counters
+ *
+ * The counters listed in CounterName, which are the ones the heuristics read, are kept in a primitive array indexed
+ * by the enum ordinal. Any other counter goes to a map of group to counters, created on first use.
  */
 public class MapReduceCounterData {
 
-  // This is a map of group to all the counters in the group and their values.
-  private final Map<String, Map<String, Long>> _pubCounters;
+  private static final CounterName[] KNOWN_COUNTERS = CounterName.values();
+
+  // The values of the known counters, and the group each of them was set in, null if it was never set
+  private final long[] _knownValues = new long[KNOWN_COUNTERS.length];
+  private final String[] _knownGroups = new String[KNOWN_COUNTERS.length];
+
+  // This is a map of group to all the other counters in the group and their values.
+  private Map<String, Map<String, Long>> _otherCounters;
 
   public String toString() {
-    return _pubCounters.toString();
+    Map<String, Map<String, Long>> counters = new HashMap<String, Map<String, Long>>();
+    for (String groupName : getGroupNames()) {
+      counters.put(groupName, getAllCountersInGroup(groupName));
+    }
+    return counters.toString();
   }
 
   public MapReduceCounterData() {
-    _pubCounters = new HashMap<String, Map<String, Long>>(8);
   }
 
   /**
    * @return the value of the counter, 0 if not present.
    * This method is only used for job heuristics
-   * Due to h1 & h2 counter group incompatibility, we iterate every counter group (4 by default)
-   * to find a matching counter name, otherwise we have to hardcode the h1&h2 version of counter group
-   * and try twice with two names for each counter in this method.
-   * This approach is less efficient, but cleaner.
+   * Due to h1 & h2 counter group incompatibility, the counter is matched by its name in whatever group it was set.
    */
   public long get(CounterName counterName) {
-    // For each counter group, try to match the counter name
-    for(Map<String, Long> counterGrp : _pubCounters.values()) {
-      if(counterGrp.containsKey(counterName._name)) {
-        return counterGrp.get(counterName._name);
-      }
-    }
-    return 0;
+    return _knownValues[counterName.ordinal()];
   }
 
   public void set(CounterName counterName, long value) {
@@ -68,16 +72,39 @@ public class MapReduceCounterData {
    * @param value
    */
   public void set(String groupName, String counterName, long value) {
-    Map<String, Long> counterMap = _pubCounters.get(groupName);
+    CounterName known = CounterName.getCounterFromName(counterName);
+    if (known != null) {
+      int index = known.ordinal();
+      String knownGroup = _knownGroups[index];
+      if (knownGroup == null || knownGroup.equals(groupName)) {
+        _knownGroups[index] = groupName;
+        _knownValues[index] = value;
+        return;
+      }
+      // The same counter name in a second group, only reachable through the group
+    }
+
+    if (_otherCounters == null) {
+      _otherCounters = new HashMap<String, Map<String, Long>>(8);
+    }
+    Map<String, Long> counterMap = _otherCounters.get(groupName);
     if (counterMap == null) {
       counterMap = new HashMap<String, Long>(4);
-      _pubCounters.put(groupName, counterMap);
+      _otherCounters.put(groupName, counterMap);
     }
     counterMap.put(counterName, value);
   }
 
   public Set<String> getGroupNames() {
-    Set<String> groupNames = _pubCounters.keySet();
+    Set<String> groupNames = new HashSet<String>();
+    for (String groupName : _knownGroups) {
+      if (groupName != null) {
+        groupNames.add(groupName);
+      }
+    }
+    if (_otherCounters != null) {
+      groupNames.addAll(_otherCounters.keySet());
+    }
     return Collections.unmodifiableSet(groupNames);
   }
 
@@ -87,13 +114,35 @@ public class MapReduceCounterData {
    * @return A map containing all the values of counters in a group.
    */
   public Map<String, Long> getAllCountersInGroup(String groupName) {
-    Map<String, Long> counterMap = _pubCounters.get(groupName);
-    if (counterMap == null) {
-      counterMap = new HashMap<String, Long>(1);
+    Map<String, Long> counterMap = new HashMap<String, Long>(4);
+    for (int i = 0; i < KNOWN_COUNTERS.length; i++) {
+      if (groupName.equals(_knownGroups[i])) {
+        counterMap.put(KNOWN_COUNTERS[i].getName(), _knownValues[i]);
+      }
+    }
+    if (_otherCounters != null) {
+      Map<String, Long> otherMap = _otherCounters.get(groupName);
+      if (otherMap != null) {
+        counterMap.putAll(otherMap);
+      }
     }
     return counterMap;
   }
 
+  // Raw access for TaskTable, which copies the counters of each task into columns
+
+  String getKnownGroup(int ordinal) {
+    return _knownGroups[ordinal];
+  }
+
+  long getKnownValue(int ordinal) {
+    return _knownValues[ordinal];
+  }
+
+  Map<String, Map<String, Long>> getOtherCounters() {
+    return _otherCounters;
+  }
+
   public static enum GroupName {
     FileInput,
     FileSystemCounters,
@@ -153,10 +202,7 @@ public class MapReduceCounterData {
     }
 
     public static CounterName getCounterFromName(String name) {
-      if (_counterNameMap.containsKey(name)) {
-        return _counterNameMap.get(name);
-      }
-      return null;
+      return _counterNameMap.get(name);
     }
 
     public static CounterName getCounterFromDisplayName(String displayName) {
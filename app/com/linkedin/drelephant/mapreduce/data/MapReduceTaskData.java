@@ -51,6 +51,18 @@ public class MapReduceTaskData {
     this._attemptId = taskAttemptId;
   }
 
+  MapReduceTaskData(String taskId, String taskAttemptId, MapReduceCounterData counterHolder, long[] time,
+      boolean sampled) {
+    this(taskId, taskAttemptId);
+    this._counterHolder = counterHolder;
+    this._totalTimeMs = time[0];
+    this._shuffleTimeMs = time[1];
+    this._sortTimeMs = time[2];
+    this._startTimeMs = time[3];
+    this._finishTimeMs = time[4];
+    this._sampled = sampled;
+  }
+
   public void setCounter(MapReduceCounterData counterHolder) {
     this._counterHolder = counterHolder;
     this._sampled = true;
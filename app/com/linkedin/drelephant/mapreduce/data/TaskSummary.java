@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import com.linkedin.drelephant.math.LongSummary;
+
+
+/**
+ * The columns and aggregates of the mappers or the reducers of a job that the heuristics and the metrics aggregator
+ * use, computed in a single pass over the TaskTable.
+ *
+ * The sampled columns hold one value per sampled task, in the same order for every column, so row i of two columns
+ * belongs to the same task. The finish times, durations and maxima cover every task.
+ */
+public final class TaskSummary {
+  private static final MapReduceCounterData.CounterName[] KNOWN_COUNTERS = MapReduceCounterData.CounterName.values();
+
+  private final int _taskCount;
+  private final int _sampledCount;
+
+  // Sampled tasks
+  private final LongSummary _runtimesMs;
+  private final LongSummary _codeExecutionTimesMs;
+  private final LongSummary _shuffleTimesMs;
+  private final LongSummary _sortTimesMs;
+  private final LongSummary[] _counters = new LongSummary[KNOWN_COUNTERS.length];
+
+  // Every task
+  private final LongSummary _finishTimesMs;
+  private long _maxFinishTimeMs = 0;
+  private long _maxDurationMs = 0;
+  private long _durationSecondsSum = 0;
+  private final long[] _maxCounters = new long[KNOWN_COUNTERS.length];
+
+  private TaskSummary(TaskTable tasks) {
+    _taskCount = tasks.size();
+    _sampledCount = tasks.getSampledCount();
+    _runtimesMs = new LongSummary(_sampledCount);
+    _codeExecutionTimesMs = new LongSummary(_sampledCount);
+    _shuffleTimesMs = new LongSummary(_sampledCount);
+    _sortTimesMs = new LongSummary(_sampledCount);
+    _finishTimesMs = new LongSummary(_taskCount);
+
+    // Only the counters some task has get a column, the others are all zeros and are filled on first use
+    int[] present = new int[KNOWN_COUNTERS.length];
+    int presentCount = 0;
+    for (MapReduceCounterData.CounterName counterName : KNOWN_COUNTERS) {
+      if (tasks.hasCounter(counterName)) {
+        _counters[counterName.ordinal()] = new LongSummary(_sampledCount);
+        present[presentCount++] = counterName.ordinal();
+      }
+    }
+
+    for (int row = 0; row < _taskCount; row++) {
+      long finishTimeMs = tasks.getFinishTimeMs(row);
+      long durationMs = finishTimeMs - tasks.getStartTimeMs(row);
+      _finishTimesMs.add(finishTimeMs);
+      _maxFinishTimeMs = Math.max(_maxFinishTimeMs, finishTimeMs);
+      _maxDurationMs = Math.max(_maxDurationMs, durationMs);
+      _durationSecondsSum += durationMs / 1000;
+
+      boolean sampled = tasks.isSampled(row);
+      if (sampled) {
+        _runtimesMs.add(tasks.getTotalRunTimeMs(row));
+        _codeExecutionTimesMs.add(tasks.getCodeExecutionTimeMs(row));
+        _shuffleTimesMs.add(tasks.getShuffleTimeMs(row));
+        _sortTimesMs.add(tasks.getSortTimeMs(row));
+      }
+      for (int i = 0; i < presentCount; i++) {
+        int ordinal = present[i];
+        long value = tasks.getCounter(row, KNOWN_COUNTERS[ordinal]);
+        _maxCounters[ordinal] = Math.max(_maxCounters[ordinal], value);
+        if (sampled) {
+          _counters[ordinal].add(value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Summarizes a table
+   *
+   * @param tasks the tasks, may be null
+   * @return the summary
+   */
+  public static TaskSummary of(TaskTable tasks) {
+    return new TaskSummary(tasks == null ? TaskTable.fromTasks(null) : tasks);
+  }
+
+  /**
+   * @return the number of tasks, sampled or not
+   */
+  public int getTaskCount() {
+    return _taskCount;
+  }
+
+  public int getSampledCount() {
+    return _sampledCount;
+  }
+
+  /**
+   * @return the total runtime of each sampled task
+   */
+  public LongSummary getRuntimesMs() {
+    return _runtimesMs;
+  }
+
+  /**
+   * @return the runtime minus the shuffle and sort times of each sampled task
+   */
+  public LongSummary getCodeExecutionTimesMs() {
+    return _codeExecutionTimesMs;
+  }
+
+  public LongSummary getShuffleTimesMs() {
+    return _shuffleTimesMs;
+  }
+
+  public LongSummary getSortTimesMs() {
+    return _sortTimesMs;
+  }
+
+  /**
+   * @return the value of the counter in each sampled task, 0 when the task does not have it
+   */
+  public synchronized LongSummary getCounter(MapReduceCounterData.CounterName counterName) {
+    LongSummary counter = _counters[counterName.ordinal()];
+    if (counter == null) {
+      counter = new LongSummary(_sampledCount);
+      for (int i = 0; i < _sampledCount; i++) {
+        counter.add(0);
+      }
+      _counters[counterName.ordinal()] = counter;
+    }
+    return counter;
+  }
+
+  /**
+   * @return the finish time of every task
+   */
+  public LongSummary getFinishTimesMs() {
+    return _finishTimesMs;
+  }
+
+  /**
+   * @return the latest finish time of all the tasks, 0 if there is none
+   */
+  public long getMaxFinishTimeMs() {
+    return _maxFinishTimeMs;
+  }
+
+  /**
+   * @return the longest duration, finish minus start time, of all the tasks, 0 if there is none
+   */
+  public long getMaxDurationMs() {
+    return _maxDurationMs;
+  }
+
+  /**
+   * @return the sum of the durations of all the tasks, each truncated to whole seconds
+   */
+  public long getDurationSecondsSum() {
+    return _durationSecondsSum;
+  }
+
+  /**
+   * @return the largest value of the counter over all the tasks, 0 if there is none
+   */
+  public long getMaxCounter(MapReduceCounterData.CounterName counterName) {
+    return _maxCounters[counterName.ordinal()];
+  }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The mappers or the reducers of a job, stored column by column.
+ *
+ * Each task is a row. The times are parallel long arrays and every counter seen in any task is a long array with a
+ * bit set of the rows where it is present. Task ids are stored as an index into a small dictionary of prefixes plus
+ * the numeric suffix, and attempt ids as the attempt number of the task, so a row costs a few tens of bytes plus eight
+ * bytes per counter instead of a MapReduceTaskData with its own counter arrays, maps and id strings.
+ *
+ * Heuristics should loop over the rows with the accessors of this class. getTask and toTaskArray rebuild the
+ * MapReduceTaskData view for code that still needs it, every call allocates new objects.
+ */
+public final class TaskTable {
+  private static final MapReduceCounterData.CounterName[] KNOWN_COUNTERS = MapReduceCounterData.CounterName.values();
+  private static final int NO_ATTEMPT = -1;
+  private static final int OTHER_ATTEMPT = -2;
+
+  private int _size = 0;
+  private int _capacity;
+
+  private long[] _totalTimeMs;
+  private long[] _shuffleTimeMs;
+  private long[] _sortTimeMs;
+  private long[] _startTimeMs;
+  private long[] _finishTimeMs;
+  private final BitSet _sampled = new BitSet();
+  private final BitSet _hasCounters = new BitSet();
+
+  // Task ids, the index of the prefix in the dictionary and the numeric suffix
+  private final IdDictionary _taskIdPrefixes = new IdDictionary();
+  private int[] _taskIdPrefix;
+  private int[] _taskIdNumber;
+
+  // The attempt number when the attempt id is attempt_<task id without task_>_<number>
+  private int[] _attemptNumber;
+  private Map<Integer, String> _otherAttemptIds;
+
+  // The known counters indexed by ordinal, with the group they were first seen in. getTask puts a known counter back
+  // in that group even for a task that had it in another one, getCounter is not affected.
+  private final CounterColumn[] _knownCounters = new CounterColumn[KNOWN_COUNTERS.length];
+  private final String[] _knownGroups = new String[KNOWN_COUNTERS.length];
+  // Any other counter, by group and name
+  private final Map<String, Map<String, CounterColumn>> _otherCounters =
+      new LinkedHashMap<String, Map<String, CounterColumn>>();
+
+  private TaskTable(int capacity) {
+    _capacity = Math.max(capacity, 1);
+    _totalTimeMs = new long[_capacity];
+    _shuffleTimeMs = new long[_capacity];
+    _sortTimeMs = new long[_capacity];
+    _startTimeMs = new long[_capacity];
+    _finishTimeMs = new long[_capacity];
+    _taskIdPrefix = new int[_capacity];
+    _taskIdNumber = new int[_capacity];
+    _attemptNumber = new int[_capacity];
+  }
+
+  /**
+   * Builds a table from an array of tasks
+   *
+   * @param tasks the tasks, may be null
+   * @return the table, with one row per task in the same order
+   */
+  public static TaskTable fromTasks(MapReduceTaskData[] tasks) {
+    if (tasks == null) {
+      return new Builder(0).build();
+    }
+    Builder builder = new Builder(tasks.length);
+    for (MapReduceTaskData task : tasks) {
+      builder.add(task);
+    }
+    return builder.build();
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  public boolean isSampled(int row) {
+    return _sampled.get(row);
+  }
+
+  /**
+   * @return the number of sampled rows
+   */
+  public int getSampledCount() {
+    return _sampled.cardinality();
+  }
+
+  public long getTotalRunTimeMs(int row) {
+    return _totalTimeMs[row];
+  }
+
+  public long getCodeExecutionTimeMs(int row) {
+    return _totalTimeMs[row] - _shuffleTimeMs[row] - _sortTimeMs[row];
+  }
+
+  public long getShuffleTimeMs(int row) {
+    return _shuffleTimeMs[row];
+  }
+
+  public long getSortTimeMs(int row) {
+    return _sortTimeMs[row];
+  }
+
+  public long getStartTimeMs(int row) {
+    return _startTimeMs[row];
+  }
+
+  public long getFinishTimeMs(int row) {
+    return _finishTimeMs[row];
+  }
+
+  /**
+   * @return the value of the counter in the task, 0 if not present. As in MapReduceCounterData, the counter is matched
+   * by its name in whatever group it was set.
+   */
+  public long getCounter(int row, MapReduceCounterData.CounterName counterName) {
+    CounterColumn column = _knownCounters[counterName.ordinal()];
+    return column == null ? 0 : column._values[row];
+  }
+
+  /**
+   * @return true if at least one task has the counter
+   */
+  public boolean hasCounter(MapReduceCounterData.CounterName counterName) {
+    return _knownCounters[counterName.ordinal()] != null;
+  }
+
+  public String getTaskId(int row) {
+    return _taskIdPrefixes.decode(_taskIdPrefix[row], _taskIdNumber[row]);
+  }
+
+  public String getAttemptId(int row) {
+    int attemptNumber = _attemptNumber[row];
+    if (attemptNumber == NO_ATTEMPT) {
+      return null;
+    }
+    if (attemptNumber == OTHER_ATTEMPT) {
+      return _otherAttemptIds.get(row);
+    }
+    return attemptPrefix(getTaskId(row)) + attemptNumber;
+  }
+
+  /**
+   * Rebuilds the task of a row
+   *
+   * @param row the row
+   * @return a new MapReduceTaskData with the ids, times and counters of the row
+   */
+  public MapReduceTaskData getTask(int row) {
+    MapReduceCounterData counters = null;
+    if (_hasCounters.get(row)) {
+      counters = new MapReduceCounterData();
+      for (int i = 0; i < KNOWN_COUNTERS.length; i++) {
+        CounterColumn column = _knownCounters[i];
+        if (column != null && column._present.get(row)) {
+          counters.set(_knownGroups[i], KNOWN_COUNTERS[i].getName(), column._values[row]);
+        }
+      }
+      for (Map.Entry<String, Map<String, CounterColumn>> group : _otherCounters.entrySet()) {
+        for (Map.Entry<String, CounterColumn> counter : group.getValue().entrySet()) {
+          CounterColumn column = counter.getValue();
+          if (column._present.get(row)) {
+            counters.set(group.getKey(), counter.getKey(), column._values[row]);
+          }
+        }
+      }
+    }
+    long[] time = new long[] { _totalTimeMs[row], _shuffleTimeMs[row], _sortTimeMs[row], _startTimeMs[row],
+        _finishTimeMs[row] };
+    return new MapReduceTaskData(getTaskId(row), getAttemptId(row), counters, time, _sampled.get(row));
+  }
+
+  /**
+   * @return a new array with the task of every row
+   */
+  public MapReduceTaskData[] toTaskArray() {
+    MapReduceTaskData[] tasks = new MapReduceTaskData[_size];
+    for (int row = 0; row < _size; row++) {
+      tasks[row] = getTask(row);
+    }
+    return tasks;
+  }
+
+  private void set(int row, MapReduceTaskData task) {
+    _totalTimeMs[row] = task.getTotalRunTimeMs();
+    _shuffleTimeMs[row] = task.getShuffleTimeMs();
+    _sortTimeMs[row] = task.getSortTimeMs();
+    _startTimeMs[row] = task.getStartTimeMs();
+    _finishTimeMs[row] = task.getFinishTimeMs();
+    _sampled.set(row, task.isSampled());
+    setIds(row, task.getTaskId(), task.getAttemptId());
+    setCounters(row, task.getCounters());
+  }
+
+  private void setIds(int row, String taskId, String attemptId) {
+    _taskIdNumber[row] = _taskIdPrefixes.encode(taskId, row, _taskIdPrefix);
+    if (_otherAttemptIds != null) {
+      _otherAttemptIds.remove(row);
+    }
+    if (attemptId == null) {
+      _attemptNumber[row] = NO_ATTEMPT;
+      return;
+    }
+    String prefix = attemptPrefix(taskId);
+    if (prefix != null && attemptId.startsWith(prefix)) {
+      int attemptNumber = parseNumber(attemptId, prefix.length(), attemptId.length());
+      if (attemptNumber >= 0 && Integer.toString(attemptNumber).length() == attemptId.length() - prefix.length()) {
+        _attemptNumber[row] = attemptNumber;
+        return;
+      }
+    }
+    if (_otherAttemptIds == null) {
+      _otherAttemptIds = new HashMap<Integer, String>();
+    }
+    _attemptNumber[row] = OTHER_ATTEMPT;
+    _otherAttemptIds.put(row, attemptId);
+  }
+
+  private void setCounters(int row, MapReduceCounterData counters) {
+    for (CounterColumn column : _knownCounters) {
+      if (column != null) {
+        column.clear(row);
+      }
+    }
+    for (Map<String, CounterColumn> group : _otherCounters.values()) {
+      for (CounterColumn column : group.values()) {
+        column.clear(row);
+      }
+    }
+    _hasCounters.set(row, counters != null);
+    if (counters == null) {
+      return;
+    }
+
+    for (int i = 0; i < KNOWN_COUNTERS.length; i++) {
+      String group = counters.getKnownGroup(i);
+      if (group == null) {
+        continue;
+      }
+      if (_knownCounters[i] == null) {
+        _knownCounters[i] = new CounterColumn(_capacity);
+        _knownGroups[i] = group;
+      }
+      _knownCounters[i].set(row, counters.getKnownValue(i));
+    }
+
+    Map<String, Map<String, Long>> otherCounters = counters.getOtherCounters();
+    if (otherCounters == null) {
+      return;
+    }
+    for (Map.Entry<String, Map<String, Long>> group : otherCounters.entrySet()) {
+      Map<String, CounterColumn> columns = _otherCounters.get(group.getKey());
+      if (columns == null) {
+        columns = new LinkedHashMap<String, CounterColumn>();
+        _otherCounters.put(group.getKey(), columns);
+      }
+      for (Map.Entry<String, Long> counter : group.getValue().entrySet()) {
+        CounterColumn column = columns.get(counter.getKey());
+        if (column == null) {
+          column = new CounterColumn(_capacity);
+          columns.put(counter.getKey(), column);
+        }
+        column.set(row, counter.getValue());
+      }
+    }
+  }
+
+  private void resize(int capacity) {
+    _capacity = capacity;
+    _totalTimeMs = Arrays.copyOf(_totalTimeMs, capacity);
+    _shuffleTimeMs = Arrays.copyOf(_shuffleTimeMs, capacity);
+    _sortTimeMs = Arrays.copyOf(_sortTimeMs, capacity);
+    _startTimeMs = Arrays.copyOf(_startTimeMs, capacity);
+    _finishTimeMs = Arrays.copyOf(_finishTimeMs, capacity);
+    _taskIdPrefix = Arrays.copyOf(_taskIdPrefix, capacity);
+    _taskIdNumber = Arrays.copyOf(_taskIdNumber, capacity);
+    _attemptNumber = Arrays.copyOf(_attemptNumber, capacity);
+    for (CounterColumn column : _knownCounters) {
+      if (column != null) {
+        column.resize(capacity);
+      }
+    }
+    for (Map<String, CounterColumn> group : _otherCounters.values()) {
+      for (CounterColumn column : group.values()) {
+        column.resize(capacity);
+      }
+    }
+  }
+
+  /**
+   * @return attempt_<task id without task_>_ or null if the task id does not start with task_
+   */
+  private static String attemptPrefix(String taskId) {
+    if (taskId == null || !taskId.startsWith("task_")) {
+      return null;
+    }
+    return "attempt_" + taskId.substring("task_".length()) + "_";
+  }
+
+  /**
+   * @return the number between start and end, -1 if it is not made of at most 9 digits
+   */
+  private static int parseNumber(String value, int start, int end) {
+    if (start >= end || end - start > 9) {
+      return -1;
+    }
+    int number = 0;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      number = number * 10 + (c - '0');
+    }
+    return number;
+  }
+
+  /**
+   * Builds a table row by row. Rows can be replaced, which lets a reservoir sample be kept directly in the table.
+   */
+  public static final class Builder {
+    private TaskTable _table;
+
+    /**
+     * @param expectedSize the expected number of rows, the table grows if more are added
+     */
+    public Builder(int expectedSize) {
+      _table = new TaskTable(expectedSize);
+    }
+
+    /**
+     * Appends a task
+     *
+     * @param task the task
+     * @return the row of the task
+     */
+    public int add(MapReduceTaskData task) {
+      TaskTable table = table();
+      if (table._size == table._capacity) {
+        table.resize(table._capacity * 2);
+      }
+      int row = table._size++;
+      table.set(row, task);
+      return row;
+    }
+
+    /**
+     * Replaces the task of a row
+     *
+     * @param row an existing row
+     * @param task the task
+     */
+    public void set(int row, MapReduceTaskData task) {
+      TaskTable table = table();
+      if (row < 0 || row >= table._size) {
+        throw new IndexOutOfBoundsException("Row " + row + " of " + table._size);
+      }
+      table.set(row, task);
+    }
+
+    public int size() {
+      return table()._size;
+    }
+
+    /**
+     * Trims the columns and returns the table. The builder can not be used afterwards.
+     *
+     * @return the table
+     */
+    public TaskTable build() {
+      TaskTable table = table();
+      if (table._capacity != table._size) {
+        table.resize(table._size);
+      }
+      _table = null;
+      return table;
+    }
+
+    private TaskTable table() {
+      if (_table == null) {
+        throw new IllegalStateException("The table has already been built");
+      }
+      return _table;
+    }
+  }
+
+  /**
+   * The values of one counter and the rows where it is present
+   */
+  private static final class CounterColumn {
+    private long[] _values;
+    private final BitSet _present = new BitSet();
+
+    private CounterColumn(int capacity) {
+      _values = new long[capacity];
+    }
+
+    private void set(int row, long value) {
+      _values[row] = value;
+      _present.set(row);
+    }
+
+    private void clear(int row) {
+      _values[row] = 0;
+      _present.clear(row);
+    }
+
+    private void resize(int capacity) {
+      _values = Arrays.copyOf(_values, capacity);
+    }
+  }
+
+  /**
+   * Splits ids such as task_1443068695259_9143_m_000123 into the prefix up to the last underscore, kept once, and the
+   * numeric suffix. The width of the suffix is part of the prefix entry so that leading zeros are restored. An id that
+   * does not end with a number is stored whole as a prefix without suffix.
+   */
+  private static final class IdDictionary {
+    private static final int NULL_ID = -1;
+
+    private final List<String> _prefixes = new ArrayList<String>();
+    private final List<Integer> _widths = new ArrayList<Integer>();
+    private final Map<String, Integer> _index = new HashMap<String, Integer>();
+
+    /**
+     * Stores the prefix index of the id in indexes[row] and returns the suffix
+     */
+    private int encode(String id, int row, int[] indexes) {
+      if (id == null) {
+        indexes[row] = NULL_ID;
+        return 0;
+      }
+      int split = id.lastIndexOf('_') + 1;
+      int number = parseNumber(id, split, id.length());
+      String prefix = number < 0 ? id : id.substring(0, split);
+      int width = number < 0 ? -1 : id.length() - split;
+      String key = width + ":" + prefix;
+      Integer index = _index.get(key);
+      if (index == null) {
+        index = _prefixes.size();
+        _prefixes.add(prefix);
+        _widths.add(width);
+        _index.put(key, index);
+      }
+      indexes[row] = index;
+      return number < 0 ? 0 : number;
+    }
+
+    private String decode(int index, int number) {
+      if (index == NULL_ID) {
+        return null;
+      }
+      String prefix = _prefixes.get(index);
+      int width = _widths.get(index);
+      if (width < 0) {
+        return prefix;
+      }
+      StringBuilder sb = new StringBuilder(prefix.length() + width).append(prefix);
+      String digits = Integer.toString(number);
+      for (int i = digits.length(); i < width; i++) {
+        sb.append('0');
+      }
+      return sb.append(digits).toString();
+    }
+  }
+}
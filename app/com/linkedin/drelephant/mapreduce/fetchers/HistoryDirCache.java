@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.fetchers;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.log4j.Logger;
+
+
+/**
+ * Caches the listings of the job history directories.
+ *
+ * Thousands of jobs share a {done-dir}/yyyy/mm/dd/serialPart directory, so instead of listing it again for every job,
+ * each listing is turned into a job id to (conf, jhist) index. An index is reused as long as it is younger than the
+ * time to live and the modification time of its directory has not changed. At most maxDirs directories are kept, the
+ * least recently used is evicted first.
+ */
+final class HistoryDirCache {
+  private static final Logger logger = Logger.getLogger(HistoryDirCache.class);
+
+  // Both job_<cluster timestamp>_<id>_conf.xml and job_<cluster timestamp>_<id>-<submit time>-....jhist
+  private static final Pattern JOB_ID_PATTERN = Pattern.compile("^(job_\\d+_\\d+)");
+
+  private final FileSystem _fs;
+  private final int _maxDirs;
+  private final long _ttlMs;
+  private final Map<String, DirIndex> _dirs;
+
+  HistoryDirCache(FileSystem fs, final int maxDirs, long ttlMs) {
+    _fs = fs;
+    _maxDirs = maxDirs;
+    _ttlMs = ttlMs;
+    _dirs = new LinkedHashMap<String, DirIndex>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DirIndex> eldest) {
+        return size() > maxDirs;
+      }
+    };
+  }
+
+  /**
+   * Returns the history files of a job found in a directory.
+   *
+   * @param dirPath the directory, ending with a separator
+   * @param jobId the job id
+   * @return the conf path and the jhist path, either may be null if it is not in the directory
+   * @throws java.io.FileNotFoundException if the directory does not exist
+   */
+  String[] getJobFiles(String dirPath, String jobId) throws IOException {
+    DirIndex index = getIndex(dirPath);
+    String[] files = index._jobFiles.get(jobId);
+    if (files == null) {
+      return new String[2];
+    }
+    return new String[] { files[0] == null ? null : dirPath + files[0], files[1] == null ? null : dirPath + files[1] };
+  }
+
+  private DirIndex getIndex(String dirPath) throws IOException {
+    if (_maxDirs <= 0) {
+      return listDir(dirPath, 0);
+    }
+
+    Path dir = new Path(dirPath);
+    FileStatus status = _fs.getFileStatus(dir);
+    long modificationTime = status.getModificationTime();
+
+    DirIndex index;
+    synchronized (_dirs) {
+      index = _dirs.get(dirPath);
+    }
+    if (index != null && index._modificationTime == modificationTime
+        && System.currentTimeMillis() - index._loadedTime < _ttlMs) {
+      return index;
+    }
+
+    index = listDir(dirPath, modificationTime);
+    synchronized (_dirs) {
+      _dirs.put(dirPath, index);
+    }
+    return index;
+  }
+
+  private DirIndex listDir(String dirPath, long modificationTime) throws IOException {
+    DirIndex index = new DirIndex(modificationTime);
+    RemoteIterator<LocatedFileStatus> it = _fs.listFiles(new Path(dirPath), false);
+    while (it.hasNext()) {
+      String name = it.next().getPath().getName();
+      Matcher matcher = JOB_ID_PATTERN.matcher(name);
+      if (!matcher.find()) {
+        continue;
+      }
+      boolean isConf = name.endsWith("_conf.xml");
+      if (!isConf && !name.endsWith(".jhist")) {
+        continue;
+      }
+      String jobId = matcher.group(1);
+      String[] files = index._jobFiles.get(jobId);
+      if (files == null) {
+        files = new String[2];
+        index._jobFiles.put(jobId, files);
+      }
+      files[isConf ? 0 : 1] = name;
+    }
+    logger.debug("Listed " + index._jobFiles.size() + " jobs in " + dirPath);
+    return index;
+  }
+
+  int size() {
+    synchronized (_dirs) {
+      return _dirs.size();
+    }
+  }
+
+  /**
+   * The history files of one directory keyed by job id
+   */
+  private static class DirIndex {
+    private final long _modificationTime;
+    private final long _loadedTime = System.currentTimeMillis();
+    private final Map<String, String[]> _jobFiles = new HashMap<String, String[]>();
+
+    private DirIndex(long modificationTime) {
+      _modificationTime = modificationTime;
+    }
+  }
+}
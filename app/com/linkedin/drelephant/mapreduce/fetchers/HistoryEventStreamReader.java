@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.fetchers;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskTable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.jobhistory.EventReader;
+import org.apache.hadoop.mapreduce.jobhistory.HistoryEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobInfoChangeEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobInitedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobSubmittedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.MapAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.ReduceAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptStartedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskFailedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskFinishedEvent;
+
+
+/**
+ * Reads a .jhist file event by event and keeps only what the heuristics use: the job times, status and total
+ * counters, and the counters and successful attempt times of every succeeded task.
+ *
+ * Unlike JobHistoryParser, no record of the job is built. Attempts are only held until their task finishes, and each
+ * task is copied into a row of a TaskTable as soon as its TaskFinishedEvent is read, so the memory footprint no longer
+ * grows with the size of the history file.
+ */
+final class HistoryEventStreamReader {
+  // Indexes in the attempt times array
+  private static final int START = 0;
+  private static final int SHUFFLE_FINISH = 1;
+  private static final int SORT_FINISH = 2;
+  private static final int FINISH = 3;
+
+  private final int _maxTasks;
+  private final Random _random = new Random();
+
+  private long _submitTime = 0;
+  private long _launchTime = 0;
+  private long _finishTime = 0;
+  private String _jobStatus = null;
+  private String _errorInfo = "";
+  private MapReduceCounterData _totalCounters = new MapReduceCounterData();
+
+  // Attempts of the tasks that have not finished yet, grouped by task so that a finished task drops them at once
+  private final Map<TaskID, Map<TaskAttemptID, long[]>> _runningAttempts =
+      new HashMap<TaskID, Map<TaskAttemptID, long[]>>();
+
+  private final TaskTable.Builder _mappers;
+  private final TaskTable.Builder _reducers;
+  private TaskTable _mapperTable;
+  private TaskTable _reducerTable;
+  private int _mappersSeen = 0;
+  private int _reducersSeen = 0;
+
+  /**
+   * @param maxTasks the maximum number of mappers and of reducers to keep. When more tasks succeed, a uniform sample
+   *                 of this size is kept.
+   */
+  HistoryEventStreamReader(int maxTasks) {
+    _maxTasks = maxTasks;
+    int expectedSize = Math.min(maxTasks, 1024);
+    _mappers = new TaskTable.Builder(expectedSize);
+    _reducers = new TaskTable.Builder(expectedSize);
+  }
+
+  /**
+   * Reads all the events of the history file.
+   *
+   * @param reader the event reader over the .jhist file
+   * @throws IOException if the file could not be read
+   */
+  void read(EventReader reader) throws IOException {
+    HistoryEvent event;
+    while ((event = reader.getNextEvent()) != null) {
+      handleEvent(event);
+    }
+  }
+
+  void handleEvent(HistoryEvent event) {
+    if (event instanceof TaskAttemptStartedEvent) {
+      TaskAttemptStartedEvent started = (TaskAttemptStartedEvent) event;
+      if (isMapOrReduce(started.getTaskType())) {
+        long[] times = getAttemptTimes(started.getTaskAttemptId());
+        times[START] = started.getStartTime();
+      }
+    } else if (event instanceof MapAttemptFinishedEvent) {
+      MapAttemptFinishedEvent finished = (MapAttemptFinishedEvent) event;
+      getAttemptTimes(finished.getAttemptId())[FINISH] = finished.getFinishTime();
+    } else if (event instanceof ReduceAttemptFinishedEvent) {
+      ReduceAttemptFinishedEvent finished = (ReduceAttemptFinishedEvent) event;
+      long[] times = getAttemptTimes(finished.getAttemptId());
+      times[SHUFFLE_FINISH] = finished.getShuffleFinishTime();
+      times[SORT_FINISH] = finished.getSortFinishTime();
+      times[FINISH] = finished.getFinishTime();
+    } else if (event instanceof TaskAttemptUnsuccessfulCompletionEvent) {
+      removeAttempt(((TaskAttemptUnsuccessfulCompletionEvent) event).getTaskAttemptId());
+    } else if (event instanceof TaskFinishedEvent) {
+      handleTaskFinished((TaskFinishedEvent) event);
+    } else if (event instanceof TaskFailedEvent) {
+      _runningAttempts.remove(((TaskFailedEvent) event).getTaskId());
+    } else if (event instanceof JobSubmittedEvent) {
+      _submitTime = ((JobSubmittedEvent) event).getSubmitTime();
+    } else if (event instanceof JobInitedEvent) {
+      _launchTime = ((JobInitedEvent) event).getLaunchTime();
+    } else if (event instanceof JobInfoChangeEvent) {
+      // Written when the job is recovered by a new application master
+      JobInfoChangeEvent change = (JobInfoChangeEvent) event;
+      _submitTime = change.getSubmitTime();
+      _launchTime = change.getLaunchTime();
+    } else if (event instanceof JobFinishedEvent) {
+      JobFinishedEvent finished = (JobFinishedEvent) event;
+      _finishTime = finished.getFinishTime();
+      _jobStatus = "SUCCEEDED";
+      _totalCounters = getCounterData(finished.getTotalCounters());
+    } else if (event instanceof JobUnsuccessfulCompletionEvent) {
+      JobUnsuccessfulCompletionEvent completion = (JobUnsuccessfulCompletionEvent) event;
+      _finishTime = completion.getFinishTime();
+      _jobStatus = completion.getStatus();
+      _errorInfo = completion.getDiagnostics();
+    }
+  }
+
+  private void handleTaskFinished(TaskFinishedEvent event) {
+    TaskType taskType = event.getTaskType();
+    if (!isMapOrReduce(taskType)) {
+      return;
+    }
+    boolean isMapper = taskType == TaskType.MAP;
+    TaskAttemptID attemptId = event.getSuccessfulTaskAttemptId();
+    Map<TaskAttemptID, long[]> attempts = _runningAttempts.remove(event.getTaskId());
+    long[] attemptTimes = attemptId == null || attempts == null ? null : attempts.get(attemptId);
+
+    int slot = nextSlot(isMapper);
+    if (slot < 0) {
+      // Not part of the sample
+      return;
+    }
+
+    MapReduceTaskData taskData =
+        new MapReduceTaskData(event.getTaskId().toString(), attemptId == null ? null : attemptId.toString());
+    taskData.setCounter(getCounterData(event.getCounters()));
+    if (attemptTimes != null) {
+      taskData.setTime(getTaskExecTime(isMapper, attemptTimes));
+    }
+
+    TaskTable.Builder tasks = isMapper ? _mappers : _reducers;
+    if (slot < tasks.size()) {
+      tasks.set(slot, taskData);
+    } else {
+      tasks.add(taskData);
+    }
+  }
+
+  /**
+   * Returns the position at which the next finished task should be stored, or -1 if it is left out of the sample.
+   */
+  private int nextSlot(boolean isMapper) {
+    int seen = isMapper ? ++_mappersSeen : ++_reducersSeen;
+    if (seen <= _maxTasks) {
+      return seen - 1;
+    }
+    // Reservoir sampling, every task is kept with the same probability
+    int slot = _random.nextInt(seen);
+    return slot < _maxTasks ? slot : -1;
+  }
+
+  private long[] getAttemptTimes(TaskAttemptID attemptId) {
+    TaskID taskId = attemptId.getTaskID();
+    Map<TaskAttemptID, long[]> attempts = _runningAttempts.get(taskId);
+    if (attempts == null) {
+      attempts = new HashMap<TaskAttemptID, long[]>(4);
+      _runningAttempts.put(taskId, attempts);
+    }
+    long[] times = attempts.get(attemptId);
+    if (times == null) {
+      times = new long[4];
+      attempts.put(attemptId, times);
+    }
+    return times;
+  }
+
+  private void removeAttempt(TaskAttemptID attemptId) {
+    TaskID taskId = attemptId.getTaskID();
+    Map<TaskAttemptID, long[]> attempts = _runningAttempts.get(taskId);
+    if (attempts != null) {
+      attempts.remove(attemptId);
+      if (attempts.isEmpty()) {
+        _runningAttempts.remove(taskId);
+      }
+    }
+  }
+
+  /**
+   * @return the number of tasks that have attempts still running
+   */
+  int getRunningTaskCount() {
+    return _runningAttempts.size();
+  }
+
+  private static boolean isMapOrReduce(TaskType taskType) {
+    return taskType == TaskType.MAP || taskType == TaskType.REDUCE;
+  }
+
+  private static long[] getTaskExecTime(boolean isMapper, long[] attemptTimes) {
+    long startTime = attemptTimes[START];
+    long finishTime = attemptTimes[FINISH];
+    if (isMapper) {
+      return new long[]{finishTime - startTime, 0, 0, startTime, finishTime};
+    }
+    long shuffleFinishTime = attemptTimes[SHUFFLE_FINISH];
+    long mergeFinishTime = attemptTimes[SORT_FINISH];
+    return new long[]{finishTime - startTime, shuffleFinishTime - startTime,
+        mergeFinishTime - shuffleFinishTime, startTime, finishTime};
+  }
+
+  static MapReduceCounterData getCounterData(Counters counters) {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    if (counters == null) {
+      return holder;
+    }
+    for (CounterGroup group : counters) {
+      String groupName = group.getName();
+      for (Counter counter : group) {
+        holder.set(groupName, counter.getName(), counter.getValue());
+      }
+    }
+    return holder;
+  }
+
+  long getSubmitTime() {
+    return _submitTime;
+  }
+
+  long getLaunchTime() {
+    return _launchTime;
+  }
+
+  long getFinishTime() {
+    return _finishTime;
+  }
+
+  /**
+   * @return SUCCEEDED, FAILED, KILLED or ERROR once the job completion event is read, null before
+   */
+  String getJobStatus() {
+    return _jobStatus;
+  }
+
+  String getErrorInfo() {
+    return _errorInfo;
+  }
+
+  MapReduceCounterData getTotalCounters() {
+    return _totalCounters;
+  }
+
+  /**
+   * Builds the mapper table, no more events can be handled afterwards
+   */
+  TaskTable getMapperTable() {
+    if (_mapperTable == null) {
+      _mapperTable = _mappers.build();
+    }
+    return _mapperTable;
+  }
+
+  /**
+   * Builds the reducer table, no more events can be handled afterwards
+   */
+  TaskTable getReducerTable() {
+    if (_reducerTable == null) {
+      _reducerTable = _reducers.build();
+    }
+    return _reducerTable;
+  }
+
+  MapReduceTaskData[] getMapperData() {
+    return getMapperTable().toTaskArray();
+  }
+
+  MapReduceTaskData[] getReducerData() {
+    return getReducerTable().toTaskArray();
+  }
+
+  int getTotalMappers() {
+    return _mappersSeen;
+  }
+
+  int getTotalReducers() {
+    return _reducersSeen;
+  }
+}
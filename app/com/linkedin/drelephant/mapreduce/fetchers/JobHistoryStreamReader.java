@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.fetchers;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+
+/**
+ * Token based readers for the large job history server documents (/conf, /tasks and the counters resources).
+ *
+ * The readers consume the stream once and write straight into the fetcher's data holders, so no JsonNode tree of the
+ * whole response is ever built.
+ */
+final class JobHistoryStreamReader {
+
+  private JobHistoryStreamReader() {
+    // Empty on purpose
+  }
+
+  /**
+   * Reads the properties of a /conf document.
+   *
+   * @param parser the parser positioned before the document
+   * @return the job configuration
+   */
+  static Properties readProperties(JsonParser parser) throws IOException {
+    Properties jobConf = new Properties();
+    if (!seekArray(parser, "property")) {
+      return jobConf;
+    }
+
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      String name = null;
+      String value = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (field.equals("name")) {
+          name = parser.getText();
+        } else if (field.equals("value")) {
+          value = parser.getText();
+        } else {
+          parser.skipChildren();
+        }
+      }
+      if (name != null && value != null) {
+        jobConf.setProperty(name, value);
+      }
+    }
+    return jobConf;
+  }
+
+  /**
+   * Reads the counters of a /counters document.
+   *
+   * @param parser the parser positioned before the document
+   * @param groupsField the name of the counter group array, counterGroup for jobs and taskCounterGroup for tasks
+   * @param valueField the counter field holding the value, totalCounterValue for jobs and value for tasks
+   * @return the counters
+   */
+  static MapReduceCounterData readCounters(JsonParser parser, String groupsField, String valueField)
+      throws IOException {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    if (!seekArray(parser, groupsField)) {
+      return holder;
+    }
+
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      String groupName = null;
+      // Counters read before the group name, only used if the name does not come first
+      List<String> pendingNames = null;
+      List<Long> pendingValues = null;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if (field.equals("counterGroupName")) {
+          groupName = parser.getText();
+        } else if (field.equals("counter") && token == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            long value = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String counterField = parser.getCurrentName();
+              parser.nextToken();
+              if (counterField.equals("name")) {
+                name = parser.getText();
+              } else if (counterField.equals(valueField)) {
+                value = readLong(parser);
+              } else {
+                parser.skipChildren();
+              }
+            }
+            if (name == null) {
+              continue;
+            }
+            if (groupName != null) {
+              holder.set(groupName, name, value);
+            } else {
+              if (pendingNames == null) {
+                pendingNames = new ArrayList<String>();
+                pendingValues = new ArrayList<Long>();
+              }
+              pendingNames.add(name);
+              pendingValues.add(value);
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+
+      if (groupName != null && pendingNames != null) {
+        for (int i = 0; i < pendingNames.size(); i++) {
+          holder.set(groupName, pendingNames.get(i), pendingValues.get(i));
+        }
+      }
+    }
+    return holder;
+  }
+
+  /**
+   * Reads the succeeded tasks of a /tasks document.
+   *
+   * @param parser the parser positioned before the document
+   * @param mapperList the list the mappers are added to
+   * @param reducerList the list the reducers are added to
+   * @param taskTimes if not null, receives the execution times available in the task list, keyed by task id
+   */
+  static void readTasks(JsonParser parser, List<MapReduceTaskData> mapperList, List<MapReduceTaskData> reducerList,
+      Map<String, long[]> taskTimes) throws IOException {
+    if (!seekArray(parser, "task")) {
+      return;
+    }
+
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      String taskId = null;
+      String attemptId = null;
+      String state = null;
+      String type = null;
+      long startTime = 0;
+      long finishTime = 0;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (field.equals("id")) {
+          taskId = parser.getText();
+        } else if (field.equals("successfulAttempt")) {
+          attemptId = parser.getText();
+        } else if (field.equals("state")) {
+          state = parser.getText();
+        } else if (field.equals("type")) {
+          type = parser.getText();
+        } else if (field.equals("startTime")) {
+          startTime = readLong(parser);
+        } else if (field.equals("finishTime")) {
+          finishTime = readLong(parser);
+        } else {
+          parser.skipChildren();
+        }
+      }
+
+      if (!"SUCCEEDED".equals(state)) {
+        // This is a failed task.
+        continue;
+      }
+      boolean isMapper = "MAP".equals(type);
+      if (isMapper) {
+        mapperList.add(new MapReduceTaskData(taskId, attemptId));
+      } else {
+        reducerList.add(new MapReduceTaskData(taskId, attemptId));
+      }
+
+      if (taskTimes != null) {
+        long[] time = getTaskListExecTime(isMapper, attemptId, startTime, finishTime);
+        if (time != null) {
+          taskTimes.put(taskId, time);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the execution times of a successful task from its entry in the /tasks list, or null if the entry does
+   * not carry all the times the heuristics need.
+   *
+   * The task list has no shuffle and merge times, so reducers always need their attempt. The start time of a task is
+   * the start of its first attempt, so the list times are only used when the first attempt is the one that succeeded.
+   * A retried or speculated task would otherwise be charged the time of the attempts before the successful one.
+   *
+   * @param isMapper whether the task is a mapper
+   * @param attemptId the successful attempt of the task
+   * @param startTime the start time of the task
+   * @param finishTime the finish time of the task
+   * @return the total, shuffle, sort, start and finish times of the task, or null
+   */
+  static long[] getTaskListExecTime(boolean isMapper, String attemptId, long startTime, long finishTime) {
+    if (!isMapper || !isFirstAttempt(attemptId) || startTime <= 0 || finishTime < startTime) {
+      return null;
+    }
+    return new long[] { finishTime - startTime, 0, 0, startTime, finishTime };
+  }
+
+  /**
+   * Whether the attempt is the first one of its task, e.g. attempt_1443068695259_9143_m_000000_0
+   */
+  private static boolean isFirstAttempt(String attemptId) {
+    return attemptId != null && attemptId.endsWith("_0");
+  }
+
+  /**
+   * Advances the parser past the start of the first array held by the given field.
+   *
+   * @return true if the parser is now inside the array, false if the document has no such array
+   */
+  private static boolean seekArray(JsonParser parser, String fieldName) throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != null) {
+      if (token == JsonToken.FIELD_NAME && fieldName.equals(parser.getCurrentName())) {
+        return parser.nextToken() == JsonToken.START_ARRAY;
+      }
+    }
+    return false;
+  }
+
+  private static long readLong(JsonParser parser) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+      return parser.getLongValue();
+    } else if (token == JsonToken.VALUE_STRING) {
+      try {
+        return Long.parseLong(parser.getText().trim());
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    parser.skipChildren();
+    return 0;
+  }
+}
@@ -19,31 +19,19 @@ package com.linkedin.drelephant.mapreduce.fetchers;
 import com.linkedin.drelephant.analysis.AnalyticJob;
 import com.linkedin.drelephant.configurations.fetcher.FetcherConfigurationData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.util.Utils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.fs.RemoteIterator;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.CounterGroup;
-import org.apache.hadoop.mapreduce.Counters;
-import org.apache.hadoop.mapreduce.TaskAttemptID;
-import org.apache.hadoop.mapreduce.TaskID;
-import org.apache.hadoop.mapreduce.TaskType;
-import org.apache.hadoop.mapreduce.jobhistory.JobHistoryParser;
+import org.apache.hadoop.mapreduce.jobhistory.EventReader;
 import org.apache.log4j.Logger;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -51,20 +39,29 @@ import java.util.Properties;
  * This class implements the Fetcher for MapReduce Applications on Hadoop2
  * Instead of fetching data from job history server, it retrieves history logs and job configs from
  * HDFS directly. Each job's data consists of a JSON event log file with extension ".jhist" and an
- * XML job configuration file.
+ * XML job configuration file. The event log is streamed with HistoryEventStreamReader rather than
+ * loaded whole with JobHistoryParser.
  */
 public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
   private static final Logger logger = Logger.getLogger(MapReduceFSFetcherHadoop2.class);
 
   private static final String LOG_SIZE_XML_FIELD = "history_log_size_limit_in_mb";
+  private static final String DIR_CACHE_SIZE_XML_FIELD = "history_dir_cache_size";
+  private static final String DIR_CACHE_TTL_XML_FIELD = "history_dir_cache_ttl_in_sec";
   private static final String TIMESTAMP_DIR_FORMAT = "%04d" + File.separator + "%02d" + File.separator + "%02d";
   private static final int SERIAL_NUMBER_DIRECTORY_DIGITS = 6;
-  protected static final double DEFALUT_MAX_LOG_SIZE_IN_MB = 500;
+  // History logs are streamed, so by default no log is too large to analyze
+  protected static final double DEFALUT_MAX_LOG_SIZE_IN_MB = 0;
+  protected static final int DEFAULT_DIR_CACHE_SIZE = 200;
+  protected static final long DEFAULT_DIR_CACHE_TTL_IN_SEC = 300;
 
   private FileSystem _fs;
   private String _historyLocation;
   private String _intermediateHistoryLocation;
   private double _maxLogSizeInMB;
+  private int _dirCacheSize;
+  private long _dirCacheTtlInSec;
+  private HistoryDirCache _historyDirCache;
 
   public MapReduceFSFetcherHadoop2(FetcherConfigurationData fetcherConfData) throws IOException {
     super(fetcherConfData);
@@ -76,7 +73,11 @@ public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
         _maxLogSizeInMB = logLimitSize[0];
       }
     }
-    logger.info("The history log limit of MapReduce application is set to " + _maxLogSizeInMB + " MB");
+    if (_maxLogSizeInMB > 0) {
+      logger.info("The history log limit of MapReduce application is set to " + _maxLogSizeInMB + " MB");
+    } else {
+      logger.info("The history log of MapReduce application has no size limit");
+    }
 
     Configuration conf = new Configuration();
     this._fs = FileSystem.get(conf);
@@ -84,12 +85,41 @@ public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
     this._intermediateHistoryLocation = conf.get("mapreduce.jobhistory.intermediate-done-dir");
     logger.info("Intermediate history dir: " + _intermediateHistoryLocation);
     logger.info("History done dir: " + _historyLocation);
+
+    _dirCacheSize = DEFAULT_DIR_CACHE_SIZE;
+    if (fetcherConfData.getParamMap().get(DIR_CACHE_SIZE_XML_FIELD) != null) {
+      double[] cacheSize = Utils.getParam(fetcherConfData.getParamMap().get(DIR_CACHE_SIZE_XML_FIELD), 1);
+      if (cacheSize != null) {
+        _dirCacheSize = (int) cacheSize[0];
+      }
+    }
+    _dirCacheTtlInSec = DEFAULT_DIR_CACHE_TTL_IN_SEC;
+    if (fetcherConfData.getParamMap().get(DIR_CACHE_TTL_XML_FIELD) != null) {
+      double[] cacheTtl = Utils.getParam(fetcherConfData.getParamMap().get(DIR_CACHE_TTL_XML_FIELD), 1);
+      if (cacheTtl != null) {
+        _dirCacheTtlInSec = (long) cacheTtl[0];
+      }
+    }
+    _historyDirCache = new HistoryDirCache(_fs, _dirCacheSize, _dirCacheTtlInSec * 1000);
+    logger.info("History directory listings are cached for " + _dirCacheTtlInSec + " seconds, at most "
+        + _dirCacheSize + " directories");
   }
 
   public String getHistoryLocation() {
     return _historyLocation;
   }
 
+  public int getDirCacheSize() {
+    return _dirCacheSize;
+  }
+
+  public long getDirCacheTtlInSec() {
+    return _dirCacheTtlInSec;
+  }
+
+  /**
+   * @return the size above which history logs are not analyzed, 0 if there is no limit
+   */
   public double getMaxLogSizeInMB() {
     return _maxLogSizeInMB;
   }
@@ -130,51 +160,38 @@ public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
 
   private DataFiles getHistoryFiles(AnalyticJob job) throws IOException {
     String jobId = Utils.getJobIdFromApplicationId(job.getAppId());
-    String jobConfPath = null;
-    String jobHistPath = null;
 
     // Search files in done dir
     String jobHistoryDirPath = getHistoryDir(job);
-    RemoteIterator<LocatedFileStatus> it = _fs.listFiles(new Path(jobHistoryDirPath), false);
-    while (it.hasNext() && (jobConfPath == null || jobHistPath == null)) {
-      String name = it.next().getPath().getName();
-      if (name.contains(jobId)) {
-        if (name.endsWith("_conf.xml")) {
-          jobConfPath = jobHistoryDirPath + name;
-        } else if (name.endsWith(".jhist")) {
-          jobHistPath = jobHistoryDirPath + name;
-        }
-      }
-    }
+    String[] files = _historyDirCache.getJobFiles(jobHistoryDirPath, jobId);
+    String jobConfPath = files[0];
+    String jobHistPath = files[1];
 
     // If some files are missing, search in the intermediate-done-dir in case the HistoryServer has
     // not yet moved them into the done-dir.
-    String intermediateDirPath = _intermediateHistoryLocation + File.separator + job.getUser() + File.separator;
-    if (jobConfPath == null) {
-      jobConfPath = intermediateDirPath + jobId + "_conf.xml";
-      if (!_fs.exists(new Path(jobConfPath))) {
-        throw new FileNotFoundException("Can't find config of " + jobId + " in neither "
-                + jobHistoryDirPath + " nor " + intermediateDirPath);
-      }
-      logger.info("Found job config in intermediate dir: " + jobConfPath);
-    }
-    if (jobHistPath == null) {
+    if (jobConfPath == null || jobHistPath == null) {
+      String intermediateDirPath = _intermediateHistoryLocation + File.separator + job.getUser() + File.separator;
+      String[] intermediateFiles = new String[2];
       try {
-        it = _fs.listFiles(new Path(intermediateDirPath), false);
-        while (it.hasNext()) {
-          String name = it.next().getPath().getName();
-          if (name.contains(jobId) && name.endsWith(".jhist")) {
-            jobHistPath = intermediateDirPath + name;
-            logger.info("Found history file in intermediate dir: " + jobHistPath);
-            break;
-          }
-        }
+        intermediateFiles = _historyDirCache.getJobFiles(intermediateDirPath, jobId);
       } catch (FileNotFoundException e) {
         logger.error("Intermediate history directory " + intermediateDirPath + " not found");
       }
+      if (jobConfPath == null) {
+        jobConfPath = intermediateFiles[0];
+        if (jobConfPath == null) {
+          throw new FileNotFoundException("Can't find config of " + jobId + " in neither "
+                  + jobHistoryDirPath + " nor " + intermediateDirPath);
+        }
+        logger.info("Found job config in intermediate dir: " + jobConfPath);
+      }
       if (jobHistPath == null) {
-        throw new FileNotFoundException("Can't find history file of " + jobId + " in neither "
-                + jobHistoryDirPath + " nor " + intermediateDirPath);
+        jobHistPath = intermediateFiles[1];
+        if (jobHistPath == null) {
+          throw new FileNotFoundException("Can't find history file of " + jobId + " in neither "
+                  + jobHistoryDirPath + " nor " + intermediateDirPath);
+        }
+        logger.info("Found history file in intermediate dir: " + jobHistPath);
       }
     }
 
@@ -202,7 +219,7 @@ public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
     jobData.setJobConf(jobConfProperties);
 
     // Check if job history file is too large and should be throttled
-    if (_fs.getFileStatus(new Path(histFile)).getLen() > _maxLogSizeInMB * FileUtils.ONE_MB) {
+    if (_maxLogSizeInMB > 0 && _fs.getFileStatus(new Path(histFile)).getLen() > _maxLogSizeInMB * FileUtils.ONE_MB) {
       String errMsg = "The history log of MapReduce application: " + appId + " is over the limit size of "
               + _maxLogSizeInMB + " MB, the parsing process gets throttled.";
       logger.warn(errMsg);
@@ -212,50 +229,40 @@ public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
     }
 
     // Analyze job history file
-    JobHistoryParser parser = new JobHistoryParser(_fs, histFile);
-    JobHistoryParser.JobInfo jobInfo = parser.parse();
-    IOException parseException = parser.getParseException();
-    if (parseException != null) {
-      throw new RuntimeException("Could not parse history file " + histFile, parseException);
+    HistoryEventStreamReader historyReader =
+        new HistoryEventStreamReader(isSamplingEnabled() ? MAX_SAMPLE_SIZE : Integer.MAX_VALUE);
+    EventReader eventReader = new EventReader(_fs, new Path(histFile));
+    try {
+      historyReader.read(eventReader);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not parse history file " + histFile, e);
+    } finally {
+      eventReader.close();
     }
 
-    jobData.setSubmitTime(jobInfo.getSubmitTime());
-    jobData.setStartTime(jobInfo.getLaunchTime());
-    jobData.setFinishTime(jobInfo.getFinishTime());
+    jobData.setSubmitTime(historyReader.getSubmitTime());
+    jobData.setStartTime(historyReader.getLaunchTime());
+    jobData.setFinishTime(historyReader.getFinishTime());
 
-    String state = jobInfo.getJobStatus();
-    if (state.equals("SUCCEEDED")) {
+    String state = historyReader.getJobStatus();
+    if ("SUCCEEDED".equals(state)) {
 
       jobData.setSucceeded(true);
 
-      // Fetch job counter
-      MapReduceCounterData jobCounter = getCounterData(jobInfo.getTotalCounters());
-
-      // Fetch task data
-      Map<TaskID, JobHistoryParser.TaskInfo> allTasks = jobInfo.getAllTasks();
-      List<JobHistoryParser.TaskInfo> mapperInfoList = new ArrayList<JobHistoryParser.TaskInfo>();
-      List<JobHistoryParser.TaskInfo> reducerInfoList = new ArrayList<JobHistoryParser.TaskInfo>();
-      for (JobHistoryParser.TaskInfo taskInfo : allTasks.values()) {
-        if (taskInfo.getTaskType() == TaskType.MAP) {
-          mapperInfoList.add(taskInfo);
-        } else {
-          reducerInfoList.add(taskInfo);
-        }
-      }
-      if (jobInfo.getTotalMaps() > MAX_SAMPLE_SIZE) {
-        logger.debug(jobId + " total mappers: " + mapperInfoList.size());
+      if (historyReader.getTotalMappers() > MAX_SAMPLE_SIZE) {
+        logger.debug(jobId + " total mappers: " + historyReader.getTotalMappers());
       }
-      if (jobInfo.getTotalReduces() > MAX_SAMPLE_SIZE) {
-        logger.debug(jobId + " total reducers: " + reducerInfoList.size());
+      if (historyReader.getTotalReducers() > MAX_SAMPLE_SIZE) {
+        logger.debug(jobId + " total reducers: " + historyReader.getTotalReducers());
       }
-      MapReduceTaskData[] mapperList = getTaskData(jobId, mapperInfoList);
-      MapReduceTaskData[] reducerList = getTaskData(jobId, reducerInfoList);
 
-      jobData.setCounters(jobCounter).setMapperData(mapperList).setReducerData(reducerList);
-    } else if (state.equals("FAILED")) {
+      jobData.setCounters(historyReader.getTotalCounters())
+          .setMapperTable(historyReader.getMapperTable())
+          .setReducerTable(historyReader.getReducerTable());
+    } else if ("FAILED".equals(state)) {
 
       jobData.setSucceeded(false);
-      jobData.setDiagnosticInfo(jobInfo.getErrorInfo());
+      jobData.setDiagnosticInfo(historyReader.getErrorInfo());
     } else {
       // Should not reach here
       throw new RuntimeException("Job state not supported. Should be either SUCCEEDED or FAILED");
@@ -264,58 +271,6 @@ public class MapReduceFSFetcherHadoop2 extends MapReduceFetcher {
     return jobData;
   }
 
-  private MapReduceCounterData getCounterData(Counters counters) {
-    MapReduceCounterData holder = new MapReduceCounterData();
-    for (CounterGroup group : counters) {
-      String groupName = group.getName();
-      for (Counter counter : group) {
-        holder.set(groupName, counter.getName(), counter.getValue());
-      }
-    }
-    return holder;
-  }
-
-  private long[] getTaskExecTime(JobHistoryParser.TaskAttemptInfo attempInfo) {
-    long startTime = attempInfo.getStartTime();
-    long finishTime = attempInfo.getFinishTime();
-    boolean isMapper = (attempInfo.getTaskType() == TaskType.MAP);
-
-    long[] time;
-    if (isMapper) {
-      time = new long[]{finishTime - startTime, 0, 0, startTime, finishTime};
-    } else {
-      long shuffleFinishTime = attempInfo.getShuffleFinishTime();
-      long mergeFinishTime = attempInfo.getSortFinishTime();
-      time = new long[]{finishTime - startTime, shuffleFinishTime - startTime,
-              mergeFinishTime - shuffleFinishTime, startTime, finishTime};
-    }
-    return time;
-  }
-
-  private MapReduceTaskData[] getTaskData(String jobId, List<JobHistoryParser.TaskInfo> infoList) {
-    int sampleSize = sampleAndGetSize(jobId, infoList);
-
-    MapReduceTaskData[] taskList = new MapReduceTaskData[sampleSize];
-    for (int i = 0; i < sampleSize; i++) {
-      JobHistoryParser.TaskInfo tInfo = infoList.get(i);
-      if (!"SUCCEEDED".equals(tInfo.getTaskStatus())) {
-        System.out.println("This is a failed task: " + tInfo.getTaskId().toString());
-        continue;
-      }
-
-      String taskId = tInfo.getTaskId().toString();
-      TaskAttemptID attemptId = tInfo.getSuccessfulAttemptId();
-      taskList[i] = new MapReduceTaskData(taskId, attemptId.toString());
-
-      MapReduceCounterData taskCounterData = getCounterData(tInfo.getCounters());
-      long[] taskExecTime = getTaskExecTime(tInfo.getAllTaskAttempts().get(attemptId));
-
-      taskList[i].setCounter(taskCounterData);
-      taskList[i].setTime(taskExecTime);
-    }
-    return taskList;
-  }
-
   private class DataFiles {
     private String jobConfPath;
     private String jobHistPath;
@@ -16,33 +16,42 @@
 
 package com.linkedin.drelephant.mapreduce.fetchers;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.linkedin.drelephant.analysis.AnalyticJob;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
-import com.linkedin.drelephant.math.Statistics;
 import com.linkedin.drelephant.configurations.fetcher.FetcherConfigurationData;
+import com.linkedin.drelephant.util.HadoopRestClient;
 import com.linkedin.drelephant.util.Utils;
 
+import controllers.MetricsController;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.JsonParser;
 
 
 /**
@@ -52,13 +61,43 @@ public class MapReduceFetcherHadoop2 extends MapReduceFetcher {
   private static final Logger logger = Logger.getLogger(MapReduceFetcherHadoop2.class);
   // We provide one minute job fetch delay due to the job sending lag from AM/NM to JobHistoryServer HDFS
 
+  private static final String TASK_FETCH_PARALLELISM_XML_FIELD = "task_fetch_parallelism";
+  private static final String MAX_CONCURRENT_REQUESTS_XML_FIELD = "max_concurrent_requests";
+  private static final String BULK_FETCH_ENABLED_XML_FIELD = "bulk_fetch_enabled";
+  private static final int DEFAULT_TASK_FETCH_PARALLELISM = 4;
+  private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+
   private URLFactory _urlFactory;
   private JSONFactory _jsonFactory;
   private String _jhistoryWebAddr;
+  private int _taskFetchParallelism;
+  private int _maxConcurrentRequests;
+  private boolean _bulkFetchEnabled;
+  private Semaphore _requestPermits;
+  private ExecutorService _taskFetchPool;
 
   public MapReduceFetcherHadoop2(FetcherConfigurationData fetcherConfData) throws IOException {
     super(fetcherConfData);
 
+    _taskFetchParallelism = getPositiveIntParam(fetcherConfData, TASK_FETCH_PARALLELISM_XML_FIELD,
+        DEFAULT_TASK_FETCH_PARALLELISM);
+    _maxConcurrentRequests = getPositiveIntParam(fetcherConfData, MAX_CONCURRENT_REQUESTS_XML_FIELD,
+        DEFAULT_MAX_CONCURRENT_REQUESTS);
+    logger.info("Fetching task details with a parallelism of " + _taskFetchParallelism + " per job and at most "
+        + _maxConcurrentRequests + " concurrent requests to the job history server");
+    _bulkFetchEnabled = Boolean.parseBoolean(fetcherConfData.getParamMap().get(BULK_FETCH_ENABLED_XML_FIELD));
+    if (_bulkFetchEnabled) {
+      logger.info("Bulk fetch is enabled, mapper times are read from the task list instead of the attempts");
+    }
+    MetricsController.setTaskFetchParallelism(_taskFetchParallelism);
+    MetricsController.setJobHistoryRequestLimit(_maxConcurrentRequests);
+
+    // The permits bound the requests in flight across all the executor threads and task fetch workers
+    _requestPermits = new Semaphore(_maxConcurrentRequests, true);
+    ThreadFactory factory = new ThreadFactoryBuilder().setNameFormat("dr-el-task-fetch-thread-%d")
+        .setDaemon(true).build();
+    _taskFetchPool = Executors.newFixedThreadPool(_maxConcurrentRequests, factory);
+
     final String jhistoryAddr = new Configuration().get("mapreduce.jobhistory.webapp.address");
 
     logger.info("Connecting to the job history server at " + jhistoryAddr + "...");
@@ -77,18 +116,20 @@ public class MapReduceFetcherHadoop2 extends MapReduceFetcher {
     jobData.setAppId(appId).setJobId(jobId);
     // Change job tracking url to job history page
     analyticJob.setTrackingUrl(_jhistoryWebAddr + jobId);
+    ThreadContextMR2.resetRequestCount();
     try {
 
       // Fetch job config
       Properties jobConf = _jsonFactory.getProperties(_urlFactory.getJobConfigURL(jobId));
       jobData.setJobConf(jobConf);
 
-      URL jobURL = _urlFactory.getJobURL(jobId);
-      String state = _jsonFactory.getState(jobURL);
+      // Fetch the job summary once and reuse it for state, times and diagnostics
+      JobSummary jobSummary = _jsonFactory.getJobSummary(_urlFactory.getJobURL(jobId));
+      String state = jobSummary.getState();
 
-      jobData.setSubmitTime(_jsonFactory.getSubmitTime(jobURL));
-      jobData.setStartTime(_jsonFactory.getStartTime(jobURL));
-      jobData.setFinishTime(_jsonFactory.getFinishTime(jobURL));
+      jobData.setSubmitTime(jobSummary.getSubmitTime());
+      jobData.setStartTime(jobSummary.getStartTime());
+      jobData.setFinishTime(jobSummary.getFinishTime());
 
       if (state.equals("SUCCEEDED")) {
 
@@ -112,7 +153,7 @@ public class MapReduceFetcherHadoop2 extends MapReduceFetcher {
         jobData.setSucceeded(false);
         String diagnosticInfo;
         try {
-          diagnosticInfo = parseException(jobData.getJobId(),  _jsonFactory.getDiagnosticInfo(jobURL));
+          diagnosticInfo = parseException(jobData.getJobId(), jobSummary.getDiagnostics());
         } catch(Exception e) {
           diagnosticInfo = null;
         }
@@ -122,12 +163,62 @@ public class MapReduceFetcherHadoop2 extends MapReduceFetcher {
         throw new RuntimeException("Job state not supported. Should be either SUCCEEDED or FAILED");
       }
     } finally {
-      ThreadContextMR2.updateAuthToken();
+      int requestCount = ThreadContextMR2.resetRequestCount();
+      logger.debug("Fetched " + jobId + " with " + requestCount + " requests to the job history server");
+      MetricsController.setJobHistoryRequestsPerJob(requestCount);
     }
 
     return jobData;
   }
 
+  private static int getPositiveIntParam(FetcherConfigurationData fetcherConfData, String key, int defaultValue) {
+    String value = fetcherConfData.getParamMap().get(key);
+    if (value != null) {
+      double[] param = Utils.getParam(value, 1);
+      if (param != null && param[0] >= 1) {
+        return (int) param[0];
+      }
+      logger.warn("Invalid value " + value + " for " + key + ", using the default " + defaultValue);
+    }
+    return defaultValue;
+  }
+
+  public int getTaskFetchParallelism() {
+    return _taskFetchParallelism;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return _maxConcurrentRequests;
+  }
+
+  public boolean isBulkFetchEnabled() {
+    return _bulkFetchEnabled;
+  }
+
+  /**
+   * Returns the execution times of a successful task attempt from the /attempts/{attemptId} resource.
+   *
+   * @param taskAttempt the taskAttempt node
+   * @return the total, shuffle, sort, start and finish times of the attempt
+   */
+  static long[] getAttemptExecTime(JsonNode taskAttempt) {
+    long startTime = taskAttempt.get("startTime").getLongValue();
+    long finishTime = taskAttempt.get("finishTime").getLongValue();
+    boolean isMapper = taskAttempt.get("type").getValueAsText().equals("MAP");
+
+    long[] time;
+    if (isMapper) {
+      // No shuffle sore time in Mapper
+      time = new long[] { finishTime - startTime, 0, 0 ,startTime, finishTime};
+    } else {
+      long shuffleTime = taskAttempt.get("elapsedShuffleTime").getLongValue();
+      long sortTime = taskAttempt.get("elapsedMergeTime").getLongValue();
+      time = new long[] { finishTime - startTime, shuffleTime, sortTime, startTime, finishTime };
+    }
+
+    return time;
+  }
+
   private String parseException(String jobId, String diagnosticInfo) throws MalformedURLException, IOException,
                                                                             AuthenticationException {
     Matcher m = ThreadContextMR2.getDiagnosticMatcher(diagnosticInfo);
@@ -198,150 +289,233 @@ public class MapReduceFetcherHadoop2 extends MapReduceFetcher {
     }
   }
 
-  private class JSONFactory {
+  /**
+   * The fields of the job document (/jobs/{jobId}) used by the fetcher, read in a single request.
+   */
+  private static class JobSummary {
+    private final String _state;
+    private final long _submitTime;
+    private final long _startTime;
+    private final long _finishTime;
+    private final String _diagnostics;
+
+    private JobSummary(String state, long submitTime, long startTime, long finishTime, String diagnostics) {
+      _state = state;
+      _submitTime = submitTime;
+      _startTime = startTime;
+      _finishTime = finishTime;
+      _diagnostics = diagnostics;
+    }
 
-    private long getStartTime(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      return rootNode.path("job").path("startTime").getValueAsLong();
+    private String getState() {
+      return _state;
     }
 
-    private long getFinishTime(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      return rootNode.path("job").path("finishTime").getValueAsLong();
+    private long getSubmitTime() {
+      return _submitTime;
     }
 
-    private long getSubmitTime(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      return rootNode.path("job").path("submitTime").getValueAsLong();
+    private long getStartTime() {
+      return _startTime;
     }
 
-    private String getState(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      return rootNode.path("job").path("state").getValueAsText();
+    private long getFinishTime() {
+      return _finishTime;
     }
 
-    private String getDiagnosticInfo(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      String diag = rootNode.path("job").path("diagnostics").getValueAsText();
-      return diag;
+    private String getDiagnostics() {
+      return _diagnostics;
     }
+  }
 
-    private Properties getProperties(URL url) throws IOException, AuthenticationException {
-      Properties jobConf = new Properties();
+  private class JSONFactory {
 
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode configs = rootNode.path("conf").path("property");
+    /**
+     * Reads a JSON document from the job history server, holding one of the global request permits for the
+     * duration of the request.
+     */
+    private JsonNode readJsonNode(URL url) throws IOException, AuthenticationException {
+      acquireRequestPermit(url);
+      try {
+        return ThreadContextMR2.readJsonNode(url);
+      } finally {
+        _requestPermits.release();
+      }
+    }
 
-      for (JsonNode conf : configs) {
-        String key = conf.get("name").getValueAsText();
-        String val = conf.get("value").getValueAsText();
-        jobConf.setProperty(key, val);
+    /**
+     * Opens a streaming parser over a JSON document from the job history server. The request permit is held until
+     * the parser is passed to {@link #closeJsonParser(JsonParser)}.
+     */
+    private JsonParser openJsonParser(URL url) throws IOException, AuthenticationException {
+      acquireRequestPermit(url);
+      try {
+        return ThreadContextMR2.openJsonParser(url);
+      } catch (IOException e) {
+        _requestPermits.release();
+        throw e;
+      } catch (AuthenticationException e) {
+        _requestPermits.release();
+        throw e;
+      } catch (RuntimeException e) {
+        _requestPermits.release();
+        throw e;
       }
-      return jobConf;
     }
 
-    private MapReduceCounterData getJobCounter(URL url) throws IOException, AuthenticationException {
-      MapReduceCounterData holder = new MapReduceCounterData();
+    private void closeJsonParser(JsonParser parser) {
+      try {
+        parser.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close the job history server response", e);
+      } finally {
+        _requestPermits.release();
+      }
+    }
 
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode groups = rootNode.path("jobCounters").path("counterGroup");
+    private void acquireRequestPermit(URL url) throws InterruptedIOException {
+      try {
+        _requestPermits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to request " + url);
+      }
+    }
 
-      for (JsonNode group : groups) {
-        for (JsonNode counter : group.path("counter")) {
-          String counterName = counter.get("name").getValueAsText();
-          Long counterValue = counter.get("totalCounterValue").getLongValue();
-          String groupName = group.get("counterGroupName").getValueAsText();
-          holder.set(groupName, counterName, counterValue);
-        }
+    private JobSummary getJobSummary(URL url) throws IOException, AuthenticationException {
+      JsonNode job = readJsonNode(url).path("job");
+      return new JobSummary(job.path("state").getValueAsText(), job.path("submitTime").getValueAsLong(),
+          job.path("startTime").getValueAsLong(), job.path("finishTime").getValueAsLong(),
+          job.path("diagnostics").getValueAsText());
+    }
+
+    private Properties getProperties(URL url) throws IOException, AuthenticationException {
+      JsonParser parser = openJsonParser(url);
+      try {
+        return JobHistoryStreamReader.readProperties(parser);
+      } finally {
+        closeJsonParser(parser);
+      }
+    }
+
+    private MapReduceCounterData getJobCounter(URL url) throws IOException, AuthenticationException {
+      JsonParser parser = openJsonParser(url);
+      try {
+        return JobHistoryStreamReader.readCounters(parser, "counterGroup", "totalCounterValue");
+      } finally {
+        closeJsonParser(parser);
       }
-      return holder;
     }
 
     private MapReduceCounterData getTaskCounter(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode groups = rootNode.path("jobTaskCounters").path("taskCounterGroup");
-      MapReduceCounterData holder = new MapReduceCounterData();
-
-      for (JsonNode group : groups) {
-        for (JsonNode counter : group.path("counter")) {
-          String name = counter.get("name").getValueAsText();
-          String groupName = group.get("counterGroupName").getValueAsText();
-          Long value = counter.get("value").getLongValue();
-          holder.set(groupName, name, value);
-        }
+      JsonParser parser = openJsonParser(url);
+      try {
+        return JobHistoryStreamReader.readCounters(parser, "taskCounterGroup", "value");
+      } finally {
+        closeJsonParser(parser);
       }
-      return holder;
     }
 
     private long[] getTaskExecTime(URL url) throws IOException, AuthenticationException {
+      JsonNode rootNode = readJsonNode(url);
+      return getAttemptExecTime(rootNode.path("taskAttempt"));
+    }
 
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode taskAttempt = rootNode.path("taskAttempt");
+    private void getTaskDataAll(URL url, String jobId, List<MapReduceTaskData> mapperList,
+        List<MapReduceTaskData> reducerList) throws IOException, AuthenticationException {
 
-      long startTime = taskAttempt.get("startTime").getLongValue();
-      long finishTime = taskAttempt.get("finishTime").getLongValue();
-      boolean isMapper = taskAttempt.get("type").getValueAsText().equals("MAP");
+      // In bulk mode the timings available in the task list are kept so that the attempt need not be requested
+      Map<String, long[]> taskTimes = new HashMap<String, long[]>();
 
-      long[] time;
-      if (isMapper) {
-        // No shuffle sore time in Mapper
-        time = new long[] { finishTime - startTime, 0, 0 ,startTime, finishTime};
-      } else {
-        long shuffleTime = taskAttempt.get("elapsedShuffleTime").getLongValue();
-        long sortTime = taskAttempt.get("elapsedMergeTime").getLongValue();
-        time = new long[] { finishTime - startTime, shuffleTime, sortTime, startTime, finishTime };
+      JsonParser parser = openJsonParser(url);
+      try {
+        JobHistoryStreamReader.readTasks(parser, mapperList, reducerList, _bulkFetchEnabled ? taskTimes : null);
+      } finally {
+        closeJsonParser(parser);
       }
 
-      return time;
+      getTaskData(jobId, mapperList, taskTimes);
+      getTaskData(jobId, reducerList, taskTimes);
     }
 
-    private void getTaskDataAll(URL url, String jobId, List<MapReduceTaskData> mapperList,
-        List<MapReduceTaskData> reducerList) throws IOException, AuthenticationException {
+    private void getTaskData(final String jobId, final List<MapReduceTaskData> taskList,
+        final Map<String, long[]> taskTimes) throws IOException, AuthenticationException {
 
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode tasks = rootNode.path("tasks").path("task");
+      final int sampleSize = sampleAndGetSize(jobId, taskList);
+      int workers = Math.min(_taskFetchParallelism, sampleSize);
 
-      for (JsonNode task : tasks) {
-        String state = task.get("state").getValueAsText();
-        if (!state.equals("SUCCEEDED")) {
-          // This is a failed task.
-          continue;
+      if (workers <= 1) {
+        for (int i = 0; i < sampleSize; i++) {
+          getTaskDetail(jobId, taskList.get(i), taskTimes);
         }
-        String taskId = task.get("id").getValueAsText();
-        String attemptId = task.get("successfulAttempt").getValueAsText();
-        boolean isMapper = task.get("type").getValueAsText().equals("MAP");
+        return;
+      }
 
-        if (isMapper) {
-          mapperList.add(new MapReduceTaskData(taskId, attemptId));
-        } else {
-          reducerList.add(new MapReduceTaskData(taskId, attemptId));
-        }
+      // Each worker takes the next unfetched task until the sampled tasks are exhausted. The requests of a worker are
+      // counted even when one of them fails.
+      final AtomicInteger nextTask = new AtomicInteger(0);
+      final AtomicInteger requestCount = new AtomicInteger(0);
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(workers);
+      for (int i = 0; i < workers; i++) {
+        futures.add(_taskFetchPool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            ThreadContextMR2.resetRequestCount();
+            try {
+              int index;
+              while (!Thread.currentThread().isInterrupted() && (index = nextTask.getAndIncrement()) < sampleSize) {
+                getTaskDetail(jobId, taskList.get(index), taskTimes);
+              }
+              return null;
+            } finally {
+              requestCount.addAndGet(ThreadContextMR2.resetRequestCount());
+            }
+          }
+        }));
       }
 
-      getTaskData(jobId, mapperList);
-      getTaskData(jobId, reducerList);
+      try {
+        for (Future<Void> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while fetching the tasks of " + jobId);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof AuthenticationException) {
+          throw (AuthenticationException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new RuntimeException("Failed to fetch the tasks of " + jobId, cause);
+      } finally {
+        for (Future<Void> future : futures) {
+          future.cancel(true);
+        }
+        ThreadContextMR2.addRequestCount(requestCount.get());
+      }
     }
 
-    private void getTaskData(String jobId, List<MapReduceTaskData> taskList) throws IOException, AuthenticationException {
-
-      int sampleSize = sampleAndGetSize(jobId, taskList);
-
-      for(int i=0; i < sampleSize; i++) {
-        MapReduceTaskData data = taskList.get(i);
-
-        URL taskCounterURL = getTaskCounterURL(jobId, data.getTaskId());
-        MapReduceCounterData taskCounter = getTaskCounter(taskCounterURL);
+    private void getTaskDetail(String jobId, MapReduceTaskData data, Map<String, long[]> taskTimes)
+        throws IOException, AuthenticationException {
+      URL taskCounterURL = getTaskCounterURL(jobId, data.getTaskId());
+      MapReduceCounterData taskCounter = getTaskCounter(taskCounterURL);
 
+      long[] taskExecTime = taskTimes.get(data.getTaskId());
+      if (taskExecTime == null) {
         URL taskAttemptURL = getTaskAttemptURL(jobId, data.getTaskId(), data.getAttemptId());
-        long[] taskExecTime = getTaskExecTime(taskAttemptURL);
-
-        data.setCounter(taskCounter);
-        data.setTime(taskExecTime);
+        taskExecTime = getTaskExecTime(taskAttemptURL);
       }
+
+      data.setCounter(taskCounter);
+      data.setTime(taskExecTime);
     }
 
     private String getTaskFailedStackTrace(URL taskAllAttemptsUrl) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(taskAllAttemptsUrl);
+      JsonNode rootNode = readJsonNode(taskAllAttemptsUrl);
       JsonNode tasks = rootNode.path("taskAttempts").path("taskAttempt");
       for (JsonNode task : tasks) {
         String state = task.get("state").getValueAsText();
@@ -362,19 +536,13 @@ public class MapReduceFetcherHadoop2 extends MapReduceFetcher {
 }
 
 final class ThreadContextMR2 {
-  private static final Logger logger = Logger.getLogger(ThreadContextMR2.class);
-  private static final AtomicInteger THREAD_ID = new AtomicInteger(1);
-
-  private static final ThreadLocal<Integer> _LOCAL_THREAD_ID = new ThreadLocal<Integer>() {
+  private static final ThreadLocal<Integer> _LOCAL_REQUEST_COUNT = new ThreadLocal<Integer>() {
     @Override
     public Integer initialValue() {
-      return THREAD_ID.getAndIncrement();
+      return 0;
     }
   };
 
-  private static final ThreadLocal<Long> _LOCAL_LAST_UPDATED = new ThreadLocal<Long>();
-  private static final ThreadLocal<Long> _LOCAL_UPDATE_INTERVAL = new ThreadLocal<Long>();
-
   private static final ThreadLocal<Pattern> _LOCAL_DIAGNOSTIC_PATTERN = new ThreadLocal<Pattern>() {
     @Override
     public Pattern initialValue() {
@@ -384,34 +552,6 @@ final class ThreadContextMR2 {
     }
   };
 
-  private static final ThreadLocal<AuthenticatedURL.Token> _LOCAL_AUTH_TOKEN =
-      new ThreadLocal<AuthenticatedURL.Token>() {
-        @Override
-        public AuthenticatedURL.Token initialValue() {
-          _LOCAL_LAST_UPDATED.set(System.currentTimeMillis());
-          // Random an interval for each executor to avoid update token at the same time
-          _LOCAL_UPDATE_INTERVAL.set(Statistics.MINUTE_IN_MS * 30 + new Random().nextLong()
-              % (3 * Statistics.MINUTE_IN_MS));
-          logger.info("Executor " + _LOCAL_THREAD_ID.get() + " update interval " + _LOCAL_UPDATE_INTERVAL.get() * 1.0
-              / Statistics.MINUTE_IN_MS);
-          return new AuthenticatedURL.Token();
-        }
-      };
-
-  private static final ThreadLocal<AuthenticatedURL> _LOCAL_AUTH_URL = new ThreadLocal<AuthenticatedURL>() {
-    @Override
-    public AuthenticatedURL initialValue() {
-      return new AuthenticatedURL();
-    }
-  };
-
-  private static final ThreadLocal<ObjectMapper> _LOCAL_MAPPER = new ThreadLocal<ObjectMapper>() {
-    @Override
-    public ObjectMapper initialValue() {
-      return new ObjectMapper();
-    }
-  };
-
   private ThreadContextMR2() {
     // Empty on purpose
   }
@@ -421,17 +561,32 @@ final class ThreadContextMR2 {
   }
 
   public static JsonNode readJsonNode(URL url) throws IOException, AuthenticationException {
-    HttpURLConnection conn = _LOCAL_AUTH_URL.get().openConnection(url, _LOCAL_AUTH_TOKEN.get());
-    return _LOCAL_MAPPER.get().readTree(conn.getInputStream());
+    _LOCAL_REQUEST_COUNT.set(_LOCAL_REQUEST_COUNT.get() + 1);
+    return HadoopRestClient.instance().readJsonNode(url);
   }
 
-  public static void updateAuthToken() {
-    long curTime = System.currentTimeMillis();
-    if (curTime - _LOCAL_LAST_UPDATED.get() > _LOCAL_UPDATE_INTERVAL.get()) {
-      logger.info("Executor " + _LOCAL_THREAD_ID.get() + " updates its AuthenticatedToken.");
-      _LOCAL_AUTH_TOKEN.set(new AuthenticatedURL.Token());
-      _LOCAL_AUTH_URL.set(new AuthenticatedURL());
-      _LOCAL_LAST_UPDATED.set(curTime);
-    }
+  public static JsonParser openJsonParser(URL url) throws IOException, AuthenticationException {
+    _LOCAL_REQUEST_COUNT.set(_LOCAL_REQUEST_COUNT.get() + 1);
+    return HadoopRestClient.instance().openJsonParser(url);
+  }
+
+  /**
+   * Resets the number of requests issued by the current thread.
+   *
+   * @return the number of requests issued since the previous reset
+   */
+  public static int resetRequestCount() {
+    int count = _LOCAL_REQUEST_COUNT.get();
+    _LOCAL_REQUEST_COUNT.set(0);
+    return count;
+  }
+
+  /**
+   * Adds requests issued on behalf of the current thread by other threads, e.g. task fetch workers.
+   *
+   * @param count the number of requests to add
+   */
+  public static void addRequestCount(int count) {
+    _LOCAL_REQUEST_COUNT.set(_LOCAL_REQUEST_COUNT.get() + count);
   }
 }
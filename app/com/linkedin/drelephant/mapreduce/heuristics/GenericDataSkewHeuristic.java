@@ -16,22 +16,20 @@
 
 package com.linkedin.drelephant.mapreduce.heuristics;
 
-import com.google.common.primitives.Longs;
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
+import com.linkedin.drelephant.math.LongSummary;
 import com.linkedin.drelephant.math.Statistics;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
 import java.util.Arrays;
-import java.util.ArrayList;
 import java.util.Map;
-import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
@@ -93,7 +91,7 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
     loadParameters();
   }
 
-  protected abstract MapReduceTaskData[] getTasks(MapReduceApplicationData data);
+  protected abstract TaskSummary getTasks(MapReduceApplicationData data);
 
   @Override
   public HeuristicConfigurationData getHeuristicConfData() {
@@ -107,21 +105,14 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
       return null;
     }
 
-    MapReduceTaskData[] tasks = getTasks(data);
-
-    //Gather data
-    List<Long> inputBytes = new ArrayList<Long>();
-
-    for (int i = 0; i < tasks.length; i++) {
-      if (tasks[i].isSampled()) {
-        inputBytes.add(tasks[i].getCounters().get(_counterName));
-      }
-    }
+    TaskSummary tasks = getTasks(data);
+    int numTasks = tasks.getTaskCount();
+    LongSummary inputBytes = tasks.getCounter(_counterName);
 
     // Ratio of total tasks / sampled tasks
-    double scale = ((double)tasks.length) / inputBytes.size();
-    //Analyze data. TODO: This is a temp fix. findTwogroups should support list as input
-    long[][] groups = Statistics.findTwoGroups(Longs.toArray(inputBytes));
+    double scale = ((double)numTasks) / inputBytes.size();
+    //Analyze data
+    long[][] groups = inputBytes.findTwoGroups();
 
     long avg1 = Statistics.average(groups[0]);
     long avg2 = Statistics.average(groups[1]);
@@ -139,9 +130,9 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
         groups[0].length, numTasksLimits[0], numTasksLimits[1], numTasksLimits[2], numTasksLimits[3]));
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Group A", groups[0].length + " tasks @ " + FileUtils.byteCountToDisplaySize(avg1) + " avg");
     result.addResultDetail("Group B", groups[1].length + " tasks @ " + FileUtils.byteCountToDisplaySize(avg2) + " avg");
 
@@ -18,15 +18,13 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
 import com.linkedin.drelephant.math.Statistics;
 import java.util.Map;
 import org.apache.log4j.Logger;
@@ -76,7 +74,7 @@ public abstract class GenericGCHeuristic implements Heuristic<MapReduceApplicati
     loadParameters();
   }
 
-  protected abstract MapReduceTaskData[] getTasks(MapReduceApplicationData data);
+  protected abstract TaskSummary getTasks(MapReduceApplicationData data);
 
   @Override
   public HeuristicConfigurationData getHeuristicConfData() {
@@ -90,35 +88,25 @@ public abstract class GenericGCHeuristic implements Heuristic<MapReduceApplicati
       return null;
     }
 
-    MapReduceTaskData[] tasks = getTasks(data);
-    List<Long> gcMs = new ArrayList<Long>();
-    List<Long> cpuMs = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
-
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        runtimesMs.add(task.getTotalRunTimeMs());
-        gcMs.add(task.getCounters().get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
-        cpuMs.add(task.getCounters().get(MapReduceCounterData.CounterName.CPU_MILLISECONDS));
-      }
-    }
+    TaskSummary tasks = getTasks(data);
+    int numTasks = tasks.getTaskCount();
 
-    long avgRuntimeMs = Statistics.average(runtimesMs);
-    long avgCpuMs = Statistics.average(cpuMs);
-    long avgGcMs = Statistics.average(gcMs);
+    long avgRuntimeMs = tasks.getRuntimesMs().average();
+    long avgCpuMs = tasks.getCounter(MapReduceCounterData.CounterName.CPU_MILLISECONDS).average();
+    long avgGcMs = tasks.getCounter(MapReduceCounterData.CounterName.GC_MILLISECONDS).average();
     double ratio = avgCpuMs != 0 ? avgGcMs*(1.0)/avgCpuMs: 0;
 
     Severity severity;
-    if (tasks.length == 0) {
+    if (numTasks == 0) {
       severity = Severity.NONE;
     } else {
       severity = getGcRatioSeverity(avgRuntimeMs, avgCpuMs, avgGcMs);
     }
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Avg task runtime (ms)", Long.toString(avgRuntimeMs));
     result.addResultDetail("Avg task CPU time (ms)", Long.toString(avgCpuMs));
     result.addResultDetail("Avg task GC time (ms)", Long.toString(avgGcMs));
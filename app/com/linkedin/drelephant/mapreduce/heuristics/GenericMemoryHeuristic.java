@@ -18,15 +18,14 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
+import com.linkedin.drelephant.math.LongSummary;
 import com.linkedin.drelephant.math.Statistics;
 
 import java.util.Map;
@@ -89,7 +88,7 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
     loadParameters();
   }
 
-  protected abstract MapReduceTaskData[] getTasks(MapReduceApplicationData data);
+  protected abstract TaskSummary getTasks(MapReduceApplicationData data);
 
   @Override
   public HeuristicConfigurationData getHeuristicConfData() {
@@ -123,43 +122,27 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
     }
     containerMem *= FileUtils.ONE_MB;
 
-    MapReduceTaskData[] tasks = getTasks(data);
-    List<Long> taskPMems = new ArrayList<Long>();
-    List<Long> taskVMems = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
-    long taskPMin = Long.MAX_VALUE;
-    long taskPMax = 0;
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        runtimesMs.add(task.getTotalRunTimeMs());
-        long taskPMem = task.getCounters().get(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES);
-        long taskVMem = task.getCounters().get(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES);
-        taskPMems.add(taskPMem);
-        taskPMin = Math.min(taskPMin, taskPMem);
-        taskPMax = Math.max(taskPMax, taskPMem);
-        taskVMems.add(taskVMem);
-      }
-    }
-
-    if(taskPMin == Long.MAX_VALUE) {
-      taskPMin = 0;
-    }
+    TaskSummary tasks = getTasks(data);
+    int numTasks = tasks.getTaskCount();
+    LongSummary taskPMems = tasks.getCounter(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES);
 
-    long taskPMemAvg = Statistics.average(taskPMems);
-    long taskVMemAvg = Statistics.average(taskVMems);
-    long averageTimeMs = Statistics.average(runtimesMs);
+    long taskPMin = taskPMems.min();
+    long taskPMax = taskPMems.max();
+    long taskPMemAvg = taskPMems.average();
+    long taskVMemAvg = tasks.getCounter(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES).average();
+    long averageTimeMs = tasks.getRuntimesMs().average();
 
     Severity severity;
-    if (tasks.length == 0) {
+    if (numTasks == 0) {
       severity = Severity.NONE;
     } else {
       severity = getTaskMemoryUtilSeverity(taskPMemAvg, containerMem);
     }
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Avg task runtime", Statistics.readableTimespan(averageTimeMs));
     result.addResultDetail("Avg Physical Memory (MB)", Long.toString(taskPMemAvg / FileUtils.ONE_MB));
     result.addResultDetail("Max Physical Memory (MB)", Long.toString(taskPMax / FileUtils.ONE_MB));
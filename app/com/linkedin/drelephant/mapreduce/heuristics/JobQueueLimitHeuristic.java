@@ -17,7 +17,7 @@
 package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskTable;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
@@ -55,14 +55,14 @@ public class JobQueueLimitHeuristic implements Heuristic<MapReduceApplicationDat
     }
 
     // Compute severity if job is submitted to default queue else set severity to NONE.
-    MapReduceTaskData[] mapTasks = data.getMapperData();
-    MapReduceTaskData[] redTasks = data.getReducerData();
-    Severity[] mapTasksSeverity = new Severity[mapTasks.length];
-    Severity[] redTasksSeverity = new Severity[redTasks.length];
+    TaskTable mapTasks = data.getMapperTable();
+    TaskTable redTasks = data.getReducerTable();
+    Severity[] mapTasksSeverity = new Severity[mapTasks.size()];
+    Severity[] redTasksSeverity = new Severity[redTasks.size()];
     if (queueName.equals("default")) {
       result.addResultDetail("Queue: ", queueName, null);
-      result.addResultDetail("Number of Map tasks", Integer.toString(mapTasks.length));
-      result.addResultDetail("Number of Reduce tasks", Integer.toString(redTasks.length));
+      result.addResultDetail("Number of Map tasks", Integer.toString(mapTasks.size()));
+      result.addResultDetail("Number of Reduce tasks", Integer.toString(redTasks.size()));
 
       // Calculate Severity of Mappers
       mapTasksSeverity = getTasksSeverity(mapTasks, queueTimeoutLimitMs);
@@ -88,12 +88,10 @@ public class JobQueueLimitHeuristic implements Heuristic<MapReduceApplicationDat
     return result;
   }
 
-  private Severity[] getTasksSeverity(MapReduceTaskData[] tasks, long queueTimeout) {
-    Severity[] tasksSeverity = new Severity[tasks.length];
-    int i = 0;
-    for (MapReduceTaskData task : tasks) {
-      tasksSeverity[i] = getQueueLimitSeverity(task.getTotalRunTimeMs(), queueTimeout);
-      i++;
+  private Severity[] getTasksSeverity(TaskTable tasks, long queueTimeout) {
+    Severity[] tasksSeverity = new Severity[tasks.size()];
+    for (int i = 0; i < tasksSeverity.length; i++) {
+      tasksSeverity[i] = getQueueLimitSeverity(tasks.getTotalRunTimeMs(i), queueTimeout);
     }
     return tasksSeverity;
   }
@@ -21,15 +21,14 @@ import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
+import com.linkedin.drelephant.math.LongSummary;
 import com.linkedin.drelephant.math.Statistics;
 
 import java.util.Map;
@@ -92,32 +91,25 @@ public class MapperSpeedHeuristic implements Heuristic<MapReduceApplicationData>
       return null;
     }
 
-    MapReduceTaskData[] tasks = data.getMapperData();
+    TaskSummary tasks = data.getMapperSummary();
+    int numTasks = tasks.getTaskCount();
+    LongSummary inputByteSizes = tasks.getCounter(MapReduceCounterData.CounterName.HDFS_BYTES_READ);
+    LongSummary runtimesMs = tasks.getRuntimesMs();
 
-    List<Long> inputByteSizes = new ArrayList<Long>();
-    List<Long> speeds = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
-
-    for (MapReduceTaskData task : tasks) {
-
-      if (task.isSampled()) {
-        long inputBytes = task.getCounters().get(MapReduceCounterData.CounterName.HDFS_BYTES_READ);
-        long runtimeMs = task.getTotalRunTimeMs();
-        inputByteSizes.add(inputBytes);
-        runtimesMs.add(runtimeMs);
-        //Speed is bytes per second
-        speeds.add((1000 * inputBytes) / (runtimeMs));
-      }
+    LongSummary speeds = new LongSummary(tasks.getSampledCount());
+    for (int i = 0; i < tasks.getSampledCount(); i++) {
+      //Speed is bytes per second
+      speeds.add((1000 * inputByteSizes.get(i)) / (runtimesMs.get(i)));
     }
 
     long medianSpeed;
     long medianSize;
     long medianRuntimeMs;
 
-    if (tasks.length != 0) {
-      medianSpeed = Statistics.median(speeds);
-      medianSize = Statistics.median(inputByteSizes);
-      medianRuntimeMs = Statistics.median(runtimesMs);
+    if (numTasks != 0) {
+      medianSpeed = speeds.median();
+      medianSize = inputByteSizes.median();
+      medianRuntimeMs = runtimesMs.median();
     } else {
       medianSpeed = 0;
       medianSize = 0;
@@ -130,9 +122,9 @@ public class MapperSpeedHeuristic implements Heuristic<MapReduceApplicationData>
     severity = Severity.min(severity, getRuntimeSeverity(medianRuntimeMs));
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Median task input size", FileUtils.byteCountToDisplaySize(medianSize));
     result.addResultDetail("Median task runtime", Statistics.readableTimespan(medianRuntimeMs));
     result.addResultDetail("Median task speed", FileUtils.byteCountToDisplaySize(medianSpeed) + "/s");
@@ -20,7 +20,7 @@ import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
@@ -82,20 +82,13 @@ public class MapperSpillHeuristic implements Heuristic<MapReduceApplicationData>
       return null;
     }
 
-    MapReduceTaskData[] tasks = data.getMapperData();
+    TaskSummary tasks = data.getMapperSummary();
+    int numTasks = tasks.getTaskCount();
 
-    long totalSpills = 0;
-    long totalOutputRecords = 0;
+    long totalSpills = tasks.getCounter(MapReduceCounterData.CounterName.SPILLED_RECORDS).sum();
+    long totalOutputRecords = tasks.getCounter(MapReduceCounterData.CounterName.MAP_OUTPUT_RECORDS).sum();
     double ratioSpills = 0.0;
 
-    for (MapReduceTaskData task : tasks) {
-
-      if (task.isSampled()) {
-        totalSpills += task.getCounters().get(MapReduceCounterData.CounterName.SPILLED_RECORDS);
-        totalOutputRecords += task.getCounters().get(MapReduceCounterData.CounterName.MAP_OUTPUT_RECORDS);
-      }
-    }
-
     //If both totalSpills and totalOutputRecords are zero then set ratioSpills to zero.
     if (totalSpills == 0) {
       ratioSpills = 0;
@@ -106,17 +99,17 @@ public class MapperSpillHeuristic implements Heuristic<MapReduceApplicationData>
     Severity severity = getSpillSeverity(ratioSpills);
 
     // Severity is reduced if number of tasks is small
-    Severity taskSeverity = getNumTasksSeverity(tasks.length);
+    Severity taskSeverity = getNumTasksSeverity(numTasks);
     severity =  Severity.min(severity, taskSeverity);
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Avg spilled records per task",
-        tasks.length == 0 ? "0" : Long.toString(totalSpills / tasks.length));
+        numTasks == 0 ? "0" : Long.toString(totalSpills / numTasks));
     result.addResultDetail("Avg output records per task",
-        tasks.length == 0 ? "0" : Long.toString(totalOutputRecords / tasks.length));
+        numTasks == 0 ? "0" : Long.toString(totalOutputRecords / numTasks));
     result.addResultDetail("Ratio of spilled records to output records", Double.toString(ratioSpills));
 
     return result;
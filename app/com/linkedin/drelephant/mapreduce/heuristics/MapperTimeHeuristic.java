@@ -20,14 +20,13 @@ import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
+import com.linkedin.drelephant.math.LongSummary;
 import com.linkedin.drelephant.math.Statistics;
 
 import java.util.Map;
@@ -99,39 +98,23 @@ public class MapperTimeHeuristic implements Heuristic<MapReduceApplicationData>
       return null;
     }
 
-    MapReduceTaskData[] tasks = data.getMapperData();
+    TaskSummary tasks = data.getMapperSummary();
+    int numTasks = tasks.getTaskCount();
+    LongSummary runtimesMs = tasks.getRuntimesMs();
 
-    List<Long> inputBytes = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
-    long taskMinMs = Long.MAX_VALUE;
-    long taskMaxMs = 0;
+    long taskMinMs = runtimesMs.min();
+    long taskMaxMs = runtimesMs.max();
+    long averageSize = tasks.getCounter(MapReduceCounterData.CounterName.HDFS_BYTES_READ).average();
+    long averageTimeMs = runtimesMs.average();
 
-    for (MapReduceTaskData task : tasks) {
-
-      if (task.isSampled()) {
-        inputBytes.add(task.getCounters().get(MapReduceCounterData.CounterName.HDFS_BYTES_READ));
-        long taskTime = task.getTotalRunTimeMs();
-        runtimesMs.add(taskTime);
-        taskMinMs = Math.min(taskMinMs, taskTime);
-        taskMaxMs = Math.max(taskMaxMs, taskTime);
-      }
-    }
-
-    if(taskMinMs == Long.MAX_VALUE) {
-      taskMinMs = 0;
-    }
-
-    long averageSize = Statistics.average(inputBytes);
-    long averageTimeMs = Statistics.average(runtimesMs);
-
-    Severity shortTaskSeverity = shortTaskSeverity(tasks.length, averageTimeMs);
-    Severity longTaskSeverity = longTaskSeverity(tasks.length, averageTimeMs);
+    Severity shortTaskSeverity = shortTaskSeverity(numTasks, averageTimeMs);
+    Severity longTaskSeverity = longTaskSeverity(numTasks, averageTimeMs);
     Severity severity = Severity.max(shortTaskSeverity, longTaskSeverity);
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Average task input size", FileUtils.byteCountToDisplaySize(averageSize));
     result.addResultDetail("Average task runtime", Statistics.readableTimespan(averageTimeMs));
     result.addResultDetail("Max task runtime", Statistics.readableTimespan(taskMaxMs));
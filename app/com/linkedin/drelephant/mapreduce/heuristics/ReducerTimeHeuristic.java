@@ -17,16 +17,15 @@
 package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
-import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.TaskSummary;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.math.LongSummary;
 import com.linkedin.drelephant.math.Statistics;
 import java.util.Map;
 import org.apache.log4j.Logger;
@@ -97,36 +96,23 @@ public class ReducerTimeHeuristic implements Heuristic<MapReduceApplicationData>
       return null;
     }
 
-    MapReduceTaskData[] tasks = data.getReducerData();
-
-    List<Long> runTimesMs = new ArrayList<Long>();
-    long taskMinMs = Long.MAX_VALUE;
-    long taskMaxMs = 0;
-
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        long taskTime = task.getTotalRunTimeMs();
-        runTimesMs.add(taskTime);
-        taskMinMs = Math.min(taskMinMs, taskTime);
-        taskMaxMs = Math.max(taskMaxMs, taskTime);
-      }
-    }
-
-    if(taskMinMs == Long.MAX_VALUE) {
-      taskMinMs = 0;
-    }
+    TaskSummary tasks = data.getReducerSummary();
+    int numTasks = tasks.getTaskCount();
+    LongSummary runTimesMs = tasks.getRuntimesMs();
 
     //Analyze data
-    long averageRuntimeMs = Statistics.average(runTimesMs);
+    long taskMinMs = runTimesMs.min();
+    long taskMaxMs = runTimesMs.max();
+    long averageRuntimeMs = runTimesMs.average();
 
-    Severity shortTimeSeverity = shortTimeSeverity(averageRuntimeMs, tasks.length);
-    Severity longTimeSeverity = longTimeSeverity(averageRuntimeMs, tasks.length);
+    Severity shortTimeSeverity = shortTimeSeverity(averageRuntimeMs, numTasks);
+    Severity longTimeSeverity = longTimeSeverity(averageRuntimeMs, numTasks);
     Severity severity = Severity.max(shortTimeSeverity, longTimeSeverity);
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
-        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
+        _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, numTasks));
 
-    result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
+    result.addResultDetail("Number of tasks", Integer.toString(numTasks));
     result.addResultDetail("Average task runtime", Statistics.readableTimespan(averageRuntimeMs));
     result.addResultDetail("Max task runtime", Statistics.readableTimespan(taskMaxMs));
     result.addResultDetail("Min task runtime", Statistics.readableTimespan(taskMinMs));
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.math;
+
+import java.util.Arrays;
+
+
+/**
+ * The values of one task column, such as the runtimes or a counter of the sampled tasks, with their count, sum,
+ * minimum, maximum and variance accumulated as they are added.
+ *
+ * The values are kept in a primitive array for the order statistics. The median and the percentiles select in a
+ * scratch copy, made once, so the values themselves keep the order they were added in. Once filled, a summary can be
+ * read from several threads.
+ */
+public final class LongSummary {
+  private long[] _values;
+  private int _size = 0;
+  private long[] _scratch;
+
+  private double _sum = 0d;
+  private long _longSum = 0;
+  private long _min = Long.MAX_VALUE;
+  private long _max = Long.MIN_VALUE;
+  // Welford's running mean and sum of squared differences
+  private double _mean = 0d;
+  private double _m2 = 0d;
+
+  public LongSummary() {
+    this(16);
+  }
+
+  /**
+   * @param expectedSize the expected number of values, the summary grows if more are added
+   */
+  public LongSummary(int expectedSize) {
+    _values = new long[Math.max(expectedSize, 1)];
+  }
+
+  public synchronized void add(long value) {
+    if (_size == _values.length) {
+      _values = Arrays.copyOf(_values, _size * 2);
+    }
+    _values[_size++] = value;
+    _scratch = null;
+
+    _sum += value;
+    _longSum += value;
+    _min = Math.min(_min, value);
+    _max = Math.max(_max, value);
+    double delta = value - _mean;
+    _mean += delta / _size;
+    _m2 += delta * (value - _mean);
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @return the value added at the index
+   */
+  public long get(int index) {
+    if (index >= _size) {
+      throw new IndexOutOfBoundsException("Index " + index + " of " + _size);
+    }
+    return _values[index];
+  }
+
+  /**
+   * @return the exact sum of the values
+   */
+  public long sum() {
+    return _longSum;
+  }
+
+  /**
+   * @return the average truncated to a long, 0 if there are no values, as Statistics.average
+   */
+  public long average() {
+    return (long) (_sum / (double) _size);
+  }
+
+  /**
+   * @return the smallest value, 0 if there are no values
+   */
+  public long min() {
+    return _size == 0 ? 0 : _min;
+  }
+
+  /**
+   * @return the largest value, 0 if there are no values
+   */
+  public long max() {
+    return _size == 0 ? 0 : _max;
+  }
+
+  /**
+   * @return the population variance, 0 if there are no values
+   */
+  public double variance() {
+    return _size == 0 ? 0d : _m2 / _size;
+  }
+
+  /**
+   * @return the median, as Statistics.median
+   */
+  public synchronized long median() {
+    return Statistics.median(scratch());
+  }
+
+  /**
+   * @return the nearest rank percentile, as Statistics.percentile
+   */
+  public synchronized long percentile(int percentile) {
+    return Statistics.percentile(scratch(), percentile);
+  }
+
+  /**
+   * @return the two groups of Statistics.findTwoGroups
+   */
+  public long[][] findTwoGroups() {
+    return Statistics.findTwoGroups(toArray());
+  }
+
+  /**
+   * @return a copy of the values in the order they were added
+   */
+  public long[] toArray() {
+    return Arrays.copyOf(_values, _size);
+  }
+
+  private synchronized long[] scratch() {
+    if (_scratch == null) {
+      _scratch = toArray();
+    }
+    return _scratch;
+  }
+}
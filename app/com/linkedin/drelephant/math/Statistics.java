@@ -79,13 +79,25 @@ public final class Statistics {
 
   /**
    * The percentile method returns the least value from the given list which has at least given percentile.
+   * The list is left untouched.
    * @param values The list of values to find the percentile from
    * @param percentile The percentile
    * @return The least value from the list with at least the given percentile
    */
   public static long percentile(List<Long> values, int percentile) {
+    return percentile(toArray(values), percentile);
+  }
+
+  /**
+   * The percentile method returns the least value from the given array which has at least given percentile.
+   * It runs in linear time and reorders the array.
+   * @param values The values to find the percentile from
+   * @param percentile The percentile
+   * @return The least value from the array with at least the given percentile
+   */
+  public static long percentile(long[] values, int percentile) {
 
-    if (values.size() == 0) {
+    if (values.length == 0) {
       throw new IllegalArgumentException("Percentile of empty list is not defined.");
     }
 
@@ -97,49 +109,62 @@ public final class Statistics {
       return 0;
     }
 
-    Collections.sort(values);
-
     // Use Nearest Rank method.
     // https://en.wikipedia.org/wiki/Percentile#The_Nearest_Rank_method
-    int position = (int) Math.ceil(values.size() * percentile / 100.0);
-
-    // should never happen.
-    if (position == 0) {
-      return values.get(position);
-    }
+    int position = (int) Math.ceil(values.length * percentile / 100.0);
 
     // position is always one greater than index. Return value at the proper index
-    return values.get(position - 1);
+    return select(values, Math.max(position - 1, 0));
   }
 
-
   public static long[][] findTwoGroups(long[] values) {
     return findTwoGroupsRecursive(values, average(values), 2);
   }
 
+  /**
+   * Splits the values in the ones smaller than the middle and the others, moving the middle to the difference of the
+   * averages of the two groups once per level. The intermediate levels only compute sums, the two groups are built
+   * once at the end.
+   */
   public static long[][] findTwoGroupsRecursive(long[] values, long middle, int levels) {
-    if (levels > 0) {
-      long[][] result = twoMeans(values, middle);
-      long newMiddle = average(result[1]) - average(result[0]);
-      return findTwoGroupsRecursive(values, newMiddle, levels - 1);
+    for (; levels > 0; levels--) {
+      double smallerSum = 0d;
+      double largerSum = 0d;
+      int smallerCount = 0;
+      for (long value : values) {
+        if (value < middle) {
+          smallerSum += value;
+          smallerCount++;
+        } else {
+          largerSum += value;
+        }
+      }
+      int largerCount = values.length - smallerCount;
+      middle = (long) (largerSum / (double) largerCount) - (long) (smallerSum / (double) smallerCount);
     }
     return twoMeans(values, middle);
   }
 
   private static long[][] twoMeans(long[] values, long middle) {
-    List<Long> smaller = new ArrayList<Long>();
-    List<Long> larger = new ArrayList<Long>();
-    for (int i = 0; i < values.length; i++) {
-      if (values[i] < middle) {
-        smaller.add(values[i]);
-      } else {
-        larger.add(values[i]);
+    int smallerCount = 0;
+    for (long value : values) {
+      if (value < middle) {
+        smallerCount++;
       }
     }
 
     long[][] result = new long[2][];
-    result[0] = toArray(smaller);
-    result[1] = toArray(larger);
+    result[0] = new long[smallerCount];
+    result[1] = new long[values.length - smallerCount];
+    int smaller = 0;
+    int larger = 0;
+    for (long value : values) {
+      if (value < middle) {
+        result[0][smaller++] = value;
+      } else {
+        result[1][larger++] = value;
+      }
+    }
 
     return result;
   }
@@ -183,22 +208,89 @@ public final class Statistics {
   }
 
   /**
-   * Find the median of the given list
+   * Find the median of the given list. The list is left untouched.
    *
    * @param values The values
    * @return The median(values)
    */
   public static long median(List<Long> values) {
-    if (values.size() == 0) {
+    return median(toArray(values));
+  }
+
+  /**
+   * Find the median of the given array in linear time. The array is reordered.
+   *
+   * @param values The values
+   * @return The median(values)
+   */
+  public static long median(long[] values) {
+    if (values.length == 0) {
       throw new IllegalArgumentException("Median of an empty list is not defined.");
     }
-    Collections.sort(values);
-    int middle = values.size() / 2;
-    if (values.size() % 2 == 0) {
-      return (values.get(middle - 1) + values.get(middle)) / 2;
-    } else {
-      return values.get(middle);
+    int middle = values.length / 2;
+    long upper = select(values, middle);
+    if (values.length % 2 != 0) {
+      return upper;
+    }
+    // After the selection everything before the middle is smaller or equal, the lower median is the largest of them
+    long lower = values[0];
+    for (int i = 1; i < middle; i++) {
+      lower = Math.max(lower, values[i]);
     }
+    return (lower + upper) / 2;
+  }
+
+  /**
+   * Quickselect, finds the value that would be at index k if the array was sorted. The array is reordered so that
+   * values[k] is that value, with no larger value before it and no smaller value after it.
+   *
+   * @param values The values
+   * @param k The index in the sorted order
+   * @return The k-th smallest value
+   */
+  static long select(long[] values, int k) {
+    int from = 0;
+    int to = values.length - 1;
+    while (from < to) {
+      // Median of three pivot, then a three way partition so that repeated values do not degrade it
+      int mid = (from + to) >>> 1;
+      long pivot = medianOfThree(values[from], values[mid], values[to]);
+      int lt = from;
+      int gt = to;
+      int i = from;
+      while (i <= gt) {
+        long value = values[i];
+        if (value < pivot) {
+          swap(values, lt++, i++);
+        } else if (value > pivot) {
+          swap(values, i, gt--);
+        } else {
+          i++;
+        }
+      }
+      // values[from, lt) < pivot, values[lt, gt] == pivot, values(gt, to] > pivot
+      if (k < lt) {
+        to = lt - 1;
+      } else if (k > gt) {
+        from = gt + 1;
+      } else {
+        return pivot;
+      }
+    }
+    return values[k];
+  }
+
+  private static long medianOfThree(long a, long b, long c) {
+    if (a < b) {
+      return b < c ? b : (a < c ? c : a);
+    }
+    return a < c ? a : (b < c ? c : b);
+  }
+
+  private static void swap(long[] values, int i, int j) {
+    long value = values[i];
+    values[i] = values[j];
+    values[j] = value;
   }
 
   /**
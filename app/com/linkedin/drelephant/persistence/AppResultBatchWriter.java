@@ -0,0 +1,236 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+
+
+/**
+ * Inserts analysis results with one JDBC batch per table.
+ *
+ * Saving an AppResult through Ebean sends one INSERT per application, per heuristic result and per heuristic detail.
+ * Here all the applications of a batch go in one statement batch, then all their heuristic results, then all the
+ * details, so writing a batch takes three round trips when the driver rewrites batches into multi-row inserts.
+ */
+public final class AppResultBatchWriter {
+
+  private static final String INSERT_APP_RESULT = "INSERT INTO " + AppResult.TABLE.TABLE_NAME
+      + " (id, name, username, queue_name, start_time, finish_time, tracking_url, job_type, severity, score,"
+      + " workflow_depth, scheduler, job_name, job_exec_id, flow_exec_id, job_def_id, flow_def_id, job_exec_url,"
+      + " flow_exec_url, job_def_url, flow_def_url, resource_used, resource_wasted, total_delay)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String INSERT_HEURISTIC_RESULT = "INSERT INTO " + AppHeuristicResult.TABLE.TABLE_NAME
+      + " (yarn_app_result_id, heuristic_class, heuristic_name, severity, score) VALUES (?, ?, ?, ?, ?)";
+
+  private static final String SELECT_HEURISTIC_RESULT_IDS = "SELECT id FROM " + AppHeuristicResult.TABLE.TABLE_NAME
+      + " WHERE yarn_app_result_id IN";
+
+  private static final String INSERT_HEURISTIC_RESULT_DETAILS = "INSERT INTO "
+      + AppHeuristicResultDetails.TABLE.TABLE_NAME
+      + " (yarn_app_heuristic_result_id, name, value, details) VALUES (?, ?, ?, ?)";
+
+  private AppResultBatchWriter() {
+  }
+
+  /**
+   * Inserts the results, their heuristic results and their details. The connection is neither committed nor rolled
+   * back, so the caller decides on the transaction.
+   *
+   * @param conn the connection, with auto commit disabled
+   * @param results the results to insert
+   * @throws SQLException if any insert failed, or if the generated heuristic result ids could not be read
+   */
+  public static void insert(Connection conn, List<AppResult> results) throws SQLException {
+    if (results.isEmpty()) {
+      return;
+    }
+    insertAppResults(conn, results);
+    List<AppHeuristicResult> heuristicResults = insertHeuristicResults(conn, results);
+    insertHeuristicResultDetails(conn, heuristicResults);
+  }
+
+  private static void insertAppResults(Connection conn, List<AppResult> results) throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(INSERT_APP_RESULT);
+    try {
+      for (AppResult result : results) {
+        int i = 0;
+        statement.setString(++i, result.id);
+        statement.setString(++i, result.name);
+        statement.setString(++i, result.username);
+        statement.setString(++i, result.queueName);
+        statement.setLong(++i, result.startTime);
+        statement.setLong(++i, result.finishTime);
+        statement.setString(++i, result.trackingUrl);
+        statement.setString(++i, result.jobType);
+        setSeverity(statement, ++i, result.severity);
+        statement.setInt(++i, result.score);
+        statement.setInt(++i, result.workflowDepth);
+        statement.setString(++i, result.scheduler);
+        statement.setString(++i, result.jobName);
+        statement.setString(++i, result.jobExecId);
+        statement.setString(++i, result.flowExecId);
+        statement.setString(++i, result.jobDefId);
+        statement.setString(++i, result.flowDefId);
+        statement.setString(++i, result.jobExecUrl);
+        statement.setString(++i, result.flowExecUrl);
+        statement.setString(++i, result.jobDefUrl);
+        statement.setString(++i, result.flowDefUrl);
+        statement.setLong(++i, result.resourceUsed);
+        statement.setLong(++i, result.resourceWasted);
+        statement.setLong(++i, result.totalDelay);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Inserts the heuristic results and sets their generated ids
+   *
+   * @return the inserted heuristic results, in insertion order
+   */
+  private static List<AppHeuristicResult> insertHeuristicResults(Connection conn, List<AppResult> results)
+      throws SQLException {
+    List<AppHeuristicResult> heuristicResults = new ArrayList<AppHeuristicResult>();
+    PreparedStatement statement = conn.prepareStatement(INSERT_HEURISTIC_RESULT, Statement.RETURN_GENERATED_KEYS);
+    try {
+      for (AppResult result : results) {
+        if (result.yarnAppHeuristicResults == null) {
+          continue;
+        }
+        for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+          heuristicResult.yarnAppResult = result;
+          int i = 0;
+          statement.setString(++i, result.id);
+          statement.setString(++i, heuristicResult.heuristicClass);
+          statement.setString(++i, heuristicResult.heuristicName);
+          setSeverity(statement, ++i, heuristicResult.severity);
+          statement.setInt(++i, heuristicResult.score);
+          statement.addBatch();
+          heuristicResults.add(heuristicResult);
+        }
+      }
+      if (heuristicResults.isEmpty()) {
+        return heuristicResults;
+      }
+      statement.executeBatch();
+
+      // The details reference the auto increment ids, read back in insertion order
+      ResultSet keys = statement.getGeneratedKeys();
+      int row = 0;
+      try {
+        while (keys.next() && row < heuristicResults.size()) {
+          heuristicResults.get(row++).id = keys.getInt(1);
+        }
+      } finally {
+        keys.close();
+      }
+      if (row != heuristicResults.size()) {
+        // Some drivers, like H2, only return the key of the last row of a batch
+        readHeuristicResultIds(conn, results, heuristicResults);
+      }
+    } finally {
+      statement.close();
+    }
+    return heuristicResults;
+  }
+
+  /**
+   * Reads the ids of the heuristic results just inserted for the results. The ids grow in insertion order and the
+   * applications were inserted in this transaction, so their rows ordered by id are the heuristic results in order.
+   */
+  private static void readHeuristicResultIds(Connection conn, List<AppResult> results,
+      List<AppHeuristicResult> heuristicResults) throws SQLException {
+    StringBuilder sql = new StringBuilder(SELECT_HEURISTIC_RESULT_IDS).append(" (");
+    for (int i = 0; i < results.size(); i++) {
+      sql.append(i == 0 ? "?" : ", ?");
+    }
+    sql.append(") ORDER BY id");
+    PreparedStatement statement = conn.prepareStatement(sql.toString());
+    try {
+      int i = 0;
+      for (AppResult result : results) {
+        statement.setString(++i, result.id);
+      }
+      ResultSet ids = statement.executeQuery();
+      try {
+        int row = 0;
+        while (row < heuristicResults.size() && ids.next()) {
+          heuristicResults.get(row++).id = ids.getInt(1);
+        }
+        if (row != heuristicResults.size() || ids.next()) {
+          throw new SQLException("Could not read the generated ids of " + heuristicResults.size()
+              + " heuristic results");
+        }
+      } finally {
+        ids.close();
+      }
+    } finally {
+      statement.close();
+    }
+  }
+
+  private static void insertHeuristicResultDetails(Connection conn, List<AppHeuristicResult> heuristicResults)
+      throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(INSERT_HEURISTIC_RESULT_DETAILS);
+    try {
+      int count = 0;
+      for (AppHeuristicResult heuristicResult : heuristicResults) {
+        if (heuristicResult.yarnAppHeuristicResultDetails == null) {
+          continue;
+        }
+        for (AppHeuristicResultDetails details : heuristicResult.yarnAppHeuristicResultDetails) {
+          details.yarnAppHeuristicResult = heuristicResult;
+          int i = 0;
+          statement.setInt(++i, heuristicResult.id);
+          statement.setString(++i, details.name);
+          statement.setString(++i, details.value);
+          statement.setString(++i, details.details);
+          statement.addBatch();
+          count++;
+        }
+      }
+      if (count > 0) {
+        statement.executeBatch();
+      }
+    } finally {
+      statement.close();
+    }
+  }
+
+  private static void setSeverity(PreparedStatement statement, int index, Severity severity) throws SQLException {
+    if (severity == null) {
+      statement.setNull(index, Types.TINYINT);
+    } else {
+      statement.setInt(index, severity.getValue());
+    }
+  }
+}
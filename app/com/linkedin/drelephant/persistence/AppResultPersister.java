@@ -0,0 +1,501 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.Transaction;
+import com.linkedin.drelephant.util.Utils;
+import controllers.MetricsController;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.persistence.PersistenceException;
+import models.AppHeuristicResult;
+import models.AppResult;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import play.db.DB;
+
+
+/**
+ * The persistence stage of the analysis, a write-behind queue between the executor threads and the database.
+ *
+ * Executors hand over their results without waiting, and writer threads take them from a bounded queue and write them
+ * in batches, each batch in one transaction through AppResultBatchWriter. A batch is written once it holds
+ * drelephant.persistence.batch.size results, or when its first result has waited
+ * drelephant.persistence.flush.interval.ms.
+ *
+ * When the queue is full or the database cannot be reached, results are appended to a local spill file instead, and
+ * everything that comes after them is appended too so that the order is kept. Every
+ * drelephant.persistence.replay.interval.ms the spill file is replayed, and results go through the queue again once
+ * it is empty. If a batch fails while the database is reachable, for instance because one of its results was already
+ * saved, the transaction is rolled back and the results are saved one by one through Ebean.
+ *
+ * The hourly rollup of AppResultRollup and the execution summaries of ExecutionHistory are updated in the same
+ * transaction as the results they count, and the results are added to the RecentResultCache once they are written.
+ * The WriteListener is told about every result once it is written, or once it could not be saved at all, so that
+ * discovery does not move past results that are still queued or spilled.
+ */
+public class AppResultPersister {
+  private static final Logger logger = Logger.getLogger(AppResultPersister.class);
+
+  private static final String BATCH_SIZE_KEY = "drelephant.persistence.batch.size";
+  private static final String FLUSH_INTERVAL_KEY = "drelephant.persistence.flush.interval.ms";
+  private static final String QUEUE_CAPACITY_KEY = "drelephant.persistence.queue.capacity";
+  private static final String WRITER_NUM_KEY = "drelephant.persistence.writer.count";
+  private static final String SPILL_FILE_KEY = "drelephant.persistence.spill.file";
+  private static final String REPLAY_INTERVAL_KEY = "drelephant.persistence.replay.interval.ms";
+
+  private static final int BATCH_SIZE = 100;
+  private static final long FLUSH_INTERVAL = 1000;
+  private static final int QUEUE_CAPACITY = 1000;
+  private static final int WRITER_NUM = 2;
+  private static final String SPILL_FILE = "spill/app_results.jsonl";
+  private static final long REPLAY_INTERVAL = 30 * 1000;
+
+  private final ResultStore _store;
+  private final RecentResultCache _cache;
+  private final int _batchSize;
+  private final long _flushInterval;
+  private final long _replayInterval;
+  private final BlockingQueue<AppResult> _queue;
+  private final ResultSpillFile _spillFile;
+  private final List<Thread> _writers = new ArrayList<Thread>();
+  private volatile WriteListener _listener = null;
+  private final ReentrantLock _replayLock = new ReentrantLock();
+  private volatile boolean _running = true;
+
+  // Guarded by _spillFile. Once a result is spilled, the next ones are spilled too until the file is replayed
+  private volatile boolean _spilling;
+  private volatile long _nextReplayTime = 0;
+  // Lines of the replay file already in the database, kept when a replay stops half way
+  private long _replayedLines = 0;
+
+  public AppResultPersister(Configuration configuration) {
+    this(configuration, new DatabaseStore(), RecentResultCache.instance());
+  }
+
+  AppResultPersister(Configuration configuration, ResultStore store) {
+    this(configuration, store, RecentResultCache.instance());
+  }
+
+  AppResultPersister(Configuration configuration, ResultStore store, RecentResultCache cache) {
+    _store = store;
+    _cache = cache;
+    _batchSize = Math.max(1, Utils.getNonNegativeInt(configuration, BATCH_SIZE_KEY, BATCH_SIZE));
+    _flushInterval = Math.max(1, Utils.getNonNegativeLong(configuration, FLUSH_INTERVAL_KEY, FLUSH_INTERVAL));
+    _replayInterval = Utils.getNonNegativeLong(configuration, REPLAY_INTERVAL_KEY, REPLAY_INTERVAL);
+    _queue = new LinkedBlockingQueue<AppResult>(
+        Math.max(1, Utils.getNonNegativeInt(configuration, QUEUE_CAPACITY_KEY, QUEUE_CAPACITY)));
+    _spillFile = new ResultSpillFile(new File(configuration.get(SPILL_FILE_KEY, SPILL_FILE)));
+    _spilling = !_spillFile.isEmpty();
+    if (_spilling) {
+      logger.info("Results left in " + _spillFile.getFile() + " will be replayed first");
+    }
+
+    int writerNum = Math.max(1, Utils.getNonNegativeInt(configuration, WRITER_NUM_KEY, WRITER_NUM));
+    for (int i = 0; i < writerNum; i++) {
+      Thread writer = new Thread(new Writer(), "dr-el-persister-thread-" + i);
+      writer.setDaemon(true);
+      _writers.add(writer);
+    }
+    logger.info(writerNum + " threads write results in batches of " + _batchSize + ", at least every "
+        + _flushInterval + " ms");
+  }
+
+  /**
+   * Sets the listener told about the results that are done with. Must be set before the first result is persisted.
+   */
+  public void setWriteListener(WriteListener listener) {
+    _listener = listener;
+  }
+
+  public void start() {
+    for (Thread writer : _writers) {
+      writer.start();
+    }
+  }
+
+  /**
+   * Queues a result to be written with the next batch. Never waits for the database, the result is spilled to the
+   * local file when it cannot be queued.
+   *
+   * @param result the analysis result
+   */
+  public void persist(AppResult result) {
+    synchronized (_spillFile) {
+      if (_spilling) {
+        spill(Collections.singletonList(result), false);
+        return;
+      }
+    }
+    if (!_queue.offer(result)) {
+      logger.info("Result queue is full, spilling to " + _spillFile.getFile());
+      spill(Collections.singletonList(result), false);
+    }
+  }
+
+  /**
+   * @return true while results are held in the spill file
+   */
+  boolean isSpilling() {
+    return _spilling;
+  }
+
+  /**
+   * Stops the writer threads once they wrote the queued results, then replays the spill file unless the database is
+   * down
+   */
+  public void close() {
+    _running = false;
+    for (Thread writer : _writers) {
+      try {
+        writer.join(2 * _flushInterval + 60 * 1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    if (!_queue.isEmpty()) {
+      logger.warn(_queue.size() + " results were not written");
+    }
+    // A last chance for the spilled results, they are replayed at the next start otherwise
+    if (_spilling && _replayLock.tryLock()) {
+      try {
+        replay();
+      } finally {
+        _replayLock.unlock();
+      }
+    }
+    try {
+      _spillFile.close();
+    } catch (IOException e) {
+      logger.error("Failed to close " + _spillFile.getFile(), e);
+    }
+  }
+
+  private class Writer implements Runnable {
+    @Override
+    public void run() {
+      List<AppResult> batch = new ArrayList<AppResult>(_batchSize);
+      while (_running) {
+        if (_spilling && System.currentTimeMillis() >= _nextReplayTime && _replayLock.tryLock()) {
+          try {
+            replay();
+          } finally {
+            _replayLock.unlock();
+          }
+        }
+        try {
+          collect(batch);
+        } catch (InterruptedException e) {
+          logger.info("Result writer interrupted");
+          Thread.currentThread().interrupt();
+          break;
+        }
+        write(batch);
+      }
+      while (_queue.drainTo(batch, _batchSize) > 0) {
+        write(batch);
+      }
+    }
+  }
+
+  /**
+   * Waits for the next batch. Returns once it is full, once its first result waited for the flush interval, or after
+   * the flush interval when no result comes.
+   */
+  private void collect(List<AppResult> batch) throws InterruptedException {
+    AppResult first = _queue.poll(_flushInterval, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    long flushTime = System.currentTimeMillis() + _flushInterval;
+    while (batch.size() < _batchSize) {
+      long waitTime = flushTime - System.currentTimeMillis();
+      AppResult next = waitTime > 0 ? _queue.poll(waitTime, TimeUnit.MILLISECONDS) : _queue.poll();
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void write(List<AppResult> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      if (_spilling) {
+        // Keep these results behind the spilled ones
+        spill(batch, false);
+      } else if (!writeBatch(batch)) {
+        logger.warn("Database unavailable, spilling results to " + _spillFile.getFile());
+        spill(batch, true);
+      }
+    } finally {
+      batch.clear();
+    }
+  }
+
+  /**
+   * Writes a batch to the database, one result at a time if the batch fails for another reason than the database
+   * being unavailable.
+   *
+   * @return false if nothing was written because the database is unavailable
+   */
+  private boolean writeBatch(List<AppResult> batch) {
+    long startTime = System.currentTimeMillis();
+    try {
+      _store.write(batch);
+      addToCache(batch);
+      notifyDone(batch);
+      logger.info("Wrote " + batch.size() + " results in " + (System.currentTimeMillis() - startTime) + " ms");
+      MetricsController.setResultBatchSize(batch.size());
+      return true;
+    } catch (SQLException | RuntimeException e) {
+      if (!_store.isAvailable()) {
+        logger.warn("Failed to write a batch of " + batch.size() + " results", e);
+        return false;
+      }
+      logger.error("Failed to write a batch of " + batch.size() + " results, saving them one by one", e);
+    }
+    for (AppResult result : batch) {
+      try {
+        // Ids generated in the rolled back transaction must not be reused
+        if (result.yarnAppHeuristicResults != null) {
+          for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+            heuristicResult.id = 0;
+          }
+        }
+        _store.save(result);
+        addToCache(Collections.singletonList(result));
+      } catch (RuntimeException e) {
+        logger.error("Failed to save the analysis of " + result.id, e);
+        MetricsController.markUnsavedResult();
+      }
+      notifyDone(Collections.singletonList(result));
+    }
+    return true;
+  }
+
+  private void addToCache(List<AppResult> results) {
+    try {
+      _cache.add(results);
+    } catch (RuntimeException e) {
+      // The results are written, a failure here must not have them written again
+      logger.error("Failed to cache " + results.size() + " results", e);
+    }
+  }
+
+  private void notifyDone(List<AppResult> results) {
+    WriteListener listener = _listener;
+    if (listener == null) {
+      return;
+    }
+    try {
+      listener.onDone(results);
+    } catch (RuntimeException e) {
+      logger.error("Failed to acknowledge " + results.size() + " results", e);
+    }
+  }
+
+  private void spill(List<AppResult> results, boolean databaseDown) {
+    synchronized (_spillFile) {
+      if (!_spilling) {
+        _spilling = true;
+        // Give the database some time when it is down, otherwise replay as soon as the queue is drained
+        _nextReplayTime = databaseDown ? System.currentTimeMillis() + _replayInterval : 0;
+      }
+      try {
+        _spillFile.append(results);
+        MetricsController.markSpilledResults(results.size());
+      } catch (IOException e) {
+        logger.error("Failed to spill " + results.size() + " results to " + _spillFile.getFile(), e);
+        for (int i = 0; i < results.size(); i++) {
+          MetricsController.markUnsavedResult();
+        }
+        notifyDone(results);
+      }
+    }
+  }
+
+  /**
+   * Replays the spill file in order, until it is empty or the database is unavailable again
+   */
+  private void replay() {
+    try {
+      while (true) {
+        synchronized (_spillFile) {
+          if (!_spillFile.rotate()) {
+            _spilling = false;
+            logger.info("All spilled results are written");
+            return;
+          }
+        }
+        if (!replayFile()) {
+          _nextReplayTime = System.currentTimeMillis() + _replayInterval;
+          return;
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Failed to replay " + _spillFile.getFile(), e);
+      _nextReplayTime = System.currentTimeMillis() + _replayInterval;
+    }
+  }
+
+  /**
+   * @return false if the database became unavailable before the whole file was written
+   */
+  private boolean replayFile() throws IOException {
+    BufferedReader reader = _spillFile.openReplay();
+    try {
+      for (long i = 0; i < _replayedLines; i++) {
+        reader.readLine();
+      }
+      List<AppResult> batch = new ArrayList<AppResult>(_batchSize);
+      int lines = 0;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines++;
+        try {
+          batch.add(ResultSpillFile.decode(line));
+        } catch (RuntimeException e) {
+          logger.error("Skipping a spilled result which cannot be read: " + line, e);
+          MetricsController.markUnsavedResult();
+        }
+        if (batch.size() == _batchSize) {
+          if (!writeBatch(batch)) {
+            return false;
+          }
+          _replayedLines += lines;
+          lines = 0;
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty() && !writeBatch(batch)) {
+        return false;
+      }
+    } finally {
+      reader.close();
+    }
+    _spillFile.deleteReplay();
+    _replayedLines = 0;
+    return true;
+  }
+
+  /**
+   * Told about the results the persister is done with
+   */
+  public interface WriteListener {
+    /**
+     * Called once the results are written to the database, or once saving them failed for good. Results waiting in
+     * the queue or in the spill file are not reported until they are written.
+     *
+     * @param results the results
+     */
+    void onDone(List<AppResult> results);
+  }
+
+  /**
+   * Where the batches are written
+   */
+  interface ResultStore {
+    /**
+     * Writes all the results and adds them to the rollup in one transaction
+     */
+    void write(List<AppResult> batch) throws SQLException;
+
+    /**
+     * Saves a single result and adds it to the rollup
+     */
+    void save(AppResult result);
+
+    /**
+     * @return false if the database cannot be reached
+     */
+    boolean isAvailable();
+  }
+
+  static class DatabaseStore implements ResultStore {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    @Override
+    public void write(List<AppResult> batch) throws SQLException {
+      Connection conn = DB.getConnection(false);
+      try {
+        AppResultBatchWriter.insert(conn, batch);
+        AppResultRollup.add(conn, batch);
+        ExecutionHistory.add(conn, batch);
+        conn.commit();
+      } catch (SQLException | RuntimeException e) {
+        try {
+          conn.rollback();
+        } catch (SQLException rollbackError) {
+          logger.error("Failed to roll back the batch", rollbackError);
+        }
+        throw e;
+      } finally {
+        conn.close();
+      }
+    }
+
+    @Override
+    public void save(AppResult result) {
+      Transaction transaction = Ebean.beginTransaction();
+      try {
+        result.save();
+        AppResultRollup.add(transaction.getConnection(), Collections.singletonList(result));
+        ExecutionHistory.add(transaction.getConnection(), Collections.singletonList(result));
+        Ebean.commitTransaction();
+      } catch (SQLException e) {
+        throw new PersistenceException(e);
+      } finally {
+        Ebean.endTransaction();
+      }
+    }
+
+    @Override
+    public boolean isAvailable() {
+      Connection conn = null;
+      try {
+        conn = DB.getConnection();
+        return conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+      } catch (SQLException | RuntimeException e) {
+        return false;
+      } finally {
+        if (conn != null) {
+          try {
+            conn.close();
+          } catch (SQLException e) {
+            logger.debug("Failed to close the connection", e);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.math.Statistics;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import models.AppResult;
+import play.db.DB;
+
+
+/**
+ * Maintains yarn_app_result_hourly, the number of results and the resources they used and wasted per hour of finish
+ * time, job type and severity.
+ *
+ * The dashboards count the results that finished in the last day or the last three days. Rather than counting them in
+ * yarn_app_result once per job type and severity, the rollup is incremented in the transaction that inserts the
+ * results, and the counts are summed over a few hundred rollup rows. The rollup only covers whole hours, so the results
+ * of the hour in which the window starts are still counted from yarn_app_result.
+ */
+public final class AppResultRollup {
+
+  public static final String TABLE_NAME = "yarn_app_result_hourly";
+
+  private static final String UPSERT = "INSERT INTO " + TABLE_NAME
+      + " (hour_time, job_type, severity, job_count, resource_used, resource_wasted) VALUES (?, ?, ?, ?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE job_count = job_count + VALUES(job_count),"
+      + " resource_used = resource_used + VALUES(resource_used),"
+      + " resource_wasted = resource_wasted + VALUES(resource_wasted)";
+
+  private static final String SUM_HOURS = "SELECT job_type, severity, SUM(job_count), SUM(resource_used),"
+      + " SUM(resource_wasted) FROM " + TABLE_NAME + " WHERE hour_time >= ? GROUP BY job_type, severity";
+
+  private static final String SUM_RESULTS = "SELECT job_type, severity, COUNT(*), SUM(resource_used),"
+      + " SUM(resource_wasted) FROM " + AppResult.TABLE.TABLE_NAME
+      + " WHERE finish_time > ? AND finish_time < ? GROUP BY job_type, severity";
+
+  private AppResultRollup() {
+  }
+
+  /**
+   * Adds the results to their hours. The connection is neither committed nor rolled back, the rollup must be updated
+   * in the transaction that inserts the results so that it is never out of step with them.
+   *
+   * @param conn the connection, with auto commit disabled
+   * @param results the inserted results
+   * @throws SQLException if the rollup could not be updated
+   */
+  public static void add(Connection conn, List<AppResult> results) throws SQLException {
+    if (results.isEmpty()) {
+      return;
+    }
+    // Rows are updated in key order, so two transactions touching the same hours cannot deadlock
+    Map<Key, long[]> rows = new TreeMap<Key, long[]>();
+    for (AppResult result : results) {
+      Key key = new Key(getHourTime(result.finishTime), result.jobType, result.severity.getValue());
+      long[] sums = rows.get(key);
+      if (sums == null) {
+        sums = new long[3];
+        rows.put(key, sums);
+      }
+      sums[0]++;
+      sums[1] += result.resourceUsed;
+      sums[2] += result.resourceWasted;
+    }
+
+    PreparedStatement statement = conn.prepareStatement(UPSERT);
+    try {
+      for (Map.Entry<Key, long[]> row : rows.entrySet()) {
+        int i = 0;
+        statement.setLong(++i, row.getKey()._hourTime);
+        statement.setString(++i, row.getKey()._jobType);
+        statement.setInt(++i, row.getKey()._severity);
+        statement.setLong(++i, row.getValue()[0]);
+        statement.setLong(++i, row.getValue()[1]);
+        statement.setLong(++i, row.getValue()[2]);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Counts the results that finished after the given time, in memory when RecentResultCache holds the window.
+   *
+   * @param fromTime the start of the window, excluded
+   * @return the counts per job type and severity
+   */
+  public static Counts countSince(long fromTime) {
+    Counts cachedCounts = RecentResultCache.instance().countSince(fromTime);
+    if (cachedCounts != null) {
+      return cachedCounts;
+    }
+    Connection conn = DB.getConnection();
+    try {
+      return countSince(conn, fromTime);
+    } catch (SQLException e) {
+      throw new RuntimeException("Failed to count the results finished after " + fromTime, e);
+    } finally {
+      try {
+        conn.close();
+      } catch (SQLException e) {
+        // Nothing was written
+      }
+    }
+  }
+
+  static Counts countSince(Connection conn, long fromTime) throws SQLException {
+    // The first whole hour after fromTime, the results before it are not in the rollup
+    long firstHour = getHourTime(fromTime) + Statistics.HOUR_IN_MS;
+    Counts counts = new Counts();
+
+    PreparedStatement statement = conn.prepareStatement(SUM_HOURS);
+    try {
+      statement.setLong(1, firstHour);
+      addRows(counts, statement.executeQuery());
+    } finally {
+      statement.close();
+    }
+
+    statement = conn.prepareStatement(SUM_RESULTS);
+    try {
+      statement.setLong(1, fromTime);
+      statement.setLong(2, firstHour);
+      addRows(counts, statement.executeQuery());
+    } finally {
+      statement.close();
+    }
+    return counts;
+  }
+
+  private static void addRows(Counts counts, ResultSet rows) throws SQLException {
+    try {
+      while (rows.next()) {
+        counts.add(rows.getString(1), rows.getInt(2), rows.getLong(3), rows.getLong(4), rows.getLong(5));
+      }
+    } finally {
+      rows.close();
+    }
+  }
+
+  /**
+   * @return the start of the hour the time falls in
+   */
+  static long getHourTime(long time) {
+    return time - time % Statistics.HOUR_IN_MS;
+  }
+
+  /**
+   * The number of results and their resources, per job type and severity
+   */
+  public static final class Counts {
+    private static final int SEVERITIES = Severity.CRITICAL.getValue() + 1;
+
+    // Keyed by lower case job type like the database collation, indexed by severity value
+    private final Map<String, long[]> _jobCounts = new HashMap<String, long[]>();
+    private long _resourceUsed = 0;
+    private long _resourceWasted = 0;
+
+    void add(String jobType, int severity, long jobCount, long resourceUsed, long resourceWasted) {
+      String key = jobType.toLowerCase(Locale.ROOT);
+      long[] jobCounts = _jobCounts.get(key);
+      if (jobCounts == null) {
+        jobCounts = new long[SEVERITIES];
+        _jobCounts.put(key, jobCounts);
+      }
+      jobCounts[severity] += jobCount;
+      _resourceUsed += resourceUsed;
+      _resourceWasted += resourceWasted;
+    }
+
+    /**
+     * @return the number of results
+     */
+    public int getCount() {
+      long count = 0;
+      for (long[] jobCounts : _jobCounts.values()) {
+        for (long jobCount : jobCounts) {
+          count += jobCount;
+        }
+      }
+      return (int) count;
+    }
+
+    /**
+     * @return the number of results with the severity
+     */
+    public int getCount(Severity severity) {
+      long count = 0;
+      for (long[] jobCounts : _jobCounts.values()) {
+        count += jobCounts[severity.getValue()];
+      }
+      return (int) count;
+    }
+
+    /**
+     * @return the number of results of the job type, which is compared ignoring case
+     */
+    public int getCount(String jobType) {
+      long[] jobCounts = _jobCounts.get(jobType.toLowerCase(Locale.ROOT));
+      long count = 0;
+      if (jobCounts != null) {
+        for (long jobCount : jobCounts) {
+          count += jobCount;
+        }
+      }
+      return (int) count;
+    }
+
+    /**
+     * @return the number of results of the job type with the severity
+     */
+    public int getCount(String jobType, Severity severity) {
+      long[] jobCounts = _jobCounts.get(jobType.toLowerCase(Locale.ROOT));
+      return jobCounts == null ? 0 : (int) jobCounts[severity.getValue()];
+    }
+
+    /**
+     * @return the resources used by the results in MB Seconds
+     */
+    public long getResourceUsed() {
+      return _resourceUsed;
+    }
+
+    /**
+     * @return the resources wasted by the results in MB Seconds
+     */
+    public long getResourceWasted() {
+      return _resourceWasted;
+    }
+  }
+
+  /**
+   * A rollup row, ordered like the primary key
+   */
+  private static final class Key implements Comparable<Key> {
+    private final long _hourTime;
+    private final String _jobType;
+    private final int _severity;
+
+    private Key(long hourTime, String jobType, int severity) {
+      _hourTime = hourTime;
+      _jobType = jobType;
+      _severity = severity;
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      if (_hourTime != other._hourTime) {
+        return _hourTime < other._hourTime ? -1 : 1;
+      }
+      int cmp = _jobType.compareToIgnoreCase(other._jobType);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return _severity - other._severity;
+    }
+  }
+}
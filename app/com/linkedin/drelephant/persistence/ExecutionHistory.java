@@ -0,0 +1,569 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.util.Utils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import models.AppResult;
+import play.db.DB;
+
+
+/**
+ * Maintains yarn_flow_exec_summary and yarn_job_exec_summary, one row per flow execution and per job execution with
+ * the number of applications, the sum of their scores and resources, their highest severity and the time span in
+ * which they ran.
+ *
+ * The flow and job history graphs plot the last executions of a flow or a job definition. Rather than loading the
+ * latest thousands of results of the definition and grouping them, the graphs read the last summary rows through the
+ * (definition, finish time) indexes. Like the hourly rollup, the summaries are incremented in the transaction that
+ * inserts the results. The wait time follows the longest trail of applications that do not overlap, which cannot be
+ * incremented, so it is computed from the applications of the executions that are read.
+ */
+public final class ExecutionHistory {
+
+  public static final String FLOW_TABLE_NAME = "yarn_flow_exec_summary";
+  public static final String JOB_TABLE_NAME = "yarn_job_exec_summary";
+
+  private static final String UPSERT_FLOW = "INSERT INTO " + FLOW_TABLE_NAME
+      + " (flow_exec_id, flow_def_id, flow_exec_url, app_count, score, severity, resource_used, resource_wasted,"
+      + " start_time, finish_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE app_count = app_count + VALUES(app_count), score = score + VALUES(score),"
+      + " severity = GREATEST(severity, VALUES(severity)),"
+      + " resource_used = resource_used + VALUES(resource_used),"
+      + " resource_wasted = resource_wasted + VALUES(resource_wasted),"
+      + " start_time = LEAST(start_time, VALUES(start_time)),"
+      + " finish_time = GREATEST(finish_time, VALUES(finish_time))";
+
+  private static final String UPSERT_JOB = "INSERT INTO " + JOB_TABLE_NAME
+      + " (job_exec_id, job_def_id, flow_exec_id, job_exec_url, job_def_url, app_count, score, severity,"
+      + " resource_used, resource_wasted, start_time, first_finish_time, finish_time)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE app_count = app_count + VALUES(app_count), score = score + VALUES(score),"
+      + " severity = GREATEST(severity, VALUES(severity)),"
+      + " resource_used = resource_used + VALUES(resource_used),"
+      + " resource_wasted = resource_wasted + VALUES(resource_wasted),"
+      + " start_time = LEAST(start_time, VALUES(start_time)),"
+      + " first_finish_time = LEAST(first_finish_time, VALUES(first_finish_time)),"
+      + " finish_time = GREATEST(finish_time, VALUES(finish_time))";
+
+  private static final String SELECT_FLOWS = "SELECT flow_exec_id, flow_exec_url, score, severity, resource_used,"
+      + " resource_wasted, start_time, finish_time FROM " + FLOW_TABLE_NAME
+      + " WHERE flow_def_id = ? ORDER BY finish_time DESC LIMIT ?";
+
+  private static final String SELECT_FLOW_JOBS = "SELECT flow_exec_id, job_def_id, job_def_url, job_exec_url, score,"
+      + " severity, resource_used, resource_wasted, start_time, finish_time, first_finish_time FROM " + JOB_TABLE_NAME
+      + " WHERE flow_exec_id IN ";
+
+  private static final String SELECT_FLOW_APPS = "SELECT flow_exec_id, job_def_id, start_time, finish_time,"
+      + " total_delay FROM " + AppResult.TABLE.TABLE_NAME + " WHERE flow_exec_id IN ";
+
+  private static final String SELECT_JOB_FLOWS = "SELECT flow_exec_id FROM " + JOB_TABLE_NAME
+      + " WHERE job_def_id = ? ORDER BY finish_time DESC LIMIT ?";
+
+  private ExecutionHistory() {
+  }
+
+  /**
+   * Adds the results to the summaries of their flow and job executions. The connection is neither committed nor
+   * rolled back, the summaries must be updated in the transaction that inserts the results so that they are never out
+   * of step with them.
+   *
+   * @param conn the connection, with auto commit disabled
+   * @param results the inserted results
+   * @throws SQLException if the summaries could not be updated
+   */
+  public static void add(Connection conn, List<AppResult> results) throws SQLException {
+    // Rows are updated in key order, so two transactions touching the same executions cannot deadlock. Ids are
+    // compared like the database collation does.
+    Map<String, Row> flows = new TreeMap<String, Row>(String.CASE_INSENSITIVE_ORDER);
+    Map<String, Row> jobs = new TreeMap<String, Row>(String.CASE_INSENSITIVE_ORDER);
+    for (AppResult result : results) {
+      if (Utils.isSet(result.flowExecId)) {
+        getRow(flows, result.flowExecId, result).add(result);
+      }
+      if (Utils.isSet(result.jobExecId)) {
+        getRow(jobs, result.jobExecId, result).add(result);
+      }
+    }
+    if (!flows.isEmpty()) {
+      upsert(conn, UPSERT_FLOW, flows, true);
+    }
+    if (!jobs.isEmpty()) {
+      upsert(conn, UPSERT_JOB, jobs, false);
+    }
+  }
+
+  private static Row getRow(Map<String, Row> rows, String id, AppResult result) {
+    Row row = rows.get(id);
+    if (row == null) {
+      row = new Row(result);
+      rows.put(id, row);
+    }
+    return row;
+  }
+
+  private static void upsert(Connection conn, String sql, Map<String, Row> rows, boolean isFlow)
+      throws SQLException {
+    PreparedStatement statement = conn.prepareStatement(sql);
+    try {
+      for (Map.Entry<String, Row> entry : rows.entrySet()) {
+        AppResult first = entry.getValue()._first;
+        Execution sums = entry.getValue()._sums;
+        int i = 0;
+        statement.setString(++i, entry.getKey());
+        if (isFlow) {
+          statement.setString(++i, first.flowDefId);
+          statement.setString(++i, first.flowExecUrl);
+        } else {
+          statement.setString(++i, first.jobDefId);
+          statement.setString(++i, first.flowExecId);
+          statement.setString(++i, first.jobExecUrl);
+          statement.setString(++i, first.jobDefUrl);
+        }
+        statement.setInt(++i, entry.getValue()._appCount);
+        statement.setLong(++i, sums._score);
+        statement.setInt(++i, sums._severity);
+        statement.setLong(++i, sums._resourceUsed);
+        statement.setLong(++i, sums._resourceWasted);
+        statement.setLong(++i, sums._startTime);
+        if (!isFlow) {
+          statement.setLong(++i, sums._firstFinishTime);
+        }
+        statement.setLong(++i, sums._finishTime);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Returns the last executions of a flow with the jobs each of them ran.
+   *
+   * @param flowDefId the flow definition
+   * @param limit the maximum number of executions
+   * @param withWaittime whether to compute the wait times, which reads the times of every application of the
+   *                     executions
+   * @return the executions, the one that finished last first
+   */
+  public static List<FlowExecution> getFlowExecutions(String flowDefId, int limit, boolean withWaittime) {
+    Connection conn = DB.getConnection();
+    try {
+      return getFlowExecutions(conn, flowDefId, limit, withWaittime);
+    } catch (SQLException e) {
+      throw new RuntimeException("Failed to read the executions of the flow " + flowDefId, e);
+    } finally {
+      close(conn);
+    }
+  }
+
+  static List<FlowExecution> getFlowExecutions(Connection conn, String flowDefId, int limit, boolean withWaittime)
+      throws SQLException {
+    Map<String, FlowExecution> flows = new LinkedHashMap<String, FlowExecution>();
+    PreparedStatement statement = conn.prepareStatement(SELECT_FLOWS);
+    try {
+      statement.setString(1, flowDefId);
+      statement.setInt(2, limit);
+      ResultSet rows = statement.executeQuery();
+      try {
+        while (rows.next()) {
+          FlowExecution flow = new FlowExecution(rows.getString(1), rows.getString(2));
+          flow.read(rows, 3);
+          flows.put(flow._flowExecId, flow);
+        }
+      } finally {
+        rows.close();
+      }
+    } finally {
+      statement.close();
+    }
+    if (flows.isEmpty()) {
+      return new ArrayList<FlowExecution>();
+    }
+
+    statement = conn.prepareStatement(SELECT_FLOW_JOBS + placeholders(flows.size()));
+    try {
+      setStrings(statement, flows.keySet());
+      ResultSet rows = statement.executeQuery();
+      try {
+        while (rows.next()) {
+          FlowExecution flow = flows.get(rows.getString(1));
+          if (flow != null) {
+            JobExecution job = new JobExecution(rows.getString(2), rows.getString(3), rows.getString(4));
+            job.read(rows, 5);
+            flow.addJob(job);
+          }
+        }
+      } finally {
+        rows.close();
+      }
+    } finally {
+      statement.close();
+    }
+    for (FlowExecution flow : flows.values()) {
+      Collections.sort(flow._jobs, FIRST_FINISHED_FIRST);
+    }
+
+    if (withWaittime) {
+      readWaittimes(conn, flows);
+    }
+    return new ArrayList<FlowExecution>(flows.values());
+  }
+
+  private static void readWaittimes(Connection conn, Map<String, FlowExecution> flows) throws SQLException {
+    Map<String, List<AppResult>> flowApps = new HashMap<String, List<AppResult>>();
+    Map<JobExecution, List<AppResult>> jobApps = new HashMap<JobExecution, List<AppResult>>();
+    PreparedStatement statement = conn.prepareStatement(SELECT_FLOW_APPS + placeholders(flows.size()));
+    try {
+      setStrings(statement, flows.keySet());
+      ResultSet rows = statement.executeQuery();
+      try {
+        while (rows.next()) {
+          FlowExecution flow = flows.get(rows.getString(1));
+          if (flow == null) {
+            continue;
+          }
+          AppResult app = new AppResult();
+          app.startTime = rows.getLong(3);
+          app.finishTime = rows.getLong(4);
+          app.totalDelay = rows.getLong(5);
+          addTo(flowApps, flow._flowExecId, app);
+          JobExecution job = flow._jobsByDefId.get(rows.getString(2));
+          if (job != null) {
+            addTo(jobApps, job, app);
+          }
+        }
+      } finally {
+        rows.close();
+      }
+    } finally {
+      statement.close();
+    }
+
+    for (FlowExecution flow : flows.values()) {
+      List<AppResult> apps = flowApps.get(flow._flowExecId);
+      if (apps != null) {
+        flow._waittime = Utils.getTotalWaittime(apps);
+      }
+      for (JobExecution job : flow._jobs) {
+        apps = jobApps.get(job);
+        if (apps != null) {
+          job._waittime = Utils.getTotalWaittime(apps);
+        }
+      }
+    }
+  }
+
+  private static <K> void addTo(Map<K, List<AppResult>> map, K key, AppResult app) {
+    List<AppResult> apps = map.get(key);
+    if (apps == null) {
+      apps = new ArrayList<AppResult>();
+      map.put(key, apps);
+    }
+    apps.add(app);
+  }
+
+  /**
+   * Returns the last flow executions that ran a job definition.
+   *
+   * @param jobDefId the job definition
+   * @param limit the maximum number of flow executions
+   * @return the flow execution ids, the one in which the job finished last first
+   */
+  public static List<String> getFlowExecIds(String jobDefId, int limit) {
+    Connection conn = DB.getConnection();
+    try {
+      return getFlowExecIds(conn, jobDefId, limit);
+    } catch (SQLException e) {
+      throw new RuntimeException("Failed to read the executions of the job " + jobDefId, e);
+    } finally {
+      close(conn);
+    }
+  }
+
+  static List<String> getFlowExecIds(Connection conn, String jobDefId, int limit) throws SQLException {
+    // A flow execution can run the job more than once, so more rows are read until enough flow executions are found
+    Set<String> flowExecIds = new LinkedHashSet<String>();
+    int rowLimit = limit;
+    while (true) {
+      flowExecIds.clear();
+      int rowCount = 0;
+      PreparedStatement statement = conn.prepareStatement(SELECT_JOB_FLOWS);
+      try {
+        statement.setString(1, jobDefId);
+        statement.setInt(2, rowLimit);
+        ResultSet rows = statement.executeQuery();
+        try {
+          while (rows.next() && flowExecIds.size() < limit) {
+            rowCount++;
+            flowExecIds.add(rows.getString(1));
+          }
+        } finally {
+          rows.close();
+        }
+      } finally {
+        statement.close();
+      }
+      if (flowExecIds.size() >= limit || rowCount < rowLimit) {
+        return new ArrayList<String>(flowExecIds);
+      }
+      rowLimit *= 2;
+    }
+  }
+
+  private static String placeholders(int count) {
+    StringBuilder sb = new StringBuilder("(");
+    for (int i = 0; i < count; i++) {
+      sb.append(i == 0 ? "?" : ", ?");
+    }
+    return sb.append(")").toString();
+  }
+
+  private static void setStrings(PreparedStatement statement, Iterable<String> values) throws SQLException {
+    int i = 0;
+    for (String value : values) {
+      statement.setString(++i, value);
+    }
+  }
+
+  private static void close(Connection conn) {
+    try {
+      conn.close();
+    } catch (SQLException e) {
+      // Nothing was written
+    }
+  }
+
+  private static final Comparator<JobExecution> FIRST_FINISHED_FIRST = new Comparator<JobExecution>() {
+    @Override
+    public int compare(JobExecution a, JobExecution b) {
+      return a._firstFinishTime < b._firstFinishTime ? -1 : (a._firstFinishTime == b._firstFinishTime ? 0 : 1);
+    }
+  };
+
+  /**
+   * The sums over the applications of an execution
+   */
+  public static class Execution {
+    long _score = 0;
+    int _severity = 0;
+    long _resourceUsed = 0;
+    long _resourceWasted = 0;
+    long _startTime = Long.MAX_VALUE;
+    long _firstFinishTime = Long.MAX_VALUE;
+    long _finishTime = 0;
+    long _waittime = 0;
+
+    void add(AppResult result) {
+      _score += result.score;
+      _severity = Math.max(_severity, result.severity.getValue());
+      _resourceUsed += result.resourceUsed;
+      _resourceWasted += result.resourceWasted;
+      _startTime = Math.min(_startTime, result.startTime);
+      _firstFinishTime = Math.min(_firstFinishTime, result.finishTime);
+      _finishTime = Math.max(_finishTime, result.finishTime);
+    }
+
+    /**
+     * Reads score, severity, resource_used, resource_wasted, start_time and finish_time from a summary row
+     */
+    void read(ResultSet row, int column) throws SQLException {
+      _score = row.getLong(column);
+      _severity = row.getInt(column + 1);
+      _resourceUsed = row.getLong(column + 2);
+      _resourceWasted = row.getLong(column + 3);
+      _startTime = row.getLong(column + 4);
+      _finishTime = row.getLong(column + 5);
+      _firstFinishTime = _finishTime;
+    }
+
+    /**
+     * @return the sum of the application scores
+     */
+    public long getScore() {
+      return _score;
+    }
+
+    /**
+     * @return the highest severity value of the applications
+     */
+    public int getSeverity() {
+      return _severity;
+    }
+
+    /**
+     * @return the resources used by the applications in MB Seconds
+     */
+    public long getResourceUsed() {
+      return _resourceUsed;
+    }
+
+    /**
+     * @return the resources wasted by the applications in MB Seconds
+     */
+    public long getResourceWasted() {
+      return _resourceWasted;
+    }
+
+    /**
+     * @return the finish time of the application that finished last
+     */
+    public long getFinishTime() {
+      return _finishTime;
+    }
+
+    /**
+     * @return the time between the start of the first application and the finish of the last
+     */
+    public long getRuntime() {
+      return _finishTime - _startTime;
+    }
+
+    /**
+     * @return the wait time as computed by Utils.getTotalWaittime, 0 unless it was asked for
+     */
+    public long getWaittime() {
+      return _waittime;
+    }
+  }
+
+  /**
+   * A flow execution and the jobs it ran
+   */
+  public static final class FlowExecution extends Execution {
+    private final String _flowExecId;
+    private final String _flowExecUrl;
+    private final List<JobExecution> _jobs = new ArrayList<JobExecution>();
+    private final Map<String, JobExecution> _jobsByDefId = new HashMap<String, JobExecution>();
+
+    FlowExecution(String flowExecId, String flowExecUrl) {
+      _flowExecId = flowExecId;
+      _flowExecUrl = flowExecUrl;
+    }
+
+    /**
+     * Adds a job execution, merged with the other executions of the same job
+     */
+    void addJob(JobExecution job) {
+      JobExecution sameJob = _jobsByDefId.get(job._jobDefId);
+      if (sameJob == null) {
+        _jobsByDefId.put(job._jobDefId, job);
+        _jobs.add(job);
+      } else {
+        sameJob.merge(job);
+      }
+    }
+
+    public String getFlowExecId() {
+      return _flowExecId;
+    }
+
+    public String getFlowExecUrl() {
+      return _flowExecUrl;
+    }
+
+    /**
+     * @return one entry per job definition, ordered by the finish time of their first application
+     */
+    public List<JobExecution> getJobs() {
+      return _jobs;
+    }
+  }
+
+  /**
+   * The executions of a job definition within one flow execution
+   */
+  public static final class JobExecution extends Execution {
+    private final String _jobDefId;
+    private String _jobDefUrl;
+    private String _jobExecUrl;
+
+    JobExecution(String jobDefId, String jobDefUrl, String jobExecUrl) {
+      _jobDefId = jobDefId;
+      _jobDefUrl = jobDefUrl;
+      _jobExecUrl = jobExecUrl;
+    }
+
+    @Override
+    void read(ResultSet row, int column) throws SQLException {
+      super.read(row, column);
+      _firstFinishTime = row.getLong(column + 6);
+    }
+
+    void merge(JobExecution other) {
+      _score += other._score;
+      _severity = Math.max(_severity, other._severity);
+      _resourceUsed += other._resourceUsed;
+      _resourceWasted += other._resourceWasted;
+      _startTime = Math.min(_startTime, other._startTime);
+      _finishTime = Math.max(_finishTime, other._finishTime);
+      if (other._firstFinishTime < _firstFinishTime) {
+        // The urls are the ones of the application that finished first
+        _firstFinishTime = other._firstFinishTime;
+        _jobDefUrl = other._jobDefUrl;
+        _jobExecUrl = other._jobExecUrl;
+      }
+    }
+
+    public String getJobDefId() {
+      return _jobDefId;
+    }
+
+    public String getJobDefUrl() {
+      return _jobDefUrl;
+    }
+
+    /**
+     * @return the url of the execution whose application finished first
+     */
+    public String getJobExecUrl() {
+      return _jobExecUrl;
+    }
+  }
+
+  /**
+   * A summary row being built from the inserted results
+   */
+  private static final class Row {
+    private final AppResult _first;
+    private final Execution _sums = new Execution();
+    private int _appCount = 0;
+
+    private Row(AppResult first) {
+      _first = first;
+    }
+
+    private void add(AppResult result) {
+      _appCount++;
+      _sums.add(result);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import play.db.DB;
+
+
+/**
+ * Reads the heuristic results of a set of applications into plain objects, one level at a time.
+ *
+ * Walking AppResult.yarnAppHeuristicResults and then yarnAppHeuristicResultDetails lazily sends a query per
+ * application and per heuristic result. Here the heuristic results of all the applications are read with one
+ * IN (...) query, then the details of all those heuristic results with another, so the number of queries depends on
+ * the number of levels rather than the number of rows. Ids are sent MAX_IDS_PER_QUERY at a time.
+ */
+public final class HeuristicResultProjection {
+
+  static final int MAX_IDS_PER_QUERY = 1000;
+
+  private static final String SELECT_HEURISTIC_RESULTS = "SELECT id, yarn_app_result_id, heuristic_class,"
+      + " heuristic_name, severity, score FROM " + AppHeuristicResult.TABLE.TABLE_NAME
+      + " WHERE yarn_app_result_id IN (%s) ORDER BY id";
+
+  private static final String SELECT_HEURISTIC_RESULT_DETAILS = "SELECT yarn_app_heuristic_result_id, name, value,"
+      + " details FROM " + AppHeuristicResultDetails.TABLE.TABLE_NAME + " WHERE yarn_app_heuristic_result_id IN (%s)";
+
+  private HeuristicResultProjection() {
+  }
+
+  /**
+   * Reads the heuristic results of the applications.
+   *
+   * @param appIds the application ids
+   * @param withDetails whether the details of the heuristic results are read too
+   * @return the heuristic results of each application in id order, applications without any are left out
+   */
+  public static Map<String, List<HeuristicResultView>> load(Collection<String> appIds, boolean withDetails) {
+    if (appIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Connection conn = DB.getConnection();
+    try {
+      return load(conn, appIds, withDetails);
+    } catch (SQLException e) {
+      throw new RuntimeException("Failed to read the heuristic results of " + appIds.size() + " applications", e);
+    } finally {
+      try {
+        conn.close();
+      } catch (SQLException e) {
+        // Nothing was written
+      }
+    }
+  }
+
+  static Map<String, List<HeuristicResultView>> load(Connection conn, Collection<String> appIds, boolean withDetails)
+      throws SQLException {
+    Map<String, List<HeuristicResultView>> appHeuristicResults = new HashMap<String, List<HeuristicResultView>>();
+    Map<Integer, HeuristicResultView> heuristicResults = new LinkedHashMap<Integer, HeuristicResultView>();
+
+    for (List<?> ids : partition(new ArrayList<String>(appIds))) {
+      PreparedStatement statement = prepare(conn, SELECT_HEURISTIC_RESULTS, ids);
+      try {
+        ResultSet rows = statement.executeQuery();
+        try {
+          while (rows.next()) {
+            HeuristicResultView heuristicResult = new HeuristicResultView(rows.getInt(1), rows.getString(2),
+                rows.getString(3), rows.getString(4), Severity.byValue(rows.getInt(5)), rows.getInt(6));
+            heuristicResults.put(heuristicResult.id, heuristicResult);
+            List<HeuristicResultView> results = appHeuristicResults.get(heuristicResult.appId);
+            if (results == null) {
+              results = new ArrayList<HeuristicResultView>();
+              appHeuristicResults.put(heuristicResult.appId, results);
+            }
+            results.add(heuristicResult);
+          }
+        } finally {
+          rows.close();
+        }
+      } finally {
+        statement.close();
+      }
+    }
+
+    if (!withDetails || heuristicResults.isEmpty()) {
+      return appHeuristicResults;
+    }
+    for (List<?> ids : partition(new ArrayList<Integer>(heuristicResults.keySet()))) {
+      PreparedStatement statement = prepare(conn, SELECT_HEURISTIC_RESULT_DETAILS, ids);
+      try {
+        ResultSet rows = statement.executeQuery();
+        try {
+          while (rows.next()) {
+            HeuristicResultView heuristicResult = heuristicResults.get(rows.getInt(1));
+            heuristicResult.details.add(new HeuristicDetailView(rows.getString(2), rows.getString(3),
+                rows.getString(4)));
+          }
+        } finally {
+          rows.close();
+        }
+      } finally {
+        statement.close();
+      }
+    }
+    return appHeuristicResults;
+  }
+
+  private static List<List<?>> partition(List<?> ids) {
+    List<List<?>> partitions = new ArrayList<List<?>>();
+    for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+      partitions.add(ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY)));
+    }
+    return partitions;
+  }
+
+  private static PreparedStatement prepare(Connection conn, String sql, List<?> ids) throws SQLException {
+    StringBuilder placeholders = new StringBuilder();
+    for (int i = 0; i < ids.size(); i++) {
+      placeholders.append(i == 0 ? "?" : ", ?");
+    }
+    PreparedStatement statement = conn.prepareStatement(String.format(sql, placeholders));
+    for (int i = 0; i < ids.size(); i++) {
+      statement.setObject(i + 1, ids.get(i));
+    }
+    return statement;
+  }
+
+  /**
+   * A heuristic result of an application
+   */
+  public static final class HeuristicResultView {
+    public final int id;
+    public final String appId;
+    public final String heuristicClass;
+    public final String heuristicName;
+    public final Severity severity;
+    public final int score;
+    public final List<HeuristicDetailView> details = new ArrayList<HeuristicDetailView>();
+
+    HeuristicResultView(int id, String appId, String heuristicClass, String heuristicName, Severity severity,
+        int score) {
+      this.id = id;
+      this.appId = appId;
+      this.heuristicClass = heuristicClass;
+      this.heuristicName = heuristicName;
+      this.severity = severity;
+      this.score = score;
+    }
+  }
+
+  /**
+   * A detail of a heuristic result
+   */
+  public static final class HeuristicDetailView {
+    public final String name;
+    public final String value;
+    public final String details;
+
+    HeuristicDetailView(String name, String value, String details) {
+      this.name = name;
+      this.value = value;
+      this.details = details;
+    }
+  }
+}
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.math.Statistics;
+import com.linkedin.drelephant.persistence.HeuristicResultProjection.HeuristicResultView;
+import com.linkedin.drelephant.util.Utils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import models.AppHeuristicResult;
+import models.AppResult;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import play.db.DB;
+
+
+/**
+ * Holds the summaries of the results that finished in the last drelephant.cache.window.ms, with the names and
+ * severities of their heuristic results, indexed by user, flow execution and severity.
+ *
+ * The persister adds the results once they are written, and at start up the window is loaded from the database in the
+ * background. From then on, every result that finished after the coverage start is held, so a query for the N most
+ * recent results matching a filter is answered from memory as soon as N results match. Otherwise, and for any window
+ * reaching before the coverage start, the methods return null and the caller asks the database. The coverage start
+ * moves forward as results leave the window, or when more than drelephant.cache.max.results are held.
+ *
+ * A flow execution is only answered when all its results are known to be held: not if it already had results when the
+ * window was loaded, and not once its first results were evicted.
+ *
+ * Each held result costs about 3 KB of heap with its heuristic results and URLs, so the default of 20000 results
+ * takes about 60 MB. Raise drelephant.cache.max.results together with the heap size.
+ *
+ * The job history is not answered from the cache: it asks for thousands of executions of a job definition, far more
+ * than the window usually holds, so the lookups would almost always fall through to the database.
+ *
+ * The cache only sees the results written by this process. The summaries are shared, they must not be modified.
+ */
+public class RecentResultCache {
+  private static final Logger logger = Logger.getLogger(RecentResultCache.class);
+
+  private static final String WINDOW_KEY = "drelephant.cache.window.ms";
+  private static final String MAX_RESULTS_KEY = "drelephant.cache.max.results";
+
+  private static final long WINDOW = 72 * Statistics.HOUR_IN_MS;
+  private static final int MAX_RESULTS = 20000;
+
+  private static final String SELECT_RECENT = "SELECT id, name, username, queue_name, start_time, finish_time,"
+      + " tracking_url, job_type, severity, score, workflow_depth, scheduler, job_name, job_exec_id, flow_exec_id,"
+      + " job_def_id, flow_def_id, job_exec_url, flow_exec_url, job_def_url, flow_def_url, resource_used,"
+      + " resource_wasted, total_delay FROM " + AppResult.TABLE.TABLE_NAME
+      + " WHERE finish_time >= ? ORDER BY finish_time DESC LIMIT ?";
+
+  // Most recently finished first, like the database queries ordered by finish time
+  static final Comparator<AppResult> RECENT_FIRST = new Comparator<AppResult>() {
+    @Override
+    public int compare(AppResult a, AppResult b) {
+      if (a.finishTime != b.finishTime) {
+        return a.finishTime > b.finishTime ? -1 : 1;
+      }
+      return b.id.compareTo(a.id);
+    }
+  };
+
+  // Disabled until the analysis starts
+  private static volatile RecentResultCache INSTANCE = new RecentResultCache(0, 0, 0);
+
+  private final long _window;
+  private final int _maxResults;
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+  private final Map<String, AppResult> _byId = new HashMap<String, AppResult>();
+  private final NavigableSet<AppResult> _all = new TreeSet<AppResult>(RECENT_FIRST);
+  private final Map<String, NavigableSet<AppResult>> _byUser = new HashMap<String, NavigableSet<AppResult>>();
+  private final Map<String, NavigableSet<AppResult>> _byFlowExecId = new HashMap<String, NavigableSet<AppResult>>();
+  private final Map<Severity, NavigableSet<AppResult>> _bySeverity =
+      new EnumMap<Severity, NavigableSet<AppResult>>(Severity.class);
+  // Flow executions which may have results that are not held
+  private final Set<String> _partialFlows = new HashSet<String>();
+  // Every result written by this process that finished at or after this time is held
+  private long _coverageStart;
+
+  /**
+   * Creates the cache shared by the persister and the controllers. It covers the results that finish from now on
+   * until start() loaded the window.
+   *
+   * @param configuration The general configuration
+   * @return the new cache
+   */
+  public static RecentResultCache init(Configuration configuration) {
+    long window = Utils.getNonNegativeLong(configuration, WINDOW_KEY, WINDOW);
+    int maxResults = Utils.getNonNegativeInt(configuration, MAX_RESULTS_KEY, MAX_RESULTS);
+    INSTANCE = new RecentResultCache(window, maxResults, System.currentTimeMillis());
+    logger.info("Caching the results of the last " + window + " ms, at most " + maxResults);
+    return INSTANCE;
+  }
+
+  public static RecentResultCache instance() {
+    return INSTANCE;
+  }
+
+  RecentResultCache(long window, int maxResults, long coverageStart) {
+    _window = window;
+    _maxResults = maxResults;
+    _coverageStart = coverageStart;
+  }
+
+  /**
+   * Loads the results of the window from the database in a background thread
+   */
+  public void start() {
+    if (!isEnabled()) {
+      return;
+    }
+    Thread loader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        long startTime = System.currentTimeMillis();
+        Connection conn = null;
+        try {
+          conn = DB.getConnection();
+          int loaded = load(conn, startTime - _window);
+          logger.info("Loaded " + loaded + " recent results in " + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (SQLException | RuntimeException e) {
+          logger.error("Failed to load the recent results, only the new results are cached", e);
+        } finally {
+          if (conn != null) {
+            try {
+              conn.close();
+            } catch (SQLException e) {
+              // Nothing was written
+            }
+          }
+        }
+      }
+    }, "dr-el-cache-loader");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  private boolean isEnabled() {
+    return _maxResults > 0 && _window > 0;
+  }
+
+  /**
+   * Reads the results that finished at or after the given time, with their heuristic results.
+   *
+   * @return the number of results read
+   */
+  int load(Connection conn, long fromTime) throws SQLException {
+    List<AppResult> results = new ArrayList<AppResult>();
+    PreparedStatement statement = conn.prepareStatement(SELECT_RECENT);
+    try {
+      statement.setLong(1, fromTime);
+      statement.setInt(2, _maxResults);
+      ResultSet rows = statement.executeQuery();
+      try {
+        while (rows.next()) {
+          results.add(readResult(rows));
+        }
+      } finally {
+        rows.close();
+      }
+    } finally {
+      statement.close();
+    }
+
+    List<String> ids = new ArrayList<String>(results.size());
+    for (AppResult result : results) {
+      ids.add(result.id);
+    }
+    Map<String, List<HeuristicResultView>> heuristicResults = HeuristicResultProjection.load(conn, ids, false);
+    for (AppResult result : results) {
+      List<HeuristicResultView> views = heuristicResults.get(result.id);
+      result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>(views == null ? 0 : views.size());
+      if (views != null) {
+        for (HeuristicResultView view : views) {
+          result.yarnAppHeuristicResults.add(
+              newHeuristicResult(result, view.id, view.heuristicClass, view.heuristicName, view.severity, view.score));
+        }
+      }
+    }
+
+    _lock.writeLock().lock();
+    try {
+      for (AppResult result : results) {
+        put(result);
+        // Its earlier results may have finished before the window
+        if (Utils.isSet(result.flowExecId)) {
+          _partialFlows.add(result.flowExecId);
+        }
+      }
+      // When the limit is reached, the results of the oldest finish time read may be incomplete
+      long loadedFrom = results.size() < _maxResults ? fromTime : results.get(results.size() - 1).finishTime + 1;
+      _coverageStart = Math.min(_coverageStart, loadedFrom);
+      evict(System.currentTimeMillis());
+    } finally {
+      _lock.writeLock().unlock();
+    }
+    return results.size();
+  }
+
+  /**
+   * Adds the summaries of results just written to the database.
+   *
+   * @param results the written results
+   */
+  public void add(List<AppResult> results) {
+    if (!isEnabled()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    List<AppResult> summaries = new ArrayList<AppResult>(results.size());
+    for (AppResult result : results) {
+      if (result.finishTime >= now - _window) {
+        summaries.add(copySummary(result));
+      }
+    }
+    _lock.writeLock().lock();
+    try {
+      for (AppResult summary : summaries) {
+        put(summary);
+      }
+      evict(now);
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the most recent results of a user, or of all the users.
+   *
+   * @param username the user, or null for all the users
+   * @param scheduledOnly whether only the results with a flow execution id are returned
+   * @param maxResults the number of results
+   * @return the results, most recently finished first, or null if they are not all held
+   */
+  public List<AppResult> getRecent(String username, boolean scheduledOnly, int maxResults) {
+    if (!isEnabled()) {
+      return null;
+    }
+    _lock.readLock().lock();
+    try {
+      NavigableSet<AppResult> results = username == null ? _all : _byUser.get(username);
+      List<AppResult> recent = new ArrayList<AppResult>();
+      if (results != null) {
+        long coverageStart = getCoverageStart();
+        for (AppResult result : results) {
+          if (recent.size() == maxResults || result.finishTime < coverageStart) {
+            break;
+          }
+          if (!scheduledOnly || Utils.isSet(result.flowExecId)) {
+            recent.add(result);
+          }
+        }
+      }
+      return recent.size() == maxResults ? recent : null;
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the most recent results with one of the given severities.
+   *
+   * @param severities the severities
+   * @param finishedAfter the results must have finished after this time
+   * @param maxResults the number of results
+   * @return the results, most recently finished first, or null if they are not all held
+   */
+  public List<AppResult> getRecent(Set<Severity> severities, long finishedAfter, int maxResults) {
+    if (!isEnabled()) {
+      return null;
+    }
+    _lock.readLock().lock();
+    try {
+      long coverageStart = getCoverageStart();
+      List<AppResult> recent = new ArrayList<AppResult>();
+      for (Severity severity : severities) {
+        NavigableSet<AppResult> results = _bySeverity.get(severity);
+        if (results == null) {
+          continue;
+        }
+        int count = 0;
+        for (AppResult result : results) {
+          if (count == maxResults || result.finishTime < coverageStart || result.finishTime <= finishedAfter) {
+            break;
+          }
+          recent.add(result);
+          count++;
+        }
+      }
+      // Enough held results, or the whole time range is held
+      if (recent.size() < maxResults && finishedAfter + 1 < coverageStart) {
+        return null;
+      }
+      Collections.sort(recent, RECENT_FIRST);
+      return recent.size() > maxResults ? new ArrayList<AppResult>(recent.subList(0, maxResults)) : recent;
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns all the results of a flow execution.
+   *
+   * @param flowExecId the flow execution id
+   * @return the results, most recently finished first, or null if some may not be held
+   */
+  public List<AppResult> getFlowExecution(String flowExecId) {
+    if (!isEnabled()) {
+      return null;
+    }
+    _lock.readLock().lock();
+    try {
+      NavigableSet<AppResult> results = _byFlowExecId.get(flowExecId);
+      if (results == null || _partialFlows.contains(flowExecId) || results.last().finishTime < getCoverageStart()) {
+        return null;
+      }
+      return new ArrayList<AppResult>(results);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the results that finished after the given time.
+   *
+   * @param fromTime the start of the window, excluded
+   * @return the counts per job type and severity, or null if the window is not held
+   */
+  public AppResultRollup.Counts countSince(long fromTime) {
+    if (!isEnabled()) {
+      return null;
+    }
+    _lock.readLock().lock();
+    try {
+      if (fromTime + 1 < getCoverageStart()) {
+        return null;
+      }
+      AppResultRollup.Counts counts = new AppResultRollup.Counts();
+      for (AppResult result : _all) {
+        if (result.finishTime <= fromTime) {
+          break;
+        }
+        counts.add(result.jobType, result.severity.getValue(), 1, result.resourceUsed, result.resourceWasted);
+      }
+      return counts;
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  int size() {
+    _lock.readLock().lock();
+    try {
+      return _all.size();
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The results that finished before the window are no longer held, even if they are not evicted yet
+   */
+  private long getCoverageStart() {
+    return Math.max(_coverageStart, System.currentTimeMillis() - _window);
+  }
+
+  private void put(AppResult result) {
+    if (_byId.containsKey(result.id)) {
+      return;
+    }
+    _byId.put(result.id, result);
+    _all.add(result);
+    addToIndex(_byUser, result.username, result);
+    addToIndex(_byFlowExecId, result.flowExecId, result);
+    NavigableSet<AppResult> severityResults = _bySeverity.get(result.severity);
+    if (severityResults == null) {
+      severityResults = new TreeSet<AppResult>(RECENT_FIRST);
+      _bySeverity.put(result.severity, severityResults);
+    }
+    severityResults.add(result);
+  }
+
+  private void remove(AppResult result) {
+    _byId.remove(result.id);
+    _all.remove(result);
+    removeFromIndex(_byUser, result.username, result);
+    if (removeFromIndex(_byFlowExecId, result.flowExecId, result)) {
+      _partialFlows.remove(result.flowExecId);
+    } else if (Utils.isSet(result.flowExecId)) {
+      _partialFlows.add(result.flowExecId);
+    }
+    _bySeverity.get(result.severity).remove(result);
+  }
+
+  /**
+   * Evicts the results that left the window, then the oldest ones beyond the maximum number of results
+   */
+  private void evict(long now) {
+    _coverageStart = Math.max(_coverageStart, now - _window);
+    while (_all.size() > _maxResults) {
+      _coverageStart = Math.max(_coverageStart, _all.last().finishTime + 1);
+      remove(_all.last());
+    }
+    while (!_all.isEmpty() && _all.last().finishTime < _coverageStart) {
+      remove(_all.last());
+    }
+  }
+
+  private static void addToIndex(Map<String, NavigableSet<AppResult>> index, String key, AppResult result) {
+    if (!Utils.isSet(key)) {
+      return;
+    }
+    NavigableSet<AppResult> results = index.get(key);
+    if (results == null) {
+      results = new TreeSet<AppResult>(RECENT_FIRST);
+      index.put(key, results);
+    }
+    results.add(result);
+  }
+
+  /**
+   * @return true if the key has no results left
+   */
+  private static boolean removeFromIndex(Map<String, NavigableSet<AppResult>> index, String key, AppResult result) {
+    NavigableSet<AppResult> results = index.get(key);
+    if (results == null) {
+      return true;
+    }
+    results.remove(result);
+    if (results.isEmpty()) {
+      index.remove(key);
+      return true;
+    }
+    return false;
+  }
+
+  private static AppResult readResult(ResultSet rows) throws SQLException {
+    AppResult result = new AppResult();
+    int i = 0;
+    result.id = rows.getString(++i);
+    result.name = rows.getString(++i);
+    result.username = rows.getString(++i);
+    result.queueName = rows.getString(++i);
+    result.startTime = rows.getLong(++i);
+    result.finishTime = rows.getLong(++i);
+    result.trackingUrl = rows.getString(++i);
+    result.jobType = rows.getString(++i);
+    result.severity = Severity.byValue(rows.getInt(++i));
+    result.score = rows.getInt(++i);
+    result.workflowDepth = rows.getInt(++i);
+    result.scheduler = rows.getString(++i);
+    result.jobName = rows.getString(++i);
+    result.jobExecId = rows.getString(++i);
+    result.flowExecId = rows.getString(++i);
+    result.jobDefId = rows.getString(++i);
+    result.flowDefId = rows.getString(++i);
+    result.jobExecUrl = rows.getString(++i);
+    result.flowExecUrl = rows.getString(++i);
+    result.jobDefUrl = rows.getString(++i);
+    result.flowDefUrl = rows.getString(++i);
+    result.resourceUsed = rows.getLong(++i);
+    result.resourceWasted = rows.getLong(++i);
+    result.totalDelay = rows.getLong(++i);
+    return result;
+  }
+
+  /**
+   * Copies a result without the details of its heuristic results, which are by far the largest part
+   */
+  private static AppResult copySummary(AppResult result) {
+    AppResult summary = new AppResult();
+    summary.id = result.id;
+    summary.name = result.name;
+    summary.username = result.username;
+    summary.queueName = result.queueName;
+    summary.startTime = result.startTime;
+    summary.finishTime = result.finishTime;
+    summary.trackingUrl = result.trackingUrl;
+    summary.jobType = result.jobType;
+    summary.severity = result.severity;
+    summary.score = result.score;
+    summary.workflowDepth = result.workflowDepth;
+    summary.scheduler = result.scheduler;
+    summary.jobName = result.jobName;
+    summary.jobExecId = result.jobExecId;
+    summary.flowExecId = result.flowExecId;
+    summary.jobDefId = result.jobDefId;
+    summary.flowDefId = result.flowDefId;
+    summary.jobExecUrl = result.jobExecUrl;
+    summary.flowExecUrl = result.flowExecUrl;
+    summary.jobDefUrl = result.jobDefUrl;
+    summary.flowDefUrl = result.flowDefUrl;
+    summary.resourceUsed = result.resourceUsed;
+    summary.resourceWasted = result.resourceWasted;
+    summary.totalDelay = result.totalDelay;
+    List<AppHeuristicResult> heuristicResults = result.yarnAppHeuristicResults;
+    summary.yarnAppHeuristicResults =
+        new ArrayList<AppHeuristicResult>(heuristicResults == null ? 0 : heuristicResults.size());
+    if (heuristicResults != null) {
+      for (AppHeuristicResult heuristicResult : heuristicResults) {
+        summary.yarnAppHeuristicResults.add(newHeuristicResult(summary, heuristicResult.id,
+            heuristicResult.heuristicClass, heuristicResult.heuristicName, heuristicResult.severity,
+            heuristicResult.score));
+      }
+    }
+    return summary;
+  }
+
+  private static AppHeuristicResult newHeuristicResult(AppResult result, int id, String heuristicClass,
+      String heuristicName, Severity severity, int score) {
+    AppHeuristicResult heuristicResult = new AppHeuristicResult();
+    heuristicResult.id = id;
+    heuristicResult.yarnAppResult = result;
+    heuristicResult.heuristicClass = heuristicClass;
+    heuristicResult.heuristicName = heuristicName;
+    heuristicResult.severity = severity;
+    heuristicResult.score = score;
+    return heuristicResult;
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.linkedin.drelephant.analysis.Severity;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+
+
+/**
+ * A local append-only file holding the analysis results that could not be written to the database yet, one JSON
+ * object per line.
+ *
+ * To replay, the file is first moved aside with rotate(). Results spilled while the replay runs go to a new file, and
+ * the moved file is deleted once all of it is in the database. A replay file left over by a previous run is replayed
+ * before anything else.
+ */
+final class ResultSpillFile {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File _file;
+  private final File _replayFile;
+  private Writer _writer;
+
+  ResultSpillFile(File file) {
+    _file = file;
+    _replayFile = new File(file.getPath() + ".replay");
+  }
+
+  File getFile() {
+    return _file;
+  }
+
+  /**
+   * Appends the results at the end of the file
+   */
+  synchronized void append(List<AppResult> results) throws IOException {
+    if (_writer == null) {
+      File dir = _file.getAbsoluteFile().getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Could not create the directory " + dir);
+      }
+      _writer = new OutputStreamWriter(new FileOutputStream(_file, true), UTF_8);
+    }
+    for (AppResult result : results) {
+      _writer.write(encode(result));
+      _writer.write('\n');
+    }
+    _writer.flush();
+  }
+
+  /**
+   * @return true if no result is waiting for replay
+   */
+  synchronized boolean isEmpty() {
+    return !_replayFile.exists() && _file.length() == 0;
+  }
+
+  /**
+   * Moves the spilled results to the replay file, unless a replay file is still there.
+   *
+   * @return false if there is nothing to replay
+   */
+  synchronized boolean rotate() throws IOException {
+    if (_replayFile.exists()) {
+      return true;
+    }
+    if (_file.length() == 0) {
+      return false;
+    }
+    if (_writer != null) {
+      _writer.close();
+      _writer = null;
+    }
+    if (!_file.renameTo(_replayFile)) {
+      throw new IOException("Could not rename " + _file + " to " + _replayFile);
+    }
+    return true;
+  }
+
+  /**
+   * Opens the replay file, which must have been created by rotate()
+   */
+  BufferedReader openReplay() throws IOException {
+    return new BufferedReader(new InputStreamReader(new FileInputStream(_replayFile), UTF_8));
+  }
+
+  /**
+   * Deletes the replay file once all of it was written to the database
+   */
+  synchronized void deleteReplay() throws IOException {
+    if (_replayFile.exists() && !_replayFile.delete()) {
+      throw new IOException("Could not delete " + _replayFile);
+    }
+  }
+
+  synchronized void close() throws IOException {
+    if (_writer != null) {
+      _writer.close();
+      _writer = null;
+    }
+  }
+
+  static String encode(AppResult result) {
+    JsonObject json = new JsonObject();
+    json.addProperty("id", result.id);
+    json.addProperty("name", result.name);
+    json.addProperty("username", result.username);
+    json.addProperty("queueName", result.queueName);
+    json.addProperty("startTime", result.startTime);
+    json.addProperty("finishTime", result.finishTime);
+    json.addProperty("trackingUrl", result.trackingUrl);
+    json.addProperty("jobType", result.jobType);
+    json.addProperty("severity", result.severity == null ? null : result.severity.getValue());
+    json.addProperty("score", result.score);
+    json.addProperty("workflowDepth", result.workflowDepth);
+    json.addProperty("scheduler", result.scheduler);
+    json.addProperty("jobName", result.jobName);
+    json.addProperty("jobExecId", result.jobExecId);
+    json.addProperty("flowExecId", result.flowExecId);
+    json.addProperty("jobDefId", result.jobDefId);
+    json.addProperty("flowDefId", result.flowDefId);
+    json.addProperty("jobExecUrl", result.jobExecUrl);
+    json.addProperty("flowExecUrl", result.flowExecUrl);
+    json.addProperty("jobDefUrl", result.jobDefUrl);
+    json.addProperty("flowDefUrl", result.flowDefUrl);
+    json.addProperty("resourceUsed", result.resourceUsed);
+    json.addProperty("resourceWasted", result.resourceWasted);
+    json.addProperty("totalDelay", result.totalDelay);
+
+    JsonArray heuristicResults = new JsonArray();
+    if (result.yarnAppHeuristicResults != null) {
+      for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+        JsonObject heuristicJson = new JsonObject();
+        heuristicJson.addProperty("heuristicClass", heuristicResult.heuristicClass);
+        heuristicJson.addProperty("heuristicName", heuristicResult.heuristicName);
+        heuristicJson.addProperty("severity",
+            heuristicResult.severity == null ? null : heuristicResult.severity.getValue());
+        heuristicJson.addProperty("score", heuristicResult.score);
+
+        JsonArray detailsArray = new JsonArray();
+        if (heuristicResult.yarnAppHeuristicResultDetails != null) {
+          for (AppHeuristicResultDetails details : heuristicResult.yarnAppHeuristicResultDetails) {
+            JsonObject detailsJson = new JsonObject();
+            detailsJson.addProperty("name", details.name);
+            detailsJson.addProperty("value", details.value);
+            detailsJson.addProperty("details", details.details);
+            detailsArray.add(detailsJson);
+          }
+        }
+        heuristicJson.add("details", detailsArray);
+        heuristicResults.add(heuristicJson);
+      }
+    }
+    json.add("heuristicResults", heuristicResults);
+    return json.toString();
+  }
+
+  /**
+   * @throws RuntimeException if the line is not a complete result, e.g. when the process died while appending it
+   */
+  static AppResult decode(String line) {
+    JsonObject json = new JsonParser().parse(line).getAsJsonObject();
+    AppResult result = new AppResult();
+    result.id = getString(json, "id");
+    result.name = getString(json, "name");
+    result.username = getString(json, "username");
+    result.queueName = getString(json, "queueName");
+    result.startTime = json.get("startTime").getAsLong();
+    result.finishTime = json.get("finishTime").getAsLong();
+    result.trackingUrl = getString(json, "trackingUrl");
+    result.jobType = getString(json, "jobType");
+    result.severity = getSeverity(json);
+    result.score = json.get("score").getAsInt();
+    result.workflowDepth = json.get("workflowDepth").getAsInt();
+    result.scheduler = getString(json, "scheduler");
+    result.jobName = getString(json, "jobName");
+    result.jobExecId = getString(json, "jobExecId");
+    result.flowExecId = getString(json, "flowExecId");
+    result.jobDefId = getString(json, "jobDefId");
+    result.flowDefId = getString(json, "flowDefId");
+    result.jobExecUrl = getString(json, "jobExecUrl");
+    result.flowExecUrl = getString(json, "flowExecUrl");
+    result.jobDefUrl = getString(json, "jobDefUrl");
+    result.flowDefUrl = getString(json, "flowDefUrl");
+    result.resourceUsed = json.get("resourceUsed").getAsLong();
+    result.resourceWasted = json.get("resourceWasted").getAsLong();
+    result.totalDelay = json.get("totalDelay").getAsLong();
+
+    result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+    for (JsonElement heuristicElement : json.getAsJsonArray("heuristicResults")) {
+      JsonObject heuristicJson = heuristicElement.getAsJsonObject();
+      AppHeuristicResult heuristicResult = new AppHeuristicResult();
+      heuristicResult.yarnAppResult = result;
+      heuristicResult.heuristicClass = getString(heuristicJson, "heuristicClass");
+      heuristicResult.heuristicName = getString(heuristicJson, "heuristicName");
+      heuristicResult.severity = getSeverity(heuristicJson);
+      heuristicResult.score = heuristicJson.get("score").getAsInt();
+
+      heuristicResult.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
+      for (JsonElement detailsElement : heuristicJson.getAsJsonArray("details")) {
+        JsonObject detailsJson = detailsElement.getAsJsonObject();
+        AppHeuristicResultDetails details = new AppHeuristicResultDetails();
+        details.yarnAppHeuristicResult = heuristicResult;
+        details.name = getString(detailsJson, "name");
+        details.value = getString(detailsJson, "value");
+        details.details = getString(detailsJson, "details");
+        heuristicResult.yarnAppHeuristicResultDetails.add(details);
+      }
+      result.yarnAppHeuristicResults.add(heuristicResult);
+    }
+    return result;
+  }
+
+  private static String getString(JsonObject json, String name) {
+    JsonElement element = json.get(name);
+    return element == null || element.isJsonNull() ? null : element.getAsString();
+  }
+
+  private static Severity getSeverity(JsonObject json) {
+    JsonElement element = json.get("severity");
+    return element == null || element.isJsonNull() ? null : Severity.byValue(element.getAsInt());
+  }
+}
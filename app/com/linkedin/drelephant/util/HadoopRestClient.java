@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.util;
+
+import com.linkedin.drelephant.math.Statistics;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.apache.hadoop.security.authentication.client.ConnectionConfigurator;
+import org.apache.hadoop.security.authentication.client.KerberosAuthenticator;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+
+
+/**
+ * A shared client for the REST APIs of the ResourceManager and the JobHistoryServer.
+ *
+ * All the requests share one authentication token, so the SPNEGO handshake happens once per token refresh rather than
+ * once per thread. The handshake runs under a lock into a fresh token, and only the resulting token string is
+ * published; every request then opens its connection with its own AuthenticatedURL and its own copy of the token,
+ * since neither class is safe to share between threads. Responses are always fully closed so that the JDK can keep
+ * the connection alive and reuse it, the number of requests in flight to a single host is bounded, and gzip encoded
+ * responses are accepted.
+ *
+ * The JDK keeps at most http.maxConnections idle connections per host (5 by default). It is a JVM wide setting read
+ * once, so it is not changed here: pass -Dhttp.maxConnections in jvm_args to keep as many connections alive as
+ * drelephant.http.max.connections.per.host allows in flight.
+ */
+public class HadoopRestClient {
+  private static final Logger logger = Logger.getLogger(HadoopRestClient.class);
+  private static HadoopRestClient INSTANCE;
+
+  private static final String CONNECT_TIMEOUT_KEY = "drelephant.http.connect.timeout.ms";
+  private static final String READ_TIMEOUT_KEY = "drelephant.http.read.timeout.ms";
+  private static final String MAX_CONNECTIONS_PER_HOST_KEY = "drelephant.http.max.connections.per.host";
+
+  private static final int CONNECT_TIMEOUT = 10 * 1000;
+  private static final int READ_TIMEOUT = 60 * 1000;
+  private static final int MAX_CONNECTIONS_PER_HOST = 16;
+
+  // Generate a token update interval with a random deviation so that it does not update the token exactly at the same
+  // time with other token updaters.
+  private static final long TOKEN_UPDATE_INTERVAL =
+      Statistics.MINUTE_IN_MS * 30 + new Random().nextLong() % (3 * Statistics.MINUTE_IN_MS);
+
+  private final int _connectTimeout;
+  private final int _readTimeout;
+  private final int _maxConnectionsPerHost;
+  private final ConnectionConfigurator _connectionConfigurator;
+  private final ObjectMapper _objectMapper = new ObjectMapper();
+  private final ConcurrentMap<String, Semaphore> _hostPermits = new ConcurrentHashMap<String, Semaphore>();
+  private final Object _tokenLock = new Object();
+
+  // The last token obtained, empty if the server did not hand one out, null before the first handshake
+  private volatile String _token = null;
+  private volatile long _tokenUpdatedTime = 0;
+
+  /**
+   * Configures the shared client from the general configuration.
+   *
+   * @param configuration The general configuration
+   */
+  public static synchronized void init(Configuration configuration) {
+    INSTANCE = new HadoopRestClient(configuration);
+  }
+
+  public static synchronized HadoopRestClient instance() {
+    if (INSTANCE == null) {
+      INSTANCE = new HadoopRestClient(new Configuration(false));
+    }
+    return INSTANCE;
+  }
+
+  HadoopRestClient(Configuration configuration) {
+    _connectTimeout = Utils.getNonNegativeInt(configuration, CONNECT_TIMEOUT_KEY, CONNECT_TIMEOUT);
+    _readTimeout = Utils.getNonNegativeInt(configuration, READ_TIMEOUT_KEY, READ_TIMEOUT);
+    _maxConnectionsPerHost =
+        Math.max(1, Utils.getNonNegativeInt(configuration, MAX_CONNECTIONS_PER_HOST_KEY, MAX_CONNECTIONS_PER_HOST));
+
+    _connectionConfigurator = new ConnectionConfigurator() {
+      @Override
+      public HttpURLConnection configure(HttpURLConnection conn) throws IOException {
+        conn.setConnectTimeout(_connectTimeout);
+        conn.setReadTimeout(_readTimeout);
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        return conn;
+      }
+    };
+
+    logger.info("REST client connect timeout " + _connectTimeout + " ms, read timeout " + _readTimeout
+        + " ms, at most " + _maxConnectionsPerHost + " connections per host");
+  }
+
+  /**
+   * Reads the whole JSON document at the url.
+   *
+   * @param url The url to connect to
+   * @return The root node of the document
+   * @throws IOException Unable to get the stream
+   * @throws AuthenticationException Authentication problem
+   */
+  public JsonNode readJsonNode(URL url) throws IOException, AuthenticationException {
+    InputStream in = openStream(url);
+    try {
+      return _objectMapper.readTree(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Opens a streaming parser over the JSON document at the url. The caller must close the parser, which releases the
+   * connection.
+   *
+   * @param url The url to connect to
+   * @return The parser positioned before the document
+   * @throws IOException Unable to get the stream
+   * @throws AuthenticationException Authentication problem
+   */
+  public JsonParser openJsonParser(URL url) throws IOException, AuthenticationException {
+    InputStream in = openStream(url);
+    try {
+      return _objectMapper.getJsonFactory().createJsonParser(in);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens the response body at the url. Closing the stream returns the connection to the keep-alive cache and
+   * releases the per-host permit.
+   *
+   * @param url The url to connect to
+   * @return The response body, decompressed if needed
+   * @throws IOException Unable to get the stream
+   * @throws AuthenticationException Authentication problem
+   */
+  public InputStream openStream(URL url) throws IOException, AuthenticationException {
+    Semaphore permit = getHostPermit(url);
+    try {
+      permit.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to connect to " + url);
+    }
+
+    HttpURLConnection conn = null;
+    try {
+      conn = openConnection(url);
+      InputStream in = conn.getInputStream();
+      if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+        in = new GZIPInputStream(in);
+      }
+      return new ResponseStream(in, permit);
+    } catch (IOException e) {
+      closeErrorStream(conn);
+      permit.release();
+      throw e;
+    } catch (AuthenticationException e) {
+      permit.release();
+      throw e;
+    } catch (RuntimeException e) {
+      permit.release();
+      throw e;
+    }
+  }
+
+  private HttpURLConnection openConnection(URL url) throws IOException, AuthenticationException {
+    String token = getAuthToken(url);
+    // Without a token, e.g. on an unsecured cluster, the request authenticates on its own as before
+    AuthenticatedURL.Token requestToken =
+        token.isEmpty() ? new AuthenticatedURL.Token() : new AuthenticatedURL.Token(token);
+    return new AuthenticatedURL(null, _connectionConfigurator).openConnection(url, requestToken);
+  }
+
+  /**
+   * Returns the shared token, authenticating again once it is older than the update interval. Only one thread
+   * authenticates at a time, the others wait for its token. If the handshake fails nothing is published and the
+   * next request tries again.
+   *
+   * @param url the url the handshake is made against
+   * @return the token, or an empty string if the server did not hand one out
+   */
+  String getAuthToken(URL url) throws IOException, AuthenticationException {
+    String token = _token;
+    if (token != null && !isTokenExpired()) {
+      return token;
+    }
+    synchronized (_tokenLock) {
+      if (_token != null && !isTokenExpired()) {
+        return _token;
+      }
+      logger.info("REST client updating its Authenticate Token...");
+      token = authenticate(url);
+      _tokenUpdatedTime = currentTimeMillis();
+      _token = token;
+      return token;
+    }
+  }
+
+  private boolean isTokenExpired() {
+    return currentTimeMillis() - _tokenUpdatedTime > TOKEN_UPDATE_INTERVAL;
+  }
+
+  /**
+   * Makes the SPNEGO handshake, falling back to simple authentication if the server does not negotiate.
+   *
+   * @param url the url the handshake is made against
+   * @return the token, or an empty string if the server did not hand one out
+   */
+  String authenticate(URL url) throws IOException, AuthenticationException {
+    AuthenticatedURL.Token token = new AuthenticatedURL.Token();
+    KerberosAuthenticator authenticator = new KerberosAuthenticator();
+    authenticator.setConnectionConfigurator(_connectionConfigurator);
+    authenticator.authenticate(url, token);
+    return token.isSet() ? token.toString() : "";
+  }
+
+  long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private Semaphore getHostPermit(URL url) {
+    String host = url.getHost() + ":" + url.getPort();
+    Semaphore permit = _hostPermits.get(host);
+    if (permit == null) {
+      Semaphore newPermit = new Semaphore(_maxConnectionsPerHost, true);
+      permit = _hostPermits.putIfAbsent(host, newPermit);
+      if (permit == null) {
+        permit = newPermit;
+      }
+    }
+    return permit;
+  }
+
+  /**
+   * Reads and closes the error body of a failed request so that the connection can still be reused.
+   */
+  private static void closeErrorStream(HttpURLConnection conn) {
+    if (conn == null) {
+      return;
+    }
+    InputStream err = conn.getErrorStream();
+    if (err == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[4096];
+      while (err.read(buffer) >= 0) {
+        // Drain on purpose
+      }
+    } catch (IOException e) {
+      logger.debug("Failed to drain the error response", e);
+    } finally {
+      try {
+        err.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close the error response", e);
+      }
+    }
+  }
+
+  /**
+   * The response body. Closing it releases the per-host permit exactly once.
+   */
+  private static class ResponseStream extends FilterInputStream {
+    private final Semaphore _permit;
+    private boolean _closed = false;
+
+    private ResponseStream(InputStream in, Semaphore permit) {
+      super(in);
+      _permit = permit;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (_closed) {
+        return;
+      }
+      _closed = true;
+      try {
+        super.close();
+      } finally {
+        _permit.release();
+      }
+    }
+  }
+}
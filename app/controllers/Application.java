@@ -16,14 +16,22 @@
 
 package controllers;
 
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.Expr;
 import com.avaje.ebean.ExpressionList;
+import com.avaje.ebean.FetchConfig;
 import com.avaje.ebean.Query;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.linkedin.drelephant.ElephantContext;
 import com.linkedin.drelephant.analysis.Metrics;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.AppResultRollup;
+import com.linkedin.drelephant.persistence.ExecutionHistory;
+import com.linkedin.drelephant.persistence.RecentResultCache;
 import com.linkedin.drelephant.util.Utils;
 
 import java.text.ParseException;
@@ -94,10 +102,20 @@ public class Application extends Controller {
   private static final int PAGE_LENGTH = 20;                  // Num of jobs in a search page
   private static final int PAGE_BAR_LENGTH = 5;               // Num of pages shown in the page bar
   private static final int REST_PAGE_LENGTH = 100;            // Num of jobs in a rest search page
+  public static final int SEARCH_COUNT_LIMIT = 10000;         // Approximate search counts stop past this number
   private static final int JOB_HISTORY_LIMIT = 5000;          // Set to avoid memory error.
+  private static final int HEURISTIC_BATCH_SIZE = 1000;       // Num of ids per query when reading heuristic results
   private static final int MAX_HISTORY_LIMIT = 15;            // Upper limit on the number of executions to display
   private static final int STAGE_LIMIT = 25;                  // Upper limit on the number of stages to display
 
+  // Fields of the jobs shown in the job history
+  private static final String JOB_HISTORY_FIELDS =
+      AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL;
+  private static final String JOB_GRAPH_FIELDS = Utils.commaSeparated(AppResult.TABLE.SCORE,
+      AppResult.TABLE.START_TIME, AppResult.TABLE.FINISH_TIME, AppResult.TABLE.TOTAL_DELAY,
+      AppResult.TABLE.RESOURCE_USAGE, AppResult.TABLE.WASTED_RESOURCES, AppResult.TABLE.FLOW_EXEC_ID,
+      AppResult.TABLE.FLOW_EXEC_URL);
+
   // Form and Rest parameters
   public static final String APP_ID = "id";
   public static final String FLOW_DEF_ID = "flow-def-id";
@@ -172,95 +190,58 @@ public class Application extends Controller {
     // Update statistics only after FETCH_DELAY
     
     if (now - _lastFetch > FETCH_DELAY) {
-      _numJobsAnalyzed = AppResult.find.where().gt(AppResult.TABLE.FINISH_TIME,last72Hours).findRowCount();
-      _numHadoopJava = AppResult.find.where()
-              .eq(AppResult.TABLE.JOB_TYPE, "HadoopJava")
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours).findRowCount();
-      _numSpark = AppResult.find.where()
-              .eq(AppResult.TABLE.JOB_TYPE, "Spark")
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours).findRowCount();
-      _numHive = AppResult.find.where()
-              .eq(AppResult.TABLE.JOB_TYPE, "Hive")
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours).findRowCount();
-      _numKafka = AppResult.find.where()
-              .eq(AppResult.TABLE.JOB_TYPE, "Kafka")
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours).findRowCount();
-      _numJobsCritical = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-              .findRowCount();
-      _numJobsCriticalHadoopJava = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "HadoopJava")
-              .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-              .findRowCount();
-      _numJobsCriticalSpark = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "Spark")
-              .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-              .findRowCount();
-      _numJobsCriticalHive = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "Hive")
-              .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-              .findRowCount();
-      _numJobsCriticalKafka = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "Kafka")
-              .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-              .findRowCount();
-      _numJobsSevereHadoopJava = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "HadoopJava")
-              .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-              .findRowCount();
-      _numJobsSevere = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-              .findRowCount();
-      _numJobsSevereSpark = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "Spark")
-              .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-              .findRowCount();
-      _numJobsSevereHive = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "Hive")
-              .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-              .findRowCount();
-      _numJobsSevereKafka = AppResult.find.where()
-              .gt(AppResult.TABLE.FINISH_TIME,last72Hours)
-              .eq(AppResult.TABLE.JOB_TYPE, "Kafka")
-              .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-              .findRowCount();
+      AppResultRollup.Counts counts = AppResultRollup.countSince(last72Hours);
+      _numJobsAnalyzed = counts.getCount();
+      _numHadoopJava = counts.getCount("HadoopJava");
+      _numSpark = counts.getCount("Spark");
+      _numHive = counts.getCount("Hive");
+      _numKafka = counts.getCount("Kafka");
+      _numJobsCritical = counts.getCount(Severity.CRITICAL);
+      _numJobsCriticalHadoopJava = counts.getCount("HadoopJava", Severity.CRITICAL);
+      _numJobsCriticalSpark = counts.getCount("Spark", Severity.CRITICAL);
+      _numJobsCriticalHive = counts.getCount("Hive", Severity.CRITICAL);
+      _numJobsCriticalKafka = counts.getCount("Kafka", Severity.CRITICAL);
+      _numJobsSevere = counts.getCount(Severity.SEVERE);
+      _numJobsSevereHadoopJava = counts.getCount("HadoopJava", Severity.SEVERE);
+      _numJobsSevereSpark = counts.getCount("Spark", Severity.SEVERE);
+      _numJobsSevereHive = counts.getCount("Hive", Severity.SEVERE);
+      _numJobsSevereKafka = counts.getCount("Kafka", Severity.SEVERE);
       _numJobExceptions =  _numJobsCritical + _numJobsSevere;
       _lastFetch = now;
       _rightNow = new SimpleDateFormat("yyyy.MM.dd HH.mm.ss").format(new Date());
     }
 
-    List<AppResult> good = AppResult.find.select(AppResult.getSearchFields())
-            .where()
-            .gt(AppResult.TABLE.FINISH_TIME,fifteenDaysAgo)
-            .ne(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-            .ne(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-            .order()
-            .desc(AppResult.TABLE.FINISH_TIME)
-            .setMaxRows(50)
-            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
-            .findList();
+    List<AppResult> good = RecentResultCache.instance()
+        .getRecent(EnumSet.of(Severity.NONE, Severity.LOW, Severity.MODERATE), fifteenDaysAgo, 50);
+    if (good == null) {
+      good = AppResult.find.select(AppResult.getSearchFields())
+              .where()
+              .gt(AppResult.TABLE.FINISH_TIME,fifteenDaysAgo)
+              .ne(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
+              .ne(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
+              .order()
+              .desc(AppResult.TABLE.FINISH_TIME)
+              .setMaxRows(50)
+              .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
+              .findList();
+    }
 
     // Fetch only required fields for jobs WITH EXCEPTIONS analysed in the last 24 hours up to a max of 50 jobs
-    List<AppResult> bad = AppResult.find.select(AppResult.getSearchFields())
-            .where()
-            .gt(AppResult.TABLE.FINISH_TIME, fifteenDaysAgo)
-            .ne(AppResult.TABLE.SEVERITY, Severity.NONE.getValue())
-            .ne(AppResult.TABLE.SEVERITY, Severity.LOW.getValue())
-            .ne(AppResult.TABLE.SEVERITY, Severity.MODERATE.getValue())
-            .order()
-            .desc(AppResult.TABLE.FINISH_TIME)
-            .setMaxRows(50)
-            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
-            .findList();
+    List<AppResult> bad = RecentResultCache.instance()
+        .getRecent(EnumSet.of(Severity.SEVERE, Severity.CRITICAL), fifteenDaysAgo, 50);
+    if (bad == null) {
+      bad = AppResult.find.select(AppResult.getSearchFields())
+              .where()
+              .gt(AppResult.TABLE.FINISH_TIME, fifteenDaysAgo)
+              .ne(AppResult.TABLE.SEVERITY, Severity.NONE.getValue())
+              .ne(AppResult.TABLE.SEVERITY, Severity.LOW.getValue())
+              .ne(AppResult.TABLE.SEVERITY, Severity.MODERATE.getValue())
+              .order()
+              .desc(AppResult.TABLE.FINISH_TIME)
+              .setMaxRows(50)
+              .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
+              .findList();
+    }
 
     // move MR Exceptions from good list to bad list
     List<AppResult> exceptions = new ArrayList<>();
@@ -424,7 +405,8 @@ public class Application extends Controller {
     int paginationBarStartIndex = paginationStats.getPaginationBarStartIndex();
 
     // Filter jobs by search parameters
-    Query<AppResult> query = generateSearchQuery(AppResult.getSearchFields(), getSearchParams());
+    Map<String, String> searchParams = getSearchParams();
+    Query<AppResult> query = generateSearchQuery(AppResult.getSearchFields(), searchParams);
     List<AppResult> results = query.setFirstRow((paginationBarStartIndex - 1) * pageLength)
         .setMaxRows((paginationStats.getPageBarLength() - 1) * pageLength + 1)
         .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
@@ -435,8 +417,12 @@ public class Application extends Controller {
     } else {
       List<AppResult> resultsToDisplay = results.subList((currentPage - paginationBarStartIndex) * pageLength,
               Math.min(results.size(), (currentPage - paginationBarStartIndex + 1) * pageLength));
+      // The count stops past SEARCH_COUNT_LIMIT, an exact count would read every matching row
+      int total = countSearchResults(searchParams, SEARCH_COUNT_LIMIT + 1);
+      String totalText = total > SEARCH_COUNT_LIMIT ? String.format("%,d+", SEARCH_COUNT_LIMIT)
+          : String.format("%,d", total);
       return ok(searchPage.render(paginationStats, searchResults.render(
-              String.format("Results: Showing %,d of %,d", resultsToDisplay.size(), query.findRowCount()), resultsToDisplay)));
+              String.format("Results: Showing %,d of %s", resultsToDisplay.size(), totalText), resultsToDisplay)));
     }
   }
 
@@ -491,8 +477,24 @@ public class Application extends Controller {
    * @return An sql expression on App Result
    */
   public static Query<AppResult> generateSearchQuery(String selectParams, Map<String, String> searchParams) {
-    if (searchParams == null || searchParams.isEmpty()) {
-      return AppResult.find.select(selectParams).order().desc(AppResult.TABLE.FINISH_TIME);
+    return generateSearchQuery(selectParams, searchParams, null);
+  }
+
+  /**
+   * Build SQL predicates for Search Query, keeping only the results that come after the cursor
+   *
+   * @param selectParams The fields to select from the table
+   * @param searchParams The fields to query on the table
+   * @param after The position of the last result of the previous page, or null for the first page
+   * @return An sql expression on App Result
+   */
+  public static Query<AppResult> generateSearchQuery(String selectParams, Map<String, String> searchParams,
+      SearchCursor after) {
+    if ((searchParams == null || searchParams.isEmpty()) && after == null) {
+      return AppResult.find.select(selectParams).orderBy(getSearchOrder(false));
+    }
+    if (searchParams == null) {
+      searchParams = Collections.emptyMap();
     }
     ExpressionList<AppResult> query = AppResult.find.select(selectParams).where();
 
@@ -553,12 +555,46 @@ public class Application extends Controller {
       }
     }
 
-    // If queried by start time then sort the results by start time.
-    if (Utils.isSet(startedTimeBegin) || Utils.isSet(startedTimeEnd)) {
-      return query.order().desc(AppResult.TABLE.START_TIME);
-    } else {
-      return query.order().desc(AppResult.TABLE.FINISH_TIME);
+    // Seek past the previous page, (time, id) < (cursor time, cursor id)
+    boolean byStartTime = isSortedByStartTime(searchParams);
+    if (after != null) {
+      String timeField = byStartTime ? AppResult.TABLE.START_TIME : AppResult.TABLE.FINISH_TIME;
+      query = query.le(timeField, after.getTime())
+          .or(Expr.lt(timeField, after.getTime()),
+              Expr.and(Expr.eq(timeField, after.getTime()), Expr.lt(AppResult.TABLE.ID, after.getId())));
     }
+
+    return query.orderBy(getSearchOrder(byStartTime));
+  }
+
+  /**
+   * If queried by start time then the results are sorted by start time, otherwise by finish time
+   *
+   * @param searchParams The fields to query on the table
+   * @return true if the search results are sorted by start time
+   */
+  public static boolean isSortedByStartTime(Map<String, String> searchParams) {
+    return searchParams != null
+        && (Utils.isSet(searchParams.get(STARTED_TIME_BEGIN)) || Utils.isSet(searchParams.get(STARTED_TIME_END)));
+  }
+
+  /**
+   * The id breaks the ties between results with the same time, so that a cursor designates a single position
+   */
+  private static String getSearchOrder(boolean byStartTime) {
+    return (byStartTime ? AppResult.TABLE.START_TIME : AppResult.TABLE.FINISH_TIME) + " desc, "
+        + AppResult.TABLE.ID + " desc";
+  }
+
+  /**
+   * Counts the results of a search without counting past maxCount, so that the cost is bounded on large result sets
+   *
+   * @param searchParams The fields to query on the table
+   * @param maxCount The count at which to stop
+   * @return The number of results, or maxCount if there are at least that many
+   */
+  public static int countSearchResults(Map<String, String> searchParams, int maxCount) {
+    return generateSearchQuery(AppResult.TABLE.ID, searchParams).setMaxRows(maxCount).findIds().size();
   }
 
   /**
@@ -837,31 +873,14 @@ public class Application extends Controller {
     }
     IdUrlPair jobDefPair = bestSchedulerInfoMatchGivenPartialId(partialJobDefId, AppResult.TABLE.JOB_DEF_ID);
 
-    List<AppResult> results;
-
-    if (graphType.equals("time") || graphType.equals("resources")) {
-      // we don't need APP_HEURISTIC_RESULT_DETAILS data to plot for time and resources
-      results = AppResult.find.select(
-          AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL)
-          .where()
-          .eq(AppResult.TABLE.JOB_DEF_ID, jobDefPair.getId())
-          .order()
-          .desc(AppResult.TABLE.FINISH_TIME)
-          .setMaxRows(JOB_HISTORY_LIMIT)
-          .findList();
-    } else {
-      // Fetch all job executions
-      results = AppResult.find.select(
-          AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL)
-          .where()
-          .eq(AppResult.TABLE.JOB_DEF_ID, jobDefPair.getId())
-          .order()
-          .desc(AppResult.TABLE.FINISH_TIME)
-          .setMaxRows(JOB_HISTORY_LIMIT)
-          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-          .findList();
-    }
+    // The heuristic results are only read for the executions that are displayed, see withHeuristicResults
+    List<AppResult> results = AppResult.find.select(JOB_HISTORY_FIELDS)
+        .where()
+        .eq(AppResult.TABLE.JOB_DEF_ID, jobDefPair.getId())
+        .order()
+        .desc(AppResult.TABLE.FINISH_TIME)
+        .setMaxRows(JOB_HISTORY_LIMIT)
+        .findList();
 
     for (AppResult result : results) {
       if (result.jobType.equals("Spark")) {
@@ -900,6 +919,9 @@ public class Application extends Controller {
     if (maxStages > STAGE_LIMIT) {
       maxStages = STAGE_LIMIT;
     }
+    if (graphType.equals("heuristics")) {
+      executionMap = withHeuristicResults(executionMap);
+    }
     if (version.equals(Version.NEW)) {
       if (graphType.equals("heuristics")) {
         return ok(jobHistoryPage.render(jobDefPair.getId(), graphType,
@@ -924,6 +946,48 @@ public class Application extends Controller {
     return notFound("Unable to find graph type: " + graphType);
   }
 
+  /**
+   * Reads the jobs of the executions again along with their heuristic results and details. Each level is read with
+   * batched IN (...) queries rather than one query per job or per heuristic result.
+   *
+   * @param executionMap The jobs of each execution
+   * @return The same executions, with jobs whose heuristic results are loaded
+   */
+  private static Map<IdUrlPair, List<AppResult>> withHeuristicResults(Map<IdUrlPair, List<AppResult>> executionMap) {
+    List<String> ids = new ArrayList<String>();
+    for (List<AppResult> jobs : executionMap.values()) {
+      for (AppResult job : jobs) {
+        ids.add(job.id);
+      }
+    }
+    if (ids.isEmpty()) {
+      return executionMap;
+    }
+
+    List<AppResult> loaded = AppResult.find.select(JOB_HISTORY_FIELDS)
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*", new FetchConfig().query(HEURISTIC_BATCH_SIZE))
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*",
+            new FetchConfig().query(HEURISTIC_BATCH_SIZE))
+        .where()
+        .in(AppResult.TABLE.ID, ids)
+        .findList();
+    Map<String, AppResult> loadedById = new HashMap<String, AppResult>();
+    for (AppResult job : loaded) {
+      loadedById.put(job.id, job);
+    }
+
+    Map<IdUrlPair, List<AppResult>> loadedExecutionMap = new LinkedHashMap<IdUrlPair, List<AppResult>>();
+    for (Map.Entry<IdUrlPair, List<AppResult>> entry : executionMap.entrySet()) {
+      List<AppResult> jobs = new ArrayList<AppResult>(entry.getValue().size());
+      for (AppResult job : entry.getValue()) {
+        AppResult loadedJob = loadedById.get(job.id);
+        jobs.add(loadedJob != null ? loadedJob : job);
+      }
+      loadedExecutionMap.put(entry.getKey(), jobs);
+    }
+    return loadedExecutionMap;
+  }
+
   /**
    * Returns the help based on the version
    *
@@ -1105,7 +1169,7 @@ public class Application extends Controller {
           .idEq(appId)
           .findUnique();
       if (result != null) {
-        return ok(Json.toJson(result));
+        return okJson(JsonChunks.ofValue(result));
       } else {
         return notFound("Unable to find record on id: " + appId);
       }
@@ -1120,7 +1184,7 @@ public class Application extends Controller {
       if (results.size() == 0) {
         return notFound("Unable to find record on flow execution: " + flowExecId);
       } else {
-        return ok(Json.toJson(results));
+        return okJson(JsonChunks.ofValues(results));
       }
     }
 
@@ -1142,10 +1206,18 @@ public class Application extends Controller {
     if (results.size() == 0) {
       return notFound("No records");
     } else {
-      return ok(Json.toJson(results));
+      return okJson(JsonChunks.ofValues(results));
     }
   }
 
+  /**
+   * Returns the chunks with the content type of the play.libs.Json results
+   */
+  private static Result okJson(JsonChunks chunks) {
+    response().setContentType("application/json; charset=utf-8");
+    return ok(chunks);
+  }
+
   /**
    * The Rest API for Compare Feature
    * E.g., localhost:8080/rest/compare?flow-exec-id1=abc&flow-exec-id2=xyz
@@ -1241,55 +1313,43 @@ public class Application extends Controller {
   public static Result restFlowGraphData(String flowDefId) {
     JsonArray datasets = new JsonArray();
     if (flowDefId == null || flowDefId.isEmpty()) {
-      return ok(new Gson().toJson(datasets));
+      return ok(JsonChunks.GSON.toJson(datasets));
     }
 
-    // Fetch available flow executions with latest JOB_HISTORY_LIMIT mr jobs.
-    List<AppResult> results = getRestFlowAppResults(flowDefId);
+    // Fetch the summaries of the latest MAX_HISTORY_LIMIT flow executions.
+    List<ExecutionHistory.FlowExecution> flowExecutions =
+        ExecutionHistory.getFlowExecutions(flowDefId, MAX_HISTORY_LIMIT, false);
 
-    if (results.size() == 0) {
+    if (flowExecutions.size() == 0) {
       logger.info("No results for Job url");
     }
-    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap =
-        ControllerUtil.limitHistoryResults(ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID), results.size(), MAX_HISTORY_LIMIT);
 
     // Compute the graph data starting from the earliest available execution to latest
-    List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
-    for (int i = keyList.size() - 1; i >= 0; i--) {
-      IdUrlPair flowExecPair = keyList.get(i);
-      int flowPerfScore = 0;
+    for (int i = flowExecutions.size() - 1; i >= 0; i--) {
+      ExecutionHistory.FlowExecution flowExecution = flowExecutions.get(i);
       JsonArray jobScores = new JsonArray();
-      List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
-      Map<IdUrlPair, List<AppResult>> jobDefIdToJobsMap = ControllerUtil.groupJobs(mrJobsList, ControllerUtil.GroupBy.JOB_DEFINITION_ID);
-
-      // Compute the execution records. Note that each entry in the jobDefIdToJobsMap will have at least one AppResult
-      for (IdUrlPair jobDefPair : jobDefIdToJobsMap.keySet()) {
-        // Compute job perf score
-        int jobPerfScore = 0;
-        for (AppResult job : jobDefIdToJobsMap.get(jobDefPair)) {
-          jobPerfScore += job.score;
-        }
 
+      // Compute the execution records, one per job definition
+      for (ExecutionHistory.JobExecution jobExecution : flowExecution.getJobs()) {
         // A job in jobscores list
         JsonObject jobScore = new JsonObject();
-        jobScore.addProperty("jobscore", jobPerfScore);
-        jobScore.addProperty("jobdefurl", jobDefPair.getUrl());
-        jobScore.addProperty("jobexecurl", jobDefIdToJobsMap.get(jobDefPair).get(0).jobExecUrl);
+        jobScore.addProperty("jobscore", jobExecution.getScore());
+        jobScore.addProperty("jobdefurl", jobExecution.getJobDefUrl());
+        jobScore.addProperty("jobexecurl", jobExecution.getJobExecUrl());
 
         jobScores.add(jobScore);
-        flowPerfScore += jobPerfScore;
       }
 
       // Execution record
       JsonObject dataset = new JsonObject();
-      dataset.addProperty("flowtime", mrJobsList.get(mrJobsList.size() - 1).finishTime);
-      dataset.addProperty("score", flowPerfScore);
+      dataset.addProperty("flowtime", flowExecution.getFinishTime());
+      dataset.addProperty("score", flowExecution.getScore());
       dataset.add("jobscores", jobScores);
 
       datasets.add(dataset);
     }
 
-    return ok(new Gson().toJson(datasets));
+    return ok(JsonChunks.GSON.toJson(datasets));
   }
 
   /**
@@ -1335,17 +1395,15 @@ public class Application extends Controller {
   public static Result restJobGraphData(String jobDefId) {
     JsonArray datasets = new JsonArray();
     if (jobDefId == null || jobDefId.isEmpty()) {
-      return ok(new Gson().toJson(datasets));
+      return ok(JsonChunks.GSON.toJson(datasets));
     }
 
-    // Fetch available flow executions with latest JOB_HISTORY_LIMIT mr jobs.
-    List<AppResult> results = getRestJobAppResults(jobDefId);
+    // Fetch the mr jobs of the latest MAX_HISTORY_LIMIT flow executions.
+    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap = getJobExecutionHistory(jobDefId);
 
-    if (results.size() == 0) {
+    if (flowExecIdToJobsMap.size() == 0) {
       logger.info("No results for Job url");
     }
-    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap =
-        ControllerUtil.limitHistoryResults(ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID), results.size(), MAX_HISTORY_LIMIT);
 
     // Compute the graph data starting from the earliest available execution to latest
     List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
@@ -1356,11 +1414,8 @@ public class Application extends Controller {
       List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
       for (AppResult appResult : flowExecIdToJobsMap.get(flowExecPair)) {
 
-        // Each MR job triggered by jobDefId for flowExecId
-        int mrPerfScore = 0;
-        for (AppHeuristicResult appHeuristicResult : appResult.yarnAppHeuristicResults) {
-          mrPerfScore += appHeuristicResult.score;
-        }
+        // Each MR job triggered by jobDefId for flowExecId, its score is the sum of its heuristic scores
+        int mrPerfScore = appResult.score;
 
         // A particular mr stage
         JsonObject stageScore = new JsonObject();
@@ -1380,7 +1435,7 @@ public class Application extends Controller {
       datasets.add(dataset);
     }
 
-    return ok(new Gson().toJson(datasets));
+    return ok(JsonChunks.GSON.toJson(datasets));
   }
 
   /**
@@ -1427,16 +1482,14 @@ public class Application extends Controller {
   public static Result restJobMetricsGraphData(String jobDefId) {
     JsonArray datasets = new JsonArray();
     if (jobDefId == null || jobDefId.isEmpty()) {
-      return ok(new Gson().toJson(datasets));
+      return ok(JsonChunks.GSON.toJson(datasets));
     }
 
-    List<AppResult> results = getRestJobAppResults(jobDefId);
+    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap = getJobExecutionHistory(jobDefId);
 
-    if (results.size() == 0) {
+    if (flowExecIdToJobsMap.size() == 0) {
       logger.info("No results for Job url");
     }
-    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap =
-        ControllerUtil.limitHistoryResults(ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID), results.size(), MAX_HISTORY_LIMIT);
 
     // Compute the graph data starting from the earliest available execution to latest
     List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
@@ -1452,12 +1505,8 @@ public class Application extends Controller {
 
       for (AppResult appResult : flowExecIdToJobsMap.get(flowExecPair)) {
 
-        // Each MR job triggered by jobDefId for flowExecId
-        int mrPerfScore = 0;
-
-        for (AppHeuristicResult appHeuristicResult : appResult.yarnAppHeuristicResults) {
-          mrPerfScore += appHeuristicResult.score;
-        }
+        // Each MR job triggered by jobDefId for flowExecId, its score is the sum of its heuristic scores
+        int mrPerfScore = appResult.score;
 
         // A particular mr stage
         JsonObject stageMetric = new JsonObject();
@@ -1485,7 +1534,7 @@ public class Application extends Controller {
       datasets.add(dataset);
     }
 
-    return ok(new Gson().toJson(datasets));
+    return ok(JsonChunks.GSON.toJson(datasets));
   }
 
   /**
@@ -1515,7 +1564,7 @@ public class Application extends Controller {
       Date end = tf.parse(endTime);
       Collection<AppResourceUsageData> result = getUserResourceUsage(start, end);
 
-      return ok(new Gson().toJson(result));
+      return ok(JsonChunks.GSON.toJson(result));
     }
     catch(ParseException ex) {
       return status(300,"Invalid datetime format : " + ex.getMessage());
@@ -1566,111 +1615,69 @@ public class Application extends Controller {
   public static Result restFlowMetricsGraphData(String flowDefId) {
     JsonArray datasets = new JsonArray();
     if (flowDefId == null || flowDefId.isEmpty()) {
-      return ok(new Gson().toJson(datasets));
+      return ok(JsonChunks.GSON.toJson(datasets));
     }
 
-    List<AppResult> results = getRestFlowAppResults(flowDefId);
+    // Fetch the summaries of the latest MAX_HISTORY_LIMIT flow executions.
+    List<ExecutionHistory.FlowExecution> flowExecutions =
+        ExecutionHistory.getFlowExecutions(flowDefId, MAX_HISTORY_LIMIT, true);
 
-    if (results.size() == 0) {
+    if (flowExecutions.size() == 0) {
       logger.info("No results for Job url");
     }
-    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap =
-        ControllerUtil.limitHistoryResults(ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID), results.size(), MAX_HISTORY_LIMIT);
 
     // Compute the graph data starting from the earliest available execution to latest
-    List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
-    for (int i = keyList.size() - 1; i >= 0; i--) {
-      IdUrlPair flowExecPair = keyList.get(i);
-      int flowPerfScore = 0;
+    for (int i = flowExecutions.size() - 1; i >= 0; i--) {
+      ExecutionHistory.FlowExecution flowExecution = flowExecutions.get(i);
       JsonArray jobScores = new JsonArray();
-      List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
-      Map<IdUrlPair, List<AppResult>> jobDefIdToJobsMap = ControllerUtil.groupJobs(mrJobsList, ControllerUtil.GroupBy.JOB_DEFINITION_ID);
-
-      long totalFlowMemoryUsed = 0;
-      long totalFlowMemoryWasted = 0;
-      long totalFlowDelay = 0;
-      long totalFlowRuntime = 0;
-      // Compute the execution records. Note that each entry in the jobDefIdToJobsMap will have at least one AppResult
-      for (IdUrlPair jobDefPair : jobDefIdToJobsMap.keySet()) {
-        // Compute job perf score
-        long totalJobMemoryUsed = 0;
-        long totalJobMemoryWasted = 0;
-        long totalJobDelay = 0;
-        long totalJobRuntime = 0;
-
-        totalJobRuntime = Utils.getTotalRuntime(jobDefIdToJobsMap.get(jobDefPair));
-        totalJobDelay = Utils.getTotalWaittime(jobDefIdToJobsMap.get(jobDefPair));
-
-        for (AppResult job : jobDefIdToJobsMap.get(jobDefPair)) {
-          totalJobMemoryUsed += job.resourceUsed;
-          totalJobMemoryWasted += job.resourceWasted;
-        }
 
+      // Compute the execution records, one per job definition
+      for (ExecutionHistory.JobExecution jobExecution : flowExecution.getJobs()) {
         // A job in jobscores list
         JsonObject jobScore = new JsonObject();
-        jobScore.addProperty("runtime", totalJobRuntime);
-        jobScore.addProperty("waittime", totalJobDelay);
-        jobScore.addProperty("resourceused", totalJobMemoryUsed);
-        jobScore.addProperty("resourcewasted", totalJobMemoryWasted);
-        jobScore.addProperty("jobdefurl", jobDefPair.getUrl());
-        jobScore.addProperty("jobexecurl", jobDefIdToJobsMap.get(jobDefPair).get(0).jobExecUrl);
+        jobScore.addProperty("runtime", jobExecution.getRuntime());
+        jobScore.addProperty("waittime", jobExecution.getWaittime());
+        jobScore.addProperty("resourceused", jobExecution.getResourceUsed());
+        jobScore.addProperty("resourcewasted", jobExecution.getResourceWasted());
+        jobScore.addProperty("jobdefurl", jobExecution.getJobDefUrl());
+        jobScore.addProperty("jobexecurl", jobExecution.getJobExecUrl());
 
         jobScores.add(jobScore);
-        totalFlowMemoryUsed += totalJobMemoryUsed;
-        totalFlowMemoryWasted += totalJobMemoryWasted;
       }
 
-      totalFlowDelay = Utils.getTotalWaittime(flowExecIdToJobsMap.get(flowExecPair));
-      totalFlowRuntime = Utils.getTotalRuntime(flowExecIdToJobsMap.get(flowExecPair));
-
       // Execution record
       JsonObject dataset = new JsonObject();
-      dataset.addProperty("flowtime", mrJobsList.get(mrJobsList.size() - 1).finishTime);
-      dataset.addProperty("runtime", totalFlowRuntime);
-      dataset.addProperty("waittime", totalFlowDelay);
-      dataset.addProperty("resourceused", totalFlowMemoryUsed);
-      dataset.addProperty("resourcewasted", totalFlowMemoryWasted);
+      dataset.addProperty("flowtime", flowExecution.getFinishTime());
+      dataset.addProperty("runtime", flowExecution.getRuntime());
+      dataset.addProperty("waittime", flowExecution.getWaittime());
+      dataset.addProperty("resourceused", flowExecution.getResourceUsed());
+      dataset.addProperty("resourcewasted", flowExecution.getResourceWasted());
       dataset.add("jobmetrics", jobScores);
 
       datasets.add(dataset);
     }
 
-    return ok(new Gson().toJson(datasets));
+    return ok(JsonChunks.GSON.toJson(datasets));
   }
 
   /**
-   * Returns a list of AppResults after quering the FLOW_EXEC_ID from the database
-   * @return The list of AppResults
+   * Returns the mr jobs of the job definition in its latest MAX_HISTORY_LIMIT flow executions, grouped by flow
+   * execution from the latest
    */
-  private static List<AppResult> getRestJobAppResults(String jobDefId) {
-    List<AppResult> results = AppResult.find.select(
-        AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL)
+  private static Map<IdUrlPair, List<AppResult>> getJobExecutionHistory(String jobDefId) {
+    List<String> flowExecIds = ExecutionHistory.getFlowExecIds(jobDefId, MAX_HISTORY_LIMIT);
+    if (flowExecIds.isEmpty()) {
+      return new LinkedHashMap<IdUrlPair, List<AppResult>>();
+    }
+    List<AppResult> results = AppResult.find.select(JOB_GRAPH_FIELDS)
         .where()
         .eq(AppResult.TABLE.JOB_DEF_ID, jobDefId)
+        .in(AppResult.TABLE.FLOW_EXEC_ID, flowExecIds)
         .order()
         .desc(AppResult.TABLE.FINISH_TIME)
-        .setMaxRows(JOB_HISTORY_LIMIT)
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .findList();
-
-    return results;
-  }
-
-  /**
-   * Returns the list of AppResults after quering the FLOW_DEF_ID from the database
-   * @return The list of AppResults
-   */
-  private static List<AppResult> getRestFlowAppResults(String flowDefId) {
-    // Fetch available flow executions with latest JOB_HISTORY_LIMIT mr jobs.
-    List<AppResult> results = AppResult.find.select("*")
-        .where()
-        .eq(AppResult.TABLE.FLOW_DEF_ID, flowDefId)
-        .order()
-        .desc(AppResult.TABLE.FINISH_TIME)
-        .setMaxRows(JOB_HISTORY_LIMIT)
         .findList();
 
-    return results;
+    return ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID);
   }
 
   private static class AppResourceUsageData {
@@ -1712,11 +1719,25 @@ public class Application extends Controller {
    *
    */
 
-  private static class UserSeverityAggregateDescendingSorter implements Comparator<UserSeverityAggregate> {
-    public int compare(UserSeverityAggregate usa1, UserSeverityAggregate usa2) {
-      return usa1.getSortIndex() > usa2.getSortIndex()?-1:1;
-    }
-  }
+  private static final String USER_SEVERITY_AGGREGATE_QUERY = "SELECT username, severity, COUNT(*) AS job_count,"
+      + " MAX(start_time) AS start_time, MAX(finish_time) AS finish_time FROM " + AppResult.TABLE.TABLE_NAME
+      + " WHERE start_time >= :startTime AND finish_time < :endTime"
+      + " AND severity >= :startSeverity AND severity <= :endSeverity";
+
+  // Descending count, then by user, then descending severity
+  private static final Comparator<UserSeverityAggregate> USER_SEVERITY_AGGREGATE_ORDER =
+      new Comparator<UserSeverityAggregate>() {
+        public int compare(UserSeverityAggregate usa1, UserSeverityAggregate usa2) {
+          if (usa1.getCount() != usa2.getCount()) {
+            return usa1.getCount() > usa2.getCount() ? -1 : 1;
+          }
+          int cmp = usa1.getUsername().compareTo(usa2.getUsername());
+          if (cmp != 0) {
+            return cmp;
+          }
+          return usa2.getSeverity().getValue() - usa1.getSeverity().getValue();
+        }
+      };
 
   public static List<UserSeverityAggregate> getUserSeverityAggregate(Long startTime, Long endTime, int startSeverity, int endSeverity, String userName, int topN, String jobType, String taskName) {
     List<UserSeverityAggregate> uniqueAlertables = new ArrayList<>();
@@ -1764,157 +1785,85 @@ public class Application extends Controller {
     String job_type = (jobType == null) ? "" : jobType.trim();
     String name = (taskName == null) ? "" : taskName.trim();
 
-    // get AppResult list of users with errors
-    List<AppResult> alertables;
     String usrName = (userName == null) ? "" : userName.trim();
     if (usrName.equals("!TEST!")) {
-        alertables = new ArrayList<>(6);
-        AppResult test = new AppResult();
-        test.username = "testuser1";
-        test.severity = Severity.CRITICAL;
-        test.startTime = now - 60;
-        test.finishTime = now;
-        alertables.add(test);
-        alertables.add(test);
-        alertables.add(test);
-        test.username = "testuser2";
-        test.severity = Severity.CRITICAL;
-        alertables.add(test);
-        alertables.add(test);
-        test.username = "testuser1";
-        test.severity = Severity.SEVERE;
-        alertables.add(test);
-    } else {
-      if (usrName.isEmpty()) {
-        if (job_type.isEmpty()) {
-          if (name.isEmpty()) {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .findList();
-          } else {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.NAME, name)
-                    .findList();
-          }
-        } else {
-          if (name.isEmpty()) {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.JOB_TYPE, job_type)
-                    .findList();
-          } else {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.JOB_TYPE, job_type)
-                    .eq(AppResult.TABLE.NAME, name)
-                    .findList();
-          }
-        }
-      } else {
-        if (job_type.isEmpty()) {
-          if (name.isEmpty()) {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.USERNAME, usrName)
-                    .findList();
-          } else {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.NAME, name)
-                    .eq(AppResult.TABLE.USERNAME, usrName)
-                    .findList();
-          }
-        } else {
-          if (name.isEmpty()) {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.JOB_TYPE, job_type)
-                    .eq(AppResult.TABLE.USERNAME, usrName)
-                    .findList();
-          } else {
-            alertables = AppResult.find.select(AppResult.getSearchFields())
-                    .where()
-                    .ge(AppResult.TABLE.START_TIME, startTime)
-                    .lt(AppResult.TABLE.FINISH_TIME, endTime)
-                    .ge(AppResult.TABLE.SEVERITY, startSeverity)
-                    .le(AppResult.TABLE.SEVERITY, endSeverity)
-                    .eq(AppResult.TABLE.JOB_TYPE, job_type)
-                    .eq(AppResult.TABLE.NAME, name)
-                    .eq(AppResult.TABLE.USERNAME, usrName)
-                    .findList();
-          }
-        }
-      }
-    }
-    // create aggregate of error counts by username by severity
-    int p = 0;
-    int s;
-    int maxsize = alertables.size();
-    if (maxsize > 0) {
-      for (AppResult row : alertables) {
-        boolean found = false;
-        s = uniqueAlertables.size();
-        for (int i = 0; i < s ; i++) {
-          if (uniqueAlertables.get(i).getUsername().equals(row.username) && uniqueAlertables.get(i).getSeverity().getValue() == row.severity.getValue()) {
-            found = true;
-            p = i;
-            break;
-          }
-        }
-        UserSeverityAggregate usa = new UserSeverityAggregate();
-        if (!found) {
-          usa.set(row.username, row.severity, 1, row.startTime, row.finishTime);
-          uniqueAlertables.add(usa);
-        } else {
-          usa.set(uniqueAlertables.get(p).getUsername(),
-                  uniqueAlertables.get(p).getSeverity(),
-                  uniqueAlertables.get(p).getCount() + 1,
-                  Math.max(uniqueAlertables.get(p).getStartTimeLong(), row.startTime),
-                  Math.max(uniqueAlertables.get(p).getFinishTimeLong(),row.finishTime));
-          uniqueAlertables.set(p, usa);
-        }
-      }
+      List<AppResult> alertables = new ArrayList<>(6);
+      AppResult test = new AppResult();
+      test.username = "testuser1";
+      test.severity = Severity.CRITICAL;
+      test.startTime = now - 60;
+      test.finishTime = now;
+      alertables.add(test);
+      alertables.add(test);
+      alertables.add(test);
+      test.username = "testuser2";
+      test.severity = Severity.CRITICAL;
+      alertables.add(test);
+      alertables.add(test);
+      test.username = "testuser1";
+      test.severity = Severity.SEVERE;
+      alertables.add(test);
+      return aggregateUserSeverities(alertables, topN);
+    }
+
+    // count the errors by username by severity in the database, only the top N rows are returned
+    StringBuilder sql = new StringBuilder(USER_SEVERITY_AGGREGATE_QUERY);
+    if (!job_type.isEmpty()) {
+      sql.append(" AND job_type = :jobType");
+    }
+    if (!name.isEmpty()) {
+      sql.append(" AND name = :name");
+    }
+    if (!usrName.isEmpty()) {
+      sql.append(" AND username = :username");
+    }
+    sql.append(" GROUP BY username, severity ORDER BY job_count DESC, username, severity DESC");
+
+    SqlQuery query = Ebean.createSqlQuery(sql.toString())
+        .setParameter("startTime", startTime)
+        .setParameter("endTime", endTime)
+        .setParameter("startSeverity", startSeverity)
+        .setParameter("endSeverity", endSeverity);
+    if (!job_type.isEmpty()) {
+      query.setParameter("jobType", job_type);
+    }
+    if (!name.isEmpty()) {
+      query.setParameter("name", name);
+    }
+    if (!usrName.isEmpty()) {
+      query.setParameter("username", usrName);
+    }
+    query.setMaxRows(topN);
+
+    for (SqlRow row : query.findList()) {
+      UserSeverityAggregate usa = new UserSeverityAggregate();
+      usa.set(row.getString("username"), Severity.byValue(row.getInteger("severity")), row.getInteger("job_count"),
+          row.getLong("start_time"), row.getLong("finish_time"));
+      uniqueAlertables.add(usa);
     }
-    // sort aggregate error list by descending count by user by descending severity
-    Collections.sort(uniqueAlertables, new UserSeverityAggregateDescendingSorter());
-    // keep only top N
-    s = uniqueAlertables.size() - 1;
-    for (int i = s; i >= 0; i--) {
-      if (i < topN) {
-        break;
+    return uniqueAlertables;
+  }
+
+  /**
+   * Aggregates the results by username by severity in memory, in the same order as the aggregate query
+   */
+  private static List<UserSeverityAggregate> aggregateUserSeverities(List<AppResult> alertables, int topN) {
+    Map<String, UserSeverityAggregate> aggregates = new HashMap<String, UserSeverityAggregate>();
+    for (AppResult row : alertables) {
+      String key = row.username + "\t" + row.severity.getValue();
+      UserSeverityAggregate usa = aggregates.get(key);
+      if (usa == null) {
+        usa = new UserSeverityAggregate();
+        usa.set(row.username, row.severity, 1, row.startTime, row.finishTime);
+        aggregates.put(key, usa);
+      } else {
+        usa.set(usa.getUsername(), usa.getSeverity(), usa.getCount() + 1,
+            Math.max(usa.getStartTimeLong(), row.startTime), Math.max(usa.getFinishTimeLong(), row.finishTime));
       }
-      uniqueAlertables.remove(i);
     }
-    return uniqueAlertables;
+    List<UserSeverityAggregate> uniqueAlertables = new ArrayList<UserSeverityAggregate>(aggregates.values());
+    Collections.sort(uniqueAlertables, USER_SEVERITY_AGGREGATE_ORDER);
+    return uniqueAlertables.size() > topN ? uniqueAlertables.subList(0, topN) : uniqueAlertables;
   }
 
   private static final String[] HEADERS_TO_TRY = {
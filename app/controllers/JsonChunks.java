@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import org.apache.log4j.Logger;
+import play.mvc.Results;
+
+
+/**
+ * A json document written to a chunked response while it is being produced.
+ *
+ * The document goes through a Writer that sends a chunk each time CHUNK_SIZE characters are buffered, so the first
+ * results reach the client before the last ones are read, and the whole document is never held as one string. The
+ * status is sent before the document is written and cannot change, so a failure is logged and the document ends with
+ * the buffered characters followed by FAILURE_MARKER. The marker starts with a line break, which is not allowed inside
+ * a json string, followed by a character that cannot start a json value, so wherever the document was cut the client
+ * fails to parse it instead of reading a truncated document that happens to be valid.
+ *
+ * The chunks are produced outside of the request, everything taken from the request must be read beforehand.
+ */
+public abstract class JsonChunks extends Results.StringChunks {
+  private static final Logger logger = Logger.getLogger(JsonChunks.class);
+
+  static final int CHUNK_SIZE = 8 * 1024;
+  static final String FAILURE_MARKER = "\n!Failed to write the response\n";
+
+  // Gson and ObjectMapper are thread safe and cache their serializers, so one of each is shared by all the requests
+  public static final Gson GSON = new Gson();
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Override
+  public void onReady(Results.Chunks.Out<String> out) {
+    ChunkWriter writer = new ChunkWriter(out);
+    try {
+      write(writer);
+      writer.close();
+    } catch (IOException | RuntimeException e) {
+      logger.error("Failed to write the json response", e);
+      writer.fail();
+    }
+  }
+
+  /**
+   * Writes the document. The writer must not be closed.
+   *
+   * @param writer the writer sending the chunks
+   * @throws IOException if the document could not be written
+   */
+  protected abstract void write(Writer writer) throws IOException;
+
+  /**
+   * Returns a json writer over the chunks that escapes and skips nulls like Gson.toJson does
+   */
+  public static JsonWriter newJsonWriter(Writer writer) {
+    JsonWriter jsonWriter = new JsonWriter(writer);
+    jsonWriter.setHtmlSafe(true);
+    jsonWriter.setSerializeNulls(false);
+    return jsonWriter;
+  }
+
+  /**
+   * Returns the chunks of an object serialized like play.libs.Json does
+   */
+  public static JsonChunks ofValue(final Object value) {
+    return new JsonChunks() {
+      @Override
+      protected void write(Writer writer) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(writer);
+        MAPPER.writeValue(generator, value);
+        generator.flush();
+      }
+    };
+  }
+
+  /**
+   * Returns the chunks of a json array of objects serialized like play.libs.Json does, each one is serialized only
+   * when the previous ones are written
+   */
+  public static JsonChunks ofValues(final List<?> values) {
+    return new JsonChunks() {
+      @Override
+      protected void write(Writer writer) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(writer);
+        generator.writeStartArray();
+        for (Object value : values) {
+          MAPPER.writeValue(generator, value);
+        }
+        generator.writeEndArray();
+        generator.flush();
+      }
+    };
+  }
+
+  /**
+   * Buffers the characters and sends them as a chunk once CHUNK_SIZE are buffered. Flushing does not send a partial
+   * chunk, the rest is sent when the writer is closed.
+   */
+  static final class ChunkWriter extends Writer {
+    private final Results.Chunks.Out<String> _out;
+    private final StringBuilder _buffer = new StringBuilder(CHUNK_SIZE);
+    private boolean _closed = false;
+
+    ChunkWriter(Results.Chunks.Out<String> out) {
+      _out = out;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+      if (_closed) {
+        throw new IOException("The response is already closed");
+      }
+      _buffer.append(chars, offset, length);
+      if (_buffer.length() >= CHUNK_SIZE) {
+        sendBuffer();
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      if (_closed) {
+        return;
+      }
+      _closed = true;
+      try {
+        sendBuffer();
+      } finally {
+        _out.close();
+      }
+    }
+
+    /**
+     * Sends the buffered characters and FAILURE_MARKER, then closes the response
+     */
+    void fail() {
+      if (_closed) {
+        return;
+      }
+      _closed = true;
+      try {
+        sendBuffer();
+        _out.write(FAILURE_MARKER);
+      } finally {
+        _out.close();
+      }
+    }
+
+    private void sendBuffer() {
+      if (_buffer.length() > 0) {
+        _out.write(_buffer.toString());
+        _buffer.setLength(0);
+      }
+    }
+  }
+}
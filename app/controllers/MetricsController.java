@@ -25,11 +25,14 @@ import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.codahale.metrics.health.jvm.ThreadDeadlockHealthCheck;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
+import com.linkedin.drelephant.analysis.AnalysisPriority;
 import com.linkedin.drelephant.analysis.AnalyticJob;
+import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.metrics.CustomGarbageCollectorMetricSet;
+import com.linkedin.drelephant.persistence.AppResultRollup;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 
-import models.AppResult;
 import play.Configuration;
 import play.libs.Json;
 import play.mvc.Controller;
@@ -59,10 +62,17 @@ public class MetricsController extends Controller {
   private static HealthCheckRegistry _healthCheckRegistry = null;
 
   private static int _queueSize = -1;
+  private static final int[] _queueSizeByPriority = new int[AnalysisPriority.values().length];
   private static int _retryQueueSize = -1;
+  private static int _taskFetchParallelism = -1;
+  private static int _jobHistoryRequestLimit = -1;
   private static Meter _skippedJobs;
   private static Meter _processedJobs;
   private static Histogram _jobProcessingTime;
+  private static Histogram _jobHistoryRequestsPerJob;
+  private static Histogram _resultBatchSize;
+  private static Meter _unsavedResults;
+  private static Meter _spilledResults;
 
   /**
    * Initializer method for the metrics registry. Call this method before registering
@@ -88,12 +98,25 @@ public class MetricsController extends Controller {
     _skippedJobs = _metricRegistry.meter(name(className, "skippedJobs", "count"));
     _processedJobs = _metricRegistry.meter(name(className, "processedJobs", "count"));
     _jobProcessingTime = _metricRegistry.histogram(name(className, "jobProcessingTime", "ms"));
+    _jobHistoryRequestsPerJob = _metricRegistry.histogram(name(className, "jobHistoryRequestsPerJob", "count"));
+    _resultBatchSize = _metricRegistry.histogram(name(className, "resultBatch", "size"));
+    _unsavedResults = _metricRegistry.meter(name(className, "unsavedResults", "count"));
+    _spilledResults = _metricRegistry.meter(name(className, "spilledResults", "count"));
     _metricRegistry.register(name(className, "jobQueue", "size"), new Gauge<Integer>() {
       @Override
       public Integer getValue() {
         return _queueSize;
       }
     });
+    for (final AnalysisPriority priority : AnalysisPriority.values()) {
+      String gaugeName = name(className, "jobQueue", priority.name().toLowerCase(), "size");
+      _metricRegistry.register(gaugeName, new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return _queueSizeByPriority[priority.ordinal()];
+        }
+      });
+    }
     _metricRegistry.register(name(className, "lastDayJobs", "count"), new Gauge<Integer>() {
       private static final long DAY = 24 * 60 * 60 * 1000;
       private static final long UPDATE_DELAY = 60 * 1000;
@@ -105,9 +128,7 @@ public class MetricsController extends Controller {
       public Integer getValue() {
         long now = System.currentTimeMillis();
         if (now - _lastUpdate > UPDATE_DELAY) {
-          _count = AppResult.find.where()
-                  .gt(AppResult.TABLE.FINISH_TIME, now - DAY)
-                  .findRowCount();
+          _count = AppResultRollup.countSince(now - DAY).getCount();
           _lastUpdate = now;
         }
         return _count;
@@ -119,6 +140,18 @@ public class MetricsController extends Controller {
         return _retryQueueSize;
       }
     });
+    _metricRegistry.register(name(className, "taskFetchParallelism", "size"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return _taskFetchParallelism;
+      }
+    });
+    _metricRegistry.register(name(className, "jobHistoryRequestLimit", "size"), new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return _jobHistoryRequestLimit;
+      }
+    });
     _metricRegistry.registerAll(new CustomGarbageCollectorMetricSet());
     _metricRegistry.registerAll(new MemoryUsageGaugeSet());
 
@@ -164,6 +197,15 @@ public class MetricsController extends Controller {
     _queueSize = size;
   }
 
+  /**
+   * Set the number of jobs of a priority class waiting in the job queue in the metric registry.
+   * @param priority
+   * @param size
+   */
+  public static void setQueueSize(AnalysisPriority priority, int size) {
+    _queueSizeByPriority[priority.ordinal()] = size;
+  }
+
   /**
    * Set the retry job queue size in the metric registry.
    * @param retryQueueSize
@@ -172,6 +214,22 @@ public class MetricsController extends Controller {
     _retryQueueSize = retryQueueSize;
   }
 
+  /**
+   * Set the number of concurrent task detail requests allowed per job in the metric registry.
+   * @param taskFetchParallelism
+   */
+  public static void setTaskFetchParallelism(int taskFetchParallelism) {
+    _taskFetchParallelism = taskFetchParallelism;
+  }
+
+  /**
+   * Set the maximum number of in-flight requests to the job history server in the metric registry.
+   * @param jobHistoryRequestLimit
+   */
+  public static void setJobHistoryRequestLimit(int jobHistoryRequestLimit) {
+    _jobHistoryRequestLimit = jobHistoryRequestLimit;
+  }
+
   /**
    * Increments the meter for keeping track of processed jobs in metrics registry.
    */
@@ -191,6 +249,57 @@ public class MetricsController extends Controller {
     }
   }
 
+  /**
+   * Sets the number of requests sent to the job history server to fetch a single job.
+   * @param requestCount
+   */
+  public static void setJobHistoryRequestsPerJob(int requestCount) {
+    if(_jobHistoryRequestsPerJob != null) {
+      _jobHistoryRequestsPerJob.update(requestCount);
+    }
+  }
+
+  /**
+   * Sets the number of results written to the database in one batch.
+   * @param batchSize
+   */
+  public static void setResultBatchSize(int batchSize) {
+    if(_resultBatchSize != null) {
+      _resultBatchSize.update(batchSize);
+    }
+  }
+
+  /**
+   * A meter for marking results which could not be saved to the database.
+   */
+  public static void markUnsavedResult() {
+    if(_unsavedResults != null) {
+      _unsavedResults.mark();
+    }
+  }
+
+  /**
+   * A meter for marking results written to the local spill file instead of the database.
+   * @param count
+   */
+  public static void markSpilledResults(int count) {
+    if(_spilledResults != null) {
+      _spilledResults.mark(count);
+    }
+  }
+
+  /**
+   * Records the time taken by a heuristic to analyze a job, in a timer per heuristic class.
+   * @param heuristic
+   * @param processingTimeNanos
+   */
+  public static void setHeuristicProcessingTime(Heuristic heuristic, long processingTimeNanos) {
+    if(_metricRegistry != null) {
+      String timerName = name(Heuristic.class.getSimpleName(), heuristic.getClass().getSimpleName(), "processingTime");
+      _metricRegistry.timer(timerName).update(processingTimeNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
   /**
    * A meter for marking skipped jobs.
    * Jobs which doesn't have any data or which exceeds the set number of
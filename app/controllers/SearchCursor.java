@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package controllers;
+
+import java.nio.charset.StandardCharsets;
+import models.AppResult;
+import org.apache.commons.codec.binary.Base64;
+
+
+/**
+ * The position of the last result of a search page, from which the next page is read.
+ *
+ * Search results are ordered by descending finish time, or start time when searched by start time, then by
+ * descending id. The next page is read from the index entries that come after the cursor instead of skipping the
+ * results of all the previous pages. To clients the cursor is an opaque url-safe string.
+ */
+public class SearchCursor {
+  private static final String SEPARATOR = ":";
+
+  private final long _time;
+  private final String _id;
+
+  /**
+   * @param time The sort time of the last result, its finish or start time
+   * @param id The id of the last result
+   */
+  public SearchCursor(long time, String id) {
+    _time = time;
+    _id = id;
+  }
+
+  /**
+   * Returns the cursor after the given result
+   *
+   * @param result The last result of the page
+   * @param byStartTime Whether the results are ordered by start time rather than finish time
+   */
+  public static SearchCursor after(AppResult result, boolean byStartTime) {
+    return new SearchCursor(byStartTime ? result.startTime : result.finishTime, result.id);
+  }
+
+  /**
+   * Decodes a cursor sent back by a client
+   *
+   * @param cursor The encoded cursor
+   * @return The cursor, or null if it is not a valid cursor
+   */
+  public static SearchCursor decode(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    String decoded = new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8);
+    int separator = decoded.indexOf(SEPARATOR);
+    if (separator <= 0 || separator == decoded.length() - 1) {
+      return null;
+    }
+    try {
+      return new SearchCursor(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the cursor as an opaque url-safe string
+   */
+  public String encode() {
+    return Base64.encodeBase64URLSafeString((_time + SEPARATOR + _id).getBytes(StandardCharsets.UTF_8));
+  }
+
+  public long getTime() {
+    return _time;
+  }
+
+  public String getId() {
+    return _id;
+  }
+}
@@ -18,17 +18,26 @@ package controllers.api.v1;
 
 import com.avaje.ebean.Query;
 import com.google.common.collect.Lists;
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.linkedin.drelephant.ElephantContext;
 import com.linkedin.drelephant.analysis.ApplicationType;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.JobType;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.AppResultRollup;
+import com.linkedin.drelephant.persistence.HeuristicResultProjection;
+import com.linkedin.drelephant.persistence.HeuristicResultProjection.HeuristicDetailView;
+import com.linkedin.drelephant.persistence.HeuristicResultProjection.HeuristicResultView;
+import com.linkedin.drelephant.persistence.RecentResultCache;
 import com.linkedin.drelephant.util.Utils;
 import controllers.ControllerUtil;
 import controllers.IdUrlPair;
+import controllers.JsonChunks;
+import controllers.SearchCursor;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -37,7 +46,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import models.AppHeuristicResult;
-import models.AppHeuristicResultDetails;
 import models.AppResult;
 import org.apache.log4j.Logger;
 import play.data.DynamicForm;
@@ -65,6 +73,10 @@ public class Web extends Controller {
   private static final int SEARCH_DEFAULT_PAGE_OFFSET = 0;
   private static final int SEARCH_DEFAULT_PAGE_LIMIT = 25;
   private static final int SEARCH_APPLICATION_MAX_OFFSET = 500;
+  private static final int SEARCH_STREAM_PAGE_SIZE = 100;
+  private static final String SEARCH_CURSOR = "cursor";
+  private static final String SEARCH_COUNT = "count";
+  private static final String SEARCH_COUNT_APPROXIMATE = "approximate";
 
   private static long _lastFetch = 0;
   private static int _numJobsAnalyzed = 0;
@@ -84,27 +96,13 @@ public class Web extends Controller {
 
     //Update statistics only after FETCH_DELAY
     if (now - _lastFetch > FETCH_DELAY) {
-      _numJobsAnalyzed = AppResult.find.where().gt(AppResult.TABLE.FINISH_TIME, finishDate).findRowCount();
-      _numJobsCritical = AppResult.find.where()
-        .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-        .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-        .findRowCount();
-      _numJobsSevere = AppResult.find.where()
-        .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-        .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-        .findRowCount();
-      _numJobsModerate = AppResult.find.where()
-        .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-        .eq(AppResult.TABLE.SEVERITY, Severity.MODERATE.getValue())
-        .findRowCount();
-      _numJobsLow = AppResult.find.where()
-        .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-        .eq(AppResult.TABLE.SEVERITY, Severity.LOW.getValue())
-        .findRowCount();
-      _numJobsNone = AppResult.find.where()
-        .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-        .eq(AppResult.TABLE.SEVERITY, Severity.NONE.getValue())
-        .findRowCount();
+      AppResultRollup.Counts counts = AppResultRollup.countSince(finishDate);
+      _numJobsAnalyzed = counts.getCount();
+      _numJobsCritical = counts.getCount(Severity.CRITICAL);
+      _numJobsSevere = counts.getCount(Severity.SEVERE);
+      _numJobsModerate = counts.getCount(Severity.MODERATE);
+      _numJobsLow = counts.getCount(Severity.LOW);
+      _numJobsNone = counts.getCount(Severity.NONE);
       _lastFetch = now;
     }
 
@@ -119,7 +117,7 @@ public class Web extends Controller {
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.DASHBOARD_SUMMARIES, dashboard);
 
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
 
@@ -130,6 +128,10 @@ public class Web extends Controller {
    * @return The list of Applications that should for the given username limit by maxApplications
    */
   private static List<AppResult> getApplications(String username, int maxApplications) {
+    List<AppResult> cachedResults = RecentResultCache.instance().getRecent(username, false, maxApplications);
+    if (cachedResults != null) {
+      return cachedResults;
+    }
     List<AppResult> results = AppResult.find.select("*").where().eq(AppResult.TABLE.USERNAME, username).order()
         .desc(AppResult.TABLE.FINISH_TIME).setMaxRows(maxApplications).findList();
     return results;
@@ -141,6 +143,10 @@ public class Web extends Controller {
    * @return The list of Applications limit by maxApplications
    */
   private static List<AppResult> getApplications(int maxApplications) {
+    List<AppResult> cachedResults = RecentResultCache.instance().getRecent(null, false, maxApplications);
+    if (cachedResults != null) {
+      return cachedResults;
+    }
     List<AppResult> results =
         AppResult.find.select("*").order().desc(AppResult.TABLE.FINISH_TIME).setMaxRows(maxApplications).findList();
     return results;
@@ -153,6 +159,10 @@ public class Web extends Controller {
    * @return The list of Applications scheduled by a scheduler that should be fetched for the given username limit by maxApplications
    */
   private static List<AppResult> getSchedulerApplications(String username, int maxApplications) {
+    List<AppResult> cachedResults = RecentResultCache.instance().getRecent(username, true, maxApplications);
+    if (cachedResults != null) {
+      return cachedResults;
+    }
     List<AppResult> results =
         AppResult.find.select("*").where().eq(AppResult.TABLE.USERNAME, username).ne(AppResult.TABLE.FLOW_EXEC_ID, null)
             .ne(AppResult.TABLE.FLOW_EXEC_ID, "").order().desc(AppResult.TABLE.FINISH_TIME).setMaxRows(maxApplications)
@@ -166,6 +176,10 @@ public class Web extends Controller {
    * @return The list of Applications scheduled by a scheduler limit by maxApplications
    */
   private static List<AppResult> getSchedulerApplications(int maxApplications) {
+    List<AppResult> cachedResults = RecentResultCache.instance().getRecent(null, true, maxApplications);
+    if (cachedResults != null) {
+      return cachedResults;
+    }
     List<AppResult> results =
         AppResult.find.select("*").where().ne(AppResult.TABLE.FLOW_EXEC_ID, null).ne(AppResult.TABLE.FLOW_EXEC_ID, "")
             .order().desc(AppResult.TABLE.FINISH_TIME).setMaxRows(maxApplications).findList();
@@ -178,6 +192,10 @@ public class Web extends Controller {
    * @return The list of AppResult filtered by flow execution id
    */
   private static List<AppResult> getRestFlowResultsFromFlowExecutionId(String flowExecId) {
+    List<AppResult> cachedResults = RecentResultCache.instance().getFlowExecution(flowExecId);
+    if (cachedResults != null) {
+      return cachedResults;
+    }
     List<AppResult> results = AppResult.find.select("*").where().eq(AppResult.TABLE.FLOW_EXEC_ID, flowExecId).order()
         .desc(AppResult.TABLE.FINISH_TIME).findList();
     return results;
@@ -193,8 +211,7 @@ public class Web extends Controller {
   private static List<AppResult> getRestJobResultsFromJobExecutionId(String jobExecId) {
     List<AppResult> results =
         AppResult.find.select(AppResult.getSearchFields()).where().eq(AppResult.TABLE.JOB_EXEC_ID, jobExecId).order()
-            .desc(AppResult.TABLE.FINISH_TIME)
-            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields()).findList();
+            .desc(AppResult.TABLE.FINISH_TIME).findList();
     return results;
   }
 
@@ -204,12 +221,25 @@ public class Web extends Controller {
    * @return The AppResult for the given application Id
    */
   private static AppResult getAppResultFromApplicationId(String applicationId) {
-    AppResult result = AppResult.find.select("*").fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-        .where().idEq(applicationId).order().desc(AppResult.TABLE.FINISH_TIME).findUnique();
+    AppResult result = AppResult.find.select("*").where().idEq(applicationId).findUnique();
     return result;
   }
 
+  /**
+   * Returns the heuristic results of the applications, read with one query per level
+   * @param results The applications
+   * @param withDetails Whether the heuristic result details are needed
+   * @return The heuristic results keyed by application id
+   */
+  private static Map<String, List<HeuristicResultView>> getHeuristicResults(List<AppResult> results,
+      boolean withDetails) {
+    List<String> appIds = new ArrayList<String>(results.size());
+    for (AppResult result : results) {
+      appIds.add(result.id);
+    }
+    return HeuristicResultProjection.load(appIds, withDetails);
+  }
+
   /**
    * This method returns the json object for the application-summaries based on the username
    * @param username The username for which application-summaries json must be returned
@@ -323,7 +353,7 @@ public class Web extends Controller {
 
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.APPLICATION_SUMMARIES, sortedApplicationSummaryArray);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
@@ -465,7 +495,7 @@ public class Web extends Controller {
 
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.JOB_SUMMARIES, sortedJobSummaryArray);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
@@ -601,7 +631,7 @@ public class Web extends Controller {
     JsonArray sortedWorkflowSummaryArray = getSortedJsonArrayByFinishTime(workflowSummaryArray);
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.WORKFLOW_SUMMARIES, sortedWorkflowSummaryArray);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
@@ -660,7 +690,7 @@ public class Web extends Controller {
     if (flowId==null || flowId.isEmpty()) {
       JsonObject parent = new JsonObject();
       parent.add(JsonKeys.WORKFLOWS, new JsonObject());
-      return notFound(new Gson().toJson(parent));
+      return notFound(JsonChunks.GSON.toJson(parent));
     }
 
     JsonArray jobSeverityArray = new JsonArray();
@@ -686,7 +716,7 @@ public class Web extends Controller {
     if (results.isEmpty()) {
       JsonObject parent = new JsonObject();
       parent.add(JsonKeys.WORKFLOWS, data);
-      return notFound(new Gson().toJson(parent));
+      return notFound(JsonChunks.GSON.toJson(parent));
     }
 
     Map<IdUrlPair, List<AppResult>> jobExecIdToJobsMap =
@@ -818,7 +848,7 @@ public class Web extends Controller {
     data.add(JsonKeys.JOBS_SEVERITY, jobSeverityArray);
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.WORKFLOWS, data);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
@@ -919,7 +949,7 @@ public class Web extends Controller {
     if (jobid==null || jobid.isEmpty()) {
       JsonObject parent = new JsonObject();
       parent.add(JsonKeys.JOBS, new JsonObject());
-      return notFound(new Gson().toJson(parent));
+      return notFound(JsonChunks.GSON.toJson(parent));
     }
 
     JsonArray taskSummaryArray = new JsonArray();
@@ -947,10 +977,11 @@ public class Web extends Controller {
     if (results.isEmpty()) {
       JsonObject parent = new JsonObject();
       parent.add(JsonKeys.JOBS, new JsonObject());
-      return notFound(new Gson().toJson(parent));
+      return notFound(JsonChunks.GSON.toJson(parent));
     }
 
     Map<Severity, Long> taskSeverityCount = new HashMap<Severity, Long>();
+    Map<String, List<HeuristicResultView>> heuristicResults = getHeuristicResults(results, false);
 
     for (AppResult task : results) {
       username = task.username;
@@ -965,8 +996,9 @@ public class Web extends Controller {
 
       JsonObject taskObject = new JsonObject();
       JsonArray heuristicsArray = new JsonArray();
-      List<AppHeuristicResult> appHeuristicResult = task.yarnAppHeuristicResults;
-      for (AppHeuristicResult heuristic : appHeuristicResult) {
+      List<HeuristicResultView> appHeuristicResult = heuristicResults.containsKey(task.id)
+          ? heuristicResults.get(task.id) : Collections.<HeuristicResultView>emptyList();
+      for (HeuristicResultView heuristic : appHeuristicResult) {
         JsonObject heuristicObject = new JsonObject();
         heuristicObject.addProperty(JsonKeys.NAME, heuristic.heuristicName);
         heuristicObject.addProperty(JsonKeys.SEVERITY, heuristic.severity.getText());
@@ -1045,7 +1077,7 @@ public class Web extends Controller {
 
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.JOBS, data);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
@@ -1125,7 +1157,7 @@ public class Web extends Controller {
     if (applicationid==null || applicationid.isEmpty()) {
       JsonObject parent = new JsonObject();
       parent.add(JsonKeys.APPLICATIONS, new JsonObject());
-      return notFound(new Gson().toJson(parent));
+      return notFound(JsonChunks.GSON.toJson(parent));
     }
 
     JsonObject applicationObject = new JsonObject();
@@ -1136,13 +1168,18 @@ public class Web extends Controller {
     if (result == null) {
       JsonObject parent = new JsonObject();
       parent.add(JsonKeys.APPLICATIONS, new JsonObject());
-      return notFound(new Gson().toJson(parent));
+      return notFound(JsonChunks.GSON.toJson(parent));
     }
 
-    for (AppHeuristicResult appHeuristicResult : result.yarnAppHeuristicResults) {
+    List<HeuristicResultView> heuristicResults =
+        getHeuristicResults(Collections.singletonList(result), true).get(result.id);
+    if (heuristicResults == null) {
+      heuristicResults = Collections.emptyList();
+    }
+    for (HeuristicResultView appHeuristicResult : heuristicResults) {
       JsonArray detailsArray = new JsonArray();
       JsonObject heuristicResultObject = new JsonObject();
-      for (AppHeuristicResultDetails details : appHeuristicResult.yarnAppHeuristicResultDetails) {
+      for (HeuristicDetailView details : appHeuristicResult.details) {
         JsonObject detailsObject = new JsonObject();
         detailsObject.addProperty(JsonKeys.NAME, details.name);
         detailsObject.addProperty(JsonKeys.VALUE, details.value);
@@ -1177,7 +1214,7 @@ public class Web extends Controller {
 
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.APPLICATIONS, applicationObject);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
@@ -1347,11 +1384,16 @@ public class Web extends Controller {
     searchOptions.addProperty(JsonKeys.ID, "search");
     JsonObject parent = new JsonObject();
     parent.add(JsonKeys.SEARCH_OPTS, searchOptions);
-    return ok(new Gson().toJson(parent));
+    return ok(JsonChunks.GSON.toJson(parent));
   }
 
   /**
    * Returns the search results for the given query
+   *
+   * Pages are read either at an offset, or after the cursor given by the next field of the previous page, which does
+   * not read the results of the previous pages again. With count=approximate the total stops at
+   * Application.SEARCH_COUNT_LIMIT, and approximate is true when there are more results than that.
+   *
    * @return
    * JsonObject:
    *
@@ -1362,6 +1404,8 @@ public class Web extends Controller {
    *         start: 0,
    *         end: 20,
    *         total: 0,
+   *         approximate: false,
+   *         next: "cursor",
    *         summaries: [
    *                  {
    *                    application_summary_object
@@ -1377,7 +1421,6 @@ public class Web extends Controller {
 
     int offset = SEARCH_DEFAULT_PAGE_OFFSET;
     int limit = SEARCH_DEFAULT_PAGE_LIMIT;
-    int end = 0;
     int total = 0;
 
     if (form.get("offset") != null && form.get("offset") != "") {
@@ -1395,60 +1438,135 @@ public class Web extends Controller {
     if (limit > SEARCH_APPLICATION_MAX_OFFSET) {
       limit = SEARCH_APPLICATION_MAX_OFFSET;
     } else if (limit <= 0) {
-      return ok(new Gson().toJson(parent));
+      return ok(JsonChunks.GSON.toJson(parent));
     }
 
-    Query<AppResult> query =
-        Application.generateSearchQuery(AppResult.getSearchFields(), Application.getSearchParams());
+    // With a cursor the page is read from the index entries after it and the offset is only echoed back
+    SearchCursor after = null;
+    String cursor = form.get(SEARCH_CURSOR);
+    if (cursor != null && !cursor.isEmpty()) {
+      after = SearchCursor.decode(cursor);
+      if (after == null) {
+        return badRequest(JsonChunks.GSON.toJson(parent));
+      }
+    }
 
-    total = query.findRowCount();
+    Map<String, String> searchParams = Application.getSearchParams();
+    boolean approximate = false;
+    if (SEARCH_COUNT_APPROXIMATE.equals(form.get(SEARCH_COUNT))) {
+      // One more result tells whether the count stopped at the limit
+      total = Application.countSearchResults(searchParams, Application.SEARCH_COUNT_LIMIT + 1);
+      approximate = total > Application.SEARCH_COUNT_LIMIT;
+      total = Math.min(total, Application.SEARCH_COUNT_LIMIT);
+    } else {
+      total = Application.generateSearchQuery(AppResult.getSearchFields(), searchParams).findRowCount();
+    }
 
-    if (offset > total) {
+    if (after == null && offset > total) {
       offset = total;
     }
 
-    List<AppResult> results = query.setFirstRow(offset).setMaxRows(limit)
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields()).findList();
-
-    end = offset + results.size();
-
-    JsonArray applicationSummaryArray = new JsonArray();
+    Query<AppResult> query = Application.generateSearchQuery(AppResult.getSearchFields(), searchParams, after);
+    if (after == null) {
+      query = query.setFirstRow(offset);
+    }
+    return ok(new SearchChunks(query, searchParams, after, offset, limit, total, approximate));
+  }
 
-    for (AppResult application : results) {
-      JsonObject applicationObject = new JsonObject();
-      JsonArray heuristicsArray = new JsonArray();
-      List<AppHeuristicResult> appHeuristicResult = application.yarnAppHeuristicResults;
+  /**
+   * The search results, streamed as they are read. The results are read in pages of SEARCH_STREAM_PAGE_SIZE, each
+   * page from the cursor after the previous one, and the end and next fields follow the summaries since they are only
+   * known once the last page is read.
+   */
+  private static class SearchChunks extends JsonChunks {
+    private final Query<AppResult> _firstQuery;
+    private final Map<String, String> _searchParams;
+    private final SearchCursor _after;
+    private final int _offset;
+    private final int _limit;
+    private final int _total;
+    private final boolean _approximate;
+
+    private SearchChunks(Query<AppResult> firstQuery, Map<String, String> searchParams, SearchCursor after, int offset,
+        int limit, int total, boolean approximate) {
+      _firstQuery = firstQuery;
+      _searchParams = searchParams;
+      _after = after;
+      _offset = offset;
+      _limit = limit;
+      _total = total;
+      _approximate = approximate;
+    }
 
-      for (AppHeuristicResult heuristic : appHeuristicResult) {
-        JsonObject heuristicObject = new JsonObject();
-        heuristicObject.addProperty(JsonKeys.NAME, heuristic.heuristicName);
-        heuristicObject.addProperty(JsonKeys.SEVERITY, heuristic.severity.getText());
-        heuristicsArray.add(heuristicObject);
+    @Override
+    protected void write(Writer writer) throws IOException {
+      JsonWriter json = newJsonWriter(writer);
+      json.beginObject().name(JsonKeys.SEARCH_RESULTS).beginObject();
+      json.name(JsonKeys.ID).value(_firstQuery.toString());
+      json.name(JsonKeys.START).value(_offset);
+      json.name(JsonKeys.TOTAL).value(_total);
+      json.name(JsonKeys.APPROXIMATE).value(_approximate);
+
+      json.name(JsonKeys.SUMMARIES).beginArray();
+      boolean byStartTime = Application.isSortedByStartTime(_searchParams);
+      Query<AppResult> query = _firstQuery;
+      SearchCursor cursor = _after;
+      int count = 0;
+      boolean hasMore = false;
+      while (count < _limit) {
+        int pageSize = Math.min(SEARCH_STREAM_PAGE_SIZE, _limit - count);
+        // One more result tells whether there is a next page
+        List<AppResult> results = query.setMaxRows(pageSize + 1)
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields()).findList();
+        hasMore = results.size() > pageSize;
+        if (hasMore) {
+          results = results.subList(0, pageSize);
+        }
+        for (AppResult application : results) {
+          writeSearchSummary(json, application);
+        }
+        count += results.size();
+        if (!results.isEmpty()) {
+          cursor = SearchCursor.after(results.get(results.size() - 1), byStartTime);
+        }
+        if (!hasMore) {
+          break;
+        }
+        query = Application.generateSearchQuery(AppResult.getSearchFields(), _searchParams, cursor);
       }
+      json.endArray();
 
-      applicationObject.addProperty(JsonKeys.ID, application.id);
-      applicationObject.addProperty(JsonKeys.USERNAME, application.username);
-      applicationObject.addProperty(JsonKeys.START_TIME, application.startTime);
-      applicationObject.addProperty(JsonKeys.FINISH_TIME, application.finishTime);
-      applicationObject.addProperty(JsonKeys.RUNTIME, application.finishTime - application.startTime);
-      applicationObject.addProperty(JsonKeys.WAITTIME, application.totalDelay);
-      applicationObject.addProperty(JsonKeys.RESOURCE_USED, application.resourceUsed);
-      applicationObject.addProperty(JsonKeys.RESOURCE_WASTED, application.resourceWasted);
-      applicationObject.addProperty(JsonKeys.SEVERITY, application.severity.getText());
-      applicationObject.addProperty(JsonKeys.QUEUE, application.queueName);
-
-      applicationObject.add(JsonKeys.HEURISTICS_SUMMARY, heuristicsArray);
-      applicationSummaryArray.add(applicationObject);
+      json.name(JsonKeys.END).value(_offset + count);
+      if (hasMore) {
+        json.name(JsonKeys.NEXT).value(cursor.encode());
+      }
+      json.endObject().endObject();
+      json.flush();
     }
+  }
 
-    JsonObject searchResults = new JsonObject();
-    searchResults.addProperty(JsonKeys.ID, query.toString());
-    searchResults.addProperty(JsonKeys.START, offset);
-    searchResults.addProperty(JsonKeys.END, end);
-    searchResults.addProperty(JsonKeys.TOTAL, total);
-    searchResults.add(JsonKeys.SUMMARIES, applicationSummaryArray);
-    parent.add(JsonKeys.SEARCH_RESULTS, searchResults);
-    return ok(new Gson().toJson(parent));
+  private static void writeSearchSummary(JsonWriter json, AppResult application) throws IOException {
+    json.beginObject();
+    json.name(JsonKeys.ID).value(application.id);
+    json.name(JsonKeys.USERNAME).value(application.username);
+    json.name(JsonKeys.START_TIME).value(application.startTime);
+    json.name(JsonKeys.FINISH_TIME).value(application.finishTime);
+    json.name(JsonKeys.RUNTIME).value(application.finishTime - application.startTime);
+    json.name(JsonKeys.WAITTIME).value(application.totalDelay);
+    json.name(JsonKeys.RESOURCE_USED).value(application.resourceUsed);
+    json.name(JsonKeys.RESOURCE_WASTED).value(application.resourceWasted);
+    json.name(JsonKeys.SEVERITY).value(application.severity.getText());
+    json.name(JsonKeys.QUEUE).value(application.queueName);
+
+    json.name(JsonKeys.HEURISTICS_SUMMARY).beginArray();
+    for (AppHeuristicResult heuristic : application.yarnAppHeuristicResults) {
+      json.beginObject();
+      json.name(JsonKeys.NAME).value(heuristic.heuristicName);
+      json.name(JsonKeys.SEVERITY).value(heuristic.severity.getText());
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
   }
 
   /**
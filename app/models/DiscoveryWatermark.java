@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import play.db.ebean.Model;
+
+
+/**
+ * The finish time up to which an analytic job generator has discovered applications. It is read back on startup so
+ * that discovery resumes from there instead of from the beginning of the resource manager history.
+ */
+@Entity
+@Table(name = "discovery_watermark")
+public class DiscoveryWatermark extends Model {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int ID_LIMIT = 50;
+
+  public static class TABLE {
+    public static final String TABLE_NAME = "discovery_watermark";
+    public static final String ID = "id";
+    public static final String LAST_TIME = "lastTime";
+    public static final String UPDATED_TIME = "updatedTime";
+  }
+
+  @Id
+  @Column(length = ID_LIMIT, unique = true, nullable = false)
+  public String id;
+
+  @Column(nullable = false)
+  public long lastTime;
+
+  @Column(nullable = false)
+  public long updatedTime;
+
+  public static Finder<String, DiscoveryWatermark> find =
+      new Finder<String, DiscoveryWatermark>(String.class, DiscoveryWatermark.class);
+}
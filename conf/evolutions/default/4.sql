@@ -0,0 +1,14 @@
+# --- Persisted discovery watermark so that a restart resumes where the last fetch stopped
+# --- !Ups
+
+CREATE TABLE discovery_watermark (
+  id               VARCHAR(50)   NOT NULL              COMMENT 'The analytic job generator the watermark belongs to',
+  last_time        BIGINT        UNSIGNED NOT NULL     COMMENT 'Applications finished up to this time have been handed over for analysis',
+  updated_time     BIGINT        UNSIGNED NOT NULL     COMMENT 'The time at which the watermark was last written',
+
+  PRIMARY KEY (id)
+);
+
+# --- !Downs
+
+DROP TABLE discovery_watermark;
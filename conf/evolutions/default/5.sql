@@ -0,0 +1,23 @@
+# --- Hourly rollup of the analysis results for the dashboard counts
+# --- !Ups
+
+CREATE TABLE yarn_app_result_hourly (
+  hour_time        BIGINT        UNSIGNED NOT NULL     COMMENT 'The start of the hour in which the applications finished, in ms since the epoch',
+  job_type         VARCHAR(20)   NOT NULL              COMMENT 'The Job Type e.g, Pig, Hive, Spark, HadoopJava',
+  severity         TINYINT(2)    UNSIGNED NOT NULL     COMMENT 'Aggregate severity of all the heuristics. Ranges from 0(LOW) to 4(CRITICAL)',
+  job_count        INT           UNSIGNED NOT NULL     COMMENT 'The number of applications',
+  resource_used    BIGINT        UNSIGNED NOT NULL     COMMENT 'The resources used by the applications in MB Seconds',
+  resource_wasted  BIGINT        UNSIGNED NOT NULL     COMMENT 'The resources wasted by the applications in MB Seconds',
+
+  PRIMARY KEY (hour_time, job_type, severity)
+);
+
+INSERT INTO yarn_app_result_hourly (hour_time, job_type, severity, job_count, resource_used, resource_wasted)
+SELECT finish_time - MOD(finish_time, 3600000), job_type, severity, COUNT(*),
+       COALESCE(SUM(resource_used), 0), COALESCE(SUM(resource_wasted), 0)
+FROM yarn_app_result
+GROUP BY finish_time - MOD(finish_time, 3600000), job_type, severity;
+
+# --- !Downs
+
+DROP TABLE yarn_app_result_hourly;
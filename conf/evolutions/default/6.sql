@@ -0,0 +1,22 @@
+# --- Composite indexes for the searches, each filter followed by the column the results are sorted on
+# --- !Ups
+
+create index yarn_app_result_i9 on yarn_app_result (queue_name,finish_time);
+create index yarn_app_result_i10 on yarn_app_result (job_type,finish_time);
+create index yarn_app_result_i11 on yarn_app_result (severity,finish_time);
+create index yarn_app_result_i12 on yarn_app_result (username,start_time);
+drop index yarn_app_result_i8 on yarn_app_result;
+
+create index yarn_app_heuristic_result_i3 on yarn_app_heuristic_result (heuristic_name,severity,yarn_app_result_id);
+drop index yarn_app_heuristic_result_i2 on yarn_app_heuristic_result;
+
+# --- !Downs
+
+create index yarn_app_heuristic_result_i2 on yarn_app_heuristic_result (heuristic_name,severity);
+drop index yarn_app_heuristic_result_i3 on yarn_app_heuristic_result;
+
+create index yarn_app_result_i8 on yarn_app_result (queue_name);
+drop index yarn_app_result_i12 on yarn_app_result;
+drop index yarn_app_result_i11 on yarn_app_result;
+drop index yarn_app_result_i10 on yarn_app_result;
+drop index yarn_app_result_i9 on yarn_app_result;
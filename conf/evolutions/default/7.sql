@@ -0,0 +1,62 @@
+# --- Execution summaries for the flow and job history graphs
+# --- !Ups
+
+CREATE TABLE yarn_flow_exec_summary (
+  flow_exec_id     VARCHAR(255)  NOT NULL              COMMENT 'A unique reference to a specific flow execution',
+  flow_def_id      VARCHAR(800)  NOT NULL              COMMENT 'A unique reference to the entire flow independent of any execution',
+  flow_exec_url    VARCHAR(800)  NOT NULL              COMMENT 'A url to the flow execution on the scheduler',
+  app_count        INT           UNSIGNED NOT NULL     COMMENT 'The number of applications of the execution',
+  score            INT           UNSIGNED NOT NULL     COMMENT 'The sum of the application scores',
+  severity         TINYINT(2)    UNSIGNED NOT NULL     COMMENT 'The highest severity of the applications. Ranges from 0(LOW) to 4(CRITICAL)',
+  resource_used    BIGINT        UNSIGNED NOT NULL     COMMENT 'The resources used by the applications in MB Seconds',
+  resource_wasted  BIGINT        UNSIGNED NOT NULL     COMMENT 'The resources wasted by the applications in MB Seconds',
+  start_time       BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which the first application started',
+  finish_time      BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which the last application finished',
+
+  PRIMARY KEY (flow_exec_id)
+);
+
+create index yarn_flow_exec_summary_i1 on yarn_flow_exec_summary (flow_def_id,finish_time);
+
+CREATE TABLE yarn_job_exec_summary (
+  job_exec_id       VARCHAR(800)  NOT NULL              COMMENT 'A unique reference to a specific execution of the job',
+  job_def_id        VARCHAR(800)  NOT NULL              COMMENT 'A unique reference to the job in the entire flow independent of the execution',
+  flow_exec_id      VARCHAR(255)  NOT NULL              COMMENT 'A unique reference to the flow execution the job belongs to',
+  job_exec_url      VARCHAR(800)  NOT NULL              COMMENT 'A url to the job execution on the scheduler',
+  job_def_url       VARCHAR(800)  NOT NULL              COMMENT 'A url to the job definition on the scheduler',
+  app_count         INT           UNSIGNED NOT NULL     COMMENT 'The number of applications of the execution',
+  score             INT           UNSIGNED NOT NULL     COMMENT 'The sum of the application scores',
+  severity          TINYINT(2)    UNSIGNED NOT NULL     COMMENT 'The highest severity of the applications. Ranges from 0(LOW) to 4(CRITICAL)',
+  resource_used     BIGINT        UNSIGNED NOT NULL     COMMENT 'The resources used by the applications in MB Seconds',
+  resource_wasted   BIGINT        UNSIGNED NOT NULL     COMMENT 'The resources wasted by the applications in MB Seconds',
+  start_time        BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which the first application started',
+  first_finish_time BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which the first application finished',
+  finish_time       BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which the last application finished',
+
+  PRIMARY KEY (job_exec_id)
+);
+
+create index yarn_job_exec_summary_i1 on yarn_job_exec_summary (job_def_id,finish_time);
+create index yarn_job_exec_summary_i2 on yarn_job_exec_summary (flow_exec_id);
+
+INSERT INTO yarn_flow_exec_summary (flow_exec_id, flow_def_id, flow_exec_url, app_count, score, severity,
+  resource_used, resource_wasted, start_time, finish_time)
+SELECT flow_exec_id, MAX(flow_def_id), MAX(flow_exec_url), COUNT(*), COALESCE(SUM(score), 0), MAX(severity),
+       COALESCE(SUM(resource_used), 0), COALESCE(SUM(resource_wasted), 0), MIN(start_time), MAX(finish_time)
+FROM yarn_app_result
+WHERE flow_exec_id <> ''
+GROUP BY flow_exec_id;
+
+INSERT INTO yarn_job_exec_summary (job_exec_id, job_def_id, flow_exec_id, job_exec_url, job_def_url, app_count, score,
+  severity, resource_used, resource_wasted, start_time, first_finish_time, finish_time)
+SELECT job_exec_id, MAX(job_def_id), MAX(flow_exec_id), MAX(job_exec_url), MAX(job_def_url), COUNT(*),
+       COALESCE(SUM(score), 0), MAX(severity), COALESCE(SUM(resource_used), 0), COALESCE(SUM(resource_wasted), 0),
+       MIN(start_time), MIN(finish_time), MAX(finish_time)
+FROM yarn_app_result
+WHERE job_exec_id <> ''
+GROUP BY job_exec_id;
+
+# --- !Downs
+
+DROP TABLE yarn_job_exec_summary;
+DROP TABLE yarn_flow_exec_summary;
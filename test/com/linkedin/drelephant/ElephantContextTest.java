@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant;
+
+import com.linkedin.drelephant.analysis.ApplicationType;
+import com.linkedin.drelephant.analysis.HadoopAggregatedData;
+import com.linkedin.drelephant.analysis.HadoopMetricsAggregator;
+import com.linkedin.drelephant.configurations.aggregator.AggregatorConfigurationData;
+import com.linkedin.drelephant.mapreduce.MapReduceMetricsAggregator;
+import com.linkedin.drelephant.mapreduce.MapReduceMetricsAggregatorTest;
+import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ElephantContextTest {
+  private static final ApplicationType MAPREDUCE = new ApplicationType("mapreduce");
+  private static final int JOBS = 50;
+  private static final int THREADS = 32;
+  private static final int ROUNDS = 20;
+
+  @Test
+  public void testNewAggregatorForEachJob() {
+    ElephantContext context = createContext();
+    Set<HadoopMetricsAggregator> aggregators =
+        Collections.newSetFromMap(new IdentityHashMap<HadoopMetricsAggregator, Boolean>());
+    for (int i = 0; i < 10; i++) {
+      HadoopMetricsAggregator aggregator = context.getAggregatorForApplicationType(MAPREDUCE);
+      Assert.assertTrue(aggregator instanceof MapReduceMetricsAggregator);
+      Assert.assertTrue("The aggregator is shared", aggregators.add(aggregator));
+    }
+    Assert.assertNull(context.getAggregatorForApplicationType(new ApplicationType("spark")));
+  }
+
+  /**
+   * Many jobs are aggregated concurrently, each with the aggregator the context returns for it like AnalyticJob does,
+   * while threads share the application data. Every result must match the one computed on a single thread.
+   */
+  @Test
+  public void testConcurrentJobs() throws Exception {
+    final ElephantContext context = createContext();
+    final MapReduceApplicationData[] jobs = new MapReduceApplicationData[JOBS];
+    final long[][] expected = new long[JOBS][];
+    for (int i = 0; i < JOBS; i++) {
+      MapReduceMetricsAggregator aggregator = new MapReduceMetricsAggregator(null);
+      aggregator.aggregate(MapReduceMetricsAggregatorTest.createJob(i));
+      expected[i] = toArray(aggregator.getResult());
+      jobs[i] = MapReduceMetricsAggregatorTest.createJob(i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < THREADS; t++) {
+        final int offset = t;
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            int checked = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+              for (int j = 0; j < JOBS; j++) {
+                int job = (j + offset) % JOBS;
+                HadoopMetricsAggregator aggregator = context.getAggregatorForApplicationType(MAPREDUCE);
+                aggregator.aggregate(jobs[job]);
+                Assert.assertArrayEquals("Job " + job, expected[job], toArray(aggregator.getResult()));
+                checked++;
+              }
+            }
+            return checked;
+          }
+        }));
+      }
+      for (Future<Integer> future : futures) {
+        Assert.assertEquals(JOBS * ROUNDS, (int) future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ElephantContext createContext() {
+    List<AggregatorConfigurationData> aggregators = new ArrayList<AggregatorConfigurationData>();
+    aggregators.add(new AggregatorConfigurationData(MapReduceMetricsAggregator.class.getName(), MAPREDUCE,
+        new HashMap<String, String>()));
+    return new ElephantContext(aggregators, ElephantContextTest.class.getClassLoader());
+  }
+
+  private static long[] toArray(HadoopAggregatedData data) {
+    return new long[] { data.getResourceUsed(), data.getResourceWasted(), data.getTotalDelay() };
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class AnalyticJobGeneratorHadoop2Test {
+
+  private static final long MINUTE = 60 * 1000;
+  private static final long HOUR = 60 * MINUTE;
+  private static final long FETCH_DELAY = 5 * MINUTE;
+  private static final long NOW = 1460000000000L;
+
+  @Test
+  public void testFirstRunStartsFromInitialLookback() throws Exception {
+    TestGenerator generator = new TestGenerator(configuration("3600000", "1000"));
+    generator.addApp("application_1_0001", NOW - 2 * HOUR, "SUCCEEDED");
+    generator.addApp("application_1_0002", NOW - 30 * MINUTE, "SUCCEEDED");
+    generator.addApp("application_1_0003", NOW - 10 * MINUTE, "FAILED");
+    // Finished within the fetch delay, read by the next fetch
+    generator.addApp("application_1_0004", NOW - MINUTE, "SUCCEEDED");
+    generator.configure(generator._configuration);
+
+    Assert.assertEquals(ids("application_1_0002", "application_1_0003"), ids(generator.fetchAnalyticJobs()));
+    // One succeeded and one failed request for the whole range
+    Assert.assertEquals(2, generator._requests);
+    Assert.assertEquals(NOW - FETCH_DELAY - HOUR, generator._requestedBegins.get(0) - 1);
+
+    generator._time = NOW + 10 * MINUTE;
+    Assert.assertEquals(ids("application_1_0004"), ids(generator.fetchAnalyticJobs()));
+    Assert.assertEquals(4, generator._requests);
+  }
+
+  @Test
+  public void testResumesFromWatermark() throws Exception {
+    TestGenerator generator = new TestGenerator(configuration("3600000", "1000"));
+    generator._watermark = NOW - 3 * HOUR;
+    generator.addApp("application_1_0001", NOW - 4 * HOUR, "SUCCEEDED");
+    generator.addApp("application_1_0002", NOW - 2 * HOUR, "SUCCEEDED");
+    generator.configure(generator._configuration);
+
+    Assert.assertEquals(ids("application_1_0002"), ids(generator.fetchAnalyticJobs()));
+    Assert.assertEquals(2, generator._requests);
+  }
+
+  @Test
+  public void testSplitsOnlyWhenTheLimitIsHit() throws Exception {
+    TestGenerator generator = new TestGenerator(configuration("3600000", "2"));
+    List<String> expected = new ArrayList<String>();
+    for (int i = 1; i <= 5; i++) {
+      String id = "application_1_000" + i;
+      generator.addApp(id, NOW - 60 * MINUTE + i * 10 * MINUTE, "SUCCEEDED");
+      expected.add(id);
+    }
+    generator.configure(generator._configuration);
+
+    List<AnalyticJob> jobs = generator.fetchAnalyticJobs();
+    Assert.assertEquals(expected, ids(jobs));
+    Assert.assertTrue(generator._requests > 2);
+    // Saved once for the whole fetch
+    Assert.assertEquals(1, generator._watermarkWrites);
+    for (int i = 1; i < jobs.size(); i++) {
+      Assert.assertTrue(jobs.get(i - 1).getFinishTime() <= jobs.get(i).getFinishTime());
+    }
+  }
+
+  @Test
+  public void testWatermarkWaitsForPendingJobs() throws Exception {
+    TestGenerator generator = new TestGenerator(configuration("3600000", "1000"));
+    generator.addApp("application_1_0001", NOW - 50 * MINUTE, "SUCCEEDED");
+    generator.addApp("application_1_0002", NOW - 40 * MINUTE, "FAILED");
+    generator.addApp("application_1_0003", NOW - 30 * MINUTE, "SUCCEEDED");
+    generator.configure(generator._configuration);
+
+    Assert.assertEquals(3, generator.fetchAnalyticJobs().size());
+    Assert.assertEquals(Long.valueOf(NOW - 50 * MINUTE - 1), generator._watermark);
+
+    // Written out of order, the first job still holds the watermark back
+    generator.completeJob("application_1_0003");
+    generator.completeJob("application_1_0002");
+    generator._time = NOW + MINUTE;
+    Assert.assertTrue(generator.fetchAnalyticJobs().isEmpty());
+    Assert.assertEquals(Long.valueOf(NOW - 50 * MINUTE - 1), generator._watermark);
+
+    // A restart resumes from the watermark, the first job is read again
+    TestGenerator restarted = new TestGenerator(generator._configuration);
+    restarted._apps.addAll(generator._apps);
+    restarted._watermark = generator._watermark;
+    restarted._time = NOW + MINUTE;
+    restarted._analyzedIds.add("application_1_0002");
+    restarted._analyzedIds.add("application_1_0003");
+    restarted.configure(restarted._configuration);
+    Assert.assertEquals(ids("application_1_0001"), ids(restarted.fetchAnalyticJobs()));
+
+    // Once every job is written the watermark follows the fetches
+    generator.completeJob("application_1_0001");
+    generator._time = NOW + 2 * MINUTE;
+    generator.fetchAnalyticJobs();
+    Assert.assertEquals(Long.valueOf(NOW + 2 * MINUTE - FETCH_DELAY), generator._watermark);
+  }
+
+  private static Configuration configuration(String initialLookback, String appLimit) {
+    Configuration configuration = new Configuration(false);
+    configuration.set("drelephant.analysis.fetch.initial.lookback.ms", initialLookback);
+    configuration.set("drelephant.analysis.fetch.app.limit", appLimit);
+    return configuration;
+  }
+
+  private static List<String> ids(String... ids) {
+    List<String> list = new ArrayList<String>();
+    for (String id : ids) {
+      list.add(id);
+    }
+    return list;
+  }
+
+  private static List<String> ids(List<AnalyticJob> jobs) {
+    List<String> list = new ArrayList<String>();
+    for (AnalyticJob job : jobs) {
+      list.add(job.getAppId());
+    }
+    return list;
+  }
+
+  /**
+   * A generator reading from an in memory resource manager, with an in memory watermark
+   */
+  private static class TestGenerator extends AnalyticJobGeneratorHadoop2 {
+    private final Configuration _configuration;
+    private final List<AnalyticJob> _apps = new ArrayList<AnalyticJob>();
+    private final List<Long> _requestedBegins = new ArrayList<Long>();
+    private long _time = NOW;
+    private int _requests = 0;
+    private final Set<String> _analyzedIds = new HashSet<String>();
+    private Long _watermark = null;
+    private int _watermarkWrites = 0;
+
+    private TestGenerator(Configuration configuration) {
+      _configuration = configuration;
+    }
+
+    private void addApp(String appId, long finishTime, String finalStatus) {
+      _apps.add(new AnalyticJob().setAppId(appId).setFinishTime(finishTime).setStartTime(finishTime - MINUTE)
+          .setFinalStatus(finalStatus));
+    }
+
+    @Override
+    public void updateResourceManagerAddresses() {
+      // No resource manager
+    }
+
+    /**
+     * Returns the apps matching the query, the newest first and at most limit of them
+     */
+    @Override
+    int readApps(URL url, List<AnalyticJob> appList) throws IOException {
+      _requests++;
+      Map<String, String> params = new HashMap<String, String>();
+      for (String param : url.getQuery().split("&")) {
+        String[] keyValue = param.split("=");
+        params.put(keyValue[0], keyValue[1]);
+      }
+      long begin = Long.parseLong(params.get("finishedTimeBegin"));
+      long end = Long.parseLong(params.get("finishedTimeEnd"));
+      int limit = Integer.parseInt(params.get("limit"));
+      _requestedBegins.add(begin);
+
+      int count = 0;
+      for (int i = _apps.size() - 1; i >= 0 && count < limit; i--) {
+        AnalyticJob app = _apps.get(i);
+        if (app.getFinalStatus().equals(params.get("finalStatus")) && app.getFinishTime() >= begin
+            && app.getFinishTime() <= end) {
+          appList.add(app);
+          count++;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    void removeAnalyzedApps(List<AnalyticJob> appList) {
+      Iterator<AnalyticJob> it = appList.iterator();
+      while (it.hasNext()) {
+        if (_analyzedIds.contains(it.next().getAppId())) {
+          it.remove();
+        }
+      }
+    }
+
+    @Override
+    Long readWatermark() {
+      return _watermark;
+    }
+
+    @Override
+    void writeWatermark(long lastTime) {
+      _watermark = lastTime;
+      _watermarkWrites++;
+    }
+
+    @Override
+    long currentTimeMillis() {
+      return _time;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class DefaultAnalysisPriorityPolicyTest {
+
+  private static final long HOUR = 60 * 60 * 1000;
+
+  private DefaultAnalysisPriorityPolicy _policy;
+
+  @Before
+  public void setUp() {
+    Configuration conf = new Configuration(false);
+    conf.set("drelephant.analysis.priority.queues", "critical, etl");
+    conf.set("drelephant.analysis.priority.users", "oncall");
+    _policy = new DefaultAnalysisPriorityPolicy();
+    _policy.configure(conf);
+  }
+
+  @Test
+  public void testPriorityClasses() {
+    long now = System.currentTimeMillis();
+    long old = now - 10 * HOUR;
+    Assert.assertEquals(AnalysisPriority.PREFERRED, _policy.getPriority(job("etl", "user1", "SUCCEEDED", old)));
+    Assert.assertEquals(AnalysisPriority.PREFERRED, _policy.getPriority(job("default", "oncall", "FAILED", now)));
+    Assert.assertEquals(AnalysisPriority.FAILED, _policy.getPriority(job("default", "user1", "FAILED", old)));
+    Assert.assertEquals(AnalysisPriority.RECENT, _policy.getPriority(job("default", "user1", "SUCCEEDED", now)));
+    Assert.assertEquals(AnalysisPriority.BACKLOG, _policy.getPriority(job("default", "user1", "SUCCEEDED", old)));
+  }
+
+  @Test
+  public void testEmptyConf() {
+    DefaultAnalysisPriorityPolicy policy = new DefaultAnalysisPriorityPolicy();
+    policy.configure(new Configuration(false));
+    Assert.assertEquals(AnalysisPriority.BACKLOG,
+        policy.getPriority(job("default", "user1", null, System.currentTimeMillis() - 10 * HOUR)));
+  }
+
+  private static AnalyticJob job(String queue, String user, String finalStatus, long finishTime) {
+    return new AnalyticJob().setAppId("application_1_1").setQueueName(queue).setUser(user)
+        .setFinalStatus(finalStatus).setFinishTime(finishTime);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import com.linkedin.drelephant.analysis.HadoopAggregatedData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import java.util.Properties;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class MapReduceMetricsAggregatorTest {
+  @Test
+  public void testResultOfPreviousJobIsKept() {
+    MapReduceMetricsAggregator aggregator = new MapReduceMetricsAggregator(null);
+    aggregator.aggregate(createJob(1));
+    HadoopAggregatedData first = aggregator.getResult();
+    long resourceUsed = first.getResourceUsed();
+
+    aggregator.aggregate(createJob(2));
+    Assert.assertEquals(resourceUsed, first.getResourceUsed());
+    Assert.assertTrue(aggregator.getResult().getResourceUsed() != resourceUsed);
+  }
+
+  /**
+   * A job whose numbers of tasks, durations and memory all depend on its index
+   */
+  public static MapReduceApplicationData createJob(int index) {
+    long startTime = 1464218500000L;
+    MapReduceTaskData[] mappers = new MapReduceTaskData[index % 7 + 1];
+    for (int i = 0; i < mappers.length; i++) {
+      long finishTime = startTime + (index + 1) * 10000L + i * 1000L;
+      mappers[i] = createTask(index * 1000000L + i * 1000L, startTime + i * 100L, finishTime);
+    }
+    MapReduceTaskData[] reducers = new MapReduceTaskData[index % 3 + 1];
+    for (int i = 0; i < reducers.length; i++) {
+      long reducerStartTime = startTime + (index + 10) * 10000L;
+      reducers[i] = createTask(index * 2000000L, reducerStartTime, reducerStartTime + (i + 1) * 5000L);
+    }
+
+    Properties jobConf = new Properties();
+    jobConf.setProperty("mapreduce.map.memory.mb", String.valueOf(1024 + index));
+    jobConf.setProperty("mapreduce.reduce.memory.mb", String.valueOf(2048 + index));
+    jobConf.setProperty("mapreduce.job.reduce.slowstart.completedmaps", "0.8");
+    return new MapReduceApplicationData().setJobConf(jobConf).setStartTime(startTime).setMapperData(mappers)
+        .setReducerData(reducers);
+  }
+
+  private static MapReduceTaskData createTask(long memoryBytes, long startTime, long finishTime) {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES, memoryBytes);
+    counters.set(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES, memoryBytes * 2);
+    return new MapReduceTaskData(counters, new long[] { finishTime - startTime, 0, 0, startTime, finishTime });
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Measures the heap retained by the counters of many tasks, and the cost of get(CounterName), for MapReduceCounterData
+ * and for the map of group maps it replaced, kept below as Baseline.
+ *
+ * Each task gets the 27 counters a MapReduce task usually reports, in 3 groups, 19 of them known by CounterName. The
+ * retained heap is the used heap after a few full collections, so run it alone, e.g. with -XX:+UseSerialGC, from the
+ * main method or by removing @Ignore. The arguments are the number of tasks (100000 by default) and "baseline" to
+ * measure the previous implementation.
+ */
+public class MapReduceCounterDataBenchmark {
+  private static final String[][] COUNTERS = {
+      {"org.apache.hadoop.mapreduce.FileSystemCounter", "FILE_BYTES_READ", "FILE_BYTES_WRITTEN", "FILE_READ_OPS",
+          "FILE_LARGE_READ_OPS", "FILE_WRITE_OPS", "HDFS_BYTES_READ", "HDFS_BYTES_WRITTEN", "HDFS_READ_OPS",
+          "HDFS_LARGE_READ_OPS", "HDFS_WRITE_OPS"},
+      {"org.apache.hadoop.mapreduce.TaskCounter", "MAP_INPUT_RECORDS", "MAP_OUTPUT_RECORDS", "MAP_OUTPUT_BYTES",
+          "MAP_OUTPUT_MATERIALIZED_BYTES", "SPLIT_RAW_BYTES", "COMBINE_INPUT_RECORDS", "COMBINE_OUTPUT_RECORDS",
+          "SPILLED_RECORDS", "FAILED_SHUFFLE", "MERGED_MAP_OUTPUTS", "GC_TIME_MILLIS", "CPU_MILLISECONDS",
+          "PHYSICAL_MEMORY_BYTES", "VIRTUAL_MEMORY_BYTES", "COMMITTED_HEAP_BYTES"},
+      {"org.apache.hadoop.mapreduce.lib.input.FileInputFormatCounter", "BYTES_READ"}
+  };
+  private static final int GET_ROUNDS = 20;
+
+  public static void main(String[] args) throws InterruptedException {
+    int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    boolean baseline = args.length > 1 && "baseline".equals(args[1]);
+    measure(tasks, baseline);
+  }
+
+  @Test
+  public void testSameValuesAsBaseline() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    Baseline baseline = new Baseline();
+    fill(counters, baseline, 3);
+    for (MapReduceCounterData.CounterName name : MapReduceCounterData.CounterName.values()) {
+      Assert.assertEquals(name.toString(), baseline.get(name), counters.get(name));
+    }
+    for (String[] group : COUNTERS) {
+      Assert.assertEquals(baseline.getAllCountersInGroup(group[0]), counters.getAllCountersInGroup(group[0]));
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testFootprint() throws InterruptedException {
+    measure(100000, true);
+    measure(100000, false);
+  }
+
+  private static void measure(int tasks, boolean baseline) throws InterruptedException {
+    MapReduceCounterData.CounterName[] names = MapReduceCounterData.CounterName.values();
+    long before = usedHeap();
+    Object[] all = new Object[tasks];
+    for (int t = 0; t < tasks; t++) {
+      if (baseline) {
+        Baseline counters = new Baseline();
+        fill(null, counters, t);
+        all[t] = counters;
+      } else {
+        MapReduceCounterData counters = new MapReduceCounterData();
+        fill(counters, null, t);
+        all[t] = counters;
+      }
+    }
+    long retained = usedHeap() - before;
+
+    long sum = 0;
+    long start = System.nanoTime();
+    for (int r = 0; r < GET_ROUNDS; r++) {
+      for (Object counters : all) {
+        for (MapReduceCounterData.CounterName name : names) {
+          sum += baseline ? ((Baseline) counters).get(name) : ((MapReduceCounterData) counters).get(name);
+        }
+      }
+    }
+    long nsPerGet = (System.nanoTime() - start) / ((long) GET_ROUNDS * tasks * names.length);
+
+    System.out.println((baseline ? "baseline" : "current") + ", " + tasks + " tasks: " + retained / tasks
+        + " bytes/task, " + retained / (1024 * 1024) + " MB retained, " + nsPerGet + " ns per get()"
+        + (sum == 42 && all.length > 0 ? " " : ""));
+  }
+
+  private static void fill(MapReduceCounterData counters, Baseline baseline, int task) {
+    for (String[] group : COUNTERS) {
+      for (int i = 1; i < group.length; i++) {
+        long value = 1000L + task * 7 + i;
+        if (counters != null) {
+          counters.set(group[0], group[i], value);
+        }
+        if (baseline != null) {
+          baseline.set(group[0], group[i], value);
+        }
+      }
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * The counters as they were held before: a map of group to counter maps, searched group by group on get
+   */
+  private static final class Baseline {
+    private final Map<String, Map<String, Long>> _pubCounters = new HashMap<String, Map<String, Long>>(8);
+
+    long get(MapReduceCounterData.CounterName counterName) {
+      for (Map<String, Long> counterGrp : _pubCounters.values()) {
+        if (counterGrp.containsKey(counterName.getName())) {
+          return counterGrp.get(counterName.getName());
+        }
+      }
+      return 0;
+    }
+
+    void set(String groupName, String counterName, long value) {
+      Map<String, Long> counterMap = _pubCounters.get(groupName);
+      if (counterMap == null) {
+        counterMap = new HashMap<String, Long>(4);
+        _pubCounters.put(groupName, counterMap);
+      }
+      counterMap.put(counterName, value);
+    }
+
+    Map<String, Long> getAllCountersInGroup(String groupName) {
+      Map<String, Long> counterMap = _pubCounters.get(groupName);
+      return counterMap == null ? new HashMap<String, Long>(1) : counterMap;
+    }
+  }
+}
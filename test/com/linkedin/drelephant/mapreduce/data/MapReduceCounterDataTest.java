@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class MapReduceCounterDataTest {
+
+  private static final String TASK_COUNTER = "org.apache.hadoop.mapreduce.TaskCounter";
+  private static final String FS_COUNTER = "org.apache.hadoop.mapreduce.FileSystemCounter";
+
+  @Test
+  public void testKnownCountersByName() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(TASK_COUNTER, "GC_TIME_MILLIS", 300);
+    counters.set(FS_COUNTER, "HDFS_BYTES_READ", 4096);
+    counters.set(MapReduceCounterData.CounterName.SPILLED_RECORDS, 25);
+
+    Assert.assertEquals(300, counters.get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+    Assert.assertEquals(4096, counters.get(MapReduceCounterData.CounterName.HDFS_BYTES_READ));
+    Assert.assertEquals(25, counters.get(MapReduceCounterData.CounterName.SPILLED_RECORDS));
+    Assert.assertEquals(0, counters.get(MapReduceCounterData.CounterName.CPU_MILLISECONDS));
+
+    counters.set(TASK_COUNTER, "GC_TIME_MILLIS", 400);
+    Assert.assertEquals(400, counters.get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+  }
+
+  @Test
+  public void testGroups() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(TASK_COUNTER, "GC_TIME_MILLIS", 300);
+    counters.set(TASK_COUNTER, "MERGED_MAP_OUTPUTS", 7);
+    counters.set(FS_COUNTER, "HDFS_READ_OPS", 2);
+
+    Assert.assertEquals(2, counters.getGroupNames().size());
+    Assert.assertTrue(counters.getGroupNames().contains(FS_COUNTER));
+
+    Map<String, Long> taskCounters = counters.getAllCountersInGroup(TASK_COUNTER);
+    Assert.assertEquals(2, taskCounters.size());
+    Assert.assertEquals(Long.valueOf(300), taskCounters.get("GC_TIME_MILLIS"));
+    Assert.assertEquals(Long.valueOf(7), taskCounters.get("MERGED_MAP_OUTPUTS"));
+    Assert.assertTrue(counters.getAllCountersInGroup("missing").isEmpty());
+  }
+
+  @Test
+  public void testKnownCounterInTwoGroups() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set("FileSystemCounters", "HDFS_BYTES_READ", 10);
+    counters.set(FS_COUNTER, "HDFS_BYTES_READ", 20);
+
+    Assert.assertEquals(10, counters.get(MapReduceCounterData.CounterName.HDFS_BYTES_READ));
+    Assert.assertEquals(Long.valueOf(10), counters.getAllCountersInGroup("FileSystemCounters").get("HDFS_BYTES_READ"));
+    Assert.assertEquals(Long.valueOf(20), counters.getAllCountersInGroup(FS_COUNTER).get("HDFS_BYTES_READ"));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TaskSummaryTest {
+
+  @Test
+  public void testSampledColumns() {
+    MapReduceTaskData[] tasks = new MapReduceTaskData[3];
+    tasks[0] = task(1000, 0, 2000, 300);
+    tasks[1] = task(3000, 1000, 5000, 500);
+    // Not sampled, only counted and used for the finish times
+    tasks[2] = new MapReduceTaskData("task_1443068695259_9143_m_000002", null);
+    TaskSummary summary = TaskSummary.of(TaskTable.fromTasks(tasks));
+
+    Assert.assertEquals(3, summary.getTaskCount());
+    Assert.assertEquals(2, summary.getSampledCount());
+    Assert.assertEquals(2000, summary.getRuntimesMs().average());
+    Assert.assertEquals(1000, summary.getShuffleTimesMs().average());
+    Assert.assertEquals(400, summary.getCounter(MapReduceCounterData.CounterName.GC_MILLISECONDS).average());
+    Assert.assertEquals(800, summary.getCounter(MapReduceCounterData.CounterName.GC_MILLISECONDS).sum());
+    // A counter no task has is a column of zeros, one per sampled task
+    Assert.assertEquals(2, summary.getCounter(MapReduceCounterData.CounterName.CPU_MILLISECONDS).size());
+    Assert.assertEquals(0, summary.getCounter(MapReduceCounterData.CounterName.CPU_MILLISECONDS).max());
+  }
+
+  @Test
+  public void testAllTaskAggregates() {
+    MapReduceTaskData[] tasks = new MapReduceTaskData[] { task(1000, 0, 2500, 300), task(3000, 1000, 5000, 500) };
+    TaskSummary summary = TaskSummary.of(TaskTable.fromTasks(tasks));
+
+    Assert.assertEquals(5000, summary.getMaxFinishTimeMs());
+    Assert.assertEquals(4000, summary.getMaxDurationMs());
+    Assert.assertEquals(2 + 4, summary.getDurationSecondsSum());
+    Assert.assertEquals(500, summary.getMaxCounter(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+    Assert.assertEquals(5000, summary.getFinishTimesMs().percentile(100));
+  }
+
+  @Test
+  public void testEmpty() {
+    TaskSummary summary = TaskSummary.of(null);
+    Assert.assertEquals(0, summary.getTaskCount());
+    Assert.assertEquals(0, summary.getRuntimesMs().average());
+    Assert.assertEquals(0, summary.getCounter(MapReduceCounterData.CounterName.GC_MILLISECONDS).size());
+  }
+
+  private static MapReduceTaskData task(long runtimeMs, long startTimeMs, long finishTimeMs, long gcMs) {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(MapReduceCounterData.CounterName.GC_MILLISECONDS, gcMs);
+    return new MapReduceTaskData(counters, new long[] { runtimeMs, runtimeMs / 2, 0, startTimeMs, finishTimeMs });
+  }
+}
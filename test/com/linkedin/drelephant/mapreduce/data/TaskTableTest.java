@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TaskTableTest {
+
+  private static final String TASK_COUNTER = "org.apache.hadoop.mapreduce.TaskCounter";
+  private static final String CUSTOM_COUNTER = "com.example.Records";
+
+  @Test
+  public void testColumns() {
+    TaskTable table = TaskTable.fromTasks(new MapReduceTaskData[] { task(0, 1000), task(1, 2000) });
+
+    Assert.assertEquals(2, table.size());
+    Assert.assertEquals(2, table.getSampledCount());
+    Assert.assertEquals(2000, table.getTotalRunTimeMs(1));
+    Assert.assertEquals(2000 - 300 - 100, table.getCodeExecutionTimeMs(1));
+    Assert.assertEquals(5000, table.getStartTimeMs(1));
+    Assert.assertEquals(7000, table.getFinishTimeMs(1));
+    Assert.assertEquals(1010, table.getCounter(1, MapReduceCounterData.CounterName.GC_MILLISECONDS));
+    Assert.assertEquals(0, table.getCounter(1, MapReduceCounterData.CounterName.CPU_MILLISECONDS));
+    Assert.assertEquals("task_1443068695259_9143_m_000001", table.getTaskId(1));
+    Assert.assertEquals("attempt_1443068695259_9143_m_000001_1", table.getAttemptId(1));
+  }
+
+  @Test
+  public void testTaskRoundTrip() {
+    MapReduceTaskData unsampled = new MapReduceTaskData("task_1443068695259_9143_r_000000", null);
+    MapReduceTaskData odd = new MapReduceTaskData("not_a_task_id", "attempt_other_007");
+    TaskTable table = TaskTable.fromTasks(new MapReduceTaskData[] { task(12, 1000), unsampled, odd });
+
+    MapReduceTaskData task = table.getTask(0);
+    Assert.assertTrue(task.isSampled());
+    Assert.assertEquals("task_1443068695259_9143_m_000012", task.getTaskId());
+    Assert.assertEquals("attempt_1443068695259_9143_m_000012_0", task.getAttemptId());
+    Assert.assertEquals(300, task.getShuffleTimeMs());
+    Assert.assertEquals(1120, task.getCounters().get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+    Assert.assertEquals(Long.valueOf(12), task.getCounters().getAllCountersInGroup(CUSTOM_COUNTER).get("ROWS"));
+
+    task = table.getTask(1);
+    Assert.assertFalse(task.isSampled());
+    Assert.assertNull(task.getCounters());
+    Assert.assertNull(task.getAttemptId());
+    Assert.assertEquals("task_1443068695259_9143_r_000000", task.getTaskId());
+
+    task = table.getTask(2);
+    Assert.assertEquals("not_a_task_id", task.getTaskId());
+    Assert.assertEquals("attempt_other_007", task.getAttemptId());
+    Assert.assertEquals(3, table.toTaskArray().length);
+  }
+
+  @Test
+  public void testBuilderReplacesRows() {
+    TaskTable.Builder builder = new TaskTable.Builder(1);
+    for (int i = 0; i < 5; i++) {
+      builder.add(task(i, 1000 * i));
+    }
+    MapReduceTaskData replacement = new MapReduceTaskData("task_1443068695259_9143_m_000042", null);
+    replacement.setTime(new long[] { 42, 0, 0, 0, 42 });
+    builder.set(2, replacement);
+    TaskTable table = builder.build();
+
+    Assert.assertEquals(5, table.size());
+    Assert.assertEquals(42, table.getTotalRunTimeMs(2));
+    Assert.assertEquals(0, table.getCounter(2, MapReduceCounterData.CounterName.GC_MILLISECONDS));
+    Assert.assertNull(table.getTask(2).getCounters());
+    Assert.assertEquals("task_1443068695259_9143_m_000042", table.getTaskId(2));
+    Assert.assertEquals(1040, table.getCounter(4, MapReduceCounterData.CounterName.GC_MILLISECONDS));
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertEquals(0, TaskTable.fromTasks(null).size());
+    Assert.assertEquals(0, TaskTable.fromTasks(new MapReduceTaskData[0]).toTaskArray().length);
+  }
+
+  private static MapReduceTaskData task(int id, long runtimeMs) {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(TASK_COUNTER, "GC_TIME_MILLIS", 1000 + 10 * id);
+    counters.set(CUSTOM_COUNTER, "ROWS", id);
+    MapReduceTaskData task = new MapReduceTaskData(String.format("task_1443068695259_9143_m_%06d", id),
+        String.format("attempt_1443068695259_9143_m_%06d_%d", id, id % 2));
+    task.setCounter(counters);
+    task.setTime(new long[] { runtimeMs, 300, 100, 5000, 5000 + runtimeMs });
+    return task;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.fetchers;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class HistoryDirCacheTest {
+
+  private static final String JOB_ID = "job_1461566847127_84624";
+
+  private File _dir;
+  private String _dirPath;
+  private FileSystem _fs;
+
+  @Before
+  public void setUp() throws IOException {
+    _dir = File.createTempFile("history", "");
+    _dir.delete();
+    _dir.mkdirs();
+    _dirPath = _dir.getAbsolutePath() + File.separator;
+    _fs = FileSystem.getLocal(new Configuration());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(_dir);
+  }
+
+  @Test
+  public void testIndexJobFiles() throws IOException {
+    new File(_dir, JOB_ID + "_conf.xml").createNewFile();
+    new File(_dir, JOB_ID + "-1464219621000-user-word+count-1464219662000-10-1-SUCCEEDED-default.jhist")
+        .createNewFile();
+    new File(_dir, "job_1461566847127_84625_conf.xml").createNewFile();
+
+    HistoryDirCache cache = new HistoryDirCache(_fs, 10, 60000);
+    String[] files = cache.getJobFiles(_dirPath, JOB_ID);
+    Assert.assertEquals(_dirPath + JOB_ID + "_conf.xml", files[0]);
+    Assert.assertTrue(files[1].endsWith(".jhist"));
+
+    files = cache.getJobFiles(_dirPath, "job_1461566847127_84625");
+    Assert.assertNotNull(files[0]);
+    Assert.assertNull(files[1]);
+
+    files = cache.getJobFiles(_dirPath, "job_1461566847127_1");
+    Assert.assertNull(files[0]);
+    Assert.assertNull(files[1]);
+  }
+
+  @Test
+  public void testInvalidateOnModification() throws IOException {
+    _dir.setLastModified(1000000L);
+    HistoryDirCache cache = new HistoryDirCache(_fs, 10, 60000);
+    Assert.assertNull(cache.getJobFiles(_dirPath, JOB_ID)[0]);
+
+    // The listing is reused while the directory is unchanged
+    new File(_dir, JOB_ID + "_conf.xml").createNewFile();
+    _dir.setLastModified(1000000L);
+    Assert.assertNull(cache.getJobFiles(_dirPath, JOB_ID)[0]);
+
+    _dir.setLastModified(2000000L);
+    Assert.assertEquals(_dirPath + JOB_ID + "_conf.xml", cache.getJobFiles(_dirPath, JOB_ID)[0]);
+  }
+
+  @Test
+  public void testSizeBound() throws IOException {
+    HistoryDirCache cache = new HistoryDirCache(_fs, 2, 60000);
+    for (int i = 0; i < 3; i++) {
+      File sub = new File(_dir, String.valueOf(i));
+      sub.mkdirs();
+      cache.getJobFiles(sub.getAbsolutePath() + File.separator, JOB_ID);
+    }
+    Assert.assertEquals(2, cache.size());
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testMissingDir() throws IOException {
+    new HistoryDirCache(_fs, 10, 60000).getJobFiles(_dirPath + "missing" + File.separator, JOB_ID);
+  }
+}
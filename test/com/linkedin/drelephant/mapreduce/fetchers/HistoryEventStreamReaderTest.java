@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.fetchers;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.jobhistory.JobFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobInfoChangeEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobInitedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.MapAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.ReduceAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptStartedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskFinishedEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class HistoryEventStreamReaderTest {
+
+  private static final JobID JOB_ID = new JobID("1443068695259", 9143);
+
+  @Test
+  public void testSucceededTasks() {
+    HistoryEventStreamReader reader = new HistoryEventStreamReader(Integer.MAX_VALUE);
+
+    // A mapper whose first attempt failed
+    TaskID mapId = new TaskID(JOB_ID, TaskType.MAP, 0);
+    TaskAttemptID failedAttempt = new TaskAttemptID(mapId, 0);
+    TaskAttemptID mapAttempt = new TaskAttemptID(mapId, 1);
+    reader.handleEvent(started(failedAttempt, TaskType.MAP, 1000));
+    reader.handleEvent(new TaskAttemptUnsuccessfulCompletionEvent(failedAttempt, TaskType.MAP, "FAILED", 1500,
+        "host", 0, "rack", "error", null));
+    reader.handleEvent(started(mapAttempt, TaskType.MAP, 2000));
+    reader.handleEvent(new MapAttemptFinishedEvent(mapAttempt, TaskType.MAP, "SUCCEEDED", 4000, 5000, "host", 0,
+        "rack", "SUCCEEDED", counters("GC_TIME_MILLIS", 300), null));
+    reader.handleEvent(new TaskFinishedEvent(mapId, mapAttempt, 5000, TaskType.MAP, "SUCCEEDED",
+        counters("GC_TIME_MILLIS", 300)));
+
+    TaskID reduceId = new TaskID(JOB_ID, TaskType.REDUCE, 0);
+    TaskAttemptID reduceAttempt = new TaskAttemptID(reduceId, 0);
+    reader.handleEvent(started(reduceAttempt, TaskType.REDUCE, 3000));
+    reader.handleEvent(new ReduceAttemptFinishedEvent(reduceAttempt, TaskType.REDUCE, "SUCCEEDED", 6000, 7000, 9000,
+        "host", 0, "rack", "SUCCEEDED", counters("GC_TIME_MILLIS", 100), null));
+    reader.handleEvent(new TaskFinishedEvent(reduceId, reduceAttempt, 9000, TaskType.REDUCE, "SUCCEEDED",
+        counters("GC_TIME_MILLIS", 100)));
+
+    Counters total = counters("GC_TIME_MILLIS", 400);
+    reader.handleEvent(new JobFinishedEvent(JOB_ID, 10000, 1, 1, 0, 0, null, null, total));
+
+    Assert.assertEquals("SUCCEEDED", reader.getJobStatus());
+    Assert.assertEquals(10000, reader.getFinishTime());
+    Assert.assertEquals(400, reader.getTotalCounters().get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+
+    MapReduceTaskData[] mappers = reader.getMapperData();
+    Assert.assertEquals(1, mappers.length);
+    Assert.assertEquals(mapAttempt.toString(), mappers[0].getAttemptId());
+    Assert.assertEquals(3000, mappers[0].getTotalRunTimeMs());
+    Assert.assertEquals(0, mappers[0].getShuffleTimeMs());
+    Assert.assertEquals(2000, mappers[0].getStartTimeMs());
+    Assert.assertEquals(300, mappers[0].getCounters().get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+
+    MapReduceTaskData[] reducers = reader.getReducerData();
+    Assert.assertEquals(1, reducers.length);
+    Assert.assertEquals(6000, reducers[0].getTotalRunTimeMs());
+    Assert.assertEquals(3000, reducers[0].getShuffleTimeMs());
+    Assert.assertEquals(1000, reducers[0].getSortTimeMs());
+
+    // The attempts are dropped with their task
+    Assert.assertEquals(0, reader.getRunningTaskCount());
+  }
+
+  @Test
+  public void testSampling() {
+    HistoryEventStreamReader reader = new HistoryEventStreamReader(2);
+    for (int i = 0; i < 10; i++) {
+      TaskID mapId = new TaskID(JOB_ID, TaskType.MAP, i);
+      TaskAttemptID attempt = new TaskAttemptID(mapId, 0);
+      reader.handleEvent(started(attempt, TaskType.MAP, 1000));
+      reader.handleEvent(new TaskFinishedEvent(mapId, attempt, 2000, TaskType.MAP, "SUCCEEDED", new Counters()));
+    }
+
+    Assert.assertEquals(10, reader.getTotalMappers());
+    Assert.assertEquals(2, reader.getMapperData().length);
+    Assert.assertEquals(0, reader.getReducerData().length);
+  }
+
+  @Test
+  public void testJobInfoChange() {
+    HistoryEventStreamReader reader = new HistoryEventStreamReader(Integer.MAX_VALUE);
+    reader.handleEvent(new JobInitedEvent(JOB_ID, 2000, 1, 1, "INITED", false));
+
+    // The application master restarted
+    reader.handleEvent(new JobInfoChangeEvent(JOB_ID, 1500, 5000));
+
+    Assert.assertEquals(1500, reader.getSubmitTime());
+    Assert.assertEquals(5000, reader.getLaunchTime());
+  }
+
+  private static TaskAttemptStartedEvent started(TaskAttemptID attemptId, TaskType taskType, long startTime) {
+    return new TaskAttemptStartedEvent(attemptId, taskType, startTime, "tracker", 0, 0, "NODE_LOCAL", "VIRGIN");
+  }
+
+  private static Counters counters(String name, long value) {
+    Counters counters = new Counters();
+    counters.findCounter("org.apache.hadoop.mapreduce.TaskCounter", name).setValue(value);
+    return counters;
+  }
+}
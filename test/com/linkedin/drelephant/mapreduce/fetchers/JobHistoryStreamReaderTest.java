@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.fetchers;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class JobHistoryStreamReaderTest {
+
+  private static final String CONF = "{\"conf\":{\"path\":\"hdfs://job.xml\",\"property\":["
+      + "{\"name\":\"mapreduce.job.queuename\",\"value\":\"default\",\"source\":[\"job.xml\"]},"
+      + "{\"name\":\"mapreduce.map.memory.mb\",\"value\":\"2048\",\"source\":[\"mapred-site.xml\",\"job.xml\"]}]}}";
+
+  private static final String JOB_COUNTERS = "{\"jobCounters\":{\"id\":\"job_1443068695259_9143\","
+      + "\"counterGroup\":[{\"counterGroupName\":\"org.apache.hadoop.mapreduce.TaskCounter\",\"counter\":["
+      + "{\"name\":\"MAP_INPUT_RECORDS\",\"reduceCounterValue\":0,\"mapCounterValue\":100,\"totalCounterValue\":100},"
+      + "{\"name\":\"SPILLED_RECORDS\",\"reduceCounterValue\":5,\"mapCounterValue\":20,\"totalCounterValue\":25}]},"
+      + "{\"counterGroupName\":\"org.apache.hadoop.mapreduce.FileSystemCounter\",\"counter\":["
+      + "{\"name\":\"HDFS_BYTES_READ\",\"reduceCounterValue\":0,\"mapCounterValue\":4096,"
+      + "\"totalCounterValue\":4096}]}]}}";
+
+  private static final String TASK_COUNTERS = "{\"jobTaskCounters\":{\"id\":\"task_1443068695259_9143_m_000001\","
+      + "\"taskCounterGroup\":[{\"counter\":[{\"name\":\"GC_TIME_MILLIS\",\"value\":300}],"
+      + "\"counterGroupName\":\"org.apache.hadoop.mapreduce.TaskCounter\"}]}}";
+
+  private static final String TASKS = "{\"tasks\":{\"task\":["
+      + "{\"id\":\"task_1443068695259_9143_m_000000\",\"type\":\"MAP\",\"state\":\"SUCCEEDED\","
+      + "\"startTime\":1000,\"finishTime\":3000,\"successfulAttempt\":\"attempt_1443068695259_9143_m_000000_0\"},"
+      + "{\"id\":\"task_1443068695259_9143_m_000001\",\"type\":\"MAP\",\"state\":\"KILLED\","
+      + "\"startTime\":1000,\"finishTime\":2000,\"successfulAttempt\":\"\"},"
+      + "{\"id\":\"task_1443068695259_9143_r_000000\",\"type\":\"REDUCE\",\"state\":\"SUCCEEDED\","
+      + "\"startTime\":3000,\"finishTime\":6000,\"successfulAttempt\":\"attempt_1443068695259_9143_r_000000_1\"}]}}";
+
+  @Test
+  public void testReadProperties() throws IOException {
+    Properties jobConf = JobHistoryStreamReader.readProperties(parser(CONF));
+
+    Assert.assertEquals(2, jobConf.size());
+    Assert.assertEquals("default", jobConf.getProperty("mapreduce.job.queuename"));
+    Assert.assertEquals("2048", jobConf.getProperty("mapreduce.map.memory.mb"));
+  }
+
+  @Test
+  public void testReadJobCounters() throws IOException {
+    MapReduceCounterData counters =
+        JobHistoryStreamReader.readCounters(parser(JOB_COUNTERS), "counterGroup", "totalCounterValue");
+
+    Assert.assertEquals(100, counters.get(MapReduceCounterData.CounterName.MAP_INPUT_RECORDS));
+    Assert.assertEquals(25, counters.get(MapReduceCounterData.CounterName.SPILLED_RECORDS));
+    Assert.assertEquals(4096, counters.get(MapReduceCounterData.CounterName.HDFS_BYTES_READ));
+    Assert.assertEquals(2, counters.getGroupNames().size());
+  }
+
+  @Test
+  public void testReadTaskCountersWithGroupNameLast() throws IOException {
+    MapReduceCounterData counters =
+        JobHistoryStreamReader.readCounters(parser(TASK_COUNTERS), "taskCounterGroup", "value");
+
+    Assert.assertEquals(300, counters.get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
+    Assert.assertEquals(Long.valueOf(300),
+        counters.getAllCountersInGroup("org.apache.hadoop.mapreduce.TaskCounter").get("GC_TIME_MILLIS"));
+  }
+
+  @Test
+  public void testReadTasks() throws IOException {
+    List<MapReduceTaskData> mappers = new ArrayList<MapReduceTaskData>();
+    List<MapReduceTaskData> reducers = new ArrayList<MapReduceTaskData>();
+    JobHistoryStreamReader.readTasks(parser(TASKS), mappers, reducers, null);
+
+    Assert.assertEquals(1, mappers.size());
+    Assert.assertEquals("task_1443068695259_9143_m_000000", mappers.get(0).getTaskId());
+    Assert.assertEquals("attempt_1443068695259_9143_m_000000_0", mappers.get(0).getAttemptId());
+    Assert.assertEquals(1, reducers.size());
+    Assert.assertEquals("attempt_1443068695259_9143_r_000000_1", reducers.get(0).getAttemptId());
+  }
+
+  @Test
+  public void testReadTaskTimes() throws IOException {
+    // The second mapper succeeded on its second attempt, its task start time is the start of the failed attempt
+    String tasks = "{\"tasks\":{\"task\":["
+        + "{\"id\":\"task_1443068695259_9143_m_000000\",\"type\":\"MAP\",\"state\":\"SUCCEEDED\","
+        + "\"startTime\":1000,\"finishTime\":3000,\"successfulAttempt\":\"attempt_1443068695259_9143_m_000000_0\"},"
+        + "{\"id\":\"task_1443068695259_9143_m_000001\",\"type\":\"MAP\",\"state\":\"SUCCEEDED\","
+        + "\"startTime\":1000,\"finishTime\":9000,\"successfulAttempt\":\"attempt_1443068695259_9143_m_000001_1\"}"
+        + "]}}";
+    List<MapReduceTaskData> mappers = new ArrayList<MapReduceTaskData>();
+    List<MapReduceTaskData> reducers = new ArrayList<MapReduceTaskData>();
+    Map<String, long[]> taskTimes = new HashMap<String, long[]>();
+    JobHistoryStreamReader.readTasks(parser(tasks), mappers, reducers, taskTimes);
+
+    Assert.assertEquals(2, mappers.size());
+    Assert.assertEquals(1, taskTimes.size());
+    Assert.assertArrayEquals(new long[] { 2000, 0, 0, 1000, 3000 }, taskTimes.get("task_1443068695259_9143_m_000000"));
+    Assert.assertNull(taskTimes.get("task_1443068695259_9143_m_000001"));
+  }
+
+  @Test
+  public void testTaskListExecTime() {
+    Assert.assertNotNull(JobHistoryStreamReader.getTaskListExecTime(true, "attempt_1_1_m_000010_0", 1000, 2000));
+    Assert.assertNull(JobHistoryStreamReader.getTaskListExecTime(true, "attempt_1_1_m_000010_10", 1000, 2000));
+    Assert.assertNull(JobHistoryStreamReader.getTaskListExecTime(true, null, 1000, 2000));
+    Assert.assertNull(JobHistoryStreamReader.getTaskListExecTime(false, "attempt_1_1_r_000000_0", 1000, 2000));
+  }
+
+  @Test
+  public void testReadMissingArray() throws IOException {
+    Assert.assertTrue(JobHistoryStreamReader.readProperties(parser("{\"conf\":{}}")).isEmpty());
+    Assert.assertTrue(JobHistoryStreamReader.readCounters(parser("{\"jobCounters\":{\"id\":\"job_1\"}}"),
+        "counterGroup", "totalCounterValue").getGroupNames().isEmpty());
+  }
+
+  private static JsonParser parser(String json) throws IOException {
+    return new JsonFactory().createJsonParser(json);
+  }
+}
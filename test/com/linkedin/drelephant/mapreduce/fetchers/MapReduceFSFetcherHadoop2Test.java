@@ -69,6 +69,8 @@ public class MapReduceFSFetcherHadoop2Test {
               fetcherConf.getFetchersConfigurationData().get(0));
       Assert.assertFalse("Sampling should be disabled in default", fetcher.isSamplingEnabled());
       Assert.assertEquals(fetcher.DEFALUT_MAX_LOG_SIZE_IN_MB, fetcher.getMaxLogSizeInMB(), 0.0001);
+      Assert.assertEquals(fetcher.DEFAULT_DIR_CACHE_SIZE, fetcher.getDirCacheSize());
+      Assert.assertEquals(fetcher.DEFAULT_DIR_CACHE_TTL_IN_SEC, fetcher.getDirCacheTtlInSec());
 
       List<Object> list = new ArrayList<Object>();
       int listLen = fetcher.MAX_SAMPLE_SIZE * 2;
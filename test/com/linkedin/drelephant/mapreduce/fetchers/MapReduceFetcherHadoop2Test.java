@@ -16,6 +16,14 @@
 
 package com.linkedin.drelephant.mapreduce.fetchers;
 
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -32,4 +40,53 @@ public class MapReduceFetcherHadoop2Test {
         .groupCount());
   }
 
+  @Test
+  public void testTaskListExecTimeMatchesAttempt() throws IOException {
+    Map<String, long[]> taskTimes = readTaskTimes("{\"tasks\":{\"task\":[{"
+        + "\"id\":\"task_1443068695259_9143_m_000475\",\"type\":\"MAP\",\"state\":\"SUCCEEDED\","
+        + "\"startTime\":1443068700000,\"finishTime\":1443068760000,\"elapsedTime\":60000,"
+        + "\"successfulAttempt\":\"attempt_1443068695259_9143_m_000475_0\"}]}}");
+    JsonNode attempt = readJson("{\"id\":\"attempt_1443068695259_9143_m_000475_0\",\"type\":\"MAP\","
+        + "\"state\":\"SUCCEEDED\",\"startTime\":1443068700000,\"finishTime\":1443068760000,"
+        + "\"elapsedTime\":60000}");
+
+    Assert.assertArrayEquals(MapReduceFetcherHadoop2.getAttemptExecTime(attempt),
+        taskTimes.get("task_1443068695259_9143_m_000475"));
+  }
+
+  @Test
+  public void testTaskListExecTimeNeedsAttemptForReducer() throws IOException {
+    Map<String, long[]> taskTimes = readTaskTimes("{\"tasks\":{\"task\":[{"
+        + "\"id\":\"task_1443068695259_9143_r_000001\",\"type\":\"REDUCE\",\"state\":\"SUCCEEDED\","
+        + "\"startTime\":1443068700000,\"finishTime\":1443068760000,"
+        + "\"successfulAttempt\":\"attempt_1443068695259_9143_r_000001_0\"}]}}");
+    JsonNode attempt = readJson("{\"id\":\"attempt_1443068695259_9143_r_000001_0\",\"type\":\"REDUCE\","
+        + "\"state\":\"SUCCEEDED\",\"startTime\":1443068700000,\"finishTime\":1443068760000,"
+        + "\"elapsedShuffleTime\":20000,\"elapsedMergeTime\":10000}");
+
+    Assert.assertNull(taskTimes.get("task_1443068695259_9143_r_000001"));
+    Assert.assertArrayEquals(new long[] { 60000, 20000, 10000, 1443068700000L, 1443068760000L },
+        MapReduceFetcherHadoop2.getAttemptExecTime(attempt));
+  }
+
+  @Test
+  public void testTaskListExecTimeWithoutTimes() throws IOException {
+    Map<String, long[]> taskTimes = readTaskTimes("{\"tasks\":{\"task\":[{"
+        + "\"id\":\"task_1443068695259_9143_m_000475\",\"type\":\"MAP\",\"state\":\"SUCCEEDED\","
+        + "\"successfulAttempt\":\"attempt_1443068695259_9143_m_000475_0\"}]}}");
+
+    Assert.assertTrue(taskTimes.isEmpty());
+  }
+
+  private static Map<String, long[]> readTaskTimes(String json) throws IOException {
+    Map<String, long[]> taskTimes = new HashMap<String, long[]>();
+    JobHistoryStreamReader.readTasks(new JsonFactory().createJsonParser(json), new ArrayList<MapReduceTaskData>(),
+        new ArrayList<MapReduceTaskData>(), taskTimes);
+    return taskTimes;
+  }
+
+  private static JsonNode readJson(String json) throws IOException {
+    return new ObjectMapper().readTree(json);
+  }
+
 }
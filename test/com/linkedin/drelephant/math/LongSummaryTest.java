@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.math;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class LongSummaryTest {
+
+  @Test
+  public void testAccumulators() {
+    LongSummary summary = new LongSummary(2);
+    for (long value : new long[]{4, 8, 2, 6, 10}) {
+      summary.add(value);
+    }
+
+    Assert.assertEquals(5, summary.size());
+    Assert.assertEquals(6, summary.average());
+    Assert.assertEquals(2, summary.min());
+    Assert.assertEquals(10, summary.max());
+    Assert.assertEquals(8d, summary.variance(), 1e-9);
+    Assert.assertEquals(6, summary.median());
+    Assert.assertEquals(10, summary.percentile(100));
+    Assert.assertEquals(2, summary.percentile(10));
+    // The order statistics do not reorder the values
+    Assert.assertArrayEquals(new long[]{4, 8, 2, 6, 10}, summary.toArray());
+
+    summary.add(12);
+    Assert.assertEquals(7, summary.median());
+  }
+
+  @Test
+  public void testEmpty() {
+    LongSummary summary = new LongSummary();
+    Assert.assertEquals(0, summary.average());
+    Assert.assertEquals(0, summary.min());
+    Assert.assertEquals(0, summary.max());
+    Assert.assertEquals(0d, summary.variance(), 0d);
+    Assert.assertEquals(0, summary.findTwoGroups()[1].length);
+  }
+}
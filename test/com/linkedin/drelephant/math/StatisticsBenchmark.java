@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compares LongSummary and the long[] statistics with the List<Long> implementation they replaced, kept below as
+ * Baseline: a boxed column sorted for its median, and two means built from boxed lists.
+ *
+ * The timing is ignored by the test run, run it with the main method or by removing @Ignore. Each iteration builds a
+ * column of n task values, takes its median and average and splits it into two groups.
+ */
+public class StatisticsBenchmark {
+  private static final int[] SIZES = {10000, 100000, 1000000};
+  private static final long VALUES_PER_SIZE = 3000000L;
+
+  public static void main(String[] args) {
+    new StatisticsBenchmark().testThroughput();
+  }
+
+  @Test
+  public void testSameResultsAsBaseline() {
+    Random random = new Random(1);
+    for (int t = 0; t < 2000; t++) {
+      long[] values = randomValues(random, random.nextInt(300));
+      long[][] expected = Baseline.findTwoGroups(values);
+      long[][] actual = Statistics.findTwoGroups(values);
+      Assert.assertArrayEquals(expected[0], actual[0]);
+      Assert.assertArrayEquals(expected[1], actual[1]);
+      if (values.length == 0) {
+        continue;
+      }
+      Assert.assertEquals(Baseline.median(box(values)), Statistics.median(values.clone()));
+      int percentile = 1 + random.nextInt(100);
+      Assert.assertEquals(Baseline.percentile(box(values), percentile),
+          Statistics.percentile(values.clone(), percentile));
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testThroughput() {
+    Random random = new Random(1);
+    System.out.println("    tasks   baseline   LongSummary");
+    for (int n : SIZES) {
+      long[] values = new long[n];
+      for (int i = 0; i < n; i++) {
+        values[i] = (long) (Math.abs(random.nextGaussian()) * 1e9);
+      }
+      int reps = (int) Math.max(3, VALUES_PER_SIZE / n);
+      long sink = 0;
+      double baselineMs = 0;
+      double summaryMs = 0;
+      // The first round warms up
+      for (int round = 0; round < 2; round++) {
+        long start = System.nanoTime();
+        for (int k = 0; k < reps; k++) {
+          List<Long> column = box(values);
+          sink += Baseline.median(column) + Baseline.average(column);
+          sink += Baseline.findTwoGroups(values)[0].length;
+        }
+        long middle = System.nanoTime();
+        for (int k = 0; k < reps; k++) {
+          LongSummary column = new LongSummary(n);
+          for (long value : values) {
+            column.add(value);
+          }
+          sink += column.median() + column.average();
+          sink += column.findTwoGroups()[0].length;
+        }
+        long end = System.nanoTime();
+        baselineMs = (middle - start) / 1e6 / reps;
+        summaryMs = (end - middle) / 1e6 / reps;
+      }
+      System.out.println(String.format("%9d %8.2f ms %10.2f ms", n, baselineMs, summaryMs) + (sink == 42 ? " " : ""));
+    }
+  }
+
+  private static long[] randomValues(Random random, int n) {
+    long[] values = new long[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = random.nextInt(3) == 0 ? random.nextInt(1000000) : random.nextInt(1000);
+    }
+    return values;
+  }
+
+  private static List<Long> box(long[] values) {
+    List<Long> list = new ArrayList<Long>(values.length);
+    for (long value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  /**
+   * The List<Long> statistics as they were before the long[] versions
+   */
+  private static final class Baseline {
+    static long percentile(List<Long> values, int percentile) {
+      Collections.sort(values);
+      int position = (int) Math.ceil(values.size() * percentile / 100.0);
+      return values.get(Math.max(0, position - 1));
+    }
+
+    static long median(List<Long> values) {
+      Collections.sort(values);
+      int middle = values.size() / 2;
+      if (values.size() % 2 == 0) {
+        return (values.get(middle - 1) + values.get(middle)) / 2;
+      }
+      return values.get(middle);
+    }
+
+    static long average(List<Long> values) {
+      double sum = 0d;
+      for (long value : values) {
+        sum += value;
+      }
+      return (long) (sum / (double) values.size());
+    }
+
+    static long average(long[] values) {
+      double sum = 0d;
+      for (long value : values) {
+        sum += value;
+      }
+      return (long) (sum / (double) values.length);
+    }
+
+    static long[][] findTwoGroups(long[] values) {
+      long middle = average(values);
+      for (int levels = 2; levels > 0; levels--) {
+        long[][] groups = twoMeans(values, middle);
+        middle = average(groups[1]) - average(groups[0]);
+      }
+      return twoMeans(values, middle);
+    }
+
+    private static long[][] twoMeans(long[] values, long middle) {
+      List<Long> smaller = new ArrayList<Long>();
+      List<Long> larger = new ArrayList<Long>();
+      for (long value : values) {
+        if (value < middle) {
+          smaller.add(value);
+        } else {
+          larger.add(value);
+        }
+      }
+      return new long[][]{toArray(smaller), toArray(larger)};
+    }
+
+    private static long[] toArray(List<Long> values) {
+      long[] array = new long[values.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = values.get(i);
+      }
+      return array;
+    }
+  }
+}
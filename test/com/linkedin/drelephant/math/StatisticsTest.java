@@ -17,12 +17,15 @@
 package com.linkedin.drelephant.math;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 
@@ -113,4 +116,44 @@ public class StatisticsTest {
     assertEquals(10,Statistics.percentile(finishTimeSingle, 10));
     assertEquals(10,Statistics.percentile(finishTimeSingle, 50));
   }
+
+  @Test
+  public void testListLeftUntouched() {
+    List<Long> values = new ArrayList<Long>(Arrays.asList(5L, 1L, 4L, 2L));
+    assertEquals(3, Statistics.median(values));
+    assertEquals(5, Statistics.percentile(values, 100));
+    assertEquals(Arrays.asList(5L, 1L, 4L, 2L), values);
+  }
+
+  @Test
+  public void testPrimitiveMatchesSort() {
+    Random random = new Random(42);
+    for (int size = 1; size < 200; size += 7) {
+      long[] values = new long[size];
+      for (int i = 0; i < size; i++) {
+        // Few distinct values, so that repeated pivots are exercised
+        values[i] = random.nextInt(size / 3 + 1);
+      }
+      long[] sorted = values.clone();
+      Arrays.sort(sorted);
+
+      long expectedMedian = size % 2 == 0 ? (sorted[size / 2 - 1] + sorted[size / 2]) / 2 : sorted[size / 2];
+      assertEquals(expectedMedian, Statistics.median(values.clone()));
+      for (int percentile = 1; percentile <= 100; percentile += 11) {
+        int position = (int) Math.ceil(size * percentile / 100.0);
+        assertEquals(sorted[position - 1], Statistics.percentile(values.clone(), percentile));
+      }
+    }
+  }
+
+  @Test
+  public void testFindTwoGroups() {
+    long[][] groups = Statistics.findTwoGroups(new long[]{10, 1000, 12, 990, 11, 1010});
+    assertArrayEquals(new long[]{10, 12, 11}, groups[0]);
+    assertArrayEquals(new long[]{1000, 990, 1010}, groups[1]);
+
+    groups = Statistics.findTwoGroups(new long[]{});
+    assertEquals(0, groups[0].length);
+    assertEquals(0, groups[1].length);
+  }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import common.DBTestUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+import static common.DBTestUtil.query;
+
+
+public class AppResultBatchWriterTest {
+
+  private FakeApplication _app;
+
+  @Before
+  public void startApp() {
+    _app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(_app);
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testInsertBatch() throws SQLException {
+    List<AppResult> results = Arrays.asList(createResult("application_1_1", 2, 3),
+        createResult("application_1_2", 4, 1), createResult("application_1_3", 0, 0));
+    insert(results);
+
+    List<List<Object>> apps = query("SELECT id, username, severity, finish_time, resource_used FROM yarn_app_result"
+        + " ORDER BY id");
+    Assert.assertEquals(3, apps.size());
+    Assert.assertEquals(Arrays.<Object>asList("application_1_2", "user1", 1, 2000L, 200L), apps.get(1));
+
+    // The generated ids are set on the heuristic results
+    List<List<Object>> heuristicResults = query("SELECT id, yarn_app_result_id, heuristic_name, severity"
+        + " FROM yarn_app_heuristic_result ORDER BY id");
+    Assert.assertEquals(6, heuristicResults.size());
+    int row = 0;
+    for (AppResult result : results) {
+      for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+        Assert.assertEquals(Arrays.<Object>asList(heuristicResult.id, result.id, heuristicResult.heuristicName, 2),
+            heuristicResults.get(row++));
+      }
+    }
+
+    // Every detail references the heuristic result it belongs to
+    List<List<Object>> details = query("SELECT r.yarn_app_result_id, r.heuristic_name, d.name, d.value"
+        + " FROM yarn_app_heuristic_result_details d"
+        + " JOIN yarn_app_heuristic_result r ON r.id = d.yarn_app_heuristic_result_id"
+        + " ORDER BY r.yarn_app_result_id, r.heuristic_name, d.name");
+    Assert.assertEquals(10, details.size());
+    Assert.assertEquals(Arrays.<Object>asList("application_1_1", "Heuristic 1", "Detail 2", "2"), details.get(5));
+    Assert.assertEquals(Arrays.<Object>asList("application_1_2", "Heuristic 3", "Detail 0", "0"), details.get(9));
+  }
+
+  @Test
+  public void testSecondBatch() throws SQLException {
+    insert(Arrays.asList(createResult("application_1_1", 3, 1)));
+    List<AppResult> results = Arrays.asList(createResult("application_1_2", 2, 2));
+    insert(results);
+
+    // The ids of the second batch follow the ones of the first
+    AppHeuristicResult heuristicResult = results.get(0).yarnAppHeuristicResults.get(1);
+    Assert.assertEquals(Arrays.<Object>asList("application_1_2", "Heuristic 1"),
+        query("SELECT yarn_app_result_id, heuristic_name FROM yarn_app_heuristic_result WHERE id = "
+            + heuristicResult.id).get(0));
+    Assert.assertEquals(2, query("SELECT name FROM yarn_app_heuristic_result_details"
+        + " WHERE yarn_app_heuristic_result_id = " + heuristicResult.id).size());
+  }
+
+  @Test
+  public void testRollback() throws SQLException {
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, Arrays.asList(createResult("application_1_1", 2, 3)));
+      conn.rollback();
+    } finally {
+      conn.close();
+    }
+    Assert.assertTrue(query("SELECT id FROM yarn_app_result").isEmpty());
+    Assert.assertTrue(query("SELECT id FROM yarn_app_heuristic_result").isEmpty());
+    Assert.assertTrue(query("SELECT name FROM yarn_app_heuristic_result_details").isEmpty());
+  }
+
+  private static void insert(List<AppResult> results) throws SQLException {
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, results);
+      conn.commit();
+    } finally {
+      conn.close();
+    }
+  }
+
+  private static AppResult createResult(String id, int heuristics, int detailsPerHeuristic) {
+    int index = Integer.parseInt(id.substring(id.lastIndexOf('_') + 1));
+    AppResult result = DBTestUtil.createAppResult(id, index * 1000L);
+    result.severity = Severity.LOW;
+    result.resourceUsed = index * 100L;
+    result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+    for (int h = 0; h < heuristics; h++) {
+      AppHeuristicResult heuristicResult = new AppHeuristicResult();
+      heuristicResult.heuristicClass = "Class";
+      heuristicResult.heuristicName = "Heuristic " + h;
+      heuristicResult.severity = Severity.MODERATE;
+      heuristicResult.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
+      for (int d = 0; d < detailsPerHeuristic; d++) {
+        AppHeuristicResultDetails details = new AppHeuristicResultDetails();
+        details.name = "Detail " + d;
+        details.value = String.valueOf(d);
+        heuristicResult.yarnAppHeuristicResultDetails.add(details);
+      }
+      result.yarnAppHeuristicResults.add(heuristicResult);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import models.AppResult;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class AppResultPersisterTest {
+  private static final long TIMEOUT_MS = 10 * 1000;
+
+  @Test
+  public void testWritesInBatches() throws Exception {
+    FakeStore store = new FakeStore();
+    AppResultPersister persister = new AppResultPersister(createConf(10, 1), store);
+    persister.start();
+    for (int i = 0; i < 25; i++) {
+      persister.persist(createResult(i));
+    }
+    persister.close();
+
+    Assert.assertEquals(25, store.getWrittenIds().size());
+    for (int size : store._batchSizes) {
+      Assert.assertTrue(size <= 10);
+    }
+  }
+
+  @Test
+  public void testSpillsWhileDatabaseIsDown() throws Exception {
+    FakeStore store = new FakeStore();
+    store._available = false;
+    Configuration conf = createConf(5, 1);
+    final AppResultPersister persister = new AppResultPersister(conf, store);
+    persister.start();
+    for (int i = 0; i < 20; i++) {
+      persister.persist(createResult(i));
+    }
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return persister.isSpilling();
+      }
+    });
+    Assert.assertTrue(store.getWrittenIds().isEmpty());
+
+    // Replayed in order once the database is back
+    store._available = true;
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return !persister.isSpilling();
+      }
+    });
+    persister.close();
+
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 20; i++) {
+      expected.add(createResult(i).id);
+    }
+    Assert.assertEquals(expected, store.getWrittenIds());
+    Assert.assertFalse(new File(conf.get("drelephant.persistence.spill.file")).exists()
+        && new File(conf.get("drelephant.persistence.spill.file")).length() > 0);
+  }
+
+  @Test
+  public void testSpillsWhenQueueIsFull() throws Exception {
+    FakeStore store = new FakeStore();
+    Configuration conf = createConf(5, 2);
+    conf.set("drelephant.persistence.queue.capacity", "2");
+    AppResultPersister persister = new AppResultPersister(conf, store);
+    for (int i = 0; i < 10; i++) {
+      persister.persist(createResult(i));
+    }
+    Assert.assertTrue(persister.isSpilling());
+
+    persister.start();
+    persister.close();
+    Assert.assertEquals(10, store.getWrittenIds().size());
+    Assert.assertFalse(persister.isSpilling());
+  }
+
+  @Test
+  public void testReplaysLeftoverSpillFile() throws Exception {
+    Configuration conf = createConf(5, 1);
+    new ResultSpillFile(new File(conf.get("drelephant.persistence.spill.file")))
+        .append(Arrays.asList(createResult(1), createResult(2)));
+
+    FakeStore store = new FakeStore();
+    AppResultPersister persister = new AppResultPersister(conf, store);
+    Assert.assertTrue(persister.isSpilling());
+    persister.start();
+    persister.persist(createResult(3));
+    persister.close();
+
+    Assert.assertEquals(Arrays.asList(createResult(1).id, createResult(2).id, createResult(3).id),
+        store.getWrittenIds());
+  }
+
+  @Test
+  public void testCachesWrittenResults() throws Exception {
+    FakeStore store = new FakeStore();
+    store._available = false;
+    final RecentResultCache cache = new RecentResultCache(Long.MAX_VALUE / 2, 100, 0);
+    final AppResultPersister persister = new AppResultPersister(createConf(5, 1), store, cache);
+    persister.start();
+    for (int i = 0; i < 10; i++) {
+      persister.persist(createResult(i));
+    }
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return persister.isSpilling();
+      }
+    });
+    // Spilled results are not in the database yet
+    Assert.assertEquals(0, cache.size());
+
+    store._available = true;
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return cache.size() == 10;
+      }
+    });
+    persister.close();
+    Assert.assertEquals(10, cache.getRecent(null, false, 10).size());
+  }
+
+  @Test
+  public void testAcknowledgesWrittenResults() throws Exception {
+    FakeStore store = new FakeStore();
+    store._available = false;
+    final List<String> doneIds = Collections.synchronizedList(new ArrayList<String>());
+    final AppResultPersister persister = new AppResultPersister(createConf(5, 1), store);
+    persister.setWriteListener(new AppResultPersister.WriteListener() {
+      @Override
+      public void onDone(List<AppResult> results) {
+        for (AppResult result : results) {
+          doneIds.add(result.id);
+        }
+      }
+    });
+    persister.start();
+    for (int i = 0; i < 10; i++) {
+      persister.persist(createResult(i));
+    }
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return persister.isSpilling();
+      }
+    });
+    // Spilled results are not acknowledged before they are written
+    Assert.assertTrue(doneIds.isEmpty());
+
+    store._available = true;
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return doneIds.size() == 10;
+      }
+    });
+    persister.close();
+    Assert.assertEquals(store.getWrittenIds(), new ArrayList<String>(doneIds));
+  }
+
+  private static Configuration createConf(int batchSize, int writers) throws IOException {
+    File dir = Files.createTempDirectory("persister").toFile();
+    dir.deleteOnExit();
+    Configuration conf = new Configuration(false);
+    conf.set("drelephant.persistence.batch.size", String.valueOf(batchSize));
+    conf.set("drelephant.persistence.flush.interval.ms", "20");
+    conf.set("drelephant.persistence.replay.interval.ms", "50");
+    conf.set("drelephant.persistence.writer.count", String.valueOf(writers));
+    conf.set("drelephant.persistence.spill.file", new File(dir, "results.jsonl").getPath());
+    return conf;
+  }
+
+  private static AppResult createResult(int i) {
+    AppResult result = new AppResult();
+    result.id = "application_1_" + i;
+    result.severity = Severity.NONE;
+    return result;
+  }
+
+  private static void waitFor(Condition condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!condition.isMet()) {
+      Assert.assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private interface Condition {
+    boolean isMet();
+  }
+
+  private static class FakeStore implements AppResultPersister.ResultStore {
+    private volatile boolean _available = true;
+    private final List<String> _writtenIds = new ArrayList<String>();
+    private final List<Integer> _batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Override
+    public void write(List<AppResult> batch) throws SQLException {
+      if (!_available) {
+        throw new SQLException("Communications link failure");
+      }
+      synchronized (_writtenIds) {
+        for (AppResult result : batch) {
+          _writtenIds.add(result.id);
+        }
+      }
+      _batchSizes.add(batch.size());
+    }
+
+    @Override
+    public void save(AppResult result) {
+      synchronized (_writtenIds) {
+        _writtenIds.add(result.id);
+      }
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return _available;
+    }
+
+    private List<String> getWrittenIds() {
+      synchronized (_writtenIds) {
+        return new ArrayList<String>(_writtenIds);
+      }
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.linkedin.drelephant.persistence;
+
+import com.avaje.ebean.ExpressionList;
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.math.Statistics;
+import common.DBTestUtil;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+import static common.DBTestUtil.query;
+
+
+public class AppResultRollupTest {
+
+  private static final long HOUR = Statistics.HOUR_IN_MS;
+  private static final String[] JOB_TYPES = { "HadoopJava", "Spark", "Hive", "Kafka" };
+  private static final String SELECT_ROLLUP = "SELECT hour_time, job_type, severity, job_count, resource_used,"
+      + " resource_wasted FROM " + AppResultRollup.TABLE_NAME + " ORDER BY hour_time, job_type, severity";
+
+  private FakeApplication _app;
+  private int _nextId = 0;
+
+  @Before
+  public void startApp() {
+    _app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(_app);
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testResultsAreGroupedByHourJobTypeAndSeverity() throws SQLException {
+    write(Arrays.asList(
+        createResult(5 * HOUR + 10, "Spark", Severity.LOW, 100, 10),
+        createResult(3 * HOUR, "HadoopJava", Severity.CRITICAL, 200, 20),
+        createResult(5 * HOUR + HOUR - 1, "spark", Severity.LOW, 300, 30),
+        createResult(5 * HOUR, "Spark", Severity.SEVERE, 400, 40)));
+
+    // One row per hour, job type and severity
+    List<List<Object>> rows = query(SELECT_ROLLUP);
+    Assert.assertEquals(3, rows.size());
+    Assert.assertEquals(Arrays.<Object>asList(3 * HOUR, "HadoopJava", 4, 1, 200L, 20L), rows.get(0));
+    Assert.assertEquals(Arrays.<Object>asList(5 * HOUR, "Spark", 1, 2, 400L, 40L), rows.get(1));
+    Assert.assertEquals(Arrays.<Object>asList(5 * HOUR, "Spark", 3, 1, 400L, 40L), rows.get(2));
+  }
+
+  @Test
+  public void testNoResults() throws SQLException {
+    write(new ArrayList<AppResult>());
+    Assert.assertTrue(query(SELECT_ROLLUP).isEmpty());
+  }
+
+  @Test
+  public void testBatchesAddToExistingRows() throws SQLException {
+    write(Arrays.asList(createResult(5 * HOUR + 10, "Spark", Severity.LOW, 100, 10)));
+    write(Arrays.asList(
+        createResult(5 * HOUR + 20, "Spark", Severity.LOW, 300, 30),
+        createResult(5 * HOUR, "Spark", Severity.SEVERE, 400, 40)));
+
+    List<List<Object>> rows = query(SELECT_ROLLUP);
+    Assert.assertEquals(2, rows.size());
+    Assert.assertEquals(Arrays.<Object>asList(5 * HOUR, "Spark", 1, 2, 400L, 40L), rows.get(0));
+    Assert.assertEquals(Arrays.<Object>asList(5 * HOUR, "Spark", 3, 1, 400L, 40L), rows.get(1));
+  }
+
+  /**
+   * The rows written batch by batch are the ones the evolution computes from all the results at once
+   */
+  @Test
+  public void testSameRowsAsEvolution() throws IOException, SQLException {
+    writeRandomResults();
+    List<List<Object>> rows = query(SELECT_ROLLUP);
+    Assert.assertFalse(rows.isEmpty());
+
+    Connection conn = DB.getConnection();
+    try {
+      conn.createStatement().execute("DELETE FROM " + AppResultRollup.TABLE_NAME);
+    } finally {
+      conn.close();
+    }
+    DBTestUtil.runEvolutionInserts(5);
+    Assert.assertEquals(rows, query(SELECT_ROLLUP));
+  }
+
+  /**
+   * The counts are the ones the dashboards got by counting the results, for a window starting within an hour and
+   * one starting on the hour
+   */
+  @Test
+  public void testSameCountsAsResultCounts() throws SQLException {
+    writeRandomResults();
+    for (long fromTime : new long[] { 7 * HOUR + 1234, 8 * HOUR }) {
+      AppResultRollup.Counts counts = countSince(fromTime);
+      Assert.assertEquals(countResults(fromTime, null, null), counts.getCount());
+      for (Severity severity : Severity.values()) {
+        Assert.assertEquals(countResults(fromTime, null, severity), counts.getCount(severity));
+      }
+      for (String jobType : JOB_TYPES) {
+        Assert.assertEquals(countResults(fromTime, jobType, null), counts.getCount(jobType));
+        for (Severity severity : Severity.values()) {
+          Assert.assertEquals(jobType + " " + severity, countResults(fromTime, jobType, severity),
+              counts.getCount(jobType, severity));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCountSince() throws SQLException {
+    writeWindowResults();
+    AppResultRollup.Counts counts = countSince(7 * HOUR + 42);
+
+    // The rollup is summed from the next whole hour, the rest of the first hour is counted from the results
+    Assert.assertEquals(6, counts.getCount());
+    Assert.assertEquals(3, counts.getCount("Spark"));
+    Assert.assertEquals(3, counts.getCount(Severity.CRITICAL));
+    Assert.assertEquals(2, counts.getCount("HADOOPJAVA", Severity.SEVERE));
+    Assert.assertEquals(0, counts.getCount("Hive"));
+    Assert.assertEquals(0, counts.getCount("Hive", Severity.CRITICAL));
+    Assert.assertEquals(2100, counts.getResourceUsed());
+    Assert.assertEquals(150, counts.getResourceWasted());
+  }
+
+  @Test
+  public void testCountSinceHourStart() throws SQLException {
+    writeWindowResults();
+    AppResultRollup.Counts counts = countSince(7 * HOUR);
+
+    // Results finished exactly at the start of the window are excluded, so that hour comes from the results
+    Assert.assertEquals(7, counts.getCount());
+    Assert.assertEquals(4, counts.getCount("Spark", Severity.CRITICAL));
+    Assert.assertEquals(3100, counts.getResourceUsed());
+  }
+
+  /**
+   * Writes results before, on and after the start of the windows of testCountSince and testCountSinceHourStart
+   */
+  private void writeWindowResults() throws SQLException {
+    write(Arrays.asList(
+        createResult(6 * HOUR, "HadoopJava", Severity.SEVERE, 1000, 100),
+        createResult(7 * HOUR, "Spark", Severity.CRITICAL, 2000, 200),
+        createResult(7 * HOUR + 42, "Spark", Severity.CRITICAL, 1000, 100),
+        createResult(7 * HOUR + 100, "Spark", Severity.CRITICAL, 100, 10),
+        createResult(8 * HOUR, "Spark", Severity.CRITICAL, 200, 20),
+        createResult(9 * HOUR + 5, "Spark", Severity.CRITICAL, 300, 30),
+        createResult(9 * HOUR + 6, "HadoopJava", Severity.SEVERE, 400, 40),
+        createResult(10 * HOUR, "HadoopJava", Severity.SEVERE, 500, 50),
+        createResult(10 * HOUR + 1, "HadoopJava", Severity.NONE, 600, 0)));
+  }
+
+  /**
+   * Writes 400 results of the four job types over six hours, 50 at a time. Some finish on the hour or at the start of
+   * the windows of testSameCountsAsResultCounts.
+   */
+  private void writeRandomResults() throws SQLException {
+    long[] edges = { 7 * HOUR, 7 * HOUR + 1234, 8 * HOUR, 9 * HOUR };
+    Random random = new Random(1);
+    List<AppResult> batch = new ArrayList<AppResult>();
+    for (int i = 0; i < 400; i++) {
+      long finishTime = i % 10 == 0 ? edges[random.nextInt(edges.length)] : 5 * HOUR + random.nextInt(6 * (int) HOUR);
+      batch.add(createResult(finishTime, JOB_TYPES[random.nextInt(JOB_TYPES.length)],
+          Severity.byValue(random.nextInt(5)), random.nextInt(1000), random.nextInt(100)));
+      if (batch.size() == 50) {
+        write(batch);
+        batch = new ArrayList<AppResult>();
+      }
+    }
+  }
+
+  /**
+   * Writes the results like the persister does, with the rollup in the transaction that inserts them
+   */
+  private static void write(List<AppResult> results) throws SQLException {
+    new AppResultPersister.DatabaseStore().write(results);
+  }
+
+  /**
+   * Counts the results like the dashboards did before the rollup
+   */
+  private static int countResults(long fromTime, String jobType, Severity severity) {
+    ExpressionList<AppResult> where = AppResult.find.where().gt(AppResult.TABLE.FINISH_TIME, fromTime);
+    if (jobType != null) {
+      where = where.eq(AppResult.TABLE.JOB_TYPE, jobType);
+    }
+    if (severity != null) {
+      where = where.eq(AppResult.TABLE.SEVERITY, severity.getValue());
+    }
+    return where.findRowCount();
+  }
+
+  private static AppResultRollup.Counts countSince(long fromTime) throws SQLException {
+    Connection conn = DB.getConnection();
+    try {
+      return AppResultRollup.countSince(conn, fromTime);
+    } finally {
+      conn.close();
+    }
+  }
+
+  private AppResult createResult(long finishTime, String jobType, Severity severity, long resourceUsed,
+      long resourceWasted) {
+    AppResult result = DBTestUtil.createAppResult("application_1_" + _nextId++, finishTime);
+    result.jobType = jobType;
+    result.severity = severity;
+    result.resourceUsed = resourceUsed;
+    result.resourceWasted = resourceWasted;
+    return result;
+  }
+}
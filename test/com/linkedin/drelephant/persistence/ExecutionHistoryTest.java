@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import common.DBTestUtil;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+import static common.DBTestUtil.query;
+
+
+public class ExecutionHistoryTest {
+
+  private static final String SELECT_FLOWS = "SELECT flow_exec_id, flow_def_id, flow_exec_url, app_count, score,"
+      + " severity, resource_used, resource_wasted, start_time, finish_time FROM " + ExecutionHistory.FLOW_TABLE_NAME
+      + " ORDER BY flow_exec_id";
+  private static final String SELECT_JOBS = "SELECT job_exec_id, job_def_id, flow_exec_id, job_exec_url, job_def_url,"
+      + " app_count, score, severity, resource_used, resource_wasted, start_time, first_finish_time, finish_time FROM "
+      + ExecutionHistory.JOB_TABLE_NAME + " ORDER BY job_exec_id";
+
+  private FakeApplication _app;
+  private int _nextId = 0;
+
+  @Before
+  public void startApp() {
+    _app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(_app);
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testResultsAreSummedPerExecution() throws SQLException {
+    write(Arrays.asList(
+        createResult("flow2", "flow2-jobA", 1000, 5000, 10, Severity.LOW, 100, 10),
+        createResult("flow1", "flow1-jobA", 2000, 3000, 20, Severity.SEVERE, 200, 20),
+        createResult("flow2", "flow2-jobB", 500, 4000, 30, Severity.MODERATE, 300, 30),
+        createResult("flow2", "flow2-jobA", 1500, 6000, 40, Severity.CRITICAL, 400, 40),
+        createResult("", "", 100, 200, 50, Severity.CRITICAL, 500, 50)));
+
+    // One row per flow execution, the unscheduled result is left out
+    List<List<Object>> flows = query(SELECT_FLOWS);
+    Assert.assertEquals(2, flows.size());
+    Assert.assertEquals(Arrays.<Object>asList("flow1", "flow1-def", "flow1-url", 1, 20, 3, 200L, 20L, 2000L, 3000L),
+        flows.get(0));
+    Assert.assertEquals(Arrays.<Object>asList("flow2", "flow2-def", "flow2-url", 3, 80, 4, 800L, 80L, 500L, 6000L),
+        flows.get(1));
+
+    // One row per job execution, with the first finish time
+    List<List<Object>> jobs = query(SELECT_JOBS);
+    Assert.assertEquals(3, jobs.size());
+    Assert.assertEquals("flow1-jobA", jobs.get(0).get(0));
+    Assert.assertEquals(Arrays.<Object>asList("flow2-jobA", "jobA-def", "flow2", "flow2-jobA-url", "jobA-def-url", 2,
+        50, 4, 500L, 50L, 1000L, 5000L, 6000L), jobs.get(1));
+    Assert.assertEquals("flow2-jobB", jobs.get(2).get(0));
+  }
+
+  @Test
+  public void testBatchesUpdateExistingRows() throws SQLException {
+    write(Arrays.asList(createResult("flow1", "flow1-jobA", 2000, 3000, 10, Severity.MODERATE, 100, 10)));
+    // Starts first, finishes last and is the most severe
+    write(Arrays.asList(createResult("flow1", "flow1-jobA", 1000, 6000, 20, Severity.CRITICAL, 200, 20)));
+    // Within the span of the others and less severe
+    write(Arrays.asList(createResult("flow1", "flow1-jobA", 1500, 2500, 30, Severity.LOW, 300, 30)));
+
+    Assert.assertEquals(Arrays.<Object>asList("flow1", "flow1-def", "flow1-url", 3, 60, 4, 600L, 60L, 1000L, 6000L),
+        query(SELECT_FLOWS).get(0));
+    Assert.assertEquals(Arrays.<Object>asList("flow1-jobA", "jobA-def", "flow1", "flow1-jobA-url", "jobA-def-url", 3,
+        60, 4, 600L, 60L, 1000L, 2500L, 6000L), query(SELECT_JOBS).get(0));
+  }
+
+  /**
+   * The rows written batch by batch are the ones the evolution computes from all the results at once
+   */
+  @Test
+  public void testSameRowsAsEvolution() throws IOException, SQLException {
+    write(Arrays.asList(
+        createResult("flow2", "flow2-jobA", 1000, 5000, 10, Severity.LOW, 100, 10),
+        createResult("flow1", "flow1-jobA", 2000, 3000, 20, Severity.SEVERE, 200, 20)));
+    write(Arrays.asList(
+        createResult("flow2", "flow2-jobB", 500, 4000, 30, Severity.MODERATE, 300, 30),
+        createResult("flow2", "flow2-jobA", 1500, 6000, 40, Severity.CRITICAL, 400, 40),
+        createResult("", "", 100, 200, 50, Severity.CRITICAL, 500, 50)));
+    write(Arrays.asList(createResult("flow2", "flow2-jobA-retry", 7000, 8000, 60, Severity.NONE, 600, 60)));
+    List<List<Object>> flows = query(SELECT_FLOWS);
+    List<List<Object>> jobs = query(SELECT_JOBS);
+
+    Connection conn = DB.getConnection();
+    try {
+      conn.createStatement().execute("DELETE FROM " + ExecutionHistory.FLOW_TABLE_NAME);
+      conn.createStatement().execute("DELETE FROM " + ExecutionHistory.JOB_TABLE_NAME);
+    } finally {
+      conn.close();
+    }
+    DBTestUtil.runEvolutionInserts(7);
+    Assert.assertEquals(flows, query(SELECT_FLOWS));
+    Assert.assertEquals(jobs, query(SELECT_JOBS));
+  }
+
+  @Test
+  public void testNoScheduledResults() throws SQLException {
+    write(Arrays.asList(createResult("", "", 100, 200, 50, Severity.CRITICAL, 500, 50)));
+    Assert.assertTrue(query(SELECT_FLOWS).isEmpty());
+    Assert.assertTrue(query(SELECT_JOBS).isEmpty());
+  }
+
+  @Test
+  public void testGetFlowExecutions() throws SQLException {
+    // jobA ran twice in flow2
+    AppResult jobA = createResult("flow2", "flow2-jobA", 1000, 2000, 10, Severity.LOW, 100, 10);
+    jobA.totalDelay = 5;
+    AppResult jobB = createResult("flow2", "flow2-jobB", 500, 4000, 30, Severity.MODERATE, 300, 30);
+    jobB.totalDelay = 11;
+    AppResult jobARetry = createResult("flow2", "flow2-jobA-retry", 3000, 6000, 40, Severity.CRITICAL, 400, 40);
+    jobARetry.totalDelay = 7;
+    AppResult flow1JobA = createResult("flow1", "flow1-jobA", 2000, 3000, 20, Severity.SEVERE, 200, 20);
+    flow1JobA.totalDelay = 13;
+    write(Arrays.asList(jobA, jobB, jobARetry, flow1JobA));
+
+    List<ExecutionHistory.FlowExecution> flows = getFlowExecutions("flow2-def", 15);
+    Assert.assertEquals(1, flows.size());
+    ExecutionHistory.FlowExecution flow = flows.get(0);
+    Assert.assertEquals("flow2", flow.getFlowExecId());
+    Assert.assertEquals(80L, flow.getScore());
+    Assert.assertEquals(6000L, flow.getFinishTime());
+    Assert.assertEquals(5500L, flow.getRuntime());
+    // jobB overlaps both applications of jobA, so the trail is the last application only
+    Assert.assertEquals(7L, flow.getWaittime());
+
+    // The executions of a job are merged, the jobs are ordered by their first finish time
+    Assert.assertEquals(2, flow.getJobs().size());
+    ExecutionHistory.JobExecution mergedJobA = flow.getJobs().get(0);
+    Assert.assertEquals("jobA-def", mergedJobA.getJobDefId());
+    Assert.assertEquals("flow2-jobA-url", mergedJobA.getJobExecUrl());
+    Assert.assertEquals(50L, mergedJobA.getScore());
+    Assert.assertEquals(4, mergedJobA.getSeverity());
+    Assert.assertEquals(500L, mergedJobA.getResourceUsed());
+    Assert.assertEquals(5000L, mergedJobA.getRuntime());
+    // The trail of jobA: 7 + (3000 - 2000) + 5
+    Assert.assertEquals(1012L, mergedJobA.getWaittime());
+    ExecutionHistory.JobExecution mergedJobB = flow.getJobs().get(1);
+    Assert.assertEquals("jobB-def", mergedJobB.getJobDefId());
+    Assert.assertEquals(11L, mergedJobB.getWaittime());
+
+    flows = getFlowExecutions("flow1-def", 15);
+    Assert.assertEquals("flow1", flows.get(0).getFlowExecId());
+    Assert.assertEquals(1, flows.get(0).getJobs().size());
+    Assert.assertEquals(13L, flows.get(0).getWaittime());
+  }
+
+  @Test
+  public void testGetFlowExecutionsOfUnknownFlow() throws SQLException {
+    Assert.assertTrue(getFlowExecutions("flow-def", 15).isEmpty());
+  }
+
+  @Test
+  public void testGetFlowExecIds() throws SQLException {
+    // The job ran three times in flow3
+    write(Arrays.asList(
+        createResult("flow4", "flow4-jobA", 5500, 6000, 0, Severity.NONE, 0, 0),
+        createResult("flow3", "flow3-jobA", 4000, 5000, 0, Severity.NONE, 0, 0),
+        createResult("flow3", "flow3-jobA-2", 4000, 4900, 0, Severity.NONE, 0, 0),
+        createResult("flow3", "flow3-jobA-3", 4000, 4800, 0, Severity.NONE, 0, 0),
+        createResult("flow2", "flow2-jobA", 2500, 3000, 0, Severity.NONE, 0, 0),
+        createResult("flow1", "flow1-jobA", 1500, 2000, 0, Severity.NONE, 0, 0)));
+
+    Connection conn = DB.getConnection();
+    try {
+      // More rows are read until three flow executions are found
+      Assert.assertEquals(Arrays.asList("flow4", "flow3", "flow2"),
+          ExecutionHistory.getFlowExecIds(conn, "jobA-def", 3));
+
+      // Every execution when there are fewer
+      Assert.assertEquals(Arrays.asList("flow4", "flow3", "flow2", "flow1"),
+          ExecutionHistory.getFlowExecIds(conn, "jobA-def", 15));
+    } finally {
+      conn.close();
+    }
+  }
+
+  private static void write(List<AppResult> results) throws SQLException {
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, results);
+      ExecutionHistory.add(conn, results);
+      conn.commit();
+    } finally {
+      conn.close();
+    }
+  }
+
+  private static List<ExecutionHistory.FlowExecution> getFlowExecutions(String flowDefId, int limit)
+      throws SQLException {
+    Connection conn = DB.getConnection();
+    try {
+      return ExecutionHistory.getFlowExecutions(conn, flowDefId, limit, true);
+    } finally {
+      conn.close();
+    }
+  }
+
+  /**
+   * Returns a result of the flow and job execution, whose job definition is named after the letter following "job"
+   * in the job execution id
+   */
+  private AppResult createResult(String flowExecId, String jobExecId, long startTime, long finishTime, int score,
+      Severity severity, long resourceUsed, long resourceWasted) {
+    AppResult result = DBTestUtil.createAppResult("application_1_" + _nextId++, finishTime);
+    result.flowExecId = flowExecId;
+    result.flowDefId = flowExecId.isEmpty() ? "" : flowExecId + "-def";
+    result.flowExecUrl = flowExecId.isEmpty() ? "" : flowExecId + "-url";
+    result.jobExecId = jobExecId;
+    result.jobExecUrl = jobExecId.isEmpty() ? "" : jobExecId + "-url";
+    result.jobDefId = jobExecId.isEmpty() ? "" : "job" + jobExecId.charAt(jobExecId.indexOf("job") + 3) + "-def";
+    result.jobDefUrl = jobExecId.isEmpty() ? "" : result.jobDefId + "-url";
+    result.startTime = startTime;
+    result.finishTime = finishTime;
+    result.score = score;
+    result.severity = severity;
+    result.resourceUsed = resourceUsed;
+    result.resourceWasted = resourceWasted;
+    return result;
+  }
+}
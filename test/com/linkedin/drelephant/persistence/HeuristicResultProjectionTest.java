@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.HeuristicResultProjection.HeuristicResultView;
+import common.CountingDriver;
+import common.DBTestUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+
+public class HeuristicResultProjectionTest {
+
+  private static final int HEURISTICS_PER_APP = 10;
+  private static final int DETAILS_PER_HEURISTIC = 4;
+
+  private FakeApplication _app;
+
+  @Before
+  public void startApp() {
+    _app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(_app);
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testOneQueryPerLevel() throws SQLException {
+    insert(100, DETAILS_PER_HEURISTIC);
+    CountingDriver.resetStatementCount();
+    Map<String, List<HeuristicResultView>> results = load(appIds(0, 100), true);
+
+    // 100 applications, 1000 heuristic results and 4000 details in two statements
+    Assert.assertEquals(2, CountingDriver.getStatementCount());
+
+    Assert.assertEquals(100, results.size());
+    List<HeuristicResultView> heuristicResults = results.get("application_1_7");
+    Assert.assertEquals(HEURISTICS_PER_APP, heuristicResults.size());
+    Assert.assertEquals("application_1_7", heuristicResults.get(3).appId);
+    Assert.assertEquals("Heuristic 3", heuristicResults.get(3).heuristicName);
+    Assert.assertEquals(Severity.SEVERE, heuristicResults.get(3).severity);
+    Assert.assertEquals(DETAILS_PER_HEURISTIC, heuristicResults.get(3).details.size());
+    Assert.assertEquals("application_1_7 Heuristic 3", heuristicResults.get(3).details.get(2).value);
+  }
+
+  @Test
+  public void testWithoutDetails() throws SQLException {
+    insert(50, DETAILS_PER_HEURISTIC);
+    CountingDriver.resetStatementCount();
+    Map<String, List<HeuristicResultView>> results = load(appIds(0, 60), false);
+
+    Assert.assertEquals(1, CountingDriver.getStatementCount());
+    // Applications without heuristic results are left out
+    Assert.assertEquals(50, results.size());
+    Assert.assertTrue(results.get("application_1_0").get(0).details.isEmpty());
+  }
+
+  @Test
+  public void testStatementsGrowWithBatchesNotRows() throws SQLException {
+    int apps = HeuristicResultProjection.MAX_IDS_PER_QUERY + 1;
+    insert(apps, 1);
+    CountingDriver.resetStatementCount();
+    Map<String, List<HeuristicResultView>> results = load(appIds(0, apps), true);
+
+    // 2 batches of application ids, then ceil(10010 / 1000) batches of heuristic result ids
+    int heuristicResults = apps * HEURISTICS_PER_APP;
+    int detailBatches = (heuristicResults + HeuristicResultProjection.MAX_IDS_PER_QUERY - 1)
+        / HeuristicResultProjection.MAX_IDS_PER_QUERY;
+    Assert.assertEquals(2 + detailBatches, CountingDriver.getStatementCount());
+    Assert.assertEquals(apps, results.size());
+    Assert.assertEquals(1, results.get("application_1_" + (apps - 1)).get(HEURISTICS_PER_APP - 1).details.size());
+  }
+
+  private static Map<String, List<HeuristicResultView>> load(List<String> appIds, boolean withDetails)
+      throws SQLException {
+    Connection conn = CountingDriver.counting(DB.getConnection());
+    try {
+      return HeuristicResultProjection.load(conn, appIds, withDetails);
+    } finally {
+      conn.close();
+    }
+  }
+
+  /**
+   * Inserts HEURISTICS_PER_APP heuristic results per application, the value of their details names the heuristic
+   * result
+   */
+  private static void insert(int apps, int detailsPerHeuristic) throws SQLException {
+    List<AppResult> results = new ArrayList<AppResult>();
+    for (String appId : appIds(0, apps)) {
+      AppResult result = DBTestUtil.createAppResult(appId, 1000);
+      result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+      for (int h = 0; h < HEURISTICS_PER_APP; h++) {
+        AppHeuristicResult heuristicResult = new AppHeuristicResult();
+        heuristicResult.heuristicClass = "Class";
+        heuristicResult.heuristicName = "Heuristic " + h;
+        heuristicResult.severity = Severity.byValue(h % 5);
+        heuristicResult.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
+        for (int d = 0; d < detailsPerHeuristic; d++) {
+          AppHeuristicResultDetails details = new AppHeuristicResultDetails();
+          details.name = "Detail " + d;
+          details.value = appId + " " + heuristicResult.heuristicName;
+          heuristicResult.yarnAppHeuristicResultDetails.add(details);
+        }
+        result.yarnAppHeuristicResults.add(heuristicResult);
+      }
+      results.add(result);
+    }
+
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, results);
+      conn.commit();
+    } finally {
+      conn.close();
+    }
+  }
+
+  private static List<String> appIds(int from, int to) {
+    List<String> ids = new ArrayList<String>();
+    for (int i = from; i < to; i++) {
+      ids.add("application_1_" + i);
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.math.Statistics;
+import common.DBTestUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import models.AppHeuristicResult;
+import models.AppResult;
+import org.junit.Assert;
+import org.junit.Test;
+import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+
+public class RecentResultCacheTest {
+
+  private final long _now = System.currentTimeMillis();
+
+  @Test
+  public void testRecentResults() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 100, _now - Statistics.HOUR_IN_MS);
+    List<AppResult> results = new ArrayList<AppResult>();
+    for (int i = 0; i < 10; i++) {
+      results.add(createResult(i, "user1", i % 2 == 0 ? "flow" + i : "", Severity.NONE));
+    }
+    results.add(createResult(10, "user2", "", Severity.NONE));
+    Collections.shuffle(results);
+    cache.add(results);
+
+    Assert.assertEquals(ids(0, 1, 2), ids(cache.getRecent("user1", false, 3)));
+    Assert.assertEquals(ids(0, 2, 4), ids(cache.getRecent("user1", true, 3)));
+    Assert.assertEquals(ids(10), ids(cache.getRecent("user2", false, 1)));
+    Assert.assertEquals(11, cache.getRecent(null, false, 11).size());
+
+    // Older results may be in the database only
+    Assert.assertNull(cache.getRecent("user1", true, 6));
+    Assert.assertNull(cache.getRecent("user2", false, 2));
+    Assert.assertNull(cache.getRecent("user3", false, 1));
+  }
+
+  @Test
+  public void testResultsBeforeTheCoverageAreNotAnswered() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 100, _now - 5000);
+    cache.add(Arrays.asList(createResult(2, "user1", "", Severity.NONE), createResult(10, "user1", "", Severity.NONE)));
+
+    Assert.assertEquals(ids(2), ids(cache.getRecent("user1", false, 1)));
+    Assert.assertNull(cache.getRecent("user1", false, 2));
+    Assert.assertNull(cache.countSince(_now - 6000));
+    Assert.assertEquals(1, cache.countSince(_now - 5001).getCount());
+  }
+
+  @Test
+  public void testEvictsBeyondMaxResults() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 3, _now - Statistics.HOUR_IN_MS);
+    Severity[] severities = { Severity.NONE, Severity.LOW, Severity.MODERATE, Severity.SEVERE, Severity.CRITICAL };
+    for (int i = 0; i < 5; i++) {
+      cache.add(Collections.singletonList(createResult(i, "user1", "", severities[i])));
+    }
+
+    Assert.assertEquals(3, cache.size());
+    Assert.assertEquals(ids(0, 1, 2), ids(cache.getRecent(null, false, 3)));
+    Assert.assertNull(cache.getRecent(null, false, 4));
+    Assert.assertNull(cache.countSince(_now - Statistics.HOUR_IN_MS));
+
+    AppResultRollup.Counts counts = cache.countSince(finishTime(3));
+    Assert.assertEquals(3, counts.getCount());
+    Assert.assertEquals(1, counts.getCount(Severity.LOW));
+    Assert.assertEquals(0, counts.getCount(Severity.SEVERE));
+    Assert.assertEquals(3, counts.getCount("hadoopjava"));
+  }
+
+  @Test
+  public void testResultsOutsideTheWindowAreNotKept() {
+    RecentResultCache cache = new RecentResultCache(60 * 1000, 100, _now - 60 * 1000);
+    cache.add(
+        Arrays.asList(createResult(1, "user1", "", Severity.NONE), createResult(120, "user1", "", Severity.NONE)));
+
+    Assert.assertEquals(1, cache.size());
+    Assert.assertNull(cache.getRecent("user1", false, 2));
+  }
+
+  @Test
+  public void testSeverities() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 100, _now - Statistics.HOUR_IN_MS);
+    cache.add(Arrays.asList(createResult(0, "user1", "", Severity.NONE), createResult(1, "user1", "", Severity.SEVERE),
+        createResult(2, "user1", "", Severity.LOW), createResult(3, "user1", "", Severity.CRITICAL),
+        createResult(4, "user1", "", Severity.NONE)));
+
+    EnumSet<Severity> bad = EnumSet.of(Severity.SEVERE, Severity.CRITICAL);
+    EnumSet<Severity> good = EnumSet.of(Severity.NONE, Severity.LOW, Severity.MODERATE);
+    Assert.assertEquals(ids(1, 3), ids(cache.getRecent(bad, 0, 2)));
+    Assert.assertEquals(ids(0, 2), ids(cache.getRecent(good, 0, 2)));
+    Assert.assertNull(cache.getRecent(good, 0, 4));
+
+    // The whole range is held, so fewer results are the answer
+    Assert.assertEquals(ids(0, 2), ids(cache.getRecent(good, finishTime(3), 50)));
+  }
+
+  @Test
+  public void testFlowExecutions() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 3, _now - Statistics.HOUR_IN_MS);
+    cache.add(Arrays.asList(createResult(5, "user1", "flow1", Severity.NONE),
+        createResult(4, "user1", "flow1", Severity.NONE), createResult(3, "user1", "flow2", Severity.NONE)));
+
+    Assert.assertEquals(ids(4, 5), ids(cache.getFlowExecution("flow1")));
+    Assert.assertEquals(ids(3), ids(cache.getFlowExecution("flow2")));
+    Assert.assertNull(cache.getFlowExecution("flow3"));
+
+    // The first result of flow1 is evicted
+    cache.add(Collections.singletonList(createResult(2, "user1", "flow2", Severity.NONE)));
+    Assert.assertNull(cache.getFlowExecution("flow1"));
+    Assert.assertEquals(ids(2, 3), ids(cache.getFlowExecution("flow2")));
+  }
+
+  @Test
+  public void testHeuristicSummaries() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 100, _now - Statistics.HOUR_IN_MS);
+    AppResult result = createResult(0, "user1", "", Severity.LOW);
+    AppHeuristicResult heuristicResult = new AppHeuristicResult();
+    heuristicResult.heuristicName = "Mapper GC";
+    heuristicResult.severity = Severity.LOW;
+    result.yarnAppHeuristicResults = Collections.singletonList(heuristicResult);
+    cache.add(Collections.singletonList(result));
+
+    AppResult summary = cache.getRecent("user1", false, 1).get(0);
+    Assert.assertNotSame(result, summary);
+    Assert.assertEquals("Mapper GC", summary.yarnAppHeuristicResults.get(0).heuristicName);
+    Assert.assertEquals(Severity.LOW, summary.yarnAppHeuristicResults.get(0).severity);
+    Assert.assertSame(summary, summary.yarnAppHeuristicResults.get(0).yarnAppResult);
+  }
+
+  @Test
+  public void testLoad() throws SQLException {
+    FakeApplication app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(app);
+    try {
+      List<AppResult> results = new ArrayList<AppResult>();
+      results.add(createStoredResult(1, "flow1"));
+      results.add(createStoredResult(2, "flow1"));
+      results.add(createStoredResult(3, ""));
+      // Finished before the window
+      results.add(createStoredResult(2 * 3600, "flow1"));
+      Connection conn = DB.getConnection(false);
+      try {
+        AppResultBatchWriter.insert(conn, results);
+        conn.commit();
+      } finally {
+        conn.close();
+      }
+
+      RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 100, _now);
+      conn = DB.getConnection();
+      try {
+        Assert.assertEquals(3, cache.load(conn, _now - Statistics.HOUR_IN_MS));
+      } finally {
+        conn.close();
+      }
+
+      List<AppResult> recent = cache.getRecent("user1", false, 3);
+      Assert.assertEquals(ids(1, 2, 3), ids(recent));
+      Assert.assertEquals(Severity.MODERATE, recent.get(0).severity);
+      Assert.assertEquals("Mapper GC", recent.get(0).yarnAppHeuristicResults.get(0).heuristicName);
+      Assert.assertEquals(3, cache.countSince(finishTime(4)).getCount());
+
+      // flow1 may have results which finished before the window
+      Assert.assertNull(cache.getFlowExecution("flow1"));
+      cache.add(Collections.singletonList(createResult(0, "user1", "flow2", Severity.NONE)));
+      Assert.assertEquals(ids(0), ids(cache.getFlowExecution("flow2")));
+    } finally {
+      Helpers.stop(app);
+    }
+  }
+
+  @Test
+  public void testDisabled() {
+    RecentResultCache cache = new RecentResultCache(Statistics.HOUR_IN_MS, 0, 0);
+    cache.add(Collections.singletonList(createResult(0, "user1", "flow1", Severity.NONE)));
+
+    Assert.assertEquals(0, cache.size());
+    Assert.assertNull(cache.getRecent(null, false, 1));
+    Assert.assertNull(cache.getFlowExecution("flow1"));
+    Assert.assertNull(cache.countSince(_now - 1000));
+  }
+
+  /**
+   * A result which finished i seconds ago
+   */
+  private AppResult createResult(int i, String username, String flowExecId, Severity severity) {
+    AppResult result = new AppResult();
+    result.id = "application_1_" + i;
+    result.username = username;
+    result.jobType = "HadoopJava";
+    result.finishTime = finishTime(i);
+    result.flowExecId = flowExecId;
+    result.jobDefId = "";
+    result.severity = severity;
+    return result;
+  }
+
+  private long finishTime(int i) {
+    return _now - i * 1000L;
+  }
+
+  /**
+   * A moderate result of user1 with one heuristic result, which finished i seconds ago
+   */
+  private AppResult createStoredResult(int i, String flowExecId) {
+    AppResult result = DBTestUtil.createAppResult("application_1_" + i, finishTime(i));
+    result.flowExecId = flowExecId;
+    result.severity = Severity.MODERATE;
+    AppHeuristicResult heuristicResult = new AppHeuristicResult();
+    heuristicResult.heuristicClass = "Class";
+    heuristicResult.heuristicName = "Mapper GC";
+    heuristicResult.severity = Severity.LOW;
+    result.yarnAppHeuristicResults = Collections.singletonList(heuristicResult);
+    return result;
+  }
+
+  private static List<String> ids(int... indexes) {
+    List<String> ids = new ArrayList<String>();
+    for (int i : indexes) {
+      ids.add("application_1_" + i);
+    }
+    return ids;
+  }
+
+  private static List<String> ids(List<AppResult> results) {
+    List<String> ids = new ArrayList<String>();
+    for (AppResult result : results) {
+      ids.add(result.id);
+    }
+    return ids;
+  }
+}
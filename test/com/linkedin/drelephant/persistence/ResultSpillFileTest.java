@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.persistence;
+
+import com.linkedin.drelephant.analysis.Severity;
+import java.io.BufferedReader;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ResultSpillFileTest {
+
+  @Test
+  public void testEncodeDecode() {
+    AppResult result = new AppResult();
+    result.id = "application_1_1";
+    result.name = "job \"quoted\"\nname";
+    result.finishTime = 1464218534148L;
+    result.severity = Severity.SEVERE;
+    result.resourceUsed = 4096;
+    result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+    AppHeuristicResult heuristicResult = new AppHeuristicResult();
+    heuristicResult.heuristicName = "Mapper GC";
+    heuristicResult.severity = Severity.LOW;
+    heuristicResult.score = 12;
+    heuristicResult.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
+    AppHeuristicResultDetails details = new AppHeuristicResultDetails();
+    details.name = "GC time";
+    details.value = "12 %";
+    heuristicResult.yarnAppHeuristicResultDetails.add(details);
+    result.yarnAppHeuristicResults.add(heuristicResult);
+
+    String line = ResultSpillFile.encode(result);
+    Assert.assertFalse(line.contains("\n"));
+    AppResult decoded = ResultSpillFile.decode(line);
+
+    Assert.assertEquals(result.id, decoded.id);
+    Assert.assertEquals(result.name, decoded.name);
+    Assert.assertEquals(result.finishTime, decoded.finishTime);
+    Assert.assertEquals(Severity.SEVERE, decoded.severity);
+    Assert.assertEquals(4096, decoded.resourceUsed);
+    Assert.assertNull(decoded.queueName);
+    AppHeuristicResult decodedHeuristic = decoded.yarnAppHeuristicResults.get(0);
+    Assert.assertEquals("Mapper GC", decodedHeuristic.heuristicName);
+    Assert.assertEquals(Severity.LOW, decodedHeuristic.severity);
+    Assert.assertEquals(12, decodedHeuristic.score);
+    Assert.assertSame(decoded, decodedHeuristic.yarnAppResult);
+    Assert.assertEquals("12 %", decodedHeuristic.yarnAppHeuristicResultDetails.get(0).value);
+    Assert.assertNull(decodedHeuristic.yarnAppHeuristicResultDetails.get(0).details);
+  }
+
+  @Test
+  public void testRotate() throws Exception {
+    File dir = Files.createTempDirectory("spill").toFile();
+    ResultSpillFile spillFile = new ResultSpillFile(new File(dir, "results.jsonl"));
+    Assert.assertTrue(spillFile.isEmpty());
+    Assert.assertFalse(spillFile.rotate());
+
+    spillFile.append(Arrays.asList(createResult("application_1_1")));
+    Assert.assertTrue(spillFile.rotate());
+    // Appended after the rotation, so not part of this replay
+    spillFile.append(Arrays.asList(createResult("application_1_2")));
+
+    BufferedReader reader = spillFile.openReplay();
+    Assert.assertEquals("application_1_1", ResultSpillFile.decode(reader.readLine()).id);
+    Assert.assertNull(reader.readLine());
+    reader.close();
+    spillFile.deleteReplay();
+
+    Assert.assertFalse(spillFile.isEmpty());
+    Assert.assertTrue(spillFile.rotate());
+    reader = spillFile.openReplay();
+    Assert.assertEquals("application_1_2", ResultSpillFile.decode(reader.readLine()).id);
+    reader.close();
+    spillFile.deleteReplay();
+    Assert.assertTrue(spillFile.isEmpty());
+    spillFile.close();
+  }
+
+  private static AppResult createResult(String id) {
+    AppResult result = new AppResult();
+    result.id = id;
+    return result;
+  }
+}
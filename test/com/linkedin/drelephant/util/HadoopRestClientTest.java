@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class HadoopRestClientTest {
+
+  private static final long HOUR_IN_MS = 60 * 60 * 1000L;
+
+  @Test
+  public void testTokenIsSharedUntilItExpires() throws Exception {
+    TestClient client = new TestClient(new Configuration(false));
+    URL url = new URL("http://localhost:19888/ws/v1/history");
+
+    Assert.assertEquals("token-1", client.getAuthToken(url));
+    Assert.assertEquals("token-1", client.getAuthToken(url));
+    Assert.assertEquals(1, client._handshakes.get());
+
+    client._time += HOUR_IN_MS;
+    Assert.assertEquals("token-2", client.getAuthToken(url));
+    Assert.assertEquals("token-2", client.getAuthToken(url));
+    Assert.assertEquals(2, client._handshakes.get());
+  }
+
+  @Test
+  public void testConcurrentRefreshAuthenticatesOnce() throws Exception {
+    final TestClient client = new TestClient(new Configuration(false));
+    client._handshakeDelayMs = 50;
+    final URL url = new URL("http://localhost:19888/ws/v1/history");
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<Future<String>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return client.getAuthToken(url);
+          }
+        }));
+      }
+      for (Future<String> future : futures) {
+        Assert.assertEquals("token-1", future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(1, client._handshakes.get());
+  }
+
+  @Test
+  public void testFailedHandshakeIsRetried() throws Exception {
+    TestClient client = new TestClient(new Configuration(false));
+    URL url = new URL("http://localhost:19888/ws/v1/history");
+
+    client._failHandshake = true;
+    try {
+      client.getAuthToken(url);
+      Assert.fail("The handshake should have failed");
+    } catch (AuthenticationException e) {
+      // Expected
+    }
+
+    client._failHandshake = false;
+    Assert.assertEquals("token-2", client.getAuthToken(url));
+
+    // A failed refresh does not publish anything, the next request authenticates again
+    client._time += HOUR_IN_MS;
+    client._failHandshake = true;
+    try {
+      client.getAuthToken(url);
+      Assert.fail("The handshake should have failed");
+    } catch (AuthenticationException e) {
+      // Expected
+    }
+    client._failHandshake = false;
+    Assert.assertEquals("token-4", client.getAuthToken(url));
+    Assert.assertEquals(4, client._handshakes.get());
+  }
+
+  @Test(timeout = 30000)
+  public void testFailedRequestReleasesItsPermit() throws Exception {
+    Configuration configuration = new Configuration(false);
+    configuration.setInt("drelephant.http.max.connections.per.host", 1);
+    TestClient client = new TestClient(configuration);
+    // Nothing listens on port 1, every request fails to connect
+    URL url = new URL("http://localhost:1/ws/v1/history");
+
+    for (int i = 0; i < 3; i++) {
+      try {
+        client.openStream(url);
+        Assert.fail("The request should have failed");
+      } catch (IOException e) {
+        // Expected, and the permit is released for the next request
+      }
+    }
+  }
+
+  /**
+   * A client whose handshake and clock are driven by the test
+   */
+  private static class TestClient extends HadoopRestClient {
+    private final AtomicInteger _handshakes = new AtomicInteger(0);
+    private volatile long _time = System.currentTimeMillis();
+    private volatile long _handshakeDelayMs = 0;
+    private volatile boolean _failHandshake = false;
+
+    private TestClient(Configuration configuration) {
+      super(configuration);
+    }
+
+    @Override
+    String authenticate(URL url) throws IOException, AuthenticationException {
+      int handshake = _handshakes.incrementAndGet();
+      if (_handshakeDelayMs > 0) {
+        try {
+          Thread.sleep(_handshakeDelayMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (_failHandshake) {
+        throw new AuthenticationException("Handshake " + handshake + " failed");
+      }
+      return "token-" + handshake;
+    }
+
+    @Override
+    long currentTimeMillis() {
+      return _time;
+    }
+  }
+}
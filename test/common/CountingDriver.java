@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static common.TestConstants.DB_DEFAULT_DRIVER_VALUE;
+import static common.TestConstants.DB_DEFAULT_URL_VALUE;
+
+
+/**
+ * A JDBC driver which counts the statements sent to the database. It accepts the urls starting with URL_PREFIX and
+ * connects to the url that follows through the real driver, e.g. jdbc:counting:h2:mem:test connects to the in-memory
+ * H2 database. Every call to an execute method counts as one statement, a batch counts once.
+ */
+public class CountingDriver implements Driver {
+
+  public static final String URL_PREFIX = "jdbc:counting:";
+  public static final String URL = URL_PREFIX + DB_DEFAULT_URL_VALUE.substring("jdbc:".length());
+
+  private static final AtomicInteger _statements = new AtomicInteger();
+
+  static {
+    try {
+      Class.forName(DB_DEFAULT_DRIVER_VALUE);
+      DriverManager.registerDriver(new CountingDriver());
+    } catch (ClassNotFoundException | SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * @return the number of statements executed since the last reset
+   */
+  public static int getStatementCount() {
+    return _statements.get();
+  }
+
+  public static void resetStatementCount() {
+    _statements.set(0);
+  }
+
+  /**
+   * Returns a connection counting the statements executed on the given connection
+   */
+  public static Connection counting(Connection conn) {
+    return wrap(Connection.class, conn);
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+    return counting(DriverManager.getConnection("jdbc:" + url.substring(URL_PREFIX.length()), info));
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return url != null && url.startsWith(URL_PREFIX);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  /**
+   * Delegates every call to the target, wrapping the statements it creates and counting their executions
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T wrap(Class<T> type, final Object target) {
+    return (T) Proxy.newProxyInstance(CountingDriver.class.getClassLoader(), new Class<?>[] { type },
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (target instanceof Statement && method.getName().startsWith("execute")) {
+              _statements.incrementAndGet();
+            }
+            Object value;
+            try {
+              value = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+            Class<?> returnType = method.getReturnType();
+            if (value != null && Statement.class.isAssignableFrom(returnType)) {
+              return wrap(returnType, value);
+            }
+            return value;
+          }
+        });
+  }
+}
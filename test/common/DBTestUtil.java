@@ -16,15 +16,28 @@
 
 package common;
 
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.ExecutionHistory;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
 import org.apache.commons.io.IOUtils;
+import play.Application;
+import play.GlobalSettings;
 import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
 
-import static common.TestConstants.TEST_DATA_FILE;
+import static common.TestConstants.*;
 
 
 public class DBTestUtil {
@@ -48,5 +61,124 @@ public class DBTestUtil {
     } finally {
       connection.close();
     }
+
+    // Summarize the executions of the results the way the persister does when it inserts them
+    connection = DB.getConnection(false);
+    try {
+      ExecutionHistory.add(connection, AppResult.find.findList());
+      connection.commit();
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Runs the INSERT statements in the Ups of an evolution, which fill the tables it creates from the existing rows
+   *
+   * @param evolution the number of the evolution script
+   */
+  public static void runEvolutionInserts(int evolution)
+      throws IOException, SQLException {
+    String script;
+    FileInputStream inputStream = new FileInputStream(EVOLUTIONS_DIR + evolution + ".sql");
+    try {
+      script = IOUtils.toString(inputStream);
+    } finally {
+      inputStream.close();
+    }
+    String ups = script.substring(script.indexOf("# --- !Ups"), script.indexOf("# --- !Downs"));
+
+    Connection connection = DB.getConnection();
+    try {
+      Statement statement = connection.createStatement();
+      for (String sql : ups.split(";")) {
+        if (sql.trim().startsWith("INSERT")) {
+          statement.execute(sql);
+        }
+      }
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Runs a query and returns its rows, with the small integer columns read as Integer
+   */
+  public static List<List<Object>> query(String sql) throws SQLException {
+    List<List<Object>> rows = new ArrayList<List<Object>>();
+    Connection conn = DB.getConnection();
+    try {
+      PreparedStatement statement = conn.prepareStatement(sql);
+      try {
+        ResultSet resultSet = statement.executeQuery();
+        int columns = resultSet.getMetaData().getColumnCount();
+        while (resultSet.next()) {
+          List<Object> row = new ArrayList<Object>();
+          for (int i = 1; i <= columns; i++) {
+            Object value = resultSet.getObject(i);
+            // Integer columns come back as Integer, Short or Byte depending on their width
+            row.add(value instanceof Short || value instanceof Byte ? ((Number) value).intValue() : value);
+          }
+          rows.add(row);
+        }
+      } finally {
+        statement.close();
+      }
+    } finally {
+      conn.close();
+    }
+    return rows;
+  }
+
+  /**
+   * Returns a fake application on the in-memory H2 database in MySQL mode, with the evolutions applied. The global
+   * settings are overridden so that starting it does not start the analysis.
+   */
+  public static FakeApplication fakeApplicationWithDB() {
+    return fakeApplicationWithDB(DB_DEFAULT_DRIVER_VALUE, DB_DEFAULT_URL_VALUE);
+  }
+
+  /**
+   * Returns a fake application like fakeApplicationWithDB(), connecting with the given driver and url
+   */
+  public static FakeApplication fakeApplicationWithDB(String driver, String url) {
+    Map<String, String> dbConn = new HashMap<String, String>();
+    dbConn.put(DB_DEFAULT_DRIVER_KEY, driver);
+    dbConn.put(DB_DEFAULT_URL_KEY, url);
+    dbConn.put(EVOLUTION_PLUGIN_KEY, EVOLUTION_PLUGIN_VALUE);
+    dbConn.put(APPLY_EVOLUTIONS_DEFAULT_KEY, APPLY_EVOLUTIONS_DEFAULT_VALUE);
+
+    GlobalSettings gs = new GlobalSettings() {
+      @Override
+      public void onStart(Application app) {
+      }
+    };
+    return Helpers.fakeApplication(dbConn, gs);
+  }
+
+  /**
+   * Returns an unscheduled HadoopJava result of user1 with every column that cannot be null set
+   */
+  public static AppResult createAppResult(String id, long finishTime) {
+    AppResult result = new AppResult();
+    result.id = id;
+    result.name = "name";
+    result.username = "user1";
+    result.queueName = TEST_DEFAULT_QUEUE_NAME;
+    result.startTime = finishTime - 1000;
+    result.finishTime = finishTime;
+    result.trackingUrl = "http://hostname/jobhistory/job/" + id;
+    result.jobType = TEST_JOB_TYPE;
+    result.severity = Severity.NONE;
+    result.jobName = "";
+    result.jobExecId = "";
+    result.flowExecId = "";
+    result.jobDefId = "";
+    result.flowDefId = "";
+    result.jobExecUrl = "";
+    result.flowExecUrl = "";
+    result.jobDefUrl = "";
+    result.flowDefUrl = "";
+    return result;
   }
 }
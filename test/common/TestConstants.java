@@ -22,6 +22,7 @@ public class TestConstants {
   public static final int TEST_SERVER_PORT = 9001;
   public static final String BASE_URL = "http://localhost:" + TEST_SERVER_PORT;
   public static final String TEST_DATA_FILE = "test/resources/test-init.sql";
+  public static final String EVOLUTIONS_DIR = "conf/evolutions/default/";
   public static final int RESPONSE_TIMEOUT = 3000; // milliseconds
 
   public static final String TEST_JOB_ID1 = "application_1458194917883_1453361";
@@ -16,7 +16,9 @@
 
 package controllers;
 
+import com.avaje.ebean.Ebean;
 import com.avaje.ebean.Query;
+import com.linkedin.drelephant.analysis.Severity;
 import models.AppResult;
 import com.bretlowery.drelephant.aggregates.UserSeverityAggregate;
 import org.junit.AfterClass;
@@ -152,4 +154,134 @@ public class ApplicationTest {
     assertTrue(sql4.contains("t0.finish_time <= ?"));
     assertTrue(sql4.contains("order by t0.finish_time desc"));
   }
+
+  @Test
+  public void testGenerateSearchQueryAfterCursor() {
+    Map<String, String> searchParams = new HashMap<String, String>();
+    searchParams.put(Application.USERNAME, "username");
+    SearchCursor after = new SearchCursor(1459713751000L, "application_1_1");
+
+    // Seek past the cursor on (finish time, id)
+    Query<AppResult> query = Application.generateSearchQuery("*", searchParams, after);
+    assertNotNull(query.findList());
+    String sql = query.getGeneratedSql();
+    assertTrue(sql.contains("t0.finish_time <= ?"));
+    assertTrue(sql.contains("t0.finish_time < ?"));
+    assertTrue(sql.contains("t0.id < ?"));
+    assertTrue(sql.contains("order by t0.finish_time desc, t0.id desc"));
+
+    // Seek past the cursor on (start time, id) when searched by start time
+    searchParams.put(Application.STARTED_TIME_BEGIN, "1459713751000");
+    query = Application.generateSearchQuery("*", searchParams, after);
+    assertNotNull(query.findList());
+    sql = query.getGeneratedSql();
+    assertTrue(sql.contains("t0.start_time <= ?"));
+    assertTrue(sql.contains("order by t0.start_time desc, t0.id desc"));
+
+    assertEquals(0, Application.countSearchResults(searchParams, Application.SEARCH_COUNT_LIMIT));
+  }
+
+  @Test
+  public void testGetUserSeverityAggregate() {
+    long now = System.currentTimeMillis();
+
+    // Aggregated by the database, every filter is bound as a parameter
+    List<UserSeverityAggregate> usaResults =
+        Application.getUserSeverityAggregate(now - DAY, now, 3, 4, "username", 5, "HadoopJava", "name");
+    assertNotNull(usaResults);
+    assertTrue(usaResults.isEmpty());
+
+    // Aggregated in memory, the six test results all end up as testuser1 with severe
+    usaResults = Application.getUserSeverityAggregate(now - DAY, now, 3, 4, "!TEST!", 5, null, null);
+    assertEquals(1, usaResults.size());
+    assertEquals("testuser1", usaResults.get(0).getUsername());
+    assertEquals(6, usaResults.get(0).getCount());
+  }
+
+  @Test
+  public void testGetUserSeverityAggregateFromDatabase() {
+    long now = System.currentTimeMillis();
+    long hour = 60 * 60 * 1000;
+    int id = 0;
+    for (int i = 0; i < 3; i++) {
+      insertResult(id++, "usa_alice", Severity.CRITICAL, now - (i + 2) * hour, "HadoopJava");
+    }
+    insertResult(id++, "usa_alice", Severity.SEVERE, now - 2 * hour, "HadoopJava");
+    for (int i = 0; i < 2; i++) {
+      insertResult(id++, "usa_bob", Severity.CRITICAL, now - 3 * hour, "HadoopJava");
+      insertResult(id++, "usa_bob", Severity.SEVERE, now - 3 * hour, "HadoopJava");
+    }
+    insertResult(id++, "usa_carol", Severity.SEVERE, now - 4 * hour, "Pig");
+    // Outside of the severities
+    insertResult(id++, "usa_dave", Severity.MODERATE, now - 2 * hour, "HadoopJava");
+    insertResult(id++, "usa_dave", Severity.MODERATE, now - 2 * hour, "HadoopJava");
+    insertResult(id++, "usa_dave", Severity.MODERATE, now - 2 * hour, "HadoopJava");
+    insertResult(id++, "usa_dave", Severity.MODERATE, now - 2 * hour, "HadoopJava");
+    // Outside of the time range
+    insertResult(id++, "usa_erin", Severity.CRITICAL, now - 2 * DAY, "HadoopJava");
+    insertResult(id++, "usa_erin", Severity.CRITICAL, now - 2 * DAY, "HadoopJava");
+    insertResult(id++, "usa_erin", Severity.CRITICAL, now - 2 * DAY, "HadoopJava");
+    insertResult(id++, "usa_erin", Severity.CRITICAL, now - 2 * DAY, "HadoopJava");
+
+    try {
+      int severe = Severity.SEVERE.getValue();
+      int critical = Severity.CRITICAL.getValue();
+
+      // Descending count, then by user, then descending severity
+      List<UserSeverityAggregate> usaResults =
+          Application.getUserSeverityAggregate(now - DAY, now, severe, critical, null, 10, null, null);
+      assertEquals(5, usaResults.size());
+      assertAggregate(usaResults.get(0), "usa_alice", Severity.CRITICAL, 3);
+      assertAggregate(usaResults.get(1), "usa_bob", Severity.CRITICAL, 2);
+      assertAggregate(usaResults.get(2), "usa_bob", Severity.SEVERE, 2);
+      assertAggregate(usaResults.get(3), "usa_alice", Severity.SEVERE, 1);
+      assertAggregate(usaResults.get(4), "usa_carol", Severity.SEVERE, 1);
+      // The latest times of the group
+      assertEquals(Long.valueOf(now - 2 * hour), usaResults.get(0).getStartTimeLong());
+      assertEquals(Long.valueOf(now - 2 * hour + 1000), usaResults.get(0).getFinishTimeLong());
+
+      // Only the top N rows
+      usaResults = Application.getUserSeverityAggregate(now - DAY, now, severe, critical, null, 3, null, null);
+      assertEquals(3, usaResults.size());
+      assertAggregate(usaResults.get(2), "usa_bob", Severity.SEVERE, 2);
+
+      // Filtered by user and by job type
+      usaResults = Application.getUserSeverityAggregate(now - DAY, now, severe, critical, "usa_bob", 10, null, null);
+      assertEquals(2, usaResults.size());
+      assertAggregate(usaResults.get(0), "usa_bob", Severity.CRITICAL, 2);
+      assertAggregate(usaResults.get(1), "usa_bob", Severity.SEVERE, 2);
+      usaResults = Application.getUserSeverityAggregate(now - DAY, now, severe, critical, null, 10, "Pig", null);
+      assertEquals(1, usaResults.size());
+      assertAggregate(usaResults.get(0), "usa_carol", Severity.SEVERE, 1);
+
+      // Only critical
+      usaResults = Application.getUserSeverityAggregate(now - DAY, now, critical, critical, null, 10, null, null);
+      assertEquals(2, usaResults.size());
+      assertAggregate(usaResults.get(0), "usa_alice", Severity.CRITICAL, 3);
+      assertAggregate(usaResults.get(1), "usa_bob", Severity.CRITICAL, 2);
+    } finally {
+      Ebean.createSqlUpdate("DELETE FROM yarn_app_result WHERE id LIKE 'application_usa_%'").execute();
+    }
+  }
+
+  private static void assertAggregate(UserSeverityAggregate usa, String username, Severity severity, int count) {
+    assertEquals(username, usa.getUsername());
+    assertEquals(severity, usa.getSeverity());
+    assertEquals(count, usa.getCount());
+  }
+
+  private static void insertResult(int id, String username, Severity severity, long startTime, String jobType) {
+    Ebean.createSqlUpdate("INSERT INTO yarn_app_result (id, name, username, queue_name, start_time, finish_time,"
+        + " tracking_url, job_type, severity, score, workflow_depth, scheduler, job_name, job_exec_id, flow_exec_id,"
+        + " job_def_id, flow_def_id, job_exec_url, flow_exec_url, job_def_url, flow_def_url, resource_used,"
+        + " resource_wasted, total_delay) VALUES (:id, 'name', :username, 'default', :startTime, :finishTime, '',"
+        + " :jobType, :severity, 0, 0, '', '', '', '', '', '', '', '', '', '', 0, 0, 0)")
+        .setParameter("id", "application_usa_" + id)
+        .setParameter("username", username)
+        .setParameter("startTime", startTime)
+        .setParameter("finishTime", startTime + 1000)
+        .setParameter("jobType", jobType)
+        .setParameter("severity", severity.getValue())
+        .execute();
+  }
 }
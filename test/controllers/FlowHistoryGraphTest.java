@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import com.google.common.collect.Lists;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.AppResultBatchWriter;
+import com.linkedin.drelephant.persistence.ExecutionHistory;
+import com.linkedin.drelephant.util.Utils;
+import common.DBTestUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+
+/**
+ * Compares the flow history graphs, read from the execution summaries, with the graphs computed from the results of
+ * the flow as they were before the summaries, kept below as Baseline.
+ */
+public class FlowHistoryGraphTest {
+
+  private static final String FLOW_DEF_ID = "flow-def";
+  private static final int EXECUTIONS = 17;
+
+  private FakeApplication _app;
+  private int _nextId = 0;
+
+  @Before
+  public void startApp() throws SQLException {
+    _app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(_app);
+    writeExecutions();
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testFlowGraphData() {
+    JsonArray graph = parse(Application.restFlowGraphData(FLOW_DEF_ID));
+    Assert.assertEquals(15, graph.size());
+    Assert.assertEquals(Baseline.flowGraphData(FLOW_DEF_ID), graph);
+  }
+
+  @Test
+  public void testFlowMetricsGraphData() {
+    JsonArray graph = parse(Application.restFlowMetricsGraphData(FLOW_DEF_ID));
+    Assert.assertEquals(15, graph.size());
+    Assert.assertEquals(Baseline.flowMetricsGraphData(FLOW_DEF_ID), graph);
+  }
+
+  @Test
+  public void testUnknownFlow() {
+    Assert.assertEquals(0, parse(Application.restFlowGraphData("unknown")).size());
+    Assert.assertEquals(0, parse(Application.restFlowMetricsGraphData("unknown")).size());
+  }
+
+  private static JsonArray parse(play.mvc.Result result) {
+    return new JsonParser().parse(Helpers.contentAsString(result)).getAsJsonArray();
+  }
+
+  /**
+   * Writes EXECUTIONS executions of the flow in two batches, like two persister writers would. Each runs jobA twice,
+   * the first execution of jobA having one application in each batch, and jobB once. Another flow runs in between.
+   */
+  private void writeExecutions() throws SQLException {
+    List<AppResult> firstBatch = new ArrayList<AppResult>();
+    List<AppResult> secondBatch = new ArrayList<AppResult>();
+    for (int e = 0; e < EXECUTIONS; e++) {
+      long base = e * 100000L;
+      String flowExecId = "exec-" + e;
+      firstBatch.add(createResult(FLOW_DEF_ID, flowExecId, "jobA", "1", base + 1000, base + 5000, e % 5));
+      firstBatch.add(createResult(FLOW_DEF_ID, flowExecId, "jobB", "1", base + 2000, base + 6000, (e + 2) % 5));
+      secondBatch.add(createResult(FLOW_DEF_ID, flowExecId, "jobA", "1", base + 500, base + 8000, (e + 1) % 5));
+      secondBatch.add(createResult(FLOW_DEF_ID, flowExecId, "jobA", "2", base + 9000, base + 12000, (e + 3) % 5));
+      secondBatch.add(createResult("other-flow-def", "other-exec-" + e, "jobA", "1", base, base + 13000, 4));
+    }
+    write(firstBatch);
+    write(secondBatch);
+  }
+
+  private static void write(List<AppResult> results) throws SQLException {
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, results);
+      ExecutionHistory.add(conn, results);
+      conn.commit();
+    } finally {
+      conn.close();
+    }
+  }
+
+  private AppResult createResult(String flowDefId, String flowExecId, String job, String attempt, long startTime,
+      long finishTime, int severity) {
+    int id = _nextId++;
+    AppResult result = DBTestUtil.createAppResult("application_1_" + id, finishTime);
+    result.flowDefId = flowDefId;
+    result.flowDefUrl = flowDefId + "-url";
+    result.flowExecId = flowExecId;
+    result.flowExecUrl = flowExecId + "-url";
+    result.jobDefId = flowDefId + "-" + job;
+    result.jobDefUrl = result.jobDefId + "-url";
+    result.jobExecId = flowExecId + "-" + job + "-" + attempt;
+    result.jobExecUrl = result.jobExecId + "-url";
+    result.startTime = startTime;
+    result.severity = Severity.byValue(severity);
+    result.score = severity * 10 + id % 7;
+    result.resourceUsed = 1000 + id;
+    result.resourceWasted = 100 + id % 13;
+    result.totalDelay = id % 11;
+    return result;
+  }
+
+  /**
+   * The flow history graphs as they were computed from the latest results of the flow
+   */
+  private static final class Baseline {
+    private static final int JOB_HISTORY_LIMIT = 5000;
+    private static final int MAX_HISTORY_LIMIT = 15;
+
+    static JsonArray flowGraphData(String flowDefId) {
+      JsonArray datasets = new JsonArray();
+      List<AppResult> results = getRestFlowAppResults(flowDefId);
+      Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap = ControllerUtil.limitHistoryResults(
+          ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID), results.size(),
+          MAX_HISTORY_LIMIT);
+
+      List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
+      for (int i = keyList.size() - 1; i >= 0; i--) {
+        IdUrlPair flowExecPair = keyList.get(i);
+        int flowPerfScore = 0;
+        JsonArray jobScores = new JsonArray();
+        List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
+        Map<IdUrlPair, List<AppResult>> jobDefIdToJobsMap =
+            ControllerUtil.groupJobs(mrJobsList, ControllerUtil.GroupBy.JOB_DEFINITION_ID);
+
+        for (IdUrlPair jobDefPair : jobDefIdToJobsMap.keySet()) {
+          int jobPerfScore = 0;
+          for (AppResult job : jobDefIdToJobsMap.get(jobDefPair)) {
+            jobPerfScore += job.score;
+          }
+
+          JsonObject jobScore = new JsonObject();
+          jobScore.addProperty("jobscore", jobPerfScore);
+          jobScore.addProperty("jobdefurl", jobDefPair.getUrl());
+          jobScore.addProperty("jobexecurl", jobDefIdToJobsMap.get(jobDefPair).get(0).jobExecUrl);
+
+          jobScores.add(jobScore);
+          flowPerfScore += jobPerfScore;
+        }
+
+        JsonObject dataset = new JsonObject();
+        dataset.addProperty("flowtime", mrJobsList.get(mrJobsList.size() - 1).finishTime);
+        dataset.addProperty("score", flowPerfScore);
+        dataset.add("jobscores", jobScores);
+
+        datasets.add(dataset);
+      }
+      return datasets;
+    }
+
+    static JsonArray flowMetricsGraphData(String flowDefId) {
+      JsonArray datasets = new JsonArray();
+      List<AppResult> results = getRestFlowAppResults(flowDefId);
+      Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap = ControllerUtil.limitHistoryResults(
+          ControllerUtil.groupJobs(results, ControllerUtil.GroupBy.FLOW_EXECUTION_ID), results.size(),
+          MAX_HISTORY_LIMIT);
+
+      List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
+      for (int i = keyList.size() - 1; i >= 0; i--) {
+        IdUrlPair flowExecPair = keyList.get(i);
+        JsonArray jobScores = new JsonArray();
+        List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
+        Map<IdUrlPair, List<AppResult>> jobDefIdToJobsMap =
+            ControllerUtil.groupJobs(mrJobsList, ControllerUtil.GroupBy.JOB_DEFINITION_ID);
+
+        long totalFlowMemoryUsed = 0;
+        long totalFlowMemoryWasted = 0;
+        for (IdUrlPair jobDefPair : jobDefIdToJobsMap.keySet()) {
+          long totalJobMemoryUsed = 0;
+          long totalJobMemoryWasted = 0;
+          long totalJobRuntime = Utils.getTotalRuntime(jobDefIdToJobsMap.get(jobDefPair));
+          long totalJobDelay = Utils.getTotalWaittime(jobDefIdToJobsMap.get(jobDefPair));
+          for (AppResult job : jobDefIdToJobsMap.get(jobDefPair)) {
+            totalJobMemoryUsed += job.resourceUsed;
+            totalJobMemoryWasted += job.resourceWasted;
+          }
+
+          JsonObject jobScore = new JsonObject();
+          jobScore.addProperty("runtime", totalJobRuntime);
+          jobScore.addProperty("waittime", totalJobDelay);
+          jobScore.addProperty("resourceused", totalJobMemoryUsed);
+          jobScore.addProperty("resourcewasted", totalJobMemoryWasted);
+          jobScore.addProperty("jobdefurl", jobDefPair.getUrl());
+          jobScore.addProperty("jobexecurl", jobDefIdToJobsMap.get(jobDefPair).get(0).jobExecUrl);
+
+          jobScores.add(jobScore);
+          totalFlowMemoryUsed += totalJobMemoryUsed;
+          totalFlowMemoryWasted += totalJobMemoryWasted;
+        }
+
+        JsonObject dataset = new JsonObject();
+        dataset.addProperty("flowtime", mrJobsList.get(mrJobsList.size() - 1).finishTime);
+        dataset.addProperty("runtime", Utils.getTotalRuntime(flowExecIdToJobsMap.get(flowExecPair)));
+        dataset.addProperty("waittime", Utils.getTotalWaittime(flowExecIdToJobsMap.get(flowExecPair)));
+        dataset.addProperty("resourceused", totalFlowMemoryUsed);
+        dataset.addProperty("resourcewasted", totalFlowMemoryWasted);
+        dataset.add("jobmetrics", jobScores);
+
+        datasets.add(dataset);
+      }
+      return datasets;
+    }
+
+    private static List<AppResult> getRestFlowAppResults(String flowDefId) {
+      return AppResult.find.select("*")
+          .where()
+          .eq(AppResult.TABLE.FLOW_DEF_ID, flowDefId)
+          .order()
+          .desc(AppResult.TABLE.FINISH_TIME)
+          .setMaxRows(JOB_HISTORY_LIMIT)
+          .findList();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.AppResultBatchWriter;
+import common.CountingDriver;
+import common.DBTestUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.mvc.Result;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+
+/**
+ * Counts the statements the pages showing heuristic results send to the database, which must not grow with the
+ * number of applications, heuristic results or details.
+ */
+public class HeuristicResultStatementsTest {
+
+  private static final String JOB_DEF_ID = "job-def";
+  private static final int HEURISTICS_PER_APP = 5;
+  private static final int DETAILS_PER_HEURISTIC = 3;
+
+  // The job history reads the job definition, the jobs, then the displayed jobs with a query per level
+  private static final int JOB_HISTORY_STATEMENTS = 5;
+
+  private FakeApplication _app;
+  private int _nextId = 0;
+
+  @Before
+  public void startApp() {
+    _app = DBTestUtil.fakeApplicationWithDB(CountingDriver.class.getName(), CountingDriver.URL);
+    Helpers.start(_app);
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testRestJob() throws SQLException {
+    insert("flow-exec-0", 2, HEURISTICS_PER_APP);
+    // The applications, then their heuristic results
+    Assert.assertEquals(2, statements("/rest/jobs?jobid=flow-exec-0-job"));
+
+    insert("flow-exec-0", 40, HEURISTICS_PER_APP);
+    Assert.assertEquals(2, statements("/rest/jobs?jobid=flow-exec-0-job"));
+  }
+
+  @Test
+  public void testRestApplication() throws SQLException {
+    insert("flow-exec-0", 1, HEURISTICS_PER_APP);
+    insert("flow-exec-0", 1, 4 * HEURISTICS_PER_APP);
+    insert("flow-exec-0", 1, 0);
+    // The application, its heuristic results, then their details
+    Assert.assertEquals(3, statements("/rest/applications?applicationid=application_1_0"));
+    Assert.assertEquals(3, statements("/rest/applications?applicationid=application_1_1"));
+    // Without heuristic results there are no details to read
+    Assert.assertEquals(2, statements("/rest/applications?applicationid=application_1_2"));
+  }
+
+  @Test
+  public void testJobHistory() throws SQLException {
+    String uri = "/newjobhistory?job-def-id=" + JOB_DEF_ID + "&select-graph-type=heuristics";
+    insert("flow-exec-0", 1, HEURISTICS_PER_APP);
+    insert("flow-exec-1", 2, HEURISTICS_PER_APP);
+    int fewJobs = statements(uri);
+    Assert.assertTrue(fewJobs + " statements", fewJobs <= JOB_HISTORY_STATEMENTS);
+
+    for (int f = 2; f < 20; f++) {
+      insert("flow-exec-" + f, 3, HEURISTICS_PER_APP);
+    }
+    Assert.assertEquals(fewJobs, statements(uri));
+  }
+
+  /**
+   * Requests the uri and returns the number of statements sent to the database to answer it
+   */
+  private static int statements(String uri) {
+    CountingDriver.resetStatementCount();
+    Result result = Helpers.route(Helpers.fakeRequest(Helpers.GET, uri));
+    Assert.assertEquals(uri, Helpers.OK, Helpers.status(result));
+    return CountingDriver.getStatementCount();
+  }
+
+  /**
+   * Inserts applications of the job definition in the flow execution, each with heuristic results of
+   * DETAILS_PER_HEURISTIC details
+   */
+  private void insert(String flowExecId, int apps, int heuristicsPerApp) throws SQLException {
+    List<AppResult> results = new ArrayList<AppResult>();
+    for (int i = 0; i < apps; i++) {
+      int id = _nextId++;
+      AppResult result = DBTestUtil.createAppResult("application_1_" + id, 1000000L + id * 1000L);
+      result.flowDefId = "flow-def";
+      result.flowExecId = flowExecId;
+      result.jobDefId = JOB_DEF_ID;
+      result.jobExecId = flowExecId + "-job";
+      result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+      for (int h = 0; h < heuristicsPerApp; h++) {
+        AppHeuristicResult heuristicResult = new AppHeuristicResult();
+        heuristicResult.heuristicClass = "Class";
+        heuristicResult.heuristicName = "Heuristic " + h;
+        heuristicResult.severity = Severity.byValue(h % 5);
+        heuristicResult.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
+        for (int d = 0; d < DETAILS_PER_HEURISTIC; d++) {
+          AppHeuristicResultDetails details = new AppHeuristicResultDetails();
+          details.name = "Detail " + d;
+          details.value = result.id + " " + heuristicResult.heuristicName;
+          heuristicResult.yarnAppHeuristicResultDetails.add(details);
+        }
+        result.yarnAppHeuristicResults.add(heuristicResult);
+      }
+      results.add(result);
+    }
+
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, results);
+      conn.commit();
+    } finally {
+      conn.close();
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import play.libs.F;
+import play.libs.Json;
+import play.mvc.Results;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class JsonChunksTest {
+
+  @Test
+  public void testChunksAreSplitAtChunkSize() throws IOException {
+    RecordingOut out = new RecordingOut();
+    JsonChunks.ChunkWriter writer = new JsonChunks.ChunkWriter(out);
+
+    writer.write(repeat('a', JsonChunks.CHUNK_SIZE - 1));
+    writer.flush();
+    // Nothing is sent until CHUNK_SIZE characters are buffered, flushing included
+    assertEquals(0, out.chunks.size());
+
+    writer.write("b");
+    assertEquals(1, out.chunks.size());
+    assertEquals(repeat('a', JsonChunks.CHUNK_SIZE - 1) + "b", out.chunks.get(0));
+
+    // A write larger than a chunk is sent whole
+    writer.write(repeat('c', 2 * JsonChunks.CHUNK_SIZE + 1));
+    assertEquals(2, out.chunks.size());
+    assertEquals(2 * JsonChunks.CHUNK_SIZE + 1, out.chunks.get(1).length());
+
+    writer.write("d");
+    writer.close();
+    assertEquals(Arrays.asList("d"), out.chunks.subList(2, out.chunks.size()));
+    assertEquals(1, out.closed);
+
+    writer.close();
+    assertEquals(1, out.closed);
+  }
+
+  @Test
+  public void testCloseWithoutContent() {
+    RecordingOut out = new RecordingOut();
+    new JsonChunks.ChunkWriter(out).close();
+    assertEquals(0, out.chunks.size());
+    assertEquals(1, out.closed);
+  }
+
+  @Test
+  public void testWriteAfterClose() {
+    RecordingOut out = new RecordingOut();
+    JsonChunks.ChunkWriter writer = new JsonChunks.ChunkWriter(out);
+    writer.close();
+    try {
+      writer.write("a");
+      fail("The write was accepted");
+    } catch (IOException e) {
+      assertEquals(0, out.chunks.size());
+    }
+  }
+
+  @Test
+  public void testFail() throws IOException {
+    RecordingOut out = new RecordingOut();
+    JsonChunks.ChunkWriter writer = new JsonChunks.ChunkWriter(out);
+    writer.write("{\"a\":");
+    writer.fail();
+    assertEquals(Arrays.asList("{\"a\":", JsonChunks.FAILURE_MARKER), out.chunks);
+    assertEquals(1, out.closed);
+
+    // Once closed the writer neither sends the marker nor closes again
+    writer.fail();
+    writer.close();
+    assertEquals(2, out.chunks.size());
+    assertEquals(1, out.closed);
+  }
+
+  @Test
+  public void testOutIsClosedWhenWritingFails() throws IOException {
+    RecordingOut out = new RecordingOut();
+    out.failing = true;
+    JsonChunks.ChunkWriter writer = new JsonChunks.ChunkWriter(out);
+    writer.write("a");
+    try {
+      writer.close();
+      fail("The failed write was ignored");
+    } catch (IllegalStateException e) {
+      assertEquals(1, out.closed);
+    }
+
+    out = new RecordingOut();
+    out.failing = true;
+    writer = new JsonChunks.ChunkWriter(out);
+    writer.write("a");
+    try {
+      writer.fail();
+      fail("The failed write was ignored");
+    } catch (IllegalStateException e) {
+      assertEquals(1, out.closed);
+    }
+  }
+
+  @Test
+  public void testFailedDocumentEndsWithMarker() {
+    final String written = repeat('x', JsonChunks.CHUNK_SIZE + 10);
+    RecordingOut out = new RecordingOut();
+    new JsonChunks() {
+      @Override
+      protected void write(Writer writer) throws IOException {
+        writer.write(written);
+        writer.write("[1,");
+        throw new IOException("The results could not be read");
+      }
+    }.onReady(out);
+    assertEquals(written + "[1," + JsonChunks.FAILURE_MARKER, out.content());
+    assertEquals(1, out.closed);
+
+    out = new RecordingOut();
+    new JsonChunks() {
+      @Override
+      protected void write(Writer writer) {
+        throw new IllegalArgumentException("The results could not be read");
+      }
+    }.onReady(out);
+    assertEquals(JsonChunks.FAILURE_MARKER, out.content());
+    assertEquals(1, out.closed);
+  }
+
+  @Test
+  public void testOfValue() {
+    Map<String, Object> value = new LinkedHashMap<String, Object>();
+    value.put("name", "<a & \"b\">");
+    value.put("count", 3);
+    value.put("missing", null);
+    value.put("values", Arrays.asList(1L, 2L, 3L));
+
+    RecordingOut out = new RecordingOut();
+    JsonChunks.ofValue(value).onReady(out);
+    assertEquals(Json.toJson(value).toString(), out.content());
+    assertEquals(1, out.closed);
+  }
+
+  @Test
+  public void testOfValues() {
+    List<Map<String, Object>> values = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 2000; i++) {
+      Map<String, Object> value = new LinkedHashMap<String, Object>();
+      value.put("id", "application_1_" + i);
+      value.put("score", i * 10);
+      values.add(value);
+    }
+
+    RecordingOut out = new RecordingOut();
+    JsonChunks.ofValues(values).onReady(out);
+    assertTrue(out.chunks.size() > 1);
+    assertEquals(Json.toJson(values).toString(), out.content());
+    assertEquals(1, out.closed);
+
+    out = new RecordingOut();
+    JsonChunks.ofValues(new ArrayList<Object>()).onReady(out);
+    assertEquals("[]", out.content());
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+
+  /**
+   * Records the chunks instead of sending them, and how many times the response was closed
+   */
+  private static final class RecordingOut extends Results.Chunks.Out<String> {
+    final List<String> chunks = new ArrayList<String>();
+    int closed = 0;
+    boolean failing = false;
+
+    RecordingOut() {
+      super(null, new ArrayList<F.Callback0>());
+    }
+
+    @Override
+    public void write(String chunk) {
+      if (failing) {
+        throw new IllegalStateException("The client is gone");
+      }
+      chunks.add(chunk);
+    }
+
+    @Override
+    public void close() {
+      closed++;
+    }
+
+    String content() {
+      StringBuilder content = new StringBuilder();
+      for (String chunk : chunks) {
+        content.append(chunk);
+      }
+      return content.toString();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package controllers;
+
+import models.AppResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+
+public class SearchCursorTest {
+
+  @Test
+  public void testEncodeDecode() {
+    String encoded = new SearchCursor(1459713751000L, "application_1458194917883_1453361").encode();
+    assertFalse(encoded.contains("application"));
+    assertFalse(encoded.contains("=") || encoded.contains("+") || encoded.contains("/"));
+
+    SearchCursor cursor = SearchCursor.decode(encoded);
+    assertEquals(1459713751000L, cursor.getTime());
+    assertEquals("application_1458194917883_1453361", cursor.getId());
+  }
+
+  @Test
+  public void testAfter() {
+    AppResult result = new AppResult();
+    result.id = "application_1_1";
+    result.startTime = 100;
+    result.finishTime = 200;
+    assertEquals(200, SearchCursor.decode(SearchCursor.after(result, false).encode()).getTime());
+    assertEquals(100, SearchCursor.decode(SearchCursor.after(result, true).encode()).getTime());
+  }
+
+  @Test
+  public void testInvalidCursors() {
+    assertNull(SearchCursor.decode(null));
+    assertNull(SearchCursor.decode(""));
+    assertNull(SearchCursor.decode("not a cursor"));
+    assertNull(SearchCursor.decode(new SearchCursor(1, "").encode()));
+    assertNull(SearchCursor.decode(org.apache.commons.codec.binary.Base64.encodeBase64URLSafeString(
+        "time:application_1_1".getBytes())));
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers.api.v1;
+
+import com.avaje.ebean.Query;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.persistence.AppResultBatchWriter;
+import common.DBTestUtil;
+import controllers.Application;
+import controllers.JsonChunks;
+import controllers.SearchCursor;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppHeuristicResult;
+import models.AppResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import play.db.DB;
+import play.mvc.Result;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+import static common.TestConstants.TEST_DEFAULT_QUEUE_NAME;
+
+
+/**
+ * Compares the streamed search results with the ones of the single query they were read with before, kept below as
+ * Baseline. A page of 250 results is read in several pages of SEARCH_STREAM_PAGE_SIZE.
+ */
+public class WebSearchTest {
+
+  private static final String SEARCH_PATH = "/rest/search-results?username=user1&limit=250";
+  private static final int LIMIT = 250;
+  private static final int APPS = 700;
+
+  private FakeApplication _app;
+
+  @Before
+  public void startApp() throws SQLException {
+    _app = DBTestUtil.fakeApplicationWithDB();
+    Helpers.start(_app);
+    insert();
+  }
+
+  @After
+  public void stopApp() {
+    Helpers.stop(_app);
+  }
+
+  @Test
+  public void testPages() {
+    // 525 results of user1: a first page, the page after its cursor, then the last page at an offset
+    JsonObject first = search(SEARCH_PATH);
+    Assert.assertEquals(Baseline.search(0, null), first);
+    Assert.assertEquals(LIMIT, first.getAsJsonArray(JsonKeys.SUMMARIES).size());
+    Assert.assertEquals(525, first.get(JsonKeys.TOTAL).getAsInt());
+
+    String next = first.get(JsonKeys.NEXT).getAsString();
+    JsonObject second = search(SEARCH_PATH + "&cursor=" + next);
+    Assert.assertEquals(Baseline.search(0, SearchCursor.decode(next)), second);
+    Assert.assertEquals(LIMIT, second.get(JsonKeys.END).getAsInt());
+
+    JsonObject last = search(SEARCH_PATH + "&offset=400");
+    Assert.assertEquals(Baseline.search(400, null), last);
+    Assert.assertEquals(525, last.get(JsonKeys.END).getAsInt());
+    Assert.assertFalse(last.has(JsonKeys.NEXT));
+  }
+
+  @Test
+  public void testNullFieldsAreDropped() {
+    JsonArray summaries = search(SEARCH_PATH + "&offset=400").getAsJsonArray(JsonKeys.SUMMARIES);
+    // The first results have the queue of every fifth application removed
+    JsonObject summary = findSummary(summaries, "application_1_0");
+    Assert.assertFalse(summary.has(JsonKeys.QUEUE));
+    Assert.assertEquals(2, summary.getAsJsonArray(JsonKeys.HEURISTICS_SUMMARY).size());
+    summary = findSummary(summaries, "application_1_1");
+    Assert.assertEquals(TEST_DEFAULT_QUEUE_NAME, summary.get(JsonKeys.QUEUE).getAsString());
+  }
+
+  /**
+   * Returns the search results of the uri, without the id which prints the query
+   */
+  private static JsonObject search(String uri) {
+    Result result = Helpers.route(Helpers.fakeRequest(Helpers.GET, uri));
+    Assert.assertEquals(uri, Helpers.OK, Helpers.status(result));
+    JsonObject searchResults = new JsonParser().parse(Helpers.contentAsString(result)).getAsJsonObject()
+        .getAsJsonObject(JsonKeys.SEARCH_RESULTS);
+    Assert.assertNotNull(searchResults.remove(JsonKeys.ID));
+    return searchResults;
+  }
+
+  private static JsonObject findSummary(JsonArray summaries, String id) {
+    for (JsonElement summary : summaries) {
+      if (summary.getAsJsonObject().get(JsonKeys.ID).getAsString().equals(id)) {
+        return summary.getAsJsonObject();
+      }
+    }
+    throw new AssertionError(id + " is not in the results");
+  }
+
+  /**
+   * Inserts the applications of user1 and user2, two finishing at the same time so that the id breaks the tie
+   */
+  private static void insert() throws SQLException {
+    List<AppResult> results = new ArrayList<AppResult>();
+    for (int i = 0; i < APPS; i++) {
+      AppResult result = DBTestUtil.createAppResult("application_1_" + i, 1000000L + (i / 2) * 1000L);
+      result.username = i % 4 == 3 ? "user2" : "user1";
+      if (i % 5 == 0) {
+        result.queueName = null;
+      }
+      result.severity = Severity.byValue(i % 5);
+      result.resourceUsed = i * 100;
+      result.totalDelay = i % 7;
+      result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+      for (int h = 0; h < 2; h++) {
+        AppHeuristicResult heuristicResult = new AppHeuristicResult();
+        heuristicResult.heuristicClass = "Class";
+        heuristicResult.heuristicName = "Heuristic " + h;
+        heuristicResult.severity = Severity.byValue((i + h) % 5);
+        result.yarnAppHeuristicResults.add(heuristicResult);
+      }
+      results.add(result);
+    }
+
+    Connection conn = DB.getConnection(false);
+    try {
+      AppResultBatchWriter.insert(conn, results);
+      conn.commit();
+    } finally {
+      conn.close();
+    }
+  }
+
+  /**
+   * The search results as they were read with a single query and built as one Gson document
+   */
+  private static final class Baseline {
+    static JsonObject search(int offset, SearchCursor after) {
+      Map<String, String> searchParams = new HashMap<String, String>();
+      searchParams.put(Application.USERNAME, "user1");
+      int total = Application.generateSearchQuery(AppResult.getSearchFields(), searchParams).findRowCount();
+
+      Query<AppResult> query = Application.generateSearchQuery(AppResult.getSearchFields(), searchParams, after);
+      if (after == null) {
+        query = query.setFirstRow(offset);
+      }
+      List<AppResult> results = query.setMaxRows(LIMIT + 1)
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields()).findList();
+      String next = null;
+      if (results.size() > LIMIT) {
+        results = results.subList(0, LIMIT);
+        next = SearchCursor.after(results.get(LIMIT - 1), Application.isSortedByStartTime(searchParams)).encode();
+      }
+
+      JsonArray applicationSummaryArray = new JsonArray();
+      for (AppResult application : results) {
+        JsonObject applicationObject = new JsonObject();
+        JsonArray heuristicsArray = new JsonArray();
+        for (AppHeuristicResult heuristic : application.yarnAppHeuristicResults) {
+          JsonObject heuristicObject = new JsonObject();
+          heuristicObject.addProperty(JsonKeys.NAME, heuristic.heuristicName);
+          heuristicObject.addProperty(JsonKeys.SEVERITY, heuristic.severity.getText());
+          heuristicsArray.add(heuristicObject);
+        }
+
+        applicationObject.addProperty(JsonKeys.ID, application.id);
+        applicationObject.addProperty(JsonKeys.USERNAME, application.username);
+        applicationObject.addProperty(JsonKeys.START_TIME, application.startTime);
+        applicationObject.addProperty(JsonKeys.FINISH_TIME, application.finishTime);
+        applicationObject.addProperty(JsonKeys.RUNTIME, application.finishTime - application.startTime);
+        applicationObject.addProperty(JsonKeys.WAITTIME, application.totalDelay);
+        applicationObject.addProperty(JsonKeys.RESOURCE_USED, application.resourceUsed);
+        applicationObject.addProperty(JsonKeys.RESOURCE_WASTED, application.resourceWasted);
+        applicationObject.addProperty(JsonKeys.SEVERITY, application.severity.getText());
+        applicationObject.addProperty(JsonKeys.QUEUE, application.queueName);
+        applicationObject.add(JsonKeys.HEURISTICS_SUMMARY, heuristicsArray);
+        applicationSummaryArray.add(applicationObject);
+      }
+
+      JsonObject searchResults = new JsonObject();
+      searchResults.addProperty(JsonKeys.START, offset);
+      searchResults.addProperty(JsonKeys.END, offset + results.size());
+      searchResults.addProperty(JsonKeys.TOTAL, total);
+      searchResults.addProperty(JsonKeys.APPROXIMATE, false);
+      if (next != null) {
+        searchResults.addProperty(JsonKeys.NEXT, next);
+      }
+      searchResults.add(JsonKeys.SUMMARIES, applicationSummaryArray);
+      // Serialized and parsed back like the response, which drops the null fields
+      return new JsonParser().parse(JsonChunks.GSON.toJson(searchResults)).getAsJsonObject();
+    }
+  }
+}
@@ -24,22 +24,16 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import play.Application;
-import play.GlobalSettings;
 import play.libs.WS;
 import play.test.FakeApplication;
 
 import static common.DBTestUtil.*;
 import static common.TestConstants.*;
 import static org.junit.Assert.assertTrue;
-import static play.test.Helpers.fakeApplication;
 import static play.test.Helpers.running;
 import static play.test.Helpers.testServer;
 
@@ -56,25 +50,11 @@ import static play.test.Helpers.testServer;
  */
 public class RestAPITest {
 
-  private static final Logger logger = LoggerFactory.getLogger(RestAPITest.class);
   private static FakeApplication fakeApp;
 
   @Before
   public void setup() {
-    Map<String, String> dbConn = new HashMap<String, String>();
-    dbConn.put(DB_DEFAULT_DRIVER_KEY, DB_DEFAULT_DRIVER_VALUE);
-    dbConn.put(DB_DEFAULT_URL_KEY, DB_DEFAULT_URL_VALUE);
-    dbConn.put(EVOLUTION_PLUGIN_KEY, EVOLUTION_PLUGIN_VALUE);
-    dbConn.put(APPLY_EVOLUTIONS_DEFAULT_KEY, APPLY_EVOLUTIONS_DEFAULT_VALUE);
-
-    GlobalSettings gs = new GlobalSettings() {
-      @Override
-      public void onStart(Application app) {
-        logger.info("Starting FakeApplication");
-      }
-    };
-
-    fakeApp = fakeApplication(dbConn, gs);
+    fakeApp = fakeApplicationWithDB();
   }
 
   /**